@@ -0,0 +1,173 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.lpe.common.util.NumericPairList;
+
+/**
+ * Generates reproducible input data for the benchmarks. All generators use a
+ * fixed seed, so that runs on different machines and revisions operate on
+ * identical data.
+ * 
+ */
+public final class BenchmarkData {
+	/** seed used for all generated data. */
+	public static final long SEED = 4711L;
+
+	private static final String[] PACKAGES = { "org", "lpe", "common", "util", "service", "impl", "data", "web" };
+	private static final String[] TYPES = { "int", "long", "double", "boolean", "java.lang.String",
+			"java.util.List", "java.lang.Object[]", "byte[]" };
+	private static final String[] TABLES = { "customer", "orders", "order_line", "item", "stock", "district" };
+	private static final String[] COLUMNS = { "id", "name", "price", "quantity", "w_id", "d_id", "balance" };
+
+	/**
+	 * private constructor due to utility class.
+	 */
+	private BenchmarkData() {
+	}
+
+	/**
+	 * Creates normally distributed response times with a few outliers.
+	 * 
+	 * @param size
+	 *            number of values
+	 * @param seedOffset
+	 *            offset added to the seed to create different samples
+	 * @return list of values
+	 */
+	public static List<Double> responseTimes(int size, long seedOffset) {
+		Random random = new Random(SEED + seedOffset);
+		List<Double> values = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			double value = 100.0 + 15.0 * random.nextGaussian();
+			if (random.nextInt(100) == 0) {
+				value *= 10.0;
+			}
+			values.add(value);
+		}
+		return values;
+	}
+
+	/**
+	 * Creates a noisy, linearly increasing series.
+	 * 
+	 * @param size
+	 *            number of pairs
+	 * @return series of pairs
+	 */
+	public static NumericPairList<Double, Double> series(int size) {
+		Random random = new Random(SEED);
+		NumericPairList<Double, Double> list = new NumericPairList<>();
+		for (int i = 0; i < size; i++) {
+			list.add((double) i, 0.5 * i + 10.0 * random.nextGaussian());
+		}
+		return list;
+	}
+
+	/**
+	 * Creates fully qualified method signatures.
+	 * 
+	 * @param size
+	 *            number of signatures
+	 * @return signatures in the form <code>a.b.C.method(int,java.lang.String)</code>
+	 */
+	public static String[] methodSignatures(int size) {
+		Random random = new Random(SEED);
+		String[] result = new String[size];
+		for (int i = 0; i < size; i++) {
+			StringBuilder builder = new StringBuilder();
+			int depth = 3 + random.nextInt(4);
+			for (int j = 0; j < depth; j++) {
+				builder.append(PACKAGES[random.nextInt(PACKAGES.length)]).append('.');
+			}
+			builder.append("Class").append(random.nextInt(50)).append(".method").append(random.nextInt(20))
+					.append('(');
+			int numParams = random.nextInt(4);
+			for (int j = 0; j < numParams; j++) {
+				if (j > 0) {
+					builder.append(',');
+				}
+				builder.append(TYPES[random.nextInt(TYPES.length)]);
+			}
+			result[i] = builder.append(')').toString();
+		}
+		return result;
+	}
+
+	/**
+	 * Creates wildcard patterns for the given signatures. Every fourth pattern
+	 * is derived from a random other signature and usually does not match.
+	 * 
+	 * @param signatures
+	 *            signatures to derive patterns from
+	 * @return patterns containing <code>*</code> wildcards
+	 */
+	public static String[] patterns(String[] signatures) {
+		Random random = new Random(SEED);
+		String[] result = new String[signatures.length];
+		for (int i = 0; i < signatures.length; i++) {
+			String signature = i % 4 == 3 ? signatures[random.nextInt(signatures.length)] : signatures[i];
+			int cut = signature.indexOf('(');
+			switch (i % 3) {
+			case 0:
+				result[i] = signature.substring(0, cut / 2) + "*";
+				break;
+			case 1:
+				result[i] = "*" + signature.substring(cut / 2, cut) + "*";
+				break;
+			default:
+				result[i] = signature.substring(0, cut / 3) + "*" + signature.substring(cut);
+				break;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Creates SQL statements with literal constants.
+	 * 
+	 * @param size
+	 *            number of statements
+	 * @return SQL statements
+	 */
+	public static String[] sqlStatements(int size) {
+		Random random = new Random(SEED);
+		String[] result = new String[size];
+		for (int i = 0; i < size; i++) {
+			String table = TABLES[random.nextInt(TABLES.length)];
+			String column = COLUMNS[random.nextInt(COLUMNS.length)];
+			switch (i % 3) {
+			case 0:
+				result[i] = "SELECT * FROM " + table + " WHERE " + column + " = " + random.nextInt(10000)
+						+ " AND name = 'n" + random.nextInt(100) + "'";
+				break;
+			case 1:
+				result[i] = "UPDATE " + table + " SET " + column + " = " + random.nextInt(10000) + " WHERE id = "
+						+ random.nextInt(1000);
+				break;
+			default:
+				result[i] = "INSERT INTO " + table + " (id, " + column + ") VALUES (" + random.nextInt(1000) + ", "
+						+ random.nextInt(10000) + ")";
+				break;
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,190 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.apache.commons.io.FileUtils;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks and compares the results with a baseline. The results
+ * are written in the JMH JSON format. If the baseline file does not exist, the
+ * results of the run become the new baseline. Otherwise, every benchmark
+ * whose score is worse than the baseline by more than the threshold is
+ * reported as regression and the process exits with code 1.
+ * <p>
+ * System properties:
+ * <ul>
+ * <li><code>baseline</code>: baseline file (default
+ * <code>benchmark-baseline.json</code>)</li>
+ * <li><code>result</code>: result file (default
+ * <code>benchmark-result.json</code>)</li>
+ * <li><code>threshold</code>: tolerated relative regression (default 0.1)</li>
+ * </ul>
+ * All program arguments are passed to JMH, e.g. a regular expression selecting
+ * the benchmarks or <code>-p size=100</code>.
+ * 
+ */
+public final class BenchmarkRunner {
+	private static final String DEFAULT_BASELINE = "benchmark-baseline.json";
+	private static final String DEFAULT_RESULT = "benchmark-result.json";
+	private static final double DEFAULT_THRESHOLD = 0.1;
+
+	/**
+	 * private constructor due to utility class.
+	 */
+	private BenchmarkRunner() {
+	}
+
+	/**
+	 * 
+	 * @param args
+	 *            JMH command line options
+	 * @throws RunnerException
+	 *             if a benchmark fails
+	 * @throws CommandLineOptionException
+	 *             if the arguments are invalid
+	 * @throws IOException
+	 *             if baseline or result cannot be accessed
+	 */
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException, IOException {
+		File baselineFile = new File(System.getProperty("baseline", DEFAULT_BASELINE));
+		File resultFile = new File(System.getProperty("result", DEFAULT_RESULT));
+		double threshold = Double.parseDouble(System.getProperty("threshold", String.valueOf(DEFAULT_THRESHOLD)));
+
+		CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+		ChainedOptionsBuilder builder = new OptionsBuilder().parent(commandLineOptions)
+				.resultFormat(ResultFormatType.JSON).result(resultFile.getAbsolutePath());
+		if (commandLineOptions.getIncludes().isEmpty()) {
+			builder.include(BenchmarkRunner.class.getPackage().getName() + ".*");
+		}
+		Collection<RunResult> results = new Runner(builder.build()).run();
+		if (results.isEmpty()) {
+			return;
+		}
+
+		if (!baselineFile.exists()) {
+			FileUtils.copyFile(resultFile, baselineFile);
+			System.out.println("Created baseline " + baselineFile.getAbsolutePath());
+			return;
+		}
+
+		List<String> regressions = compare(readScores(baselineFile), readScores(resultFile), threshold);
+		if (regressions.isEmpty()) {
+			System.out.println("No regressions compared to baseline " + baselineFile.getAbsolutePath());
+		} else {
+			System.out.println("Regressions compared to baseline " + baselineFile.getAbsolutePath() + ":");
+			for (String regression : regressions) {
+				System.out.println("  " + regression);
+			}
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Compares the scores of two runs. Scores of benchmarks which are not
+	 * contained in both runs are ignored.
+	 * 
+	 * @param baseline
+	 *            baseline scores
+	 * @param current
+	 *            current scores
+	 * @param threshold
+	 *            tolerated relative regression
+	 * @return descriptions of all regressions
+	 */
+	static List<String> compare(Map<String, Score> baseline, Map<String, Score> current, double threshold) {
+		List<String> regressions = new ArrayList<>();
+		for (Entry<String, Score> entry : current.entrySet()) {
+			Score base = baseline.get(entry.getKey());
+			if (base == null || base.value == 0.0) {
+				continue;
+			}
+			Score score = entry.getValue();
+			double change = (score.value - base.value) / base.value;
+			if (!score.higherIsBetter && change > threshold || score.higherIsBetter && -change > threshold) {
+				regressions.add(String.format("%s: %.3f -> %.3f %s (%+.1f%%)", entry.getKey(), base.value,
+						score.value, score.unit, change * 100.0));
+			}
+		}
+		return regressions;
+	}
+
+	/**
+	 * Reads the primary scores of a JMH JSON result file.
+	 * 
+	 * @param file
+	 *            JMH result file
+	 * @return scores by benchmark and parameters
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	static Map<String, Score> readScores(File file) throws IOException {
+		Map<String, Score> scores = new TreeMap<>();
+		JsonNode root = new ObjectMapper().readTree(file);
+		for (JsonNode run : root) {
+			StringBuilder key = new StringBuilder(run.get("benchmark").getTextValue());
+			JsonNode params = run.get("params");
+			if (params != null) {
+				Map<String, String> sortedParams = new TreeMap<>();
+				Iterator<Entry<String, JsonNode>> fields = params.getFields();
+				while (fields.hasNext()) {
+					Entry<String, JsonNode> field = fields.next();
+					sortedParams.put(field.getKey(), field.getValue().getTextValue());
+				}
+				key.append(sortedParams);
+			}
+			JsonNode metric = run.get("primaryMetric");
+			String unit = metric.get("scoreUnit").getTextValue();
+			scores.put(key.toString(), new Score(metric.get("score").getDoubleValue(), unit));
+		}
+		return scores;
+	}
+
+	/**
+	 * Primary score of a benchmark.
+	 */
+	static final class Score {
+		private final double value;
+		private final String unit;
+		private final boolean higherIsBetter;
+
+		Score(double value, String unit) {
+			this.value = value;
+			this.unit = unit;
+			// throughput (ops/time) vs. time per operation (time/op)
+			this.higherIsBetter = unit.startsWith("ops");
+		}
+	}
+}
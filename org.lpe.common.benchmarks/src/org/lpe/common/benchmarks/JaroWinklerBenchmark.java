@@ -0,0 +1,105 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.lpe.common.util.JaroWinklerDistance;
+import org.lpe.common.util.LpeStringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the Jaro-Winkler distance ({@link JaroWinklerDistance}) for
+ * strings of different lengths.
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class JaroWinklerBenchmark {
+	private static final int NUM_PAIRS = 64;
+	private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ._";
+
+	@Param({ "8", "32", "128" })
+	private int length;
+
+	private String[] first;
+	private String[] second;
+	private int index;
+
+	/**
+	 * Creates pairs of similar strings, the second string differs in about
+	 * every eighth character.
+	 */
+	@Setup
+	public void setup() {
+		Random random = new Random(BenchmarkData.SEED);
+		first = new String[NUM_PAIRS];
+		second = new String[NUM_PAIRS];
+		for (int i = 0; i < NUM_PAIRS; i++) {
+			char[] chars = new char[length];
+			for (int j = 0; j < length; j++) {
+				chars[j] = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+			}
+			first[i] = new String(chars);
+			for (int j = 0; j < length; j++) {
+				if (random.nextInt(8) == 0) {
+					chars[j] = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+				}
+			}
+			second[i] = new String(chars);
+		}
+	}
+
+	private int next() {
+		index = (index + 1) % NUM_PAIRS;
+		return index;
+	}
+
+	/**
+	 * 
+	 * @return distance
+	 */
+	@Benchmark
+	public double getDistance() {
+		int i = next();
+		return LpeStringUtils.getDistance(first[i], second[i]);
+	}
+
+	/**
+	 * 
+	 * @return distance
+	 */
+	@Benchmark
+	public double getDistanceCaseInsensitive() {
+		int i = next();
+		return LpeStringUtils.getDistanceCaseInsensitive(first[i], second[i]);
+	}
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.lpe.common.util.NumericPair;
+import org.lpe.common.util.NumericPairList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks the accessors of {@link NumericPairList}.
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class NumericPairListBenchmark {
+
+	@Param({ "100", "10000", "100000" })
+	private int size;
+
+	private NumericPairList<Double, Double> series;
+
+	/**
+	 * Creates the input data.
+	 */
+	@Setup
+	public void setup() {
+		series = BenchmarkData.series(size);
+	}
+
+	/**
+	 * 
+	 * @param blackhole
+	 *            consumes the pairs
+	 */
+	@Benchmark
+	public void indexedAccess(Blackhole blackhole) {
+		for (int i = 0; i < series.size(); i++) {
+			blackhole.consume(series.get(i).getValue());
+		}
+	}
+
+	/**
+	 * 
+	 * @param blackhole
+	 *            consumes the pairs
+	 */
+	@Benchmark
+	public void iteration(Blackhole blackhole) {
+		for (NumericPair<Double, Double> pair : series) {
+			blackhole.consume(pair.getValue());
+		}
+	}
+
+	/**
+	 * 
+	 * @return key array
+	 */
+	@Benchmark
+	public double[] getKeyArrayAsDouble() {
+		return series.getKeyArrayAsDouble();
+	}
+
+	/**
+	 * 
+	 * @return value list
+	 */
+	@Benchmark
+	public List<Double> getValueListAsDouble() {
+		return series.getValueListAsDouble();
+	}
+
+	/**
+	 * 
+	 * @return scaled value array
+	 */
+	@Benchmark
+	public double[] getValueArrayAsDoubleScaled() {
+		return series.getValueArrayAsDouble(0.001);
+	}
+
+	/**
+	 * 
+	 * @param blackhole
+	 *            consumes the extremes
+	 */
+	@Benchmark
+	public void minMax(Blackhole blackhole) {
+		blackhole.consume(series.getKeyMin());
+		blackhole.consume(series.getKeyMax());
+		blackhole.consume(series.getValueMin());
+		blackhole.consume(series.getValueMax());
+	}
+
+	/**
+	 * 
+	 * @return pairs sorted by value
+	 */
+	@Benchmark
+	public List<NumericPair<Double, Double>> sortByValue() {
+		return series.sortByValue();
+	}
+}
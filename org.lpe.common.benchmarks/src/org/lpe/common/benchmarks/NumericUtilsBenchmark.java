@@ -0,0 +1,158 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.lpe.common.util.LpeNumericUtils;
+import org.lpe.common.util.NumericPairList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the statistical functions of {@link LpeNumericUtils}.
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class NumericUtilsBenchmark {
+	private static final double NOISE_THRESHOLD = 0.5;
+	private static final int WINDOW_SIZE = 5;
+	private static final double DBSCAN_EPSILON = 15.0;
+	private static final int DBSCAN_MIN_POINTS = 4;
+	private static final int DBSCAN_MAX_SIZE = 10000;
+
+	@Param({ "100", "10000", "100000" })
+	private int size;
+
+	private List<Double> sample1;
+	private List<Double> sample2;
+	private double[] array;
+	private NumericPairList<Double, Double> series;
+	private NumericPairList<Double, Double> dbscanSeries;
+
+	/**
+	 * Creates the input data.
+	 */
+	@Setup
+	public void setup() {
+		sample1 = BenchmarkData.responseTimes(size, 0);
+		sample2 = BenchmarkData.responseTimes(size, 1);
+		array = new double[size];
+		for (int i = 0; i < size; i++) {
+			array[i] = sample1.get(i);
+		}
+		series = BenchmarkData.series(size);
+		dbscanSeries = BenchmarkData.series(Math.min(size, DBSCAN_MAX_SIZE));
+	}
+
+	/**
+	 * 
+	 * @return filtered values
+	 */
+	@Benchmark
+	public List<Double> filterOutliersUsingIQR() {
+		return LpeNumericUtils.filterOutliersUsingIQR(sample1);
+	}
+
+	/**
+	 * 
+	 * @return filtered pairs
+	 */
+	@Benchmark
+	public NumericPairList<Double, Double> filterOutliersInValuesUsingIQR() {
+		return LpeNumericUtils.filterOutliersInValuesUsingIQR(series);
+	}
+
+	/**
+	 * 
+	 * @return standard deviation
+	 */
+	@Benchmark
+	public double stdDevArray() {
+		return LpeNumericUtils.stdDev(array);
+	}
+
+	/**
+	 * 
+	 * @return standard deviation
+	 */
+	@Benchmark
+	public double stdDevCollection() {
+		return LpeNumericUtils.stdDev(sample1);
+	}
+
+	/**
+	 * 
+	 * @return p-value
+	 */
+	@Benchmark
+	public double tTest() {
+		return LpeNumericUtils.tTest(sample1, sample2);
+	}
+
+	/**
+	 * 
+	 * @return p-value
+	 */
+	@Benchmark
+	public double tTestOnNonNormalDistributedSample() {
+		return LpeNumericUtils.tTestOnNonNormalDistributedSample(sample1, sample2);
+	}
+
+	/**
+	 * 
+	 * @return filtered pairs
+	 */
+	@Benchmark
+	public NumericPairList<Double, Double> removeNoiseInValues() {
+		return LpeNumericUtils.removeNoiseInValues(series, NOISE_THRESHOLD, 0.0, WINDOW_SIZE);
+	}
+
+	/**
+	 * 
+	 * @return filtered pairs
+	 */
+	@Benchmark
+	public NumericPairList<Double, Double> removeNoiseInKeys() {
+		return LpeNumericUtils.removeNoiseInKeys(series, NOISE_THRESHOLD, WINDOW_SIZE);
+	}
+
+	/**
+	 * DBSCAN is quadratic in the number of points, the largest size is
+	 * therefore limited to {@link #DBSCAN_MAX_SIZE} points.
+	 * 
+	 * @return clusters
+	 */
+	@Benchmark
+	public List<NumericPairList<Double, Double>> dbscan() {
+		return LpeNumericUtils.dbscan(dbscanSeries, DBSCAN_EPSILON, DBSCAN_MIN_POINTS);
+	}
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.lpe.common.util.LpeStringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the SQL generalization and comparison of {@link LpeStringUtils},
+ * which parse the statements with the SQL parser.
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class SqlBenchmark {
+
+	@Param({ "128", "4096" })
+	private int size;
+
+	private String[] statements;
+	private String[] generalized;
+	private int index;
+
+	/**
+	 * Creates the input data.
+	 */
+	@Setup
+	public void setup() {
+		statements = BenchmarkData.sqlStatements(size);
+		generalized = new String[size];
+		for (int i = 0; i < size; i++) {
+			generalized[i] = LpeStringUtils.getGeneralizedQuery(statements[i]);
+		}
+	}
+
+	private int next() {
+		index++;
+		if (index >= size) {
+			index = 0;
+		}
+		return index;
+	}
+
+	/**
+	 * 
+	 * @return generalized statement
+	 */
+	@Benchmark
+	public String getGeneralizedQuery() {
+		return LpeStringUtils.getGeneralizedQuery(statements[next()]);
+	}
+
+	/**
+	 * Compares a statement with its generalized form.
+	 * 
+	 * @return comparison result
+	 */
+	@Benchmark
+	public boolean areEqualSql() {
+		int i = next();
+		return LpeStringUtils.areEqualSql(statements[i], generalized[i]);
+	}
+
+	/**
+	 * Compares two different statements.
+	 * 
+	 * @return comparison result
+	 */
+	@Benchmark
+	public boolean areEqualSqlDifferent() {
+		int i = next();
+		return LpeStringUtils.areEqualSql(statements[i], statements[(i + 1) % size]);
+	}
+}
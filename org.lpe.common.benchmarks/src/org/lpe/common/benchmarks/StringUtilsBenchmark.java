@@ -0,0 +1,132 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.lpe.common.util.LpeStringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the wildcard pattern matching and method signature conversions
+ * of {@link LpeStringUtils}. Each invocation processes the next element of a
+ * working set of the given size, the size therefore determines the cache
+ * footprint rather than the work per invocation.
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class StringUtilsBenchmark {
+
+	@Param({ "128", "16384" })
+	private int size;
+
+	private String[] signatures;
+	private String[] fullSignatures;
+	private String[] patterns;
+	private int index;
+
+	/**
+	 * Creates the input data.
+	 */
+	@Setup
+	public void setup() {
+		signatures = BenchmarkData.methodSignatures(size);
+		patterns = BenchmarkData.patterns(signatures);
+		fullSignatures = new String[size];
+		for (int i = 0; i < size; i++) {
+			fullSignatures[i] = "public void " + signatures[i];
+		}
+	}
+
+	private int next() {
+		index++;
+		if (index >= size) {
+			index = 0;
+		}
+		return index;
+	}
+
+	/**
+	 * 
+	 * @return match result
+	 */
+	@Benchmark
+	public boolean patternMatches() {
+		int i = next();
+		return LpeStringUtils.patternMatches(signatures[i], patterns[i]);
+	}
+
+	/**
+	 * 
+	 * @return match result
+	 */
+	@Benchmark
+	public boolean patternPrefixMatches() {
+		int i = next();
+		return LpeStringUtils.patternPrefixMatches(signatures[i], patterns[i]);
+	}
+
+	/**
+	 * 
+	 * @return JVM method descriptor
+	 */
+	@Benchmark
+	public String convertMethodSignatureToJVMMethodDescriptor() {
+		return LpeStringUtils.convertMethodSignatureToJVMMethodDescriptor(fullSignatures[next()]);
+	}
+
+	/**
+	 * 
+	 * @return cleared method name
+	 */
+	@Benchmark
+	public String clearMethodName() {
+		return LpeStringUtils.clearMethodName(fullSignatures[next()]);
+	}
+
+	/**
+	 * 
+	 * @return class name
+	 */
+	@Benchmark
+	public String extractClassName() {
+		return LpeStringUtils.extractClassName(signatures[next()]);
+	}
+
+	/**
+	 * 
+	 * @return shortened name
+	 */
+	@Benchmark
+	public String shortenOperationName() {
+		return LpeStringUtils.shortenOperationName(signatures[next()]);
+	}
+}
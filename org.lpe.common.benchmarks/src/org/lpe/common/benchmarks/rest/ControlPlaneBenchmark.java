@@ -0,0 +1,334 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.benchmarks.rest;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.lpe.common.loadgenerator.LoadGeneratorClient;
+import org.lpe.common.loadgenerator.config.LGMeasurementConfig;
+import org.lpe.common.loadgenerator.service.LoadGeneratorService;
+import org.lpe.common.remotecontrol.RemoteControlClient;
+import org.lpe.common.remotecontrol.data.FileContainer;
+import org.lpe.common.util.web.LpeWebUtils;
+
+/**
+ * End-to-end throughput benchmark of the REST control plane. Starts the
+ * {@link LoadGeneratorService} (backed by a {@link StubLoadGeneratorBackend})
+ * and the remote control service in-process on free ports and drives their
+ * endpoints with concurrent {@link LoadGeneratorClient}s and
+ * {@link RemoteControlClient}s.
+ * <p>
+ * Arguments are given as <code>key=value</code>:
+ * <ul>
+ * <li><code>clients</code>: comma separated numbers of concurrent clients
+ * (default 1,16)</li>
+ * <li><code>duration</code>: measurement seconds per endpoint (default 10)</li>
+ * <li><code>warmup</code>: warm-up seconds per endpoint (default 3)</li>
+ * <li><code>transactions</code>: transactions in the measurement data (default
+ * 20)</li>
+ * <li><code>spans</code>: time spans per transaction (default 500)</li>
+ * <li><code>fileKB</code>: size of the remote file (default 64)</li>
+ * <li><code>reportKB</code>: size of the report (default 1024)</li>
+ * <li><code>workers</code>: maximal worker threads of the servers (default
+ * Grizzly default)</li>
+ * <li><code>endpoints</code>: comma separated endpoint name prefixes to run
+ * (default all)</li>
+ * <li><code>result</code>: CSV file to write the results to (optional)</li>
+ * </ul>
+ * 
+ */
+public final class ControlPlaneBenchmark {
+	private static final String HOST = "localhost";
+	private static final int KILO = 1024;
+	private static final int MILLIS_PER_SECOND = 1000;
+
+	private final Map<String, String> options;
+	private final ObjectMapper mapper = new ObjectMapper();
+	private String lgPort;
+	private String rcPort;
+	private File remoteFile;
+	private File writeFile;
+
+	/**
+	 * 
+	 * @param options
+	 *            benchmark options
+	 */
+	private ControlPlaneBenchmark(Map<String, String> options) {
+		this.options = options;
+	}
+
+	/**
+	 * 
+	 * @param args
+	 *            options as <code>key=value</code>
+	 * @throws Exception
+	 *             if the benchmark fails
+	 */
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = new HashMap<>();
+		for (String arg : args) {
+			int index = arg.indexOf('=');
+			if (index <= 0) {
+				throw new IllegalArgumentException("Invalid argument " + arg + ", expected key=value");
+			}
+			options.put(arg.substring(0, index), arg.substring(index + 1));
+		}
+		new ControlPlaneBenchmark(options).run();
+		System.exit(0);
+	}
+
+	private void run() throws Exception {
+		final StubLoadGeneratorBackend backend = new StubLoadGeneratorBackend(getInt("transactions", 20), getInt(
+				"spans", 500), (long) getInt("reportKB", 1024) * KILO);
+		LoadGeneratorService.setBackend(backend);
+		remoteFile = File.createTempFile("lpe-bench-remote", ".txt");
+		writeFile = File.createTempFile("lpe-bench-write", ".txt");
+		remoteFile.deleteOnExit();
+		writeFile.deleteOnExit();
+		FileUtils.writeStringToFile(remoteFile, createContent(getInt("fileKB", 64) * KILO));
+
+		Integer workers = options.containsKey("workers") ? getInt("workers", 0) : null;
+		lgPort = String.valueOf(freePort());
+		rcPort = String.valueOf(freePort());
+		HttpServer lgServer = LpeWebUtils.startHttpServer(HOST, Integer.parseInt(lgPort), "",
+				new String[] { "org.lpe.common.loadgenerator.service" }, null, workers);
+		HttpServer rcServer = LpeWebUtils.startHttpServer(HOST, Integer.parseInt(rcPort), "",
+				new String[] { "org.lpe.common.remotecontrol.service" }, null, workers);
+		if (lgServer == null || rcServer == null) {
+			throw new IllegalStateException("Failed starting the services.");
+		}
+
+		PrintWriter csv = null;
+		if (options.containsKey("result")) {
+			csv = new PrintWriter(new FileWriter(options.get("result")));
+			csv.println(EndpointRun.csvHeader());
+		}
+		try {
+			final long dataSize = mapper.writeValueAsBytes(backend.getData()).length;
+			System.out.printf("measurement data: %d bytes, remote file: %d bytes%n", dataSize, remoteFile.length());
+			System.out.println(EndpointRun.header());
+			Map<String, EndpointCall.Factory> endpoints = createEndpoints(dataSize);
+			for (String clientsStr : getString("clients", "1,16").split(",")) {
+				int clients = Integer.parseInt(clientsStr.trim());
+				for (Map.Entry<String, EndpointCall.Factory> endpoint : endpoints.entrySet()) {
+					if (!isSelected(endpoint.getKey())) {
+						continue;
+					}
+					EndpointRun result = new EndpointRun(endpoint.getKey(), clients).run(endpoint.getValue(),
+							(long) getInt("warmup", 3) * MILLIS_PER_SECOND, (long) getInt("duration", 10)
+									* MILLIS_PER_SECOND);
+					System.out.println(result);
+					if (csv != null) {
+						csv.println(result.toCsv());
+						csv.flush();
+					}
+				}
+			}
+		} finally {
+			if (csv != null) {
+				csv.close();
+			}
+			lgServer.shutdownNow();
+			rcServer.shutdownNow();
+			LoadGeneratorService.setBackend(null);
+		}
+	}
+
+	private Map<String, EndpointCall.Factory> createEndpoints(final long dataSize) throws IOException {
+		final long clockSampleSize = mapper.writeValueAsBytes(
+				new LoadGeneratorClient(HOST, lgPort).requestClockSample()).length;
+		final String fileContent = FileUtils.readFileToString(remoteFile);
+		Map<String, EndpointCall.Factory> endpoints = new LinkedHashMap<>();
+
+		endpoints.put("loadgenerator/clockSample", new EndpointCall.Factory() {
+			@Override
+			public EndpointCall create() {
+				final LoadGeneratorClient client = new LoadGeneratorClient(HOST, lgPort);
+				return new EndpointCall() {
+					@Override
+					public long execute() {
+						client.requestClockSample();
+						return clockSampleSize;
+					}
+				};
+			}
+		});
+		endpoints.put("loadgenerator/getData", new EndpointCall.Factory() {
+			@Override
+			public EndpointCall create() {
+				final LoadGeneratorClient client = new LoadGeneratorClient(HOST, lgPort);
+				final LGMeasurementConfig config = new LGMeasurementConfig();
+				return new EndpointCall() {
+					@Override
+					public long execute() {
+						client.getMeasurementData(config);
+						return dataSize;
+					}
+				};
+			}
+		});
+		endpoints.put("loadgenerator/getReport", new EndpointCall.Factory() {
+			@Override
+			public EndpointCall create() {
+				final LoadGeneratorClient client = new LoadGeneratorClient(HOST, lgPort);
+				final LGMeasurementConfig config = new LGMeasurementConfig();
+				return new EndpointCall() {
+					@Override
+					public long execute() throws IOException {
+						CountingOutputStream out = new CountingOutputStream();
+						client.pipeReportToOutputStream(out, config);
+						return out.count;
+					}
+				};
+			}
+		});
+		endpoints.put("remotecontrol/clockSample", new EndpointCall.Factory() {
+			@Override
+			public EndpointCall create() {
+				final RemoteControlClient client = new RemoteControlClient(HOST, rcPort);
+				return new EndpointCall() {
+					@Override
+					public long execute() {
+						client.requestClockSample();
+						return clockSampleSize;
+					}
+				};
+			}
+		});
+		endpoints.put("remotecontrol/getConfigFile", new EndpointCall.Factory() {
+			@Override
+			public EndpointCall create() {
+				final RemoteControlClient client = new RemoteControlClient(HOST, rcPort);
+				return new EndpointCall() {
+					@Override
+					public long execute() {
+						return client.readFile(remoteFile.getAbsolutePath()).getFileContent().length();
+					}
+				};
+			}
+		});
+		endpoints.put("remotecontrol/writeFile", new EndpointCall.Factory() {
+			@Override
+			public EndpointCall create() {
+				final RemoteControlClient client = new RemoteControlClient(HOST, rcPort);
+				final FileContainer container = new FileContainer();
+				container.setFileName(writeFile.getAbsolutePath());
+				container.setFileContent(fileContent);
+				return new EndpointCall() {
+					@Override
+					public long execute() {
+						client.writeFile(container);
+						return fileContent.length();
+					}
+				};
+			}
+		});
+		endpoints.put("remotecontrol/streamFile", new EndpointCall.Factory() {
+			@Override
+			public EndpointCall create() {
+				final RemoteControlClient client = new RemoteControlClient(HOST, rcPort);
+				return new EndpointCall() {
+					@Override
+					public long execute() throws IOException {
+						CountingOutputStream out = new CountingOutputStream();
+						try (InputStream in = client.readFileStreamed(remoteFile.getAbsolutePath())) {
+							byte[] buffer = new byte[KILO * 8];
+							int read;
+							while ((read = in.read(buffer)) >= 0) {
+								out.write(buffer, 0, read);
+							}
+						}
+						return out.count;
+					}
+				};
+			}
+		});
+		return endpoints;
+	}
+
+	private boolean isSelected(String endpoint) {
+		if (!options.containsKey("endpoints")) {
+			return true;
+		}
+		for (String prefix : Arrays.asList(options.get("endpoints").split(","))) {
+			if (endpoint.startsWith(prefix.trim())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private int getInt(String key, int defaultValue) {
+		return options.containsKey(key) ? Integer.parseInt(options.get(key)) : defaultValue;
+	}
+
+	private String getString(String key, String defaultValue) {
+		return options.containsKey(key) ? options.get(key) : defaultValue;
+	}
+
+	private static int freePort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+
+	private static String createContent(int size) {
+		List<String> words = new ArrayList<>(Arrays.asList("load", "generator", "remote", "control", "config",
+				"value", "=", "true", "1000"));
+		StringBuilder builder = new StringBuilder(size);
+		int i = 0;
+		while (builder.length() < size) {
+			builder.append(words.get(i % words.size()));
+			builder.append(i % 8 == 7 ? '\n' : ' ');
+			i++;
+		}
+		builder.setLength(size);
+		return builder.toString();
+	}
+
+	/**
+	 * Discards all bytes but counts them.
+	 */
+	private static final class CountingOutputStream extends OutputStream {
+		private long count;
+
+		@Override
+		public void write(int b) {
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			count += len;
+		}
+	}
+}
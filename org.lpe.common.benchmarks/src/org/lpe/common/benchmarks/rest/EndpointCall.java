@@ -0,0 +1,45 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.benchmarks.rest;
+
+/**
+ * A single request against an endpoint. Implementations are used by one
+ * client thread only.
+ * 
+ */
+public interface EndpointCall {
+
+	/**
+	 * Executes the request.
+	 * 
+	 * @return number of payload bytes transferred
+	 * @throws Exception
+	 *             if the request fails
+	 */
+	long execute() throws Exception;
+
+	/**
+	 * Creates the calls for the client threads.
+	 */
+	interface Factory {
+
+		/**
+		 * 
+		 * @return a new call with its own client
+		 */
+		EndpointCall create();
+	}
+}
@@ -0,0 +1,256 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.benchmarks.rest;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.lpe.common.util.web.metrics.LatencyHistogram;
+
+/**
+ * Drives an endpoint with a number of concurrent clients for a fixed duration
+ * and collects request rate, payload throughput, latency distribution and
+ * allocation rate. Allocations are summed over all threads of the process,
+ * i.e. they contain client and server side.
+ * 
+ */
+public final class EndpointRun {
+	private static final double NANOS_PER_SECOND = 1e9;
+	private static final double MICROS_PER_MILLI = 1000.0;
+	private static final double BYTES_PER_MB = 1024.0 * 1024.0;
+
+	private final String endpoint;
+	private final int clients;
+	private final LatencyHistogram histogram = new LatencyHistogram();
+	private final AtomicLong errors = new AtomicLong();
+	private final AtomicLong bytes = new AtomicLong();
+	private volatile boolean measuring;
+	private volatile boolean running;
+	private long durationNanos;
+	private long allocatedBytes = -1;
+
+	/**
+	 * 
+	 * @param endpoint
+	 *            name of the endpoint
+	 * @param clients
+	 *            number of concurrent clients
+	 */
+	public EndpointRun(String endpoint, int clients) {
+		this.endpoint = endpoint;
+		this.clients = clients;
+	}
+
+	/**
+	 * Runs the benchmark.
+	 * 
+	 * @param factory
+	 *            creates the call for each client
+	 * @param warmupMillis
+	 *            duration of the warm-up phase, not measured
+	 * @param durationMillis
+	 *            duration of the measurement phase
+	 * @return this run
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the clients
+	 */
+	public EndpointRun run(EndpointCall.Factory factory, long warmupMillis, long durationMillis)
+			throws InterruptedException {
+		final CountDownLatch finished = new CountDownLatch(clients);
+		running = true;
+		for (int i = 0; i < clients; i++) {
+			final EndpointCall call = factory.create();
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						while (running) {
+							execute(call);
+						}
+					} finally {
+						finished.countDown();
+					}
+				}
+			}, "bench-client-" + i);
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		Thread.sleep(warmupMillis);
+		long allocatedStart = allocatedBytes();
+		long start = System.nanoTime();
+		measuring = true;
+		Thread.sleep(durationMillis);
+		measuring = false;
+		durationNanos = System.nanoTime() - start;
+		long allocatedEnd = allocatedBytes();
+		running = false;
+		finished.await();
+		if (allocatedStart >= 0 && allocatedEnd >= 0) {
+			allocatedBytes = allocatedEnd - allocatedStart;
+		}
+		return this;
+	}
+
+	private void execute(EndpointCall call) {
+		long start = System.nanoTime();
+		long transferred;
+		boolean failed = false;
+		try {
+			transferred = call.execute();
+		} catch (Exception e) {
+			transferred = 0;
+			failed = true;
+		}
+		long duration = System.nanoTime() - start;
+		if (measuring) {
+			histogram.record(duration);
+			bytes.addAndGet(transferred);
+			if (failed) {
+				errors.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Sums the allocated bytes of all live threads.
+	 * 
+	 * @return allocated bytes or -1 if not supported by the JVM
+	 */
+	private static long allocatedBytes() {
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		if (!(threadBean instanceof com.sun.management.ThreadMXBean)) {
+			return -1;
+		}
+		com.sun.management.ThreadMXBean sunThreadBean = (com.sun.management.ThreadMXBean) threadBean;
+		if (!sunThreadBean.isThreadAllocatedMemorySupported() || !sunThreadBean.isThreadAllocatedMemoryEnabled()) {
+			return -1;
+		}
+		long sum = 0;
+		for (long allocated : sunThreadBean.getThreadAllocatedBytes(sunThreadBean.getAllThreadIds())) {
+			if (allocated > 0) {
+				sum += allocated;
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * 
+	 * @return header line matching {@link #toString()}
+	 */
+	public static String header() {
+		return String.format(Locale.US, "%-32s %7s %10s %9s %9s %9s %9s %9s %9s %7s %10s %10s", "endpoint",
+				"clients", "req/s", "MB/s", "p50[ms]", "p90[ms]", "p99[ms]", "p99.9[ms]", "max[ms]", "errors",
+				"alloc MB/s", "alloc KB/r");
+	}
+
+	/**
+	 * 
+	 * @return header line matching {@link #toCsv()}
+	 */
+	public static String csvHeader() {
+		return "endpoint,clients,requests,errors,durationSeconds,requestsPerSecond,bytesPerSecond,"
+				+ "p50Millis,p90Millis,p99Millis,p999Millis,maxMillis,allocatedBytesPerSecond,allocatedBytesPerRequest";
+	}
+
+	/**
+	 * 
+	 * @return number of measured requests
+	 */
+	public long getRequests() {
+		return histogram.getCount();
+	}
+
+	/**
+	 * 
+	 * @return number of failed requests
+	 */
+	public long getErrors() {
+		return errors.get();
+	}
+
+	/**
+	 * 
+	 * @return requests per second
+	 */
+	public double getRequestRate() {
+		return histogram.getCount() / seconds();
+	}
+
+	/**
+	 * 
+	 * @return payload bytes per second
+	 */
+	public double getByteRate() {
+		return bytes.get() / seconds();
+	}
+
+	/**
+	 * 
+	 * @param percentile
+	 *            percentile in the range (0, 100]
+	 * @return latency in milliseconds
+	 */
+	public double getLatencyMillis(double percentile) {
+		return histogram.getValueAtPercentile(percentile) / MICROS_PER_MILLI;
+	}
+
+	/**
+	 * 
+	 * @return allocated bytes per second or -1 if not available
+	 */
+	public double getAllocationRate() {
+		return allocatedBytes < 0 ? -1 : allocatedBytes / seconds();
+	}
+
+	/**
+	 * 
+	 * @return allocated bytes per request or -1 if not available
+	 */
+	public double getAllocationPerRequest() {
+		return allocatedBytes < 0 || histogram.getCount() == 0 ? -1 : (double) allocatedBytes
+				/ histogram.getCount();
+	}
+
+	private double seconds() {
+		return durationNanos / NANOS_PER_SECOND;
+	}
+
+	/**
+	 * 
+	 * @return results as CSV line
+	 */
+	public String toCsv() {
+		return String.format(Locale.US, "%s,%d,%d,%d,%.3f,%.1f,%.0f,%.3f,%.3f,%.3f,%.3f,%.3f,%.0f,%.0f", endpoint,
+				clients, getRequests(), getErrors(), seconds(), getRequestRate(), getByteRate(),
+				getLatencyMillis(50), getLatencyMillis(90), getLatencyMillis(99), getLatencyMillis(99.9),
+				histogram.getMaxMicros() / MICROS_PER_MILLI, getAllocationRate(), getAllocationPerRequest());
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.US, "%-32s %7d %10.1f %9.2f %9.3f %9.3f %9.3f %9.3f %9.3f %7d %10.1f %10.1f",
+				endpoint, clients, getRequestRate(), getByteRate() / BYTES_PER_MB, getLatencyMillis(50),
+				getLatencyMillis(90), getLatencyMillis(99), getLatencyMillis(99.9), histogram.getMaxMicros()
+						/ MICROS_PER_MILLI, getErrors(), getAllocationRate() / BYTES_PER_MB,
+				getAllocationPerRequest() / 1024.0);
+	}
+}
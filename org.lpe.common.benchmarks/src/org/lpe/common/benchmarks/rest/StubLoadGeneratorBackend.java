@@ -0,0 +1,104 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.benchmarks.rest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.lpe.common.benchmarks.BenchmarkData;
+import org.lpe.common.loadgenerator.ILoadGeneratorBackend;
+import org.lpe.common.loadgenerator.config.LGMeasurementConfig;
+import org.lpe.common.loadgenerator.config.LGWorkloadConfig;
+import org.lpe.common.loadgenerator.data.LGMeasurementData;
+import org.lpe.common.loadgenerator.data.TimeSpan;
+
+/**
+ * Load generator backend returning fabricated measurement data of a
+ * configurable size. The data is created once, so that requests measure
+ * serialization and transport only.
+ * 
+ */
+public class StubLoadGeneratorBackend implements ILoadGeneratorBackend {
+	private static final int REPORT_CHUNK_SIZE = 8192;
+
+	private final LGMeasurementData data;
+	private final byte[] reportChunk;
+	private final long reportSize;
+
+	/**
+	 * 
+	 * @param numTransactions
+	 *            number of distinct transactions in the measurement data
+	 * @param spansPerTransaction
+	 *            number of time spans per transaction
+	 * @param reportSize
+	 *            size of the report in bytes
+	 */
+	public StubLoadGeneratorBackend(int numTransactions, int spansPerTransaction, long reportSize) {
+		Random random = new Random(BenchmarkData.SEED);
+		data = new LGMeasurementData();
+		long start = System.currentTimeMillis();
+		for (int t = 0; t < numTransactions; t++) {
+			List<TimeSpan> spans = new ArrayList<>(spansPerTransaction);
+			long time = start;
+			for (int i = 0; i < spansPerTransaction; i++) {
+				time += random.nextInt(100);
+				spans.add(new TimeSpan(time, time + 1 + random.nextInt(500)));
+			}
+			data.getTransactionTimes().put("Transaction_" + t, spans);
+		}
+		reportChunk = new byte[REPORT_CHUNK_SIZE];
+		random.nextBytes(reportChunk);
+		this.reportSize = reportSize;
+	}
+
+	/**
+	 * 
+	 * @return the measurement data returned by this backend
+	 */
+	public LGMeasurementData getData() {
+		return data;
+	}
+
+	@Override
+	public void startExperiment(LGWorkloadConfig lrConfig) {
+		// nothing to start
+	}
+
+	@Override
+	public boolean isFinished() {
+		return true;
+	}
+
+	@Override
+	public LGMeasurementData getMeasurementData(LGMeasurementConfig lrmConfig) {
+		return data;
+	}
+
+	@Override
+	public void pipeReportToOutputStream(LGMeasurementConfig lrmConfig, OutputStream oStream) throws IOException {
+		long remaining = reportSize;
+		while (remaining > 0) {
+			int length = (int) Math.min(remaining, reportChunk.length);
+			oStream.write(reportChunk, 0, length);
+			remaining -= length;
+		}
+		oStream.flush();
+	}
+}
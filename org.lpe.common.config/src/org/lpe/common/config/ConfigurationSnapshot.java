@@ -0,0 +1,371 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.config;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Immutable snapshot of configuration properties. Numeric and boolean values
+ * are parsed once when the snapshot is created, so that typed reads neither
+ * lock nor parse. Values which cannot be parsed into the requested type are
+ * parsed on access, which preserves the exceptions thrown for malformed
+ * values.
+ * 
+ */
+public final class ConfigurationSnapshot {
+	/** snapshot without any properties. */
+	public static final ConfigurationSnapshot EMPTY = new ConfigurationSnapshot(
+			Collections.<String, String> emptyMap());
+
+	private final Map<String, String> values;
+	private final Map<String, Long> longValues;
+	private final Map<String, Double> doubleValues;
+	private final Set<String> trueValues;
+
+	private ConfigurationSnapshot(Map<String, String> values) {
+		this.values = Collections.unmodifiableMap(values);
+		Map<String, Long> longs = new HashMap<>();
+		Map<String, Double> doubles = new HashMap<>();
+		Set<String> trues = new HashSet<>();
+		for (Entry<String, String> entry : values.entrySet()) {
+			String value = entry.getValue();
+			if (Boolean.parseBoolean(value)) {
+				trues.add(entry.getKey());
+			} else if (isNumberCandidate(value)) {
+				try {
+					longs.put(entry.getKey(), Long.parseLong(value));
+				} catch (NumberFormatException e) {
+					// not an integral value
+				}
+				try {
+					doubles.put(entry.getKey(), Double.parseDouble(value));
+				} catch (NumberFormatException e) {
+					// not a floating point value
+				}
+			}
+		}
+		this.longValues = longs;
+		this.doubleValues = doubles;
+		this.trueValues = trues;
+	}
+
+	/**
+	 * Creates a snapshot from the passed properties. Later properties overwrite
+	 * earlier ones. Entries with non-string keys or values are ignored.
+	 * 
+	 * @param properties
+	 *            properties to merge into the snapshot, null entries are
+	 *            skipped
+	 * @return new snapshot
+	 */
+	public static ConfigurationSnapshot create(Properties... properties) {
+		Map<String, String> values = new HashMap<>();
+		for (Properties props : properties) {
+			if (props != null) {
+				putStrings(values, props);
+			}
+		}
+		return new ConfigurationSnapshot(values);
+	}
+
+	/**
+	 * Creates a new snapshot that contains all properties of this snapshot
+	 * and the passed properties.
+	 * 
+	 * @param properties
+	 *            properties to add or overwrite
+	 * @return new snapshot
+	 */
+	public ConfigurationSnapshot with(Map<?, ?> properties) {
+		Map<String, String> newValues = new HashMap<>(values);
+		putStrings(newValues, properties);
+		return new ConfigurationSnapshot(newValues);
+	}
+
+	/**
+	 * Creates a new snapshot that contains all properties of this snapshot
+	 * and the passed property.
+	 * 
+	 * @param key
+	 *            key of the property
+	 * @param value
+	 *            value of the property
+	 * @return new snapshot
+	 */
+	public ConfigurationSnapshot with(String key, String value) {
+		if (key == null || value == null) {
+			throw new NullPointerException();
+		}
+		Map<String, String> newValues = new HashMap<>(values);
+		newValues.put(key, value);
+		return new ConfigurationSnapshot(newValues);
+	}
+
+	private static void putStrings(Map<String, String> target, Map<?, ?> source) {
+		for (Entry<?, ?> entry : source.entrySet()) {
+			if (entry.getKey() instanceof String
+					&& entry.getValue() instanceof String) {
+				target.put((String) entry.getKey(), (String) entry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Determines the keys whose values differ between this and the passed
+	 * snapshot, including added and removed keys.
+	 * 
+	 * @param other
+	 *            snapshot to compare with
+	 * @return changed keys
+	 */
+	public Set<String> changedKeys(ConfigurationSnapshot other) {
+		Set<String> changed = new HashSet<>();
+		for (Entry<String, String> entry : values.entrySet()) {
+			if (!entry.getValue().equals(other.values.get(entry.getKey()))) {
+				changed.add(entry.getKey());
+			}
+		}
+		for (String key : other.values.keySet()) {
+			if (!values.containsKey(key)) {
+				changed.add(key);
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * 
+	 * @param key
+	 *            key of the property of interest
+	 * @return true, if property is available, otherwise false
+	 */
+	public boolean containsKey(Object key) {
+		return values.containsKey(key);
+	}
+
+	/**
+	 * 
+	 * @param key
+	 *            key of the property of interest
+	 * @return the value or null if the property is not available
+	 */
+	public String get(String key) {
+		return values.get(key);
+	}
+
+	/**
+	 * 
+	 * @return unmodifiable view of all properties
+	 */
+	public Map<String, String> asMap() {
+		return values;
+	}
+
+	/**
+	 * 
+	 * @return copy of all properties
+	 */
+	public Properties toProperties() {
+		Properties properties = new Properties();
+		properties.putAll(values);
+		return properties;
+	}
+
+	/**
+	 * 
+	 * @return number of properties
+	 */
+	public int size() {
+		return values.size();
+	}
+
+	/**
+	 * Returns the boolean value of the property.
+	 * 
+	 * @param key
+	 *            key of the property of interest
+	 * @return boolean value
+	 * @throws IllegalArgumentException
+	 *             if the property cannot be found
+	 */
+	public boolean getBoolean(String key) {
+		if (trueValues.contains(key)) {
+			return true;
+		}
+		require(key);
+		return false;
+	}
+
+	/**
+	 * Returns the boolean value of the property or the default value.
+	 * 
+	 * @param key
+	 *            key of the property of interest
+	 * @param defaultValue
+	 *            value to return if the property cannot be found
+	 * @return boolean value
+	 */
+	public boolean getBoolean(String key, boolean defaultValue) {
+		if (trueValues.contains(key)) {
+			return true;
+		}
+		return values.containsKey(key) ? false : defaultValue;
+	}
+
+	/**
+	 * Returns the integer value of the property.
+	 * 
+	 * @param key
+	 *            key of the property of interest
+	 * @return integer value
+	 * @throws IllegalArgumentException
+	 *             if the property cannot be found
+	 * @throws NumberFormatException
+	 *             if the value is not an integer
+	 */
+	public int getInteger(String key) {
+		Long value = longValues.get(key);
+		if (value != null && value.intValue() == value.longValue()) {
+			return value.intValue();
+		}
+		return Integer.parseInt(require(key));
+	}
+
+	/**
+	 * Returns the integer value of the property or the default value.
+	 * 
+	 * @param key
+	 *            key of the property of interest
+	 * @param defaultValue
+	 *            value to return if the property cannot be found
+	 * @return integer value
+	 * @throws NumberFormatException
+	 *             if the value is not an integer
+	 */
+	public int getInteger(String key, int defaultValue) {
+		Long value = longValues.get(key);
+		if (value != null && value.intValue() == value.longValue()) {
+			return value.intValue();
+		}
+		String str = values.get(key);
+		return str == null ? defaultValue : Integer.parseInt(str);
+	}
+
+	/**
+	 * Returns the long value of the property.
+	 * 
+	 * @param key
+	 *            key of the property of interest
+	 * @return long value
+	 * @throws IllegalArgumentException
+	 *             if the property cannot be found
+	 * @throws NumberFormatException
+	 *             if the value is not a long
+	 */
+	public long getLong(String key) {
+		Long value = longValues.get(key);
+		if (value != null) {
+			return value;
+		}
+		return Long.parseLong(require(key));
+	}
+
+	/**
+	 * Returns the long value of the property or the default value.
+	 * 
+	 * @param key
+	 *            key of the property of interest
+	 * @param defaultValue
+	 *            value to return if the property cannot be found
+	 * @return long value
+	 * @throws NumberFormatException
+	 *             if the value is not a long
+	 */
+	public long getLong(String key, long defaultValue) {
+		Long value = longValues.get(key);
+		if (value != null) {
+			return value;
+		}
+		String str = values.get(key);
+		return str == null ? defaultValue : Long.parseLong(str);
+	}
+
+	/**
+	 * Returns the double value of the property.
+	 * 
+	 * @param key
+	 *            key of the property of interest
+	 * @return double value
+	 * @throws IllegalArgumentException
+	 *             if the property cannot be found
+	 * @throws NumberFormatException
+	 *             if the value is not a double
+	 */
+	public double getDouble(String key) {
+		Double value = doubleValues.get(key);
+		if (value != null) {
+			return value;
+		}
+		return Double.parseDouble(require(key));
+	}
+
+	/**
+	 * Returns the double value of the property or the default value.
+	 * 
+	 * @param key
+	 *            key of the property of interest
+	 * @param defaultValue
+	 *            value to return if the property cannot be found
+	 * @return double value
+	 * @throws NumberFormatException
+	 *             if the value is not a double
+	 */
+	public double getDouble(String key, double defaultValue) {
+		Double value = doubleValues.get(key);
+		if (value != null) {
+			return value;
+		}
+		String str = values.get(key);
+		return str == null ? defaultValue : Double.parseDouble(str);
+	}
+
+	private String require(String key) {
+		String value = values.get(key);
+		if (value == null) {
+			throw new IllegalArgumentException("Property " + key
+					+ " not found.");
+		}
+		return value;
+	}
+
+	/**
+	 * Cheap pre-check that skips parsing of values which obviously are not
+	 * numbers. Values rejected here are still parsed on access.
+	 */
+	private static boolean isNumberCandidate(String value) {
+		if (value.isEmpty()) {
+			return false;
+		}
+		char c = value.charAt(0);
+		return (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.';
+	}
+}
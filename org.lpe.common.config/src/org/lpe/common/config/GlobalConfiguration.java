@@ -18,24 +18,56 @@ package org.lpe.common.config;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlTransient;
+
+import org.lpe.common.util.system.LpeSystemUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * This configuration class provides a singleton wrapper around a properties
  * object, which can be used in different projects for a global (application
  * wide) configuration.
  * 
+ * The properties are held in an immutable {@link ConfigurationSnapshot} which
+ * is published through a volatile reference. Reads are lock-free and typed
+ * values are parsed only once per snapshot. Modifications create a new
+ * snapshot (copy-on-write) and notify registered
+ * {@link IConfigurationChangeListener}s about the changed keys. The project
+ * configuration file can be watched for changes with
+ * {@link #watchProjectConfigFile(String)}.
+ * 
  * @author Alexander Wert
  * 
  */
 @XmlRootElement
 @XmlAccessorType(XmlAccessType.FIELD)
 public final class GlobalConfiguration {
-	private static GlobalConfiguration instance;
+	private static final Logger LOGGER = LoggerFactory
+			.getLogger(GlobalConfiguration.class);
+	private static volatile GlobalConfiguration instance;
+	private static final String WATCHER_EXECUTOR_NAME = "config-watcher";
+	private static final List<IConfigurationChangeListener> LISTENERS = new CopyOnWriteArrayList<>();
+	private static WatchService fileWatcher;
 
 	/**
 	 * Core properties need to be loaded once and never changed during a running
@@ -123,8 +155,9 @@ public final class GlobalConfiguration {
 	}
 
 	/**
-	 * Creates the global singleton configuration and loads the project
-	 * properties from the passed file.
+	 * Replaces the project properties of the global singleton configuration.
+	 * The core properties are kept. Listeners are notified about all keys
+	 * whose values differ from the previous configuration.
 	 * 
 	 * @param projectProperties
 	 *            properties containing project configurations
@@ -134,7 +167,102 @@ public final class GlobalConfiguration {
 			throw new IllegalStateException(
 					"Global configuration has not been initialized, yet.");
 		}
-		instance = new GlobalConfiguration(coreProperties, projectProperties);
+		instance.replace(ConfigurationSnapshot.create(coreProperties,
+				projectProperties));
+	}
+
+	/**
+	 * Registers a listener which is notified on configuration changes.
+	 * 
+	 * @param listener
+	 *            listener to add
+	 */
+	public static void addChangeListener(IConfigurationChangeListener listener) {
+		LISTENERS.add(listener);
+	}
+
+	/**
+	 * Removes a previously registered listener.
+	 * 
+	 * @param listener
+	 *            listener to remove
+	 */
+	public static void removeChangeListener(
+			IConfigurationChangeListener listener) {
+		LISTENERS.remove(listener);
+	}
+
+	/**
+	 * Watches the passed project configuration file and reinitializes the
+	 * global configuration whenever the file is modified. A previously
+	 * watched file is no longer watched.
+	 * 
+	 * @param projectConfigFile
+	 *            path to the file containing the project configuration
+	 */
+	public static synchronized void watchProjectConfigFile(
+			String projectConfigFile) {
+		stopWatching();
+		final Path file = new File(projectConfigFile).getAbsoluteFile()
+				.toPath();
+		final WatchService watcher;
+		try {
+			watcher = FileSystems.getDefault().newWatchService();
+			file.getParent().register(watcher,
+					StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_MODIFY);
+		} catch (IOException e) {
+			throw new RuntimeException("Failed watching configuration file!",
+					e);
+		}
+		fileWatcher = watcher;
+		LpeSystemUtils.submitTask(WATCHER_EXECUTOR_NAME, new Runnable() {
+			@Override
+			public void run() {
+				watchFile(watcher, file);
+			}
+		});
+	}
+
+	/**
+	 * Stops watching the project configuration file.
+	 */
+	public static synchronized void stopWatching() {
+		if (fileWatcher != null) {
+			try {
+				fileWatcher.close();
+			} catch (IOException e) {
+				LOGGER.warn("Failed closing configuration file watcher: {}",
+						e.getMessage());
+			}
+			fileWatcher = null;
+		}
+	}
+
+	private static void watchFile(WatchService watcher, Path file) {
+		try {
+			while (true) {
+				WatchKey key = watcher.take();
+				boolean changed = false;
+				for (WatchEvent<?> event : key.pollEvents()) {
+					if (file.getFileName().equals(event.context())) {
+						changed = true;
+					}
+				}
+				key.reset();
+				if (changed && file.toFile().exists()) {
+					try {
+						reinitialize(file.toString());
+						LOGGER.info("Reloaded configuration file {}", file);
+					} catch (RuntimeException e) {
+						LOGGER.warn("Failed reloading configuration file {}: {}",
+								file, e.getMessage());
+					}
+				}
+			}
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			return;
+		}
 	}
 
 	/**
@@ -177,16 +305,36 @@ public final class GlobalConfiguration {
 	}
 
 	/** Holds the configured property values. */
-	private Properties properties;
+	@XmlTransient
+	private volatile ConfigurationSnapshot snapshot;
+
+	/** Published snapshots in publication order, not yet notified. */
+	@XmlTransient
+	private final Queue<ConfigurationSnapshot> pendingSnapshots = new ConcurrentLinkedQueue<>();
+
+	/** Set while a thread notifies the listeners. */
+	@XmlTransient
+	private final AtomicBoolean notifying = new AtomicBoolean();
+
+	/** Last snapshot the listeners have been notified about. */
+	@XmlTransient
+	private ConfigurationSnapshot notifiedSnapshot;
 
 	private GlobalConfiguration(Properties coreProperties,
 			Properties projectProperties) {
-		this.properties = new Properties();
-		this.properties.putAll(coreProperties);
-		if (projectProperties != null) {
-			this.properties.putAll(projectProperties);
-		}
+		this.snapshot = ConfigurationSnapshot.create(coreProperties,
+				projectProperties);
+		this.notifiedSnapshot = snapshot;
+	}
 
+	/**
+	 * Returns the current immutable snapshot. Use the snapshot for reading
+	 * several properties consistently.
+	 * 
+	 * @return the current configuration snapshot
+	 */
+	public ConfigurationSnapshot getSnapshot() {
+		return snapshot;
 	}
 
 	/**
@@ -197,7 +345,7 @@ public final class GlobalConfiguration {
 	 * @return true, if property is available, otherwise false
 	 */
 	public boolean containsKey(Object key) {
-		return properties.containsKey(key);
+		return snapshot.containsKey(key);
 	}
 
 	/**
@@ -208,7 +356,7 @@ public final class GlobalConfiguration {
 	 * @return Returns the property for the passed key.
 	 */
 	public String getProperty(String key) {
-		return properties.getProperty(key);
+		return snapshot.get(key);
 	}
 
 	/**
@@ -222,7 +370,7 @@ public final class GlobalConfiguration {
 	 * @return Returns the property for the passed key.
 	 */
 	public String getProperty(String key, String defaultValue) {
-		String value = properties.getProperty(key);
+		String value = snapshot.get(key);
 		if (value == null) {
 			return defaultValue;
 		} else {
@@ -240,13 +388,7 @@ public final class GlobalConfiguration {
 	 * 
 	 */
 	public boolean getPropertyAsBoolean(String key) {
-		String value = properties.getProperty(key);
-		if (value == null) {
-			throw new IllegalArgumentException("Property " + key
-					+ " not found.");
-		} else {
-			return Boolean.parseBoolean(value);
-		}
+		return snapshot.getBoolean(key);
 	}
 
 	/**
@@ -260,12 +402,7 @@ public final class GlobalConfiguration {
 	 * @return Returns the property for the passed key.
 	 */
 	public boolean getPropertyAsBoolean(String key, boolean defaultValue) {
-		String value = properties.getProperty(key);
-		if (value == null) {
-			return defaultValue;
-		} else {
-			return Boolean.parseBoolean(value);
-		}
+		return snapshot.getBoolean(key, defaultValue);
 	}
 
 	/**
@@ -278,13 +415,7 @@ public final class GlobalConfiguration {
 	 * 
 	 */
 	public int getPropertyAsInteger(String key) {
-		String value = properties.getProperty(key);
-		if (value == null) {
-			throw new IllegalArgumentException("Property " + key
-					+ " not found.");
-		} else {
-			return Integer.parseInt(value);
-		}
+		return snapshot.getInteger(key);
 	}
 
 	/**
@@ -298,12 +429,7 @@ public final class GlobalConfiguration {
 	 * @return Returns the property for the passed key.
 	 */
 	public int getPropertyAsInteger(String key, int defaultValue) {
-		String value = properties.getProperty(key);
-		if (value == null) {
-			return defaultValue;
-		} else {
-			return Integer.parseInt(value);
-		}
+		return snapshot.getInteger(key, defaultValue);
 	}
 
 	/**
@@ -316,13 +442,7 @@ public final class GlobalConfiguration {
 	 * 
 	 */
 	public long getPropertyAsLong(String key) {
-		String value = properties.getProperty(key);
-		if (value == null) {
-			throw new IllegalArgumentException("Property " + key
-					+ " not found.");
-		} else {
-			return Long.parseLong(value);
-		}
+		return snapshot.getLong(key);
 	}
 
 	/**
@@ -336,12 +456,7 @@ public final class GlobalConfiguration {
 	 * @return Returns the property for the passed key.
 	 */
 	public long getPropertyAsLong(String key, long defaultValue) {
-		String value = properties.getProperty(key);
-		if (value == null) {
-			return defaultValue;
-		} else {
-			return Long.parseLong(value);
-		}
+		return snapshot.getLong(key, defaultValue);
 	}
 
 	/**
@@ -354,13 +469,7 @@ public final class GlobalConfiguration {
 	 * 
 	 */
 	public double getPropertyAsDouble(String key) {
-		String value = properties.getProperty(key);
-		if (value == null) {
-			throw new IllegalArgumentException("Property " + key
-					+ " not found.");
-		} else {
-			return Double.parseDouble(value);
-		}
+		return snapshot.getDouble(key);
 	}
 
 	/**
@@ -374,12 +483,7 @@ public final class GlobalConfiguration {
 	 * @return Returns the property for the passed key.
 	 */
 	public double getPropertyAsDouble(String key, double defaultValue) {
-		String value = properties.getProperty(key);
-		if (value == null) {
-			return defaultValue;
-		} else {
-			return Double.parseDouble(value);
-		}
+		return snapshot.getDouble(key, defaultValue);
 	}
 
 	/**
@@ -391,7 +495,10 @@ public final class GlobalConfiguration {
 	 *            value of the property to be set
 	 */
 	public void putProperty(String key, String value) {
-		properties.put(key, value);
+		synchronized (this) {
+			publish(snapshot.with(key, value));
+		}
+		notifyListeners();
 	}
 
 	/**
@@ -401,7 +508,10 @@ public final class GlobalConfiguration {
 	 *            properties to add
 	 */
 	public void putAll(Properties properties) {
-		this.properties.putAll(properties);
+		synchronized (this) {
+			publish(snapshot.with(properties));
+		}
+		notifyListeners();
 	}
 
 	/**
@@ -409,14 +519,72 @@ public final class GlobalConfiguration {
 	 * @return Returns a copy of the properties.
 	 */
 	public Properties getProperties() {
-		return properties;
+		return snapshot.toProperties();
 	}
 
 	/**
 	 * clears all properties.
 	 */
 	public void clear() {
-		properties.clear();
+		replace(ConfigurationSnapshot.EMPTY);
+	}
+
+	/**
+	 * Publishes the new snapshot and notifies the listeners about changed
+	 * keys.
+	 */
+	private void replace(ConfigurationSnapshot newSnapshot) {
+		synchronized (this) {
+			publish(newSnapshot);
+		}
+		notifyListeners();
+	}
+
+	/**
+	 * Publishes the new snapshot. Must be called with the lock held, so that
+	 * the pending snapshots are queued in publication order.
+	 */
+	private void publish(ConfigurationSnapshot newSnapshot) {
+		snapshot = newSnapshot;
+		pendingSnapshots.add(newSnapshot);
+	}
+
+	/**
+	 * Notifies the listeners after the lock has been released, thus listeners
+	 * may modify the configuration or wait for other threads doing so. Only
+	 * one thread notifies at a time and delivers all pending snapshots in
+	 * publication order; other threads leave their snapshots to it.
+	 */
+	private void notifyListeners() {
+		while (!pendingSnapshots.isEmpty() && notifying.compareAndSet(false, true)) {
+			try {
+				ConfigurationSnapshot newSnapshot;
+				while ((newSnapshot = pendingSnapshots.poll()) != null) {
+					ConfigurationSnapshot oldSnapshot = notifiedSnapshot;
+					notifiedSnapshot = newSnapshot;
+					notifyListeners(oldSnapshot, newSnapshot);
+				}
+			} finally {
+				notifying.set(false);
+			}
+		}
+	}
+
+	private static void notifyListeners(ConfigurationSnapshot oldSnapshot,
+			ConfigurationSnapshot newSnapshot) {
+		Set<String> changedKeys = oldSnapshot.changedKeys(newSnapshot);
+		if (changedKeys.isEmpty()) {
+			return;
+		}
+		changedKeys = Collections.unmodifiableSet(changedKeys);
+		for (IConfigurationChangeListener listener : LISTENERS) {
+			try {
+				listener.configurationChanged(changedKeys, newSnapshot);
+			} catch (RuntimeException e) {
+				LOGGER.warn("Configuration change listener failed: {}",
+						e.getMessage());
+			}
+		}
 	}
 
 }
@@ -0,0 +1,41 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.config;
+
+import java.util.Set;
+
+/**
+ * Listener which is notified about changes of the {@link GlobalConfiguration}.
+ * 
+ */
+public interface IConfigurationChangeListener {
+
+	/**
+	 * Called after a new configuration snapshot has been published. The
+	 * listener is called on a thread that changed the configuration, it
+	 * should therefore return quickly. No lock is held during the call, but
+	 * calls are never concurrent and report the snapshots in the order they
+	 * have been published; the passed snapshot is not necessarily the latest
+	 * one.
+	 * 
+	 * @param changedKeys
+	 *            keys which have been added, removed or modified
+	 * @param snapshot
+	 *            the new configuration snapshot
+	 */
+	void configurationChanged(Set<String> changedKeys,
+			ConfigurationSnapshot snapshot);
+}
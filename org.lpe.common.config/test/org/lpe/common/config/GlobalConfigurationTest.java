@@ -0,0 +1,297 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the {@link GlobalConfiguration}.
+ * 
+ */
+public class GlobalConfigurationTest {
+	private static final String CORE_KEY = "test.core";
+	private static final String PROJECT_KEY = "test.project";
+	private static final String WRITER_KEY = "test.writer.";
+	private static final int NUM_WRITES = 1000;
+	private static final long TIMEOUT_MILLIS = 30000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final List<Set<String>> notifications = Collections.synchronizedList(new ArrayList<Set<String>>());
+	private final IConfigurationChangeListener recorder = new IConfigurationChangeListener() {
+		@Override
+		public void configurationChanged(Set<String> changedKeys, ConfigurationSnapshot snapshot) {
+			notifications.add(changedKeys);
+		}
+	};
+
+	/**
+	 * Initializes the global configuration with a core property.
+	 */
+	@BeforeClass
+	public static void initialize() {
+		Properties core = new Properties();
+		core.setProperty(CORE_KEY, "core");
+		GlobalConfiguration.initialize(core);
+	}
+
+	/**
+	 * Resets the project properties and registers the recording listener.
+	 */
+	@Before
+	public void reset() {
+		GlobalConfiguration.reinitialize(project("1"));
+		GlobalConfiguration.addChangeListener(recorder);
+	}
+
+	/**
+	 * Removes the recording listener and stops the file watcher.
+	 */
+	@After
+	public void cleanUp() {
+		GlobalConfiguration.removeChangeListener(recorder);
+		GlobalConfiguration.stopWatching();
+	}
+
+	/**
+	 * Tests that a snapshot is not affected by later modifications.
+	 */
+	@Test
+	public void testSnapshotIsolation() {
+		GlobalConfiguration config = GlobalConfiguration.getInstance();
+		ConfigurationSnapshot snapshot = config.getSnapshot();
+		config.putProperty(PROJECT_KEY, "2");
+		config.putProperty("test.added", "true");
+
+		assertEquals("1", snapshot.get(PROJECT_KEY));
+		assertFalse(snapshot.containsKey("test.added"));
+		assertEquals("2", config.getProperty(PROJECT_KEY));
+		assertTrue(config.getPropertyAsBoolean("test.added"));
+		assertNotSame(snapshot, config.getSnapshot());
+	}
+
+	/**
+	 * Tests that reinitializing replaces the project properties, keeps the
+	 * core properties and reports the changed keys.
+	 */
+	@Test
+	public void testReinitialize() {
+		GlobalConfiguration config = GlobalConfiguration.getInstance();
+		config.putProperty("test.removed", "x");
+		ConfigurationSnapshot snapshot = config.getSnapshot();
+		notifications.clear();
+
+		GlobalConfiguration.reinitialize(project("2"));
+		assertNotSame(snapshot, config.getSnapshot());
+		assertEquals("core", config.getProperty(CORE_KEY));
+		assertEquals("2", config.getProperty(PROJECT_KEY));
+		assertNull(config.getProperty("test.removed"));
+		assertEquals(1, notifications.size());
+		assertEquals(2, notifications.get(0).size());
+		assertTrue(notifications.get(0).contains(PROJECT_KEY));
+		assertTrue(notifications.get(0).contains("test.removed"));
+	}
+
+	/**
+	 * Tests that listeners are notified about changes only, that a failing
+	 * listener does not affect others and that listeners are called without
+	 * holding the configuration lock.
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted
+	 */
+	@Test
+	public void testListeners() throws InterruptedException {
+		final GlobalConfiguration config = GlobalConfiguration.getInstance();
+		config.putProperty(PROJECT_KEY, "1");
+		assertTrue(notifications.isEmpty());
+
+		IConfigurationChangeListener failing = new IConfigurationChangeListener() {
+			@Override
+			public void configurationChanged(Set<String> changedKeys, ConfigurationSnapshot snapshot) {
+				throw new IllegalStateException("failing listener");
+			}
+		};
+		final List<Boolean> modified = Collections.synchronizedList(new ArrayList<Boolean>());
+		IConfigurationChangeListener modifying = new IConfigurationChangeListener() {
+			@Override
+			public void configurationChanged(Set<String> changedKeys, ConfigurationSnapshot snapshot) {
+				if (!changedKeys.contains(PROJECT_KEY)) {
+					return;
+				}
+				// would block forever if the listener was called under the
+				// configuration lock
+				Thread other = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						config.putProperty("test.derived", "true");
+					}
+				});
+				other.start();
+				try {
+					other.join(TIMEOUT_MILLIS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				modified.add(!other.isAlive());
+			}
+		};
+		GlobalConfiguration.addChangeListener(failing);
+		GlobalConfiguration.addChangeListener(modifying);
+		try {
+			config.putProperty(PROJECT_KEY, "2");
+		} finally {
+			GlobalConfiguration.removeChangeListener(failing);
+			GlobalConfiguration.removeChangeListener(modifying);
+		}
+		assertEquals(Collections.singletonList(true), modified);
+		assertTrue(config.getPropertyAsBoolean("test.derived"));
+		assertTrue(notifications.contains(Collections.singleton(PROJECT_KEY)));
+		assertTrue(notifications.contains(Collections.singleton("test.derived")));
+	}
+
+	/**
+	 * Tests that the changes of concurrent writers are reported one at a time
+	 * and in the order the snapshots have been published.
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted
+	 */
+	@Test
+	public void testConcurrentWriters() throws InterruptedException {
+		final GlobalConfiguration config = GlobalConfiguration.getInstance();
+		final List<ConfigurationSnapshot> snapshots = Collections
+				.synchronizedList(new ArrayList<ConfigurationSnapshot>());
+		final AtomicInteger active = new AtomicInteger();
+		final AtomicInteger overlaps = new AtomicInteger();
+		IConfigurationChangeListener ordering = new IConfigurationChangeListener() {
+			@Override
+			public void configurationChanged(Set<String> changedKeys, ConfigurationSnapshot snapshot) {
+				if (active.incrementAndGet() > 1) {
+					overlaps.incrementAndGet();
+				}
+				snapshots.add(snapshot);
+				Thread.yield();
+				active.decrementAndGet();
+			}
+		};
+
+		final CountDownLatch start = new CountDownLatch(1);
+		List<Thread> writers = new ArrayList<>();
+		for (final String key : new String[] { WRITER_KEY + "a", WRITER_KEY + "b" }) {
+			Thread writer = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						return;
+					}
+					for (int i = 1; i <= NUM_WRITES; i++) {
+						config.putProperty(key, String.valueOf(i));
+					}
+				}
+			});
+			writer.start();
+			writers.add(writer);
+		}
+		GlobalConfiguration.addChangeListener(ordering);
+		try {
+			start.countDown();
+			for (Thread writer : writers) {
+				writer.join(TIMEOUT_MILLIS);
+				assertFalse(writer.isAlive());
+			}
+		} finally {
+			GlobalConfiguration.removeChangeListener(ordering);
+		}
+
+		assertEquals(0, overlaps.get());
+		assertEquals(2 * NUM_WRITES, snapshots.size());
+		int[] last = new int[2];
+		for (ConfigurationSnapshot snapshot : snapshots) {
+			int a = snapshot.getInteger(WRITER_KEY + "a", 0);
+			int b = snapshot.getInteger(WRITER_KEY + "b", 0);
+			// exactly one of the keys advances by one per snapshot
+			assertEquals(last[0] + last[1] + 1, a + b);
+			assertTrue(a >= last[0] && b >= last[1]);
+			last[0] = a;
+			last[1] = b;
+		}
+		assertSame(config.getSnapshot(), snapshots.get(snapshots.size() - 1));
+	}
+
+	/**
+	 * Tests that a modified project configuration file is reloaded.
+	 * 
+	 * @throws Exception
+	 *             if the file cannot be written
+	 */
+	@Test
+	public void testWatchProjectConfigFile() throws Exception {
+		File file = folder.newFile("project.properties");
+		write(file, project("1"));
+		GlobalConfiguration.watchProjectConfigFile(file.getAbsolutePath());
+		write(file, project("watched"));
+
+		GlobalConfiguration config = GlobalConfiguration.getInstance();
+		long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+		while (!"watched".equals(config.getProperty(PROJECT_KEY)) && System.currentTimeMillis() < deadline) {
+			TimeUnit.MILLISECONDS.sleep(50);
+		}
+		assertEquals("watched", config.getProperty(PROJECT_KEY));
+		assertEquals("core", config.getProperty(CORE_KEY));
+	}
+
+	private static Properties project(String value) {
+		Properties properties = new Properties();
+		properties.setProperty(PROJECT_KEY, value);
+		return properties;
+	}
+
+	private static void write(File file, Properties properties) throws IOException {
+		try (OutputStream out = new FileOutputStream(file)) {
+			properties.store(out, null);
+		}
+	}
+}
@@ -0,0 +1,196 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.extension;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds a registered extension. The extension is either passed directly or
+ * described by its class name, in which case the class is loaded and
+ * instantiated on first access.
+ * 
+ */
+final class ExtensionHandle {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ExtensionHandle.class);
+
+	private final String className;
+	private final ClassLoader classLoader;
+	private volatile String name;
+	private volatile Class<?> extensionClass;
+	private volatile IExtension<?> instance;
+	private volatile boolean failed = false;
+	private volatile IPrototypeExtensionArtifact prototype;
+
+	/**
+	 * Creates a handle for an already instantiated extension.
+	 * 
+	 * @param extension
+	 *            the extension
+	 */
+	ExtensionHandle(IExtension<?> extension) {
+		this.className = extension.getClass().getName();
+		this.classLoader = extension.getClass().getClassLoader();
+		this.extensionClass = extension.getClass();
+		this.instance = extension;
+		this.name = extension.getName();
+	}
+
+	/**
+	 * Creates a handle for a lazily instantiated extension.
+	 * 
+	 * @param className
+	 *            full qualified name of the extension class
+	 * @param name
+	 *            name of the extension if known from a previous run, otherwise
+	 *            null
+	 * @param classLoader
+	 *            class loader to load the extension class with
+	 */
+	ExtensionHandle(String className, String name, ClassLoader classLoader) {
+		this.className = className;
+		this.name = name;
+		this.classLoader = classLoader;
+	}
+
+	/**
+	 * 
+	 * @return full qualified name of the extension class
+	 */
+	String getClassName() {
+		return className;
+	}
+
+	/**
+	 * Returns the name of the extension. Instantiates the extension if the
+	 * name is not known, yet.
+	 * 
+	 * @return the name of the extension or null if it cannot be instantiated
+	 */
+	String getName() {
+		if (name == null) {
+			getInstance();
+		}
+		return name;
+	}
+
+	/**
+	 * 
+	 * @return true, if the name is known without instantiating the extension
+	 */
+	boolean isNameKnown() {
+		return name != null;
+	}
+
+	/**
+	 * 
+	 * @return true, if the extension has been instantiated already
+	 */
+	boolean isInstantiated() {
+		return instance != null;
+	}
+
+	/**
+	 * Loads the extension class without instantiating it.
+	 * 
+	 * @return the extension class or null if it cannot be loaded
+	 */
+	Class<?> getExtensionClass() {
+		if (extensionClass == null && !failed) {
+			try {
+				extensionClass = Class.forName(className, false, classLoader);
+			} catch (ClassNotFoundException | LinkageError e) {
+				fail(e);
+			}
+		}
+		return extensionClass;
+	}
+
+	/**
+	 * Returns the extension and instantiates it on first access.
+	 * 
+	 * @return the extension or null if it cannot be instantiated
+	 */
+	IExtension<?> getInstance() {
+		IExtension<?> result = instance;
+		if (result == null && !failed) {
+			synchronized (this) {
+				result = instance;
+				if (result == null && !failed) {
+					result = instantiate();
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Creates a new artifact of the extension. If the extension provides
+	 * {@link IPrototypeExtensionArtifact}s, the first artifact is kept as
+	 * prototype and all artifacts are copies of it.
+	 * 
+	 * @return a new artifact or null if the extension cannot be instantiated
+	 */
+	IExtensionArtifact createArtifact() {
+		IPrototypeExtensionArtifact currentPrototype = prototype;
+		if (currentPrototype != null) {
+			return currentPrototype.copyArtifact();
+		}
+		IExtension<?> ext = getInstance();
+		if (ext == null) {
+			return null;
+		}
+		IExtensionArtifact artifact = ext.createExtensionArtifact();
+		if (artifact instanceof IPrototypeExtensionArtifact) {
+			synchronized (this) {
+				if (prototype == null) {
+					prototype = (IPrototypeExtensionArtifact) artifact;
+				}
+			}
+			return prototype.copyArtifact();
+		}
+		return artifact;
+	}
+
+	private IExtension<?> instantiate() {
+		Class<?> c = getExtensionClass();
+		if (c == null) {
+			return null;
+		}
+		try {
+			Object o = c.newInstance();
+			if (!(o instanceof IExtension)) {
+				failed = true;
+				LOGGER.warn("Class {} is not an extension.", className);
+				return null;
+			}
+			IExtension<?> ext = (IExtension<?>) o;
+			name = ext.getName();
+			instance = ext;
+			LOGGER.debug("Loading extension {}.", name);
+			return ext;
+		} catch (Exception | LinkageError e) {
+			fail(e);
+			return null;
+		}
+	}
+
+	private void fail(Throwable e) {
+		failed = true;
+		LOGGER.warn("Could not load extension {}. Reason: ({}) {}", new Object[] { className,
+				e.getClass().getSimpleName(), e.getMessage() });
+	}
+}
@@ -0,0 +1,403 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.extension;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.CRC32;
+
+import org.lpe.common.util.LpeStreamUtils;
+import org.lpe.common.util.concurrency.ExecutorRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent index of the extension classes found in plugin JARs and
+ * extension info files. Entries are keyed by the checksum of the JAR they stem
+ * from, thus unchanged JARs are neither extracted nor scanned again. The names
+ * of the extensions are cached as long as none of the involved files changes,
+ * which allows to instantiate extensions lazily.
+ * 
+ */
+final class ExtensionIndex {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ExtensionIndex.class);
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final String JAR_PREFIX = "jar.";
+	private static final String NAME_PREFIX = "name.";
+	private static final String FINGERPRINT_KEY = "fingerprint";
+	private static final String CHECKSUM_SEPARATOR = "|";
+	private static final String CLASS_SEPARATOR = ",";
+	private static final String INFO_SUFFIX = ".info";
+
+	private final File indexFile;
+	private final String pluginsFolder;
+	private final Properties cached = new Properties();
+	private final Map<String, String> extensionNames = new HashMap<String, String>();
+	private final Properties updated = new Properties();
+	private String fingerprint;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param indexFile
+	 *            file to persist the index in
+	 * @param pluginsFolder
+	 *            name of the plugins folder in the classpath
+	 */
+	ExtensionIndex(File indexFile, String pluginsFolder) {
+		this.indexFile = indexFile;
+		this.pluginsFolder = pluginsFolder;
+		if (indexFile.exists()) {
+			try (InputStream in = new FileInputStream(indexFile)) {
+				cached.load(in);
+			} catch (IOException | IllegalArgumentException e) {
+				LOGGER.warn("Ignoring corrupt extension index {}: {}", indexFile, e.getMessage());
+				cached.clear();
+			}
+		}
+	}
+
+	/**
+	 * Collects the names of all extension classes. JARs in the classpath
+	 * containing the plugins folder and the given plugin JARs are checksummed
+	 * and, if changed, scanned in parallel.
+	 * 
+	 * @param classLoader
+	 *            class loader covering the classpath and all plugin JARs
+	 * @param pluginJarURLs
+	 *            URLs of the JARs in the plugins directories
+	 * @param infoURLs
+	 *            URLs of extension info files outside of JARs
+	 * @param executor
+	 *            executor to scan JARs with
+	 * @param parallelism
+	 *            maximal number of JARs processed concurrently
+	 * @return full qualified names of the extension classes
+	 */
+	Set<String> collectExtensionClasses(ClassLoader classLoader, Collection<URL> pluginJarURLs,
+			Collection<URL> infoURLs, ExecutorService executor, int parallelism) {
+		Set<File> jarsWithPlugins = new HashSet<File>();
+		Set<File> dirsWithPlugins = new HashSet<File>();
+		try {
+			Enumeration<URL> urls = classLoader.getResources(pluginsFolder);
+			while (urls.hasMoreElements()) {
+				URL url = urls.nextElement();
+				if (url.getProtocol().equals("jar")) {
+					jarsWithPlugins.add(toJarFile(url));
+				} else if (url.getProtocol().equals("file")) {
+					dirsWithPlugins.add(new File(url.toURI()));
+				}
+			}
+		} catch (IOException | URISyntaxException e) {
+			throw new RuntimeException(e);
+		}
+
+		Set<File> allJars = new HashSet<File>(jarsWithPlugins);
+		for (URL url : pluginJarURLs) {
+			try {
+				allJars.add(new File(url.toURI()));
+			} catch (URISyntaxException e) {
+				LOGGER.warn("Ignoring JAR file {}", url);
+			}
+		}
+
+		List<File> jars = new ArrayList<File>(allJars);
+		List<Callable<Long>> checksumTasks = new ArrayList<Callable<Long>>(jars.size());
+		for (final File jar : jars) {
+			checksumTasks.add(new Callable<Long>() {
+				@Override
+				public Long call() throws IOException {
+					return checksum(jar);
+				}
+			});
+		}
+		List<Future<Long>> checksums = invokeAll(executor, checksumTasks, parallelism);
+
+		List<File> scannedJars = new ArrayList<File>();
+		List<Callable<List<String>>> scanTasks = new ArrayList<Callable<List<String>>>();
+		Map<String, String> fingerprintParts = new TreeMap<String, String>();
+		for (int i = 0; i < jars.size(); i++) {
+			final File jar = jars.get(i);
+			long crc = await(checksums.get(i));
+			fingerprintParts.put(jar.getAbsolutePath(), Long.toHexString(crc));
+			if (!jarsWithPlugins.contains(jar)) {
+				continue;
+			}
+			String key = JAR_PREFIX + jar.getAbsolutePath();
+			final List<String> cachedClasses = getCachedClasses(key, crc);
+			if (cachedClasses != null) {
+				LOGGER.debug("Using cached extension index of {}", jar);
+			}
+			scannedJars.add(jar);
+			scanTasks.add(new Callable<List<String>>() {
+				@Override
+				public List<String> call() throws IOException {
+					return cachedClasses != null ? cachedClasses : scanJar(jar);
+				}
+			});
+		}
+		List<Future<List<String>>> scans = invokeAll(executor, scanTasks, parallelism);
+
+		Set<String> extensionClasses = new HashSet<String>();
+		for (int i = 0; i < scannedJars.size(); i++) {
+			List<String> classes = await(scans.get(i));
+			String path = scannedJars.get(i).getAbsolutePath();
+			updated.setProperty(JAR_PREFIX + path, fingerprintParts.get(path) + CHECKSUM_SEPARATOR + join(classes));
+			extensionClasses.addAll(classes);
+		}
+
+		for (File dir : dirsWithPlugins) {
+			File[] infoFiles = dir.listFiles();
+			if (infoFiles == null) {
+				continue;
+			}
+			for (File infoFile : infoFiles) {
+				if (infoFile.isFile() && infoFile.getName().endsWith(INFO_SUFFIX)) {
+					extensionClasses.addAll(readInfo(infoFile, fingerprintParts));
+				}
+			}
+		}
+		for (URL url : infoURLs) {
+			try {
+				extensionClasses.addAll(readInfo(new File(url.toURI()), fingerprintParts));
+			} catch (URISyntaxException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		fingerprint = digest(fingerprintParts);
+		if (fingerprint.equals(cached.getProperty(FINGERPRINT_KEY))) {
+			for (String key : cached.stringPropertyNames()) {
+				if (key.startsWith(NAME_PREFIX)) {
+					extensionNames.put(key.substring(NAME_PREFIX.length()), cached.getProperty(key));
+				}
+			}
+		}
+
+		Set<String> result = new HashSet<String>();
+		for (String extClassName : extensionClasses) {
+			if (!extClassName.trim().isEmpty()) {
+				result.add(extClassName.trim());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * 
+	 * @param className
+	 *            full qualified name of the extension class
+	 * @return the extension name known from a previous run or null
+	 */
+	String getExtensionName(String className) {
+		return extensionNames.get(className);
+	}
+
+	/**
+	 * Persists the index including the names of the given extensions.
+	 * 
+	 * @param handles
+	 *            handles of the extensions whose names are known
+	 */
+	void store(Collection<ExtensionHandle> handles) {
+		Properties toStore = new Properties();
+		toStore.putAll(updated);
+		toStore.setProperty(FINGERPRINT_KEY, fingerprint);
+		for (ExtensionHandle handle : handles) {
+			String name = handle.isInstantiated() ? handle.getName() : extensionNames.get(handle.getClassName());
+			if (name != null) {
+				toStore.setProperty(NAME_PREFIX + handle.getClassName(), name);
+			}
+		}
+
+		File parent = indexFile.getAbsoluteFile().getParentFile();
+		if (!parent.exists() && !parent.mkdirs()) {
+			LOGGER.warn("Could not create directory {}", parent);
+			return;
+		}
+		File tmpFile = new File(parent, indexFile.getName() + "." + Thread.currentThread().getId() + ".tmp");
+		try (OutputStream out = new FileOutputStream(tmpFile)) {
+			toStore.store(out, "LPE extension index");
+		} catch (IOException e) {
+			LOGGER.warn("Could not write extension index {}: {}", indexFile, e.getMessage());
+			return;
+		}
+		if (indexFile.exists() && !indexFile.delete() || !tmpFile.renameTo(indexFile)) {
+			LOGGER.warn("Could not replace extension index {}", indexFile);
+			if (!tmpFile.delete()) {
+				tmpFile.deleteOnExit();
+			}
+		}
+	}
+
+	private List<String> getCachedClasses(String key, long crc) {
+		String entry = cached.getProperty(key);
+		if (entry == null) {
+			return null;
+		}
+		int idx = entry.indexOf(CHECKSUM_SEPARATOR);
+		if (idx < 0 || !entry.substring(0, idx).equals(Long.toHexString(crc))) {
+			return null;
+		}
+		List<String> classes = new ArrayList<String>();
+		for (String className : entry.substring(idx + 1).split(CLASS_SEPARATOR)) {
+			if (!className.isEmpty()) {
+				classes.add(className);
+			}
+		}
+		return classes;
+	}
+
+	private List<String> scanJar(File jar) throws IOException {
+		LOGGER.debug("Scanning {} for extension information", jar);
+		List<String> classes = new ArrayList<String>();
+		String prefix = pluginsFolder + "/";
+		try (JarFile jarFile = new JarFile(jar)) {
+			Enumeration<JarEntry> entries = jarFile.entries();
+			while (entries.hasMoreElements()) {
+				JarEntry entry = entries.nextElement();
+				String entryName = entry.getName();
+				if (entry.isDirectory() || !entryName.startsWith(prefix) || !entryName.endsWith(INFO_SUFFIX)
+						|| entryName.indexOf('/', prefix.length()) >= 0) {
+					continue;
+				}
+				try (InputStream in = jarFile.getInputStream(entry)) {
+					classes.addAll(readLines(in));
+				}
+			}
+		}
+		return classes;
+	}
+
+	private List<String> readInfo(File infoFile, Map<String, String> fingerprintParts) {
+		try {
+			fingerprintParts.put(infoFile.getAbsolutePath(), Long.toHexString(checksum(infoFile)));
+			return LpeStreamUtils.readLines(infoFile.toURI().toURL());
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static List<String> readLines(InputStream in) throws IOException {
+		List<String> lines = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, UTF8));
+		String line = reader.readLine();
+		while (line != null) {
+			if (!line.trim().isEmpty()) {
+				lines.add(line.trim());
+			}
+			line = reader.readLine();
+		}
+		return lines;
+	}
+
+	private static long checksum(File file) throws IOException {
+		CRC32 crc = new CRC32();
+		byte[] buffer = new byte[BUFFER_SIZE];
+		try (InputStream in = new FileInputStream(file)) {
+			int read = in.read(buffer);
+			while (read >= 0) {
+				crc.update(buffer, 0, read);
+				read = in.read(buffer);
+			}
+		}
+		return crc.getValue();
+	}
+
+	private static File toJarFile(URL url) throws URISyntaxException {
+		String urlStr = url.getFile();
+		if (urlStr.contains("!")) {
+			urlStr = urlStr.substring(0, urlStr.indexOf('!'));
+		}
+		return new File(new URI(urlStr));
+	}
+
+	private static String join(List<String> values) {
+		StringBuilder builder = new StringBuilder();
+		for (String value : values) {
+			if (builder.length() > 0) {
+				builder.append(CLASS_SEPARATOR);
+			}
+			builder.append(value);
+		}
+		return builder.toString();
+	}
+
+	private static String digest(Map<String, String> parts) {
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-1");
+			for (Map.Entry<String, String> part : parts.entrySet()) {
+				md.update((part.getKey() + "=" + part.getValue() + "\n").getBytes(UTF8));
+			}
+			StringBuilder hex = new StringBuilder();
+			for (byte b : md.digest()) {
+				hex.append(String.format("%02x", b));
+			}
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static <T> List<Future<T>> invokeAll(ExecutorService executor, List<Callable<T>> tasks, int parallelism) {
+		try {
+			return ExecutorRegistry.invokeAll(executor, tasks, parallelism);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static <T> T await(Future<T> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+	}
+}
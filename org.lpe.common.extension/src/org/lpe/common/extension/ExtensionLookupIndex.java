@@ -0,0 +1,162 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.extension;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Immutable lookup index over the registered extensions. Maps every class and
+ * interface in the type hierarchy of an extension to the extension, and per
+ * type the normalized extension names to the extensions. The index is built
+ * once per registry modification and read without locking. The
+ * {@link Extensions} views are created lazily from the index and cached with
+ * it, thus they are discarded together with the index.
+ * 
+ */
+final class ExtensionLookupIndex {
+	private final Map<Class<?>, List<ExtensionHandle>> byType;
+	private final Map<Class<?>, Map<String, ExtensionHandle>> byTypeAndName;
+	private final ConcurrentMap<Class<?>, Extensions<?>> views = new ConcurrentHashMap<Class<?>, Extensions<?>>();
+
+	/**
+	 * Builds the index. Extension classes are loaded, but not instantiated.
+	 * 
+	 * @param handles
+	 *            handles of all registered extensions
+	 */
+	ExtensionLookupIndex(Collection<ExtensionHandle> handles) {
+		Map<Class<?>, List<ExtensionHandle>> types = new HashMap<Class<?>, List<ExtensionHandle>>();
+		Map<Class<?>, Map<String, ExtensionHandle>> names = new HashMap<Class<?>, Map<String, ExtensionHandle>>();
+		for (ExtensionHandle handle : handles) {
+			Class<?> extClass = handle.getExtensionClass();
+			if (extClass == null) {
+				continue;
+			}
+			String name = handle.getName();
+			for (Class<?> type : collectTypeHierarchy(extClass)) {
+				List<ExtensionHandle> list = types.get(type);
+				if (list == null) {
+					list = new ArrayList<ExtensionHandle>();
+					types.put(type, list);
+				}
+				list.add(handle);
+				if (name != null) {
+					Map<String, ExtensionHandle> nameMap = names.get(type);
+					if (nameMap == null) {
+						nameMap = new HashMap<String, ExtensionHandle>();
+						names.put(type, nameMap);
+					}
+					nameMap.put(normalize(name), handle);
+				}
+			}
+		}
+		for (Map.Entry<Class<?>, List<ExtensionHandle>> entry : types.entrySet()) {
+			entry.setValue(Collections.unmodifiableList(entry.getValue()));
+		}
+		this.byType = types;
+		this.byTypeAndName = names;
+	}
+
+	/**
+	 * 
+	 * @param type
+	 *            extension class or interface
+	 * @return all extensions assignable to the given type
+	 */
+	List<ExtensionHandle> getHandles(Class<?> type) {
+		List<ExtensionHandle> list = byType.get(type);
+		if (list == null) {
+			return Collections.emptyList();
+		}
+		return list;
+	}
+
+	/**
+	 * 
+	 * @param type
+	 *            extension class or interface
+	 * @param <E>
+	 *            type of the extensions
+	 * @return view of the extensions assignable to the given type, the
+	 *         extensions are instantiated on the first call per type
+	 */
+	<E extends IExtension<?>> Extensions<E> getExtensions(Class<E> type) {
+		@SuppressWarnings("unchecked")
+		Extensions<E> view = (Extensions<E>) views.get(type);
+		if (view == null) {
+			view = new Extensions<E>(type, getHandles(type));
+			@SuppressWarnings("unchecked")
+			Extensions<E> existing = (Extensions<E>) views.putIfAbsent(type, view);
+			if (existing != null) {
+				view = existing;
+			}
+		}
+		return view;
+	}
+
+	/**
+	 * 
+	 * @param type
+	 *            extension class or interface
+	 * @param name
+	 *            name of the extension, compared case insensitive and trimmed
+	 * @return the extension or null if there is none with the given type and
+	 *         name
+	 */
+	ExtensionHandle getHandle(Class<?> type, String name) {
+		Map<String, ExtensionHandle> nameMap = byTypeAndName.get(type);
+		if (nameMap == null || name == null) {
+			return null;
+		}
+		return nameMap.get(normalize(name));
+	}
+
+	/**
+	 * Normalizes a name in the same way as
+	 * {@link org.lpe.common.util.LpeStringUtils#strEqualName(String, String)}.
+	 * 
+	 * @param name
+	 *            name to normalize
+	 * @return the normalized name
+	 */
+	static String normalize(String name) {
+		return name.trim().toLowerCase();
+	}
+
+	private static Set<Class<?>> collectTypeHierarchy(Class<?> c) {
+		Set<Class<?>> types = new HashSet<Class<?>>();
+		List<Class<?>> toVisit = new ArrayList<Class<?>>();
+		toVisit.add(c);
+		while (!toVisit.isEmpty()) {
+			Class<?> type = toVisit.remove(toVisit.size() - 1);
+			if (type == null || !types.add(type)) {
+				continue;
+			}
+			toVisit.add(type.getSuperclass());
+			Collections.addAll(toVisit, type.getInterfaces());
+		}
+		return types;
+	}
+}
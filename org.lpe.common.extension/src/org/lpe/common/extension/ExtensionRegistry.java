@@ -23,19 +23,26 @@ import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.lpe.common.config.GlobalConfiguration;
 import org.lpe.common.util.LpeFileUtils;
 import org.lpe.common.util.LpeStreamUtils;
-import org.lpe.common.util.LpeStringUtils;
+import org.lpe.common.util.concurrency.ExecutorRegistry;
 import org.lpe.common.util.system.LpeSystemUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -56,18 +63,35 @@ public final class ExtensionRegistry implements IExtensionRegistry {
 	public static final String PLUGINS_FOLDER_PROPERTY_KEY = "org.lpe.common.extension.pluginsDirNames";
 	public static final String APP_ROOT_DIR_PROPERTY_KEY = "org.lpe.common.extension.appRootDir";
 
+	/**
+	 * If set to true, extensions are indexed in a persistent cache, plugin
+	 * JARs are scanned in parallel and extensions are instantiated lazily.
+	 */
+	public static final String STARTUP_OPTIMIZED_PROPERTY_KEY = "org.lpe.common.extension.startupOptimized";
+
+	/** Directory of the persistent extension index, defaults to the temp dir. */
+	public static final String INDEX_DIR_PROPERTY_KEY = "org.lpe.common.extension.indexDir";
+
+	private static final String DEFAULT_INDEX_DIR_NAME = "lpeExtensionIndex";
+
 	private static final String EXTENSIONS_FILE_NAME = "extensions.info";
 
+	private static final String LOADING_EXECUTOR_NAME = "extension-loading";
+
+	private static final int LOADING_THREADS = Runtime.getRuntime().availableProcessors();
+
 	private static IExtensionRegistry singleton = null;
 
 	/** Holds a mapping of extension names to extensions. */
-	private Map<String, IExtension<?>> extensions = new HashMap<String, IExtension<?>>();
+	private final Map<String, ExtensionHandle> extensions = new ConcurrentHashMap<String, ExtensionHandle>();
 
-	@SuppressWarnings("rawtypes")
-	private Map<Class, Extensions> extensionsMap = new HashMap<Class, Extensions>();
+	/**
+	 * Lookup index including the cached extension views, rebuilt on demand
+	 * after each modification.
+	 */
+	private volatile ExtensionLookupIndex lookupIndex;
 
 	private boolean initialized = false;
-	private String tempPluginsDir;
 
 	/**
 	 * Returns a singleton instance of the extension registry.
@@ -88,33 +112,83 @@ public final class ExtensionRegistry implements IExtensionRegistry {
 	 *            extension to add
 	 */
 	public void addExtension(IExtension<?> ext) {
-		extensions.put(ext.getName(), ext);
+		extensions.put(ext.getName(), new ExtensionHandle(ext));
+		invalidateIndex();
 	}
 
 	@Override
 	public void removeExtension(String name) {
 		extensions.remove(name);
+		invalidateIndex();
+	}
+
+	private synchronized void invalidateIndex() {
+		lookupIndex = null;
+	}
+
+	/**
+	 * Returns the lookup index and builds it if the registry has been modified
+	 * since the last lookup. Reads are lock-free, only rebuilding the index
+	 * synchronizes with modifications.
+	 * 
+	 * @return the current lookup index
+	 */
+	private ExtensionLookupIndex getLookupIndex() {
+		ExtensionLookupIndex index = lookupIndex;
+		if (index == null) {
+			synchronized (this) {
+				index = lookupIndex;
+				if (index == null) {
+					index = new ExtensionLookupIndex(extensions.values());
+					lookupIndex = index;
+				}
+			}
+		}
+		return index;
 	}
 
 	@Override
 	public Collection<? extends IExtension<?>> getExtensions() {
+		List<IExtension<?>> result = new ArrayList<IExtension<?>>(extensions.size());
+		for (ExtensionHandle handle : extensions.values()) {
+			IExtension<?> ext = handle.getInstance();
+			if (ext != null) {
+				result.add(ext);
+			}
+		}
+		return Collections.unmodifiableCollection(result);
+	}
+
+	/**
+	 * 
+	 * @return handles of all registered extensions, including those not
+	 *         instantiated, yet
+	 */
+	Collection<ExtensionHandle> getExtensionHandles() {
 		return Collections.unmodifiableCollection(extensions.values());
 	}
 
+	/**
+	 * 
+	 * @param type
+	 *            extension class or interface
+	 * @return handles of all extensions assignable to the given type
+	 */
+	List<ExtensionHandle> getExtensionHandles(Class<?> type) {
+		return getLookupIndex().getHandles(type);
+	}
+
 	@Override
 	public IExtension<?> getExtension(String name) {
-		return extensions.get(name);
+		ExtensionHandle handle = extensions.get(name);
+		return handle == null ? null : handle.getInstance();
 	}
 
 	@Override
 	public <E extends IExtension<?>> Extensions<E> getExtensions(Class<E> c) {
-		@SuppressWarnings("unchecked")
-		Extensions<E> exts = extensionsMap.get(c);
-		if (exts == null) {
-			exts = new Extensions<E>(c);
-			extensionsMap.put(c, exts);
-		}
-		return exts;
+		// the views are cached by the index, so that a view built from an
+		// outdated index cannot outlive its invalidation
+		return getLookupIndex().getExtensions(c);
 	}
 
 	/*
@@ -160,6 +234,11 @@ public final class ExtensionRegistry implements IExtensionRegistry {
 			}
 		}
 
+		if (GlobalConfiguration.getInstance().getPropertyAsBoolean(STARTUP_OPTIMIZED_PROPERTY_KEY, false)) {
+			loadExtensionsFromIndex(pluginsDirsSet);
+			return;
+		}
+
 		Set<URL> extensionsInfoURLs = new HashSet<URL>();
 		ClassLoader classLoader = loadPluginInformationFromSources(pluginsDirsSet, extensionsInfoURLs);
 
@@ -168,16 +247,81 @@ public final class ExtensionRegistry implements IExtensionRegistry {
 		Set<String> extensionClasses = gatherExtensionClassFiles(extensionsInfoURLs);
 
 		loadExtensionClasses(classLoader, extensionClasses);
+	}
 
-		if (tempPluginsDir != null && new File(tempPluginsDir).exists()) {
-			try {
-				LpeFileUtils.removeDir(tempPluginsDir);
-			} catch (IOException e) {
-				LOGGER.warn("Where not able to remove directory {}!", tempPluginsDir);
+	/**
+	 * Loads the extensions using the persistent {@link ExtensionIndex}. Only
+	 * extensions whose name is not known from a previous run are instantiated
+	 * immediately, all others are instantiated on first access.
+	 * 
+	 * @param pluginsDirsSet
+	 *            plugins directories
+	 */
+	private void loadExtensionsFromIndex(Set<String> pluginsDirsSet) {
+		Set<URL> extensionsInfoURLs = new HashSet<URL>();
+		Set<URL> jarURLs = new HashSet<URL>();
+		for (String dir : pluginsDirsSet) {
+			loadExtensionsInfoAndJARs(dir, extensionsInfoURLs, jarURLs);
+		}
+		ClassLoader classLoader = new URLClassLoader(jarURLs.toArray(new URL[] {}), this.getClass().getClassLoader());
+
+		ExtensionIndex index = new ExtensionIndex(getIndexFile(pluginsDirsSet), DEFAULT_PLUGINS_FOLDER_IN_CLASSPATH);
+		ExecutorService executor = ExecutorRegistry.getInstance().getExecutor(LOADING_EXECUTOR_NAME, LOADING_THREADS,
+				LOADING_THREADS);
+		try {
+			Set<String> extensionClasses = index.collectExtensionClasses(classLoader, jarURLs, extensionsInfoURLs,
+					executor, LOADING_THREADS);
+
+			List<ExtensionHandle> handles = new ArrayList<ExtensionHandle>();
+			List<Callable<IExtension<?>>> instantiations = new ArrayList<Callable<IExtension<?>>>();
+			for (String extClassName : extensionClasses) {
+				final ExtensionHandle handle = new ExtensionHandle(extClassName, index.getExtensionName(extClassName),
+						classLoader);
+				handles.add(handle);
+				if (!handle.isNameKnown()) {
+					instantiations.add(new Callable<IExtension<?>>() {
+						@Override
+						public IExtension<?> call() {
+							return handle.getInstance();
+						}
+					});
+				}
+			}
+			for (Future<IExtension<?>> instantiation : ExecutorRegistry.invokeAll(executor, instantiations,
+					LOADING_THREADS)) {
+				instantiation.get();
+			}
+			for (ExtensionHandle handle : handles) {
+				if (handle.getName() != null) {
+					extensions.put(handle.getName(), handle);
+				}
 			}
+			LOGGER.info("Indexed {} extensions, {} of them had to be instantiated.", handles.size(),
+					instantiations.size());
+			index.store(handles);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
 		}
 	}
 
+	/**
+	 * The index file is specific to the plugin directories and the classpath,
+	 * so that different applications do not share an index.
+	 */
+	private File getIndexFile(Set<String> pluginsDirsSet) {
+		String indexDir = GlobalConfiguration.getInstance().getProperty(INDEX_DIR_PROPERTY_KEY,
+				LpeFileUtils.concatFileName(LpeSystemUtils.getSystemTempDir(), DEFAULT_INDEX_DIR_NAME));
+		StringBuilder key = new StringBuilder(System.getProperty("java.class.path", ""));
+		key.append(GlobalConfiguration.getInstance().getProperty(APP_ROOT_DIR_PROPERTY_KEY, ""));
+		for (String dir : new TreeSet<String>(pluginsDirsSet)) {
+			key.append(File.pathSeparatorChar).append(dir);
+		}
+		return new File(indexDir, "extensions-" + Integer.toHexString(key.toString().hashCode()) + ".index");
+	}
+
 	@SuppressWarnings("rawtypes")
 	private void loadExtensionClasses(ClassLoader classLoader, Set<String> extensionClasses) {
 		for (String extClassName : extensionClasses) {
@@ -263,12 +407,12 @@ public final class ExtensionRegistry implements IExtensionRegistry {
 		// unpack all extensions.info's separately and gathers them in the list
 
 		try {
-			tempPluginsDir = LpeSystemUtils.extractFilesFromClasspath("plugins", "lpePlugins", "plugins files",
+			String pluginsInfoDir = LpeSystemUtils.extractFilesFromClasspath("plugins", "lpePlugins", "plugins files",
 					classLoader);
 
-			String[] infoFiles = LpeFileUtils.getFileNames(tempPluginsDir, "*.info");
+			String[] infoFiles = LpeFileUtils.getFileNames(pluginsInfoDir, "*.info");
 			for (String infoFileName : infoFiles) {
-				final String fullName = LpeFileUtils.concatFileName(tempPluginsDir, infoFileName);
+				final String fullName = LpeFileUtils.concatFileName(pluginsInfoDir, infoFileName);
 				URL url = new URL("file", "", fullName);
 				extensionsInfoURLs.add(url);
 			}
@@ -342,11 +486,12 @@ public final class ExtensionRegistry implements IExtensionRegistry {
 
 	@Override
 	public <EA extends IExtensionArtifact> EA getExtensionArtifact(Class<? extends IExtension<EA>> c, String name) {
-		Extensions<? extends IExtension<EA>> extensions = getExtensions(c);
-
-		for (IExtension<EA> ext : extensions) {
-			if (LpeStringUtils.strEqualName(ext.getName(), name)) {
-				return ext.createExtensionArtifact();
+		ExtensionHandle handle = getLookupIndex().getHandle(c, name);
+		if (handle != null) {
+			@SuppressWarnings("unchecked")
+			EA artifact = (EA) handle.createArtifact();
+			if (artifact != null) {
+				return artifact;
 			}
 		}
 		LOGGER.warn("Could not find extension {} for extension category {}.", name, c.getSimpleName());
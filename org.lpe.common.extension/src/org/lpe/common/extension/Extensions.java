@@ -52,8 +52,39 @@ public class Extensions<E extends IExtension> implements Iterable<E> {
 
 		// load the relevant extensions
 		extensions = new ArrayList<E>();
-		for (IExtension ext : registry.getExtensions()) {
-			if (filter.isAssignableFrom(ext.getClass())) {
+		if (registry instanceof ExtensionRegistry) {
+			// use the type index, so that only matching extensions are
+			// instantiated
+			for (ExtensionHandle handle : ((ExtensionRegistry) registry).getExtensionHandles(filter)) {
+				IExtension ext = handle.getInstance();
+				if (ext != null) {
+					extensions.add((E) ext);
+				}
+			}
+		} else {
+			for (IExtension ext : registry.getExtensions()) {
+				if (filter.isAssignableFrom(ext.getClass())) {
+					extensions.add((E) ext);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Creates an extensions view over the given extensions.
+	 * 
+	 * @param filter
+	 *            class or interface the extensions implement
+	 * @param handles
+	 *            handles of the extensions to report
+	 */
+	@SuppressWarnings("unchecked")
+	Extensions(Class<E> filter, List<ExtensionHandle> handles) {
+		registry = ExtensionRegistry.getSingleton();
+		extensions = new ArrayList<E>(handles.size());
+		for (ExtensionHandle handle : handles) {
+			IExtension ext = handle.getInstance();
+			if (ext != null) {
 				extensions.add((E) ext);
 			}
 		}
@@ -0,0 +1,36 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.extension;
+
+/**
+ * An extension artifact that serves as prototype for further artifacts of its
+ * extension. If the first artifact created by an extension implements this
+ * interface, the {@link ExtensionRegistry} keeps it and creates all further
+ * artifacts by copying it instead of calling
+ * {@link IExtension#createExtensionArtifact()}. This pays off for extensions
+ * whose artifacts are expensive to set up from scratch.
+ * 
+ */
+public interface IPrototypeExtensionArtifact extends IExtensionArtifact {
+
+	/**
+	 * Creates an independent copy of this artifact. The copy must not share
+	 * mutable state with this artifact.
+	 * 
+	 * @return a new artifact equivalent to this one
+	 */
+	IExtensionArtifact copyArtifact();
+}
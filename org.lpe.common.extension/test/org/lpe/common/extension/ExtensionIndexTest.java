@@ -0,0 +1,208 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.extension;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.lpe.common.config.ConfigParameterDescription;
+import org.lpe.common.util.concurrency.ExecutorRegistry;
+
+/**
+ * Tests the {@link ExtensionIndex}.
+ * 
+ */
+public class ExtensionIndexTest {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final String EXECUTOR_NAME = "extension-index-test";
+	private static final String PLUGINS_FOLDER = "plugins";
+	private static final String EXTENSION_NAME = "index-test";
+	private static final String OTHER_CLASS = "org.example.OtherExtension";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final ExecutorService executor = ExecutorRegistry.getInstance().getExecutor(EXECUTOR_NAME, 2, 2);
+
+	/**
+	 * Removes the test executor.
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted
+	 */
+	@After
+	public void cleanUp() throws InterruptedException {
+		ExecutorRegistry.getInstance().shutdown(EXECUTOR_NAME, 1, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Tests that an unchanged plugin JAR is served from the index and that a
+	 * changed JAR is scanned again.
+	 * 
+	 * @throws IOException
+	 *             if the files cannot be written
+	 */
+	@Test
+	public void testPluginJar() throws IOException {
+		File jar = folder.newFile("plugin.jar");
+		File indexFile = new File(folder.getRoot(), "index.properties");
+		writeJar(jar, TestExtension.class.getName());
+		ClassLoader loader = new URLClassLoader(new URL[] { jar.toURI().toURL() }, null);
+
+		ExtensionIndex index = new ExtensionIndex(indexFile, PLUGINS_FOLDER);
+		assertEquals(Collections.singleton(TestExtension.class.getName()), collect(index, loader));
+		assertNull(index.getExtensionName(TestExtension.class.getName()));
+		index.store(Collections.singleton(new ExtensionHandle(new TestExtension())));
+
+		// the cached class list is used instead of scanning the JAR
+		Properties stored = load(indexFile);
+		String key = "jar." + jar.getAbsolutePath();
+		String entry = stored.getProperty(key);
+		stored.setProperty(key, entry.substring(0, entry.indexOf('|') + 1) + OTHER_CLASS);
+		try (OutputStream out = new FileOutputStream(indexFile)) {
+			stored.store(out, null);
+		}
+		index = new ExtensionIndex(indexFile, PLUGINS_FOLDER);
+		assertEquals(Collections.singleton(OTHER_CLASS), collect(index, loader));
+		assertEquals(EXTENSION_NAME, index.getExtensionName(TestExtension.class.getName()));
+
+		writeJar(jar, TestExtension.class.getName(), OTHER_CLASS);
+		index = new ExtensionIndex(indexFile, PLUGINS_FOLDER);
+		assertEquals(new HashSet<String>(Arrays.asList(TestExtension.class.getName(), OTHER_CLASS)),
+				collect(index, loader));
+		assertNull(index.getExtensionName(TestExtension.class.getName()));
+	}
+
+	/**
+	 * Tests that cached extension names are dropped when an extension info
+	 * file changes.
+	 * 
+	 * @throws IOException
+	 *             if the files cannot be written
+	 */
+	@Test
+	public void testInfoFile() throws IOException {
+		File classes = folder.newFolder("classes");
+		File infoFile = new File(new File(classes, PLUGINS_FOLDER), "test.info");
+		File indexFile = new File(folder.getRoot(), "index.properties");
+		Files.createDirectories(infoFile.getParentFile().toPath());
+		Files.write(infoFile.toPath(), TestExtension.class.getName().getBytes(UTF8));
+		ClassLoader loader = new URLClassLoader(new URL[] { classes.toURI().toURL() }, null);
+
+		ExtensionIndex index = new ExtensionIndex(indexFile, PLUGINS_FOLDER);
+		assertEquals(Collections.singleton(TestExtension.class.getName()), collect(index, loader));
+		index.store(Collections.singleton(new ExtensionHandle(new TestExtension())));
+
+		index = new ExtensionIndex(indexFile, PLUGINS_FOLDER);
+		assertEquals(Collections.singleton(TestExtension.class.getName()), collect(index, loader));
+		assertEquals(EXTENSION_NAME, index.getExtensionName(TestExtension.class.getName()));
+
+		Files.write(infoFile.toPath(), (TestExtension.class.getName() + "\n" + OTHER_CLASS).getBytes(UTF8));
+		index = new ExtensionIndex(indexFile, PLUGINS_FOLDER);
+		assertEquals(new HashSet<String>(Arrays.asList(TestExtension.class.getName(), OTHER_CLASS)),
+				collect(index, loader));
+		assertNull(index.getExtensionName(TestExtension.class.getName()));
+	}
+
+	/**
+	 * Tests that a corrupt index file is ignored.
+	 * 
+	 * @throws IOException
+	 *             if the files cannot be written
+	 */
+	@Test
+	public void testCorruptIndex() throws IOException {
+		File jar = folder.newFile("plugin.jar");
+		File indexFile = folder.newFile("index.properties");
+		writeJar(jar, TestExtension.class.getName());
+		Files.write(indexFile.toPath(), "jar.broken=\\u00zz".getBytes(UTF8));
+		ClassLoader loader = new URLClassLoader(new URL[] { jar.toURI().toURL() }, null);
+
+		ExtensionIndex index = new ExtensionIndex(indexFile, PLUGINS_FOLDER);
+		assertEquals(Collections.singleton(TestExtension.class.getName()), collect(index, loader));
+	}
+
+	private Set<String> collect(ExtensionIndex index, ClassLoader loader) {
+		return index.collectExtensionClasses(loader, Collections.<URL> emptySet(), Collections.<URL> emptySet(),
+				executor, 2);
+	}
+
+	private static void writeJar(File jar, String... classNames) throws IOException {
+		StringBuilder info = new StringBuilder();
+		for (String className : classNames) {
+			info.append(className).append('\n');
+		}
+		try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+			out.putNextEntry(new JarEntry(PLUGINS_FOLDER + "/"));
+			out.closeEntry();
+			out.putNextEntry(new JarEntry(PLUGINS_FOLDER + "/test.info"));
+			out.write(info.toString().getBytes(UTF8));
+			out.closeEntry();
+		}
+	}
+
+	private static Properties load(File file) throws IOException {
+		Properties properties = new Properties();
+		try (InputStream in = new FileInputStream(file)) {
+			properties.load(in);
+		}
+		return properties;
+	}
+
+	/**
+	 * Extension listed in the test info files.
+	 */
+	public static class TestExtension implements IExtension<IExtensionArtifact> {
+		@Override
+		public String getName() {
+			return EXTENSION_NAME;
+		}
+
+		@Override
+		public IExtensionArtifact createExtensionArtifact() {
+			return null;
+		}
+
+		@Override
+		public Set<ConfigParameterDescription> getConfigParameters() {
+			return Collections.emptySet();
+		}
+	}
+}
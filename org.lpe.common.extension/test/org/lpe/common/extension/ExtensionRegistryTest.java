@@ -0,0 +1,259 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.extension;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.lpe.common.config.ConfigParameterDescription;
+import org.lpe.common.config.GlobalConfiguration;
+
+/**
+ * Tests the {@link ExtensionRegistry}.
+ * 
+ */
+public class ExtensionRegistryTest {
+	private static final String FIRST = "First Test";
+	private static final String SECOND = "Second Test";
+	private static final String PROTOTYPE = "Prototype Test";
+	private static final int NUM_MODIFICATIONS = 2000;
+	private static final long TIMEOUT_MILLIS = 30000;
+
+	@ClassRule
+	public static TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Initializes the configuration with an empty application root.
+	 */
+	@BeforeClass
+	public static void initConfiguration() {
+		Properties properties = new Properties();
+		properties.setProperty(ExtensionRegistry.APP_ROOT_DIR_PROPERTY_KEY, folder.getRoot().getAbsolutePath());
+		GlobalConfiguration.initialize(properties);
+	}
+
+	/**
+	 * Tests that names are looked up trimmed and case insensitive for all
+	 * types of the extension.
+	 */
+	@Test
+	public void testNormalizedLookup() {
+		ExtensionHandle first = new ExtensionHandle(new TestExtension(FIRST));
+		ExtensionHandle second = new ExtensionHandle(new TestExtension(SECOND));
+		ExtensionLookupIndex index = new ExtensionLookupIndex(Arrays.asList(first, second));
+
+		assertSame(first, index.getHandle(ITestExtension.class, "  first TEST "));
+		assertSame(second, index.getHandle(TestExtension.class, "SECOND TEST"));
+		assertSame(first, index.getHandle(IExtension.class, FIRST));
+		assertNull(index.getHandle(ITestExtension.class, "first"));
+		assertNull(index.getHandle(ITestExtension.class, null));
+		assertNull(index.getHandle(String.class, FIRST));
+		assertEquals(2, index.getHandles(ITestExtension.class).size());
+		assertTrue(index.getHandles(String.class).isEmpty());
+	}
+
+	/**
+	 * Tests that adding and removing extensions invalidates both the lookup
+	 * index and the cached extension views.
+	 */
+	@Test
+	public void testInvalidateIndex() {
+		ExtensionRegistry registry = (ExtensionRegistry) ExtensionRegistry.getSingleton();
+		try {
+			registry.addExtension(new TestExtension(FIRST));
+			Extensions<ITestExtension> extensions = registry.getExtensions(ITestExtension.class);
+			assertSame(extensions, registry.getExtensions(ITestExtension.class));
+			assertEquals(1, extensions.getList().size());
+			assertNotNull(registry.getExtensionArtifact(ITestExtension.class, " first test"));
+			assertNull(registry.getExtensionArtifact(ITestExtension.class, SECOND));
+
+			registry.addExtension(new TestExtension(SECOND));
+			assertNotSame(extensions, registry.getExtensions(ITestExtension.class));
+			assertEquals(2, registry.getExtensions(ITestExtension.class).getList().size());
+			assertNotNull(registry.getExtensionArtifact(ITestExtension.class, SECOND));
+
+			registry.removeExtension(FIRST);
+			assertEquals(1, registry.getExtensions(ITestExtension.class).getList().size());
+			assertNull(registry.getExtensionArtifact(ITestExtension.class, FIRST));
+		} finally {
+			registry.removeExtension(FIRST);
+			registry.removeExtension(SECOND);
+		}
+	}
+
+	/**
+	 * Tests that a view looked up concurrently with a modification is not
+	 * cached beyond the invalidation of its index.
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted
+	 */
+	@Test
+	public void testConcurrentInvalidation() throws InterruptedException {
+		final ExtensionRegistry registry = (ExtensionRegistry) ExtensionRegistry.getSingleton();
+		final AtomicBoolean modifying = new AtomicBoolean(true);
+		Thread reader = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				while (modifying.get()) {
+					registry.getExtensions(ITestExtension.class);
+				}
+			}
+		});
+		try {
+			registry.addExtension(new TestExtension(FIRST));
+			reader.start();
+			for (int i = 0; i < NUM_MODIFICATIONS; i++) {
+				registry.addExtension(new TestExtension(SECOND));
+				assertEquals(2, registry.getExtensions(ITestExtension.class).getList().size());
+				registry.removeExtension(SECOND);
+				assertEquals(1, registry.getExtensions(ITestExtension.class).getList().size());
+			}
+			modifying.set(false);
+			reader.join(TIMEOUT_MILLIS);
+		} finally {
+			modifying.set(false);
+			registry.removeExtension(FIRST);
+			registry.removeExtension(SECOND);
+		}
+	}
+
+	/**
+	 * Tests that prototype artifacts are copied instead of being created by
+	 * the extension each time.
+	 */
+	@Test
+	public void testPrototypeArtifact() {
+		ExtensionRegistry registry = (ExtensionRegistry) ExtensionRegistry.getSingleton();
+		TestExtension plain = new TestExtension(FIRST);
+		TestExtension prototype = new TestExtension(PROTOTYPE);
+		try {
+			registry.addExtension(plain);
+			registry.addExtension(prototype);
+			for (int i = 0; i < 3; i++) {
+				IExtensionArtifact artifact = registry.getExtensionArtifact(ITestExtension.class, FIRST);
+				assertTrue(artifact instanceof TestArtifact);
+			}
+			assertEquals(3, plain.created);
+
+			IExtensionArtifact first = registry.getExtensionArtifact(ITestExtension.class, PROTOTYPE);
+			IExtensionArtifact second = registry.getExtensionArtifact(ITestExtension.class, PROTOTYPE);
+			assertTrue(first instanceof PrototypeArtifact);
+			assertTrue(((PrototypeArtifact) first).copy);
+			assertNotSame(first, second);
+			assertSame(prototype, second.getProvider());
+			assertEquals(1, prototype.created);
+		} finally {
+			registry.removeExtension(FIRST);
+			registry.removeExtension(PROTOTYPE);
+		}
+	}
+
+	/**
+	 * Extension type used by the tests.
+	 */
+	public interface ITestExtension extends IExtension<IExtensionArtifact> {
+	}
+
+	/**
+	 * Extension counting the artifacts it creates. The extension named
+	 * {@link ExtensionRegistryTest#PROTOTYPE} creates prototype artifacts.
+	 */
+	public static class TestExtension implements ITestExtension {
+		private final String name;
+		private int created;
+
+		/**
+		 * Constructor.
+		 * 
+		 * @param name
+		 *            name of the extension
+		 */
+		public TestExtension(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public IExtensionArtifact createExtensionArtifact() {
+			created++;
+			return PROTOTYPE.equals(name) ? new PrototypeArtifact(this, false) : new TestArtifact(this);
+		}
+
+		@Override
+		public Set<ConfigParameterDescription> getConfigParameters() {
+			return Collections.emptySet();
+		}
+	}
+
+	/**
+	 * Plain artifact.
+	 */
+	public static class TestArtifact extends AbstractExtensionArtifact {
+		/**
+		 * Constructor.
+		 * 
+		 * @param provider
+		 *            the provider of this artifact
+		 */
+		public TestArtifact(IExtension<?> provider) {
+			super(provider);
+		}
+	}
+
+	/**
+	 * Artifact which is copied from a prototype.
+	 */
+	public static class PrototypeArtifact extends AbstractExtensionArtifact implements IPrototypeExtensionArtifact {
+		private final boolean copy;
+
+		/**
+		 * Constructor.
+		 * 
+		 * @param provider
+		 *            the provider of this artifact
+		 * @param copy
+		 *            true, if the artifact is a copy of the prototype
+		 */
+		public PrototypeArtifact(IExtension<?> provider, boolean copy) {
+			super(provider);
+			this.copy = copy;
+		}
+
+		@Override
+		public IExtensionArtifact copyArtifact() {
+			return new PrototypeArtifact(getProvider(), true);
+		}
+	}
+}
@@ -17,6 +17,10 @@ package org.lpe.common.jmeter.IO;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.lpe.common.util.system.LpeSystemUtils;
 
 /**
  * This class is used for polling log-files written by other application and
@@ -28,12 +32,14 @@ public class FilePoller implements Runnable {
 
 	private DynamicPipedInputStream out;
 	private File file;
-	private boolean continuePolling;
+	private volatile boolean continuePolling;
 	private boolean deleteFileOnExit;
-	private Thread pollThread;
+	private Future<?> pollTask;
 
 	public static final int POLL_FREQUENCY = 300;
 
+	private static final String POLL_EXECUTOR = "jmeter-log-poller";
+
 	/**
 	 * Constructor.
 	 * 
@@ -58,13 +64,13 @@ public class FilePoller implements Runnable {
 	 */
 	public void startPolling() {
 		continuePolling = true;
-		pollThread = new Thread(this);
-		pollThread.start();
+		pollTask = LpeSystemUtils.submitTask(POLL_EXECUTOR, this);
 	}
 
 	/**
-	 * Stops the pollingthread and deletes the file if requested before. This
-	 * method waits until the polling Thread has terminated
+	 * Stops the polling task after it has read the remaining file content and
+	 * deletes the file if requested before. This method waits until the
+	 * polling task has terminated
 	 * 
 	 * @throws InterruptedException
 	 *             if the current thread is interrupted before the pollingthread
@@ -72,8 +78,11 @@ public class FilePoller implements Runnable {
 	 */
 	public void endPolling() throws InterruptedException {
 		continuePolling = false;
-		pollThread.interrupt();
-		pollThread.join();
+		try {
+			pollTask.get();
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
 	}
 
 	/**
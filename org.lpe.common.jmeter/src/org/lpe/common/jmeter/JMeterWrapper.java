@@ -24,6 +24,8 @@ import org.lpe.common.jmeter.IO.DynamicPipedInputStream;
 import org.lpe.common.jmeter.IO.FilePoller;
 import org.lpe.common.jmeter.config.JMeterWorkloadConfig;
 import org.lpe.common.util.system.LpeSystemUtils;
+import org.lpe.common.util.workload.ArrivalPattern;
+import org.lpe.common.util.workload.ArrivalSchedule;
 
 /**
  * Wrapper class which handles the connection to JMeter console process.
@@ -36,6 +38,9 @@ import org.lpe.common.util.system.LpeSystemUtils;
  */
 public final class JMeterWrapper {
 
+	private static final int SECONDS_PER_MINUTE = 60;
+	private static final String LOAD_PROFILE_PROPERTY = "load_profile";
+
 	/**
 	 * location of the JMeter bin folder
 	 */
@@ -82,6 +87,11 @@ public final class JMeterWrapper {
 			throw new RuntimeException("An Jmeter Process is already running, can only run one process per wrapperinstance");
 		}
 
+		// the arrivals of an open workload are paced by a fixed thread pool
+		if (config.getArrivalSchedule() != null && config.getNumUsers() <= 0) {
+			throw new IllegalArgumentException("An open workload requires a fixed number of users on JMeter!");
+		}
+
 		// create log file
 		File logFile = createLogFile(config);
 
@@ -108,7 +118,7 @@ public final class JMeterWrapper {
 
 		// add a Thread that waits for the Process to terminate who then
 		// notifies all other waiting Threads
-		LpeSystemUtils.submitTask(new Runnable() {
+		LpeSystemUtils.submitTask("jmeter", new Runnable() {
 
 			public void run() {
 				try {
@@ -192,6 +202,29 @@ public final class JMeterWrapper {
 		if (config.getSamplingFileFlag()) {
 			cmd.add("-Jp_resultFile=" + config.getPathToSamplingFile());
 		}
+
+		// open workload: the script paces its samplers with these properties,
+		// e.g. by a precise throughput timer, instead of the think times
+		ArrivalSchedule schedule = config.getArrivalSchedule();
+		if (schedule != null) {
+			cmd.add("-Jp_arrivalPattern=" + schedule.getPattern());
+			cmd.add("-Jp_arrivalStartRate=" + schedule.getStartRate());
+			cmd.add("-Jp_arrivalTargetRate=" + schedule.getTargetRate());
+			cmd.add("-Jp_arrivalSteps=" + schedule.getSteps());
+			cmd.add("-Jp_arrivalDurationSeconds=" + schedule.getDurationSeconds());
+			switch (schedule.getPattern()) {
+			case constant:
+			case poisson:
+				cmd.add("-Jp_throughputPerMinute=" + schedule.getStartRate() * SECONDS_PER_MINUTE);
+				break;
+			default:
+				// a throughput timer with a fixed rate cannot follow the
+				// schedule, the script has to use a Throughput Shaping Timer,
+				// which reads its stages from this property
+				cmd.add("-J" + LOAD_PROFILE_PROPERTY + "=" + toLoadProfile(schedule));
+				break;
+			}
+		}
 		
 		// add custom properties
 		Properties additionalProps = config.getAdditionalProperties();
@@ -202,6 +235,49 @@ public final class JMeterWrapper {
 		return cmd;
 	}
 
+	/**
+	 * Translates a ramp or step schedule into the stages of a Throughput
+	 * Shaping Timer, e.g. <code>line(10,20,60)</code> for a ramp from 10 to 20
+	 * requests per second within 60 seconds or one <code>const</code> stage
+	 * per step.
+	 * 
+	 * @param schedule the schedule to translate
+	 * @return the load profile
+	 */
+	private static String toLoadProfile(ArrivalSchedule schedule) {
+		StringBuilder profile = new StringBuilder();
+		if (schedule.getPattern() == ArrivalPattern.ramp) {
+			profile.append("line(").append(formatRate(schedule.getStartRate())).append(',')
+					.append(formatRate(schedule.getTargetRate())).append(',').append(schedule.getDurationSeconds())
+					.append(')');
+			return profile.toString();
+		}
+		int steps = Math.max(1, schedule.getSteps());
+		double stepLength = (double) schedule.getDurationSeconds() / steps;
+		int start = 0;
+		for (int i = 0; i < steps; i++) {
+			// stages last whole seconds, thus the rounding errors are spread
+			// over the steps
+			int end = (int) Math.round((i + 1) * stepLength);
+			if (end > start) {
+				if (profile.length() > 0) {
+					profile.append(' ');
+				}
+				double rate = schedule.rateAt((i + 0.5) * stepLength);
+				profile.append("const(").append(formatRate(rate)).append(',').append(end - start).append(')');
+				start = end;
+			}
+		}
+		return profile.toString();
+	}
+
+	private static String formatRate(double rate) {
+		if (rate == Math.rint(rate)) {
+			return String.valueOf((long) rate);
+		}
+		return String.valueOf(rate);
+	}
+
 	/**
 	 * Returns the stream instance which belongs to this wrapper. It contains the log of the loadtests ran
 	 * 
@@ -14,6 +14,8 @@ package org.lpe.common.jmeter.config;
 
 import java.util.Properties;
 
+import org.lpe.common.util.workload.ArrivalSchedule;
+
 /**
  * This configuration comprises all the JMeter configuration possiblites.
  * 
@@ -104,6 +106,11 @@ public class JMeterWorkloadConfig {
 	 */
 	private String logFilePrefix;
 
+	/**
+	 * The request rate of an open workload, null for a closed workload.
+	 */
+	private ArrivalSchedule arrivalSchedule;
+
 	/**
 	 * Custom additional properties can be passed with this {@link Properties}.
 	 */
@@ -329,6 +336,28 @@ public class JMeterWorkloadConfig {
 		this.pathToScript = pathToScript;
 	}
 
+	/**
+	 * @return the request rate of an open workload, null for a closed
+	 *         workload
+	 */
+	public ArrivalSchedule getArrivalSchedule() {
+		return arrivalSchedule;
+	}
+
+	/**
+	 * Sets the request rate of an open workload. The number of users then
+	 * limits the concurrent requests and has to be positive, and the think
+	 * times are not used. Ramp and step schedules are passed as the
+	 * <code>load_profile</code> of a Throughput Shaping Timer, which the
+	 * script has to contain.
+	 * 
+	 * @param arrivalSchedule
+	 *            the request rate, null for a closed workload
+	 */
+	public void setArrivalSchedule(ArrivalSchedule arrivalSchedule) {
+		this.arrivalSchedule = arrivalSchedule;
+	}
+
 	/**
 	 * Return a properties object in which additional properties can be set,
 	 * which also wil lbe passed to jmeter.
@@ -0,0 +1,69 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.loadgenerator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.lpe.common.loadgenerator.config.LGMeasurementConfig;
+import org.lpe.common.loadgenerator.config.LGWorkloadConfig;
+import org.lpe.common.loadgenerator.data.LGMeasurementData;
+
+/**
+ * Backend delegating to the {@link LoadGeneratorWorkloadController} and the
+ * {@link LoadGeneratorMeasurementController}.
+ * 
+ */
+public final class DefaultLoadGeneratorBackend implements ILoadGeneratorBackend {
+	private static DefaultLoadGeneratorBackend instance;
+
+	/**
+	 * 
+	 * @return singleton instance
+	 */
+	public static synchronized DefaultLoadGeneratorBackend getInstance() {
+		if (instance == null) {
+			instance = new DefaultLoadGeneratorBackend();
+		}
+		return instance;
+	}
+
+	/**
+	 * private constructor due to singleton class.
+	 */
+	private DefaultLoadGeneratorBackend() {
+	}
+
+	@Override
+	public void startExperiment(LGWorkloadConfig lrConfig) throws IOException {
+		LoadGeneratorWorkloadController.getInstance().startExperiment(lrConfig);
+	}
+
+	@Override
+	public boolean isFinished() {
+		return LoadGeneratorWorkloadController.getInstance().isFinished();
+	}
+
+	@Override
+	public LGMeasurementData getMeasurementData(LGMeasurementConfig lrmConfig) throws IOException {
+		return LoadGeneratorMeasurementController.getInstance().getMeasurementData(lrmConfig);
+	}
+
+	@Override
+	public void pipeReportToOutputStream(LGMeasurementConfig lrmConfig, OutputStream oStream) throws IOException {
+		LoadGeneratorMeasurementController.getInstance().pipeReportToOutputStream(lrmConfig, oStream);
+	}
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.loadgenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.lpe.common.loadgenerator.config.LGMeasurementConfig;
+import org.lpe.common.loadgenerator.config.LGWorkloadConfig;
+import org.lpe.common.loadgenerator.data.LGMeasurementData;
+import org.lpe.common.loadgenerator.data.TimeSpan;
+import org.lpe.common.loadgenerator.engine.HttpLoadEngine;
+import org.lpe.common.loadgenerator.engine.HttpScript;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Backend running experiments on the built-in {@link HttpLoadEngine} instead
+ * of an external load generator. The scenario path of the workload
+ * configuration denotes an {@link HttpScript} file; the load generator path is
+ * ignored.
+ * 
+ */
+public final class HttpLoadGeneratorBackend implements ILoadGeneratorBackend {
+	private static final Logger LOGGER = LoggerFactory.getLogger(HttpLoadGeneratorBackend.class);
+	private static final String REPORT_ENTRY = "transactions.csv";
+	private static final String SEPARATOR = ";";
+	private static final String NEWLINE = "\n";
+
+	private static HttpLoadGeneratorBackend instance;
+
+	private HttpLoadEngine engine;
+
+	/**
+	 * 
+	 * @return singleton instance
+	 */
+	public static synchronized HttpLoadGeneratorBackend getInstance() {
+		if (instance == null) {
+			instance = new HttpLoadGeneratorBackend();
+		}
+		return instance;
+	}
+
+	/**
+	 * private constructor due to singleton class.
+	 */
+	private HttpLoadGeneratorBackend() {
+	}
+
+	@Override
+	public synchronized void startExperiment(LGWorkloadConfig lrConfig) throws IOException {
+		if (engine != null && !engine.isFinished()) {
+			LOGGER.debug("HTTP load engine is not yet finished - wait for completion!");
+			return;
+		}
+		HttpScript script = HttpScript.parse(new File(lrConfig.getScenarioPath()));
+		engine = new HttpLoadEngine(script, lrConfig);
+		engine.start();
+	}
+
+	@Override
+	public synchronized boolean isFinished() {
+		return engine == null || engine.isFinished();
+	}
+
+	@Override
+	public LGMeasurementData getMeasurementData(LGMeasurementConfig lrmConfig) throws IOException {
+		LGMeasurementData measurementData = getEngineData();
+		if (lrmConfig.isSteadyStateOnly()) {
+			measurementData = measurementData.trimToSteadyState();
+		}
+		return measurementData;
+	}
+
+	/**
+	 * Writes the recorded transaction times as CSV file
+	 * <code>transactions.csv</code> of a ZIP archive. The stream is closed
+	 * afterwards.
+	 * 
+	 * @param lrmConfig
+	 *            not used by this backend
+	 * @param oStream
+	 *            stream to write to
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	@Override
+	public void pipeReportToOutputStream(LGMeasurementConfig lrmConfig, OutputStream oStream) throws IOException {
+		LGMeasurementData measurementData = getEngineData();
+		try (ZipOutputStream zipStream = new ZipOutputStream(oStream)) {
+			zipStream.putNextEntry(new ZipEntry(REPORT_ENTRY));
+			Writer writer = new OutputStreamWriter(zipStream, Charset.forName("UTF-8"));
+			writer.write("transaction" + SEPARATOR + "start" + SEPARATOR + "stop" + NEWLINE);
+			for (Entry<String, List<TimeSpan>> entry : measurementData.getTransactionTimes().entrySet()) {
+				for (TimeSpan span : entry.getValue()) {
+					writer.write(entry.getKey() + SEPARATOR + span.getStart() + SEPARATOR + span.getStop() + NEWLINE);
+				}
+			}
+			writer.flush();
+			zipStream.closeEntry();
+		}
+	}
+
+	private synchronized LGMeasurementData getEngineData() {
+		return engine == null ? new LGMeasurementData() : engine.getMeasurementData();
+	}
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.loadgenerator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.lpe.common.loadgenerator.config.LGMeasurementConfig;
+import org.lpe.common.loadgenerator.config.LGWorkloadConfig;
+import org.lpe.common.loadgenerator.data.LGMeasurementData;
+
+/**
+ * Backend executing the requests of the load generator service. The default
+ * backend delegates to {@link LoadGeneratorWorkloadController} and
+ * {@link LoadGeneratorMeasurementController}.
+ * 
+ */
+public interface ILoadGeneratorBackend {
+
+	/**
+	 * Starts a load generator experiment.
+	 * 
+	 * @param lrConfig
+	 *            experiment configuration
+	 * @throws IOException
+	 *             thrown if experiment fails
+	 */
+	void startExperiment(LGWorkloadConfig lrConfig) throws IOException;
+
+	/**
+	 * 
+	 * @return true if experiment has been finished
+	 */
+	boolean isFinished();
+
+	/**
+	 * 
+	 * @param lrmConfig
+	 *            configuration of data source where to get the measurement data
+	 *            from
+	 * @return measurement data collected by load generator
+	 * @throws IOException
+	 *             if retrieving data fails
+	 */
+	LGMeasurementData getMeasurementData(LGMeasurementConfig lrmConfig) throws IOException;
+
+	/**
+	 * Writes the report of the last experiment to the given stream.
+	 * 
+	 * @param lrmConfig
+	 *            configuration of data source where to get the report from
+	 * @param oStream
+	 *            stream to write to
+	 * @throws IOException
+	 *             if retrieving or writing the report fails
+	 */
+	void pipeReportToOutputStream(LGMeasurementConfig lrmConfig, OutputStream oStream) throws IOException;
+}
@@ -17,13 +17,22 @@ package org.lpe.common.loadgenerator;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 import javax.ws.rs.core.MediaType;
 
 import org.lpe.common.loadgenerator.config.LGMeasurementConfig;
 import org.lpe.common.loadgenerator.config.LGWorkloadConfig;
 import org.lpe.common.loadgenerator.data.LGMeasurementData;
+import org.lpe.common.loadgenerator.data.TimeSpan;
 import org.lpe.common.util.LpeStreamUtils;
+import org.lpe.common.util.clock.ClockOffset;
+import org.lpe.common.util.clock.ClockOffsetTable;
+import org.lpe.common.util.clock.ClockSample;
+import org.lpe.common.util.clock.ClockSampleSource;
+import org.lpe.common.util.clock.HighResolutionClock;
 import org.lpe.common.util.web.LpeWebUtils;
 
 import com.sun.jersey.api.client.ClientResponse;
@@ -35,12 +44,13 @@ import com.sun.jersey.api.client.WebResource;
  * @author Alexander Wert
  * 
  */
-public class LoadGeneratorClient {
+public class LoadGeneratorClient implements ClockSampleSource {
 
 	private static final String REST = "loadgenerator";
 	private static final String TEST_CONNECTION = "testConnection";
 	private static final String GET_DATA = "getData";
 	private static final String CURRENT_TIME = "currentTime";
+	private static final String CLOCK_SAMPLE = "clockSample";
 	private static final String START = "startLoad";
 	private static final String IS_FINISHED = "isLoadFinished";
 	private static final String GET_REPORT = "getReport";
@@ -80,14 +90,71 @@ public class LoadGeneratorClient {
 
 	}
 
+	/**
+	 * Retrieves the measurement data and converts all timestamps into the
+	 * local time of this machine. Synchronizes the clocks if this has not been
+	 * done before or the estimate is stale, see {@link #synchronizeClock()}.
+	 * The offset is estimated between the {@link HighResolutionClock}s of both
+	 * machines, which follow the wall clocks the load generators use for their
+	 * timestamps within {@link HighResolutionClock#MAX_DEVIATION_NANOS}.
+	 * 
+	 * @param lrmConfig
+	 *            load generator measurement configuration, describing the place
+	 *            where to search for measurement data
+	 * @return collected measurement data in local time
+	 */
+	public LGMeasurementData getAlignedMeasurementData(LGMeasurementConfig lrmConfig) {
+		ClockOffset offset = getClockOffset();
+		if (offset == null) {
+			offset = synchronizeClock();
+		}
+		LGMeasurementData data = getMeasurementData(lrmConfig);
+		for (Map.Entry<String, List<TimeSpan>> entry : data.getTransactionTimes().entrySet()) {
+			List<TimeSpan> aligned = new ArrayList<>(entry.getValue().size());
+			for (TimeSpan span : entry.getValue()) {
+				aligned.add(new TimeSpan(offset.toLocalTimeMillis(span.getStart()), offset.toLocalTimeMillis(span
+						.getStop())));
+			}
+			entry.setValue(aligned);
+		}
+		return data;
+	}
+
 	/**
 	 * 
 	 * @return current local time of the load generator service machine
+	 * @deprecated a single time request ignores the network delay, use
+	 *             {@link #getClockOffset()} instead
 	 */
+	@Deprecated
 	public long getCurrentTime() {
 		return webResource.path(REST).path(CURRENT_TIME).accept(MediaType.APPLICATION_JSON).get(long.class);
 	}
 
+	@Override
+	public ClockSample requestClockSample() {
+		return webResource.path(REST).path(CLOCK_SAMPLE).accept(MediaType.APPLICATION_JSON).get(ClockSample.class);
+	}
+
+	/**
+	 * Estimates the clock offset of the load generator service machine and
+	 * keeps it up to date in the {@link ClockOffsetTable}.
+	 * 
+	 * @return the initial clock offset estimate
+	 */
+	public ClockOffset synchronizeClock() {
+		return ClockOffsetTable.getInstance().register(url, this, ClockOffsetTable.DEFAULT_PERIOD_MILLIS);
+	}
+
+	/**
+	 * 
+	 * @return the current clock offset estimate of the load generator service
+	 *         machine or null, if the clocks have not been synchronized
+	 */
+	public ClockOffset getClockOffset() {
+		return ClockOffsetTable.getInstance().getOffset(url);
+	}
+
 	/**
 	 * starts the workload generation.
 	 * 
@@ -99,6 +166,14 @@ public class LoadGeneratorClient {
 		webResource.path(REST).path(START).type(MediaType.APPLICATION_JSON).post(lrConfig);
 	}
 
+	/**
+	 * 
+	 * @return true if the load has finished
+	 */
+	public boolean isLoadFinished() {
+		return webResource.path(REST).path(IS_FINISHED).accept(MediaType.APPLICATION_JSON).get(boolean.class);
+	}
+
 	/**
 	 * waits until load has finished.
 	 */
@@ -106,7 +181,7 @@ public class LoadGeneratorClient {
 		boolean isFinished = false;
 
 		while (!isFinished) {
-			isFinished = webResource.path(REST).path(IS_FINISHED).accept(MediaType.APPLICATION_JSON).get(boolean.class);
+			isFinished = isLoadFinished();
 			try {
 				Thread.sleep(DEFAULT_POLLING_DELAY);
 			} catch (InterruptedException e) {
@@ -115,6 +190,14 @@ public class LoadGeneratorClient {
 		}
 	}
 
+	/**
+	 * 
+	 * @return the URL of the load generator service
+	 */
+	public String getUrl() {
+		return url;
+	}
+
 	/**
 	 * 
 	 * @return true if connecting to service possible
@@ -0,0 +1,519 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.loadgenerator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.lpe.common.loadgenerator.config.LGMeasurementConfig;
+import org.lpe.common.loadgenerator.config.LGWorkloadConfig;
+import org.lpe.common.loadgenerator.data.LGMeasurementData;
+import org.lpe.common.loadgenerator.data.TimeSpan;
+import org.lpe.common.loadgenerator.scenario.SchedulingMode;
+import org.lpe.common.util.clock.ClockOffset;
+import org.lpe.common.util.clock.HighResolutionClock;
+import org.lpe.common.util.concurrency.ExecutorRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Drives one workload on several load generator nodes. The users and the
+ * ramp-up and cool-down rates of the workload are split across the nodes in
+ * proportion to their capacities. All nodes start at the same instant: the
+ * start time is chosen in local time and converted into the clock of each
+ * node using its clock offset. The nodes are monitored concurrently, and
+ * their measurement data is merged into a single, time-aligned result.
+ * 
+ */
+public class LoadGeneratorCoordinator {
+	/** default time between sending the configurations and the start [ms]. */
+	public static final long DEFAULT_START_DELAY_MILLIS = 5000;
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(LoadGeneratorCoordinator.class);
+	private static final int MAX_PARALLEL_REQUESTS = 16;
+	private static final long POLLING_DELAY_MILLIS = 1000;
+	private static final String REQUEST_EXECUTOR_NAME = "load-coordination";
+	private static final String MERGE_EXECUTOR_NAME = "measurement-merge";
+	private static final int MERGE_THREADS = Runtime.getRuntime().availableProcessors();
+
+	private static final Comparator<TimeSpan> BY_STOP = new Comparator<TimeSpan>() {
+		@Override
+		public int compare(TimeSpan a, TimeSpan b) {
+			return Long.compare(a.getStop(), b.getStop());
+		}
+	};
+
+	private final List<LoadGeneratorClient> nodes;
+	private final double[] capacities;
+	private long startDelayMillis = DEFAULT_START_DELAY_MILLIS;
+	private List<LoadGeneratorClient> activeNodes = Collections.emptyList();
+	private long startTime;
+
+	/**
+	 * Creates a coordinator for nodes of equal capacity.
+	 * 
+	 * @param nodes
+	 *            clients of the load generator nodes
+	 */
+	public LoadGeneratorCoordinator(List<LoadGeneratorClient> nodes) {
+		this(nodes, equalCapacities(nodes.size()));
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param nodes
+	 *            clients of the load generator nodes
+	 * @param capacities
+	 *            relative capacity of each node, e.g. its number of cores
+	 */
+	public LoadGeneratorCoordinator(List<LoadGeneratorClient> nodes, double[] capacities) {
+		if (nodes.isEmpty()) {
+			throw new IllegalArgumentException("At least one node is required.");
+		}
+		if (capacities.length != nodes.size()) {
+			throw new IllegalArgumentException("A capacity is required for each node.");
+		}
+		for (double capacity : capacities) {
+			if (!(capacity >= 0)) {
+				throw new IllegalArgumentException("Capacities must not be negative.");
+			}
+		}
+		this.nodes = new ArrayList<>(nodes);
+		this.capacities = capacities.clone();
+	}
+
+	/**
+	 * @param startDelayMillis
+	 *            time between sending the configurations and the synchronized
+	 *            start in [ms]; must cover the preparation of the scenario on
+	 *            the nodes
+	 */
+	public void setStartDelayMillis(long startDelayMillis) {
+		this.startDelayMillis = startDelayMillis;
+	}
+
+	/**
+	 * Splits the workload across the nodes and starts it on all nodes at the
+	 * same instant. If some nodes cannot be started, the nodes started
+	 * successfully keep running and are the active nodes, i.e. they can still
+	 * be polled and their measurement data retrieved.
+	 * 
+	 * @param config
+	 *            workload for all nodes together
+	 * @return the start time in local time [ms]
+	 * @throws IOException
+	 *             if a node cannot be started
+	 */
+	public long startLoad(LGWorkloadConfig config) throws IOException {
+		final List<LGWorkloadConfig> parts = split(config, capacities);
+		List<LoadGeneratorClient> participants = new ArrayList<>();
+		final Map<LoadGeneratorClient, LGWorkloadConfig> assignments = new LinkedHashMap<>();
+		for (int i = 0; i < nodes.size(); i++) {
+			if (hasLoad(parts.get(i))) {
+				participants.add(nodes.get(i));
+				assignments.put(nodes.get(i), parts.get(i));
+			}
+		}
+
+		final Map<LoadGeneratorClient, ClockOffset> offsets = Collections
+				.synchronizedMap(new LinkedHashMap<LoadGeneratorClient, ClockOffset>());
+		forAll(participants, new NodeTask<Void>() {
+			@Override
+			public Void call(LoadGeneratorClient node) {
+				ClockOffset offset = node.getClockOffset();
+				offsets.put(node, offset == null ? node.synchronizeClock() : offset);
+				return null;
+			}
+		});
+
+		final long localStart = HighResolutionClock.currentTimeMillis() + startDelayMillis;
+		final Set<LoadGeneratorClient> started = Collections
+				.newSetFromMap(new ConcurrentHashMap<LoadGeneratorClient, Boolean>());
+		IOException failure = null;
+		try {
+			forAll(participants, new NodeTask<Void>() {
+				@Override
+				public Void call(LoadGeneratorClient node) {
+					LGWorkloadConfig part = assignments.get(node);
+					part.setStartTime(offsets.get(node).toRemoteTimeMillis(localStart));
+					node.startLoad(part);
+					started.add(node);
+					return null;
+				}
+			});
+		} catch (IOException e) {
+			failure = e;
+		}
+		List<LoadGeneratorClient> startedNodes = new ArrayList<>();
+		for (LoadGeneratorClient node : participants) {
+			if (started.contains(node)) {
+				startedNodes.add(node);
+			}
+		}
+		synchronized (this) {
+			activeNodes = startedNodes;
+			startTime = localStart;
+		}
+		if (failure != null) {
+			LOGGER.warn("Started the load on {} of {} nodes.", startedNodes.size(), participants.size());
+			throw new IOException("Failed to start the load on " + (participants.size() - startedNodes.size())
+					+ " of " + participants.size() + " nodes.", failure);
+		}
+		LOGGER.info("Scheduled {} users on {} nodes.", config.getNumUsers(), participants.size());
+		return localStart;
+	}
+
+	/**
+	 * Polls all nodes of the last started workload concurrently.
+	 * 
+	 * @return true, if the load has finished on all nodes
+	 * @throws IOException
+	 *             if a node cannot be reached
+	 */
+	public boolean isLoadFinished() throws IOException {
+		List<LoadGeneratorClient> active = getActiveNodes();
+		if (HighResolutionClock.currentTimeMillis() < getStartTime()) {
+			return false;
+		}
+		for (boolean finished : forAll(active, new NodeTask<Boolean>() {
+			@Override
+			public Boolean call(LoadGeneratorClient node) {
+				return node.isLoadFinished();
+			}
+		}).values()) {
+			if (!finished) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Waits until the load has finished on all nodes.
+	 * 
+	 * @throws IOException
+	 *             if a node cannot be reached
+	 */
+	public void waitForFinishedLoad() throws IOException {
+		try {
+			while (!isLoadFinished()) {
+				Thread.sleep(POLLING_DELAY_MILLIS);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for the load generators.", e);
+		}
+	}
+
+	/**
+	 * Retrieves the measurement data of all nodes of the last started workload
+	 * concurrently and merges it.
+	 * 
+	 * @param config
+	 *            configuration of the data source on the nodes
+	 * @return measurement data of all nodes in local time, ordered by stop
+	 *         timestamp per transaction
+	 * @throws IOException
+	 *             if the data of a node cannot be retrieved
+	 */
+	public LGMeasurementData getMeasurementData(final LGMeasurementConfig config) throws IOException {
+		Map<LoadGeneratorClient, LGMeasurementData> data = forAll(getActiveNodes(),
+				new NodeTask<LGMeasurementData>() {
+					@Override
+					public LGMeasurementData call(LoadGeneratorClient node) {
+						return node.getAlignedMeasurementData(config);
+					}
+				});
+		return merge(new ArrayList<>(data.values()));
+	}
+
+	/**
+	 * Merges measurement data of several nodes. The time spans of each
+	 * transaction are sorted by stop timestamp per node and combined with a
+	 * k-way merge; the transactions are merged in parallel.
+	 * 
+	 * @param parts
+	 *            measurement data of the nodes in a common time base
+	 * @return merged measurement data, ordered by stop timestamp per
+	 *         transaction
+	 */
+	public static LGMeasurementData merge(List<LGMeasurementData> parts) {
+		Set<String> transactions = new HashSet<>();
+		for (LGMeasurementData part : parts) {
+			transactions.addAll(part.getTransactionNames());
+		}
+		List<String> names = new ArrayList<>(transactions);
+		List<Callable<List<TimeSpan>>> merges = new ArrayList<>(names.size());
+		for (String name : names) {
+			final List<List<TimeSpan>> runs = new ArrayList<>();
+			for (LGMeasurementData part : parts) {
+				List<TimeSpan> spans = part.getTimesForTransaction(name);
+				if (spans != null && !spans.isEmpty()) {
+					runs.add(spans);
+				}
+			}
+			merges.add(new Callable<List<TimeSpan>>() {
+				@Override
+				public List<TimeSpan> call() {
+					return mergeRuns(runs);
+				}
+			});
+		}
+
+		LGMeasurementData result = new LGMeasurementData();
+		int threads = Math.min(MERGE_THREADS, merges.size());
+		if (threads <= 1) {
+			for (int i = 0; i < names.size(); i++) {
+				try {
+					result.getTransactionTimes().put(names.get(i), merges.get(i).call());
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			}
+			return result;
+		}
+		ExecutorService executor = ExecutorRegistry.getInstance().getExecutor(MERGE_EXECUTOR_NAME, MERGE_THREADS,
+				MERGE_THREADS);
+		try {
+			List<Future<List<TimeSpan>>> futures = ExecutorRegistry.invokeAll(executor, merges, threads);
+			for (int i = 0; i < names.size(); i++) {
+				result.getTransactionTimes().put(names.get(i), futures.get(i).get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+		return result;
+	}
+
+	/**
+	 * Splits a workload in proportion to the given capacities. Users are
+	 * assigned by the largest remainder method, so that the parts add up to
+	 * the total. The ramp-up and cool-down rates are split in the same
+	 * proportion, so that every node ramps for about the same time as the
+	 * whole workload. The rates of an arrival schedule are split in
+	 * proportion to the users, if the workload has a fixed number of users,
+	 * so that a part without users gets no arrivals, and in proportion to the
+	 * capacities otherwise. All other settings are copied.
+	 * 
+	 * @param config
+	 *            workload to split
+	 * @param capacities
+	 *            relative capacity of each part
+	 * @return one workload per capacity
+	 */
+	public static List<LGWorkloadConfig> split(LGWorkloadConfig config, double[] capacities) {
+		int[] users = apportion(config.getNumUsers(), capacities);
+		double totalCapacity = 0;
+		for (double capacity : capacities) {
+			totalCapacity += capacity;
+		}
+		List<LGWorkloadConfig> parts = new ArrayList<>(capacities.length);
+		for (int i = 0; i < capacities.length; i++) {
+			LGWorkloadConfig part = config.copy();
+			part.setNumUsers(users[i]);
+			if (config.getArrivalSchedule() != null) {
+				double share = config.getNumUsers() > 0 ? (double) users[i] / config.getNumUsers() : capacities[i]
+						/ totalCapacity;
+				part.setArrivalSchedule(config.getArrivalSchedule().scale(share));
+			}
+			part.setRampUpUsersPerInterval(shareOfRate(config.getRampUpUsersPerInterval(), users[i],
+					config.getNumUsers()));
+			part.setCoolDownUsersPerInterval(shareOfRate(config.getCoolDownUsersPerInterval(), users[i],
+					config.getNumUsers()));
+			parts.add(part);
+		}
+		return parts;
+	}
+
+	/**
+	 * An open workload part generates load if it has arrivals; 0 users means
+	 * an unlimited number of users in that mode, as {@link #split} assigns no
+	 * arrivals to parts without users of a fixed user pool.
+	 */
+	private static boolean hasLoad(LGWorkloadConfig part) {
+		if (part.getSchedulingMode() == SchedulingMode.openWorkload && part.getArrivalSchedule() != null) {
+			return part.getArrivalSchedule().expectedArrivals() > 0;
+		}
+		return part.getNumUsers() > 0;
+	}
+
+	private static int shareOfRate(int rate, int users, int totalUsers) {
+		if (totalUsers == 0) {
+			return rate;
+		}
+		return Math.max(1, (int) Math.round((double) rate * users / totalUsers));
+	}
+
+	private static int[] apportion(int total, double[] weights) {
+		double sum = 0;
+		for (double weight : weights) {
+			sum += weight;
+		}
+		if (sum <= 0) {
+			throw new IllegalArgumentException("At least one capacity must be positive.");
+		}
+		int[] shares = new int[weights.length];
+		final double[] remainders = new double[weights.length];
+		int assigned = 0;
+		for (int i = 0; i < weights.length; i++) {
+			double exact = total * weights[i] / sum;
+			shares[i] = (int) Math.floor(exact);
+			remainders[i] = exact - shares[i];
+			assigned += shares[i];
+		}
+		Integer[] order = new Integer[weights.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Double.compare(remainders[b], remainders[a]);
+			}
+		});
+		for (int i = 0; assigned < total; i++) {
+			shares[order[i % order.length]]++;
+			assigned++;
+		}
+		return shares;
+	}
+
+	private static List<TimeSpan> mergeRuns(List<List<TimeSpan>> runs) {
+		int size = 0;
+		final List<List<TimeSpan>> sorted = new ArrayList<>(runs.size());
+		for (List<TimeSpan> run : runs) {
+			size += run.size();
+			sorted.add(isSortedByStop(run) ? run : sortedByStop(run));
+		}
+		List<TimeSpan> merged = new ArrayList<>(size);
+		if (sorted.size() == 1) {
+			merged.addAll(sorted.get(0));
+			return merged;
+		}
+		// heap entries are run indices; positions holds the next index per run
+		final int[] positions = new int[sorted.size()];
+		PriorityQueue<Integer> heap = new PriorityQueue<>(sorted.size(), new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return BY_STOP.compare(sorted.get(a).get(positions[a]), sorted.get(b).get(positions[b]));
+			}
+		});
+		for (int i = 0; i < sorted.size(); i++) {
+			heap.add(i);
+		}
+		while (!heap.isEmpty()) {
+			int run = heap.poll();
+			merged.add(sorted.get(run).get(positions[run]++));
+			if (positions[run] < sorted.get(run).size()) {
+				heap.add(run);
+			}
+		}
+		return merged;
+	}
+
+	private static boolean isSortedByStop(List<TimeSpan> spans) {
+		for (int i = 1; i < spans.size(); i++) {
+			if (spans.get(i - 1).getStop() > spans.get(i).getStop()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static List<TimeSpan> sortedByStop(List<TimeSpan> spans) {
+		List<TimeSpan> sorted = new ArrayList<>(spans);
+		Collections.sort(sorted, BY_STOP);
+		return sorted;
+	}
+
+	private static double[] equalCapacities(int size) {
+		double[] capacities = new double[size];
+		Arrays.fill(capacities, 1.0);
+		return capacities;
+	}
+
+	private synchronized List<LoadGeneratorClient> getActiveNodes() {
+		if (activeNodes.isEmpty()) {
+			throw new IllegalStateException("No load has been started.");
+		}
+		return activeNodes;
+	}
+
+	private synchronized long getStartTime() {
+		return startTime;
+	}
+
+	private <T> Map<LoadGeneratorClient, T> forAll(List<LoadGeneratorClient> targets, final NodeTask<T> task)
+			throws IOException {
+		Map<LoadGeneratorClient, T> result = new LinkedHashMap<>();
+		if (targets.isEmpty()) {
+			return result;
+		}
+		ExecutorService executor = ExecutorRegistry.getInstance().getExecutor(REQUEST_EXECUTOR_NAME);
+		try {
+			List<Callable<T>> calls = new ArrayList<>(targets.size());
+			for (final LoadGeneratorClient node : targets) {
+				calls.add(new Callable<T>() {
+					@Override
+					public T call() throws Exception {
+						return task.call(node);
+					}
+				});
+			}
+			List<Future<T>> futures = ExecutorRegistry.invokeAll(executor, calls, MAX_PARALLEL_REQUESTS);
+			for (int i = 0; i < targets.size(); i++) {
+				result.put(targets.get(i), futures.get(i).get());
+			}
+			return result;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while contacting load generators.", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Failed to contact load generator.", e.getCause());
+		}
+	}
+
+	/**
+	 * Operation on a single node.
+	 * 
+	 * @param <T>
+	 *            result type
+	 */
+	private interface NodeTask<T> {
+		T call(LoadGeneratorClient node) throws IOException;
+	}
+}
@@ -16,7 +16,6 @@
 package org.lpe.common.loadgenerator;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.HashMap;
@@ -27,7 +26,6 @@ import org.apache.commons.io.IOUtils;
 import org.lpe.common.loadgenerator.config.LGMeasurementConfig;
 import org.lpe.common.loadgenerator.data.LGMeasurementData;
 import org.lpe.common.util.LpeFileUtils;
-import org.lpe.common.util.LpeStreamUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -46,8 +44,6 @@ public final class LoadGeneratorMeasurementController {
 
 	private static final String ACCESS_DB_FILE_EXTENSION = ".mdb";
 
-	private static final String ZIP_FILE_EXTENSION = ".zip";
-
 	private static final String TABLE_EVENT_MAP = "Event_map";
 	private static final String CELL_TRANSACTION = "Transaction";
 	private static final String COLUMN_EVENT_TYPE = "Event Type";
@@ -108,6 +104,10 @@ public final class LoadGeneratorMeasurementController {
 		// Close database connection
 		db.close();
 
+		if (lrmConfig.isSteadyStateOnly()) {
+			measurementData = measurementData.trimToSteadyState();
+		}
+
 		LOGGER.debug("Measurement data from load generator Measurement fetched!");
 
 		return measurementData;
@@ -176,42 +176,32 @@ public final class LoadGeneratorMeasurementController {
 		return transactionNames;
 	}
 
-	private FileInputStream getMeasurementReport(LGMeasurementConfig lrmConfig) throws IOException {
-		LOGGER.debug("Packing result data from load generator Measurement...");
-
-		if (!isAnalysisFinished()) {
-			runLoadGeneratorAnalysis(lrmConfig);
-		}
-
-		String resultDir = lrmConfig.getResultDir() + System.getProperty("file.separator") + DIR_REPORT;
-
-		String zipFile = lrmConfig.getResultDir() + System.getProperty("file.separator") + DIR_REPORT
-				+ ZIP_FILE_EXTENSION;
-
-		LpeFileUtils.zip(resultDir, zipFile);
-
-		LOGGER.debug("Result data from load generator Measurement packed!");
-
-		FileInputStream fis = new FileInputStream(zipFile);
-
-		return fis;
-	}
-
 	/**
 	 * 
 	 * @param lrmConfig
 	 *            configuration of data source where to get the measurement data
 	 *            from
 	 * @param oStream
-	 *            stream where to pipe to
+	 *            stream where to pipe to; the report is streamed as ZIP archive
+	 *            without a temporary file and the stream is closed afterwards
 	 * @throws IOException
-	 * @throws MeasurementException
 	 *             thrown if streaming fails
 	 */
 	public void pipeReportToOutputStream(LGMeasurementConfig lrmConfig, OutputStream oStream) throws IOException {
-		FileInputStream fileInputStream = getMeasurementReport(lrmConfig);
-		LpeStreamUtils.pipe(fileInputStream, oStream);
-		fileInputStream.close();
+		LOGGER.debug("Packing result data from load generator Measurement...");
+
+		if (!isAnalysisFinished()) {
+			runLoadGeneratorAnalysis(lrmConfig);
+		}
+
+		File reportDir = new File(lrmConfig.getResultDir(), DIR_REPORT);
+		try {
+			LpeFileUtils.zipTo(reportDir, oStream, null);
+		} finally {
+			oStream.close();
+		}
+
+		LOGGER.debug("Result data from load generator Measurement packed!");
 	}
 
 	/**
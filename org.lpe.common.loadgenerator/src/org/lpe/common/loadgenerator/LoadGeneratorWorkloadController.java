@@ -72,7 +72,7 @@ public final class LoadGeneratorWorkloadController {
 			scenarioRunner.setNewScenarioPath(newScenarioPath);
 
 			// Execute load generator scenario asynchronously
-			LpeSystemUtils.submitTask(scenarioRunner);
+			LpeSystemUtils.submitTask("scenario", scenarioRunner, false);
 		} else {
 			LOGGER.debug("load generator is not yet finished - wait for completion!");
 		}
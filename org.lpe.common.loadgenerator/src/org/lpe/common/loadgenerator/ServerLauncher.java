@@ -18,6 +18,7 @@ package org.lpe.common.loadgenerator;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.lpe.common.loadgenerator.service.LoadGeneratorService;
 import org.lpe.common.util.web.WebServer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,6 +32,8 @@ import org.slf4j.LoggerFactory;
 public final class ServerLauncher {
 	private static final int DEFAULT_PORT = 8080;
 	private static final String PORT_KEY = "port=";
+	private static final String ENGINE_KEY = "engine=";
+	private static final String HTTP_ENGINE = "http";
 	private static final Logger LOGGER = LoggerFactory.getLogger(ServerLauncher.class);
 
 	private static Integer port = DEFAULT_PORT;
@@ -54,6 +57,7 @@ public final class ServerLauncher {
 		if (args == null || args.length < 1) {
 			LOGGER.error("Load generator Service Launcher requires exactly two arguments:");
 			LOGGER.error("1st argument: start / shutdown");
+			LOGGER.error("optional: port=<port> engine=http (use the built-in HTTP load engine)");
 			System.exit(0);
 		}
 
@@ -84,6 +88,13 @@ public final class ServerLauncher {
 		for (String arg : agentArgs) {
 			if (arg.startsWith(PORT_KEY)) {
 				port = Integer.parseInt(arg.substring(PORT_KEY.length()));
+			} else if (arg.startsWith(ENGINE_KEY)) {
+				String engine = arg.substring(ENGINE_KEY.length());
+				if (HTTP_ENGINE.equalsIgnoreCase(engine)) {
+					LoadGeneratorService.setBackend(HttpLoadGeneratorBackend.getInstance());
+				} else {
+					LOGGER.error("Unknown engine {}, using the default load generator", engine);
+				}
 			}
 		}
 	}
@@ -31,6 +31,7 @@ public class LGMeasurementConfig {
 	private String resultDir = "NA";
 	private String analysisPath = "NA";
 	private String analysisTemplate = "NA";
+	private boolean steadyStateOnly = false;
 	
 	/**
 	 * @return the sessionName
@@ -85,6 +86,23 @@ public class LGMeasurementConfig {
 		this.analysisTemplate = analysisTemplate;
 	}
 	
+	/**
+	 * @return true, if only transactions of the steady-state phase shall be
+	 *         returned
+	 */
+	public boolean isSteadyStateOnly() {
+		return steadyStateOnly;
+	}
+
+	/**
+	 * @param steadyStateOnly
+	 *            true, if warm-up and cool-down shall be removed from the
+	 *            measurement data
+	 */
+	public void setSteadyStateOnly(boolean steadyStateOnly) {
+		this.steadyStateOnly = steadyStateOnly;
+	}
+
 	/**
 	 * @param resultDir
 	 *            the resultDir to set
@@ -20,6 +20,7 @@ import javax.xml.bind.annotation.XmlRootElement;
 import org.lpe.common.loadgenerator.scenario.SchedulingMode;
 import org.lpe.common.loadgenerator.scenario.VUserInitializationMode;
 import org.lpe.common.util.LpeStringUtils;
+import org.lpe.common.util.workload.ArrivalSchedule;
 
 /**
  * Configuration of the workload service of this load generator adapter.
@@ -46,6 +47,10 @@ public class LGWorkloadConfig {
 
 	private int experimentDuration = DEFAULT_EXPERIMENT_DURATION;
 
+	private long startTime;
+
+	private ArrivalSchedule arrivalSchedule;
+
 	/**
 	 * @return the numUsers
 	 */
@@ -217,6 +222,62 @@ public class LGWorkloadConfig {
 		this.coolDownIntervalLength = coolDownIntervalLength;
 	}
 
+	/**
+	 * @return the local time of the load generator node in [ms] at which the
+	 *         experiment shall start, 0 for an immediate start
+	 */
+	public long getStartTime() {
+		return startTime;
+	}
+
+	/**
+	 * @param startTime
+	 *            the local time of the load generator node in [ms] at which
+	 *            the experiment shall start, 0 for an immediate start
+	 */
+	public void setStartTime(long startTime) {
+		this.startTime = startTime;
+	}
+
+	/**
+	 * @return the arrival schedule of the {@link SchedulingMode#openWorkload}
+	 *         mode, null for closed workloads
+	 */
+	public ArrivalSchedule getArrivalSchedule() {
+		return arrivalSchedule;
+	}
+
+	/**
+	 * @param arrivalSchedule
+	 *            the arrival schedule of the
+	 *            {@link SchedulingMode#openWorkload} mode
+	 */
+	public void setArrivalSchedule(ArrivalSchedule arrivalSchedule) {
+		this.arrivalSchedule = arrivalSchedule;
+	}
+
+	/**
+	 * 
+	 * @return a copy of this configuration
+	 */
+	public LGWorkloadConfig copy() {
+		LGWorkloadConfig copy = new LGWorkloadConfig();
+		copy.numUsers = numUsers;
+		copy.loadGeneratorPath = loadGeneratorPath;
+		copy.scenarioPath = scenarioPath;
+		copy.resultPath = resultPath;
+		copy.schedulingMode = schedulingMode;
+		copy.vUserInitMode = vUserInitMode;
+		copy.rampUpUsersPerInterval = rampUpUsersPerInterval;
+		copy.rampUpIntervalLength = rampUpIntervalLength;
+		copy.coolDownUsersPerInterval = coolDownUsersPerInterval;
+		copy.coolDownIntervalLength = coolDownIntervalLength;
+		copy.experimentDuration = experimentDuration;
+		copy.startTime = startTime;
+		copy.arrivalSchedule = arrivalSchedule == null ? null : arrivalSchedule.copy();
+		return copy;
+	}
+
 	/**
 	 * corrects all paths to OS specific representation.
 	 */
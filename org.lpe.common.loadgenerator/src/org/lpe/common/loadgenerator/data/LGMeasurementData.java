@@ -78,6 +78,59 @@ public class LGMeasurementData {
 		}
 	}
 
+	/**
+	 * Aggregates the time spans of all transactions into time buckets.
+	 * 
+	 * @param bucketMillis
+	 *            width of the time buckets in [ms]
+	 * @return an aggregator, which can be used to query summaries,
+	 *         throughput and percentiles without scanning the time spans again
+	 */
+	@JsonIgnore
+	public TimeBucketAggregator aggregate(long bucketMillis) {
+		TimeBucketAggregator aggregator = new TimeBucketAggregator(bucketMillis);
+		aggregator.addAll(this);
+		return aggregator;
+	}
+
+	/**
+	 * Returns the transaction executions that lie completely within the given
+	 * window.
+	 * 
+	 * @param window
+	 *            time window in [ms]
+	 * @return a new measurement data object
+	 */
+	@JsonIgnore
+	public LGMeasurementData filter(TimeSpan window) {
+		LGMeasurementData filtered = new LGMeasurementData();
+		for (Map.Entry<String, List<TimeSpan>> entry : getTransactionTimes().entrySet()) {
+			List<TimeSpan> spans = new ArrayList<>();
+			for (TimeSpan span : entry.getValue()) {
+				if (span.getStart() >= window.getStart() && span.getStop() <= window.getStop()) {
+					spans.add(span);
+				}
+			}
+			filtered.getTransactionTimes().put(entry.getKey(), spans);
+		}
+		return filtered;
+	}
+
+	/**
+	 * Removes warm-up and cool-down. The steady-state window is detected over
+	 * all transactions with one second buckets.
+	 * 
+	 * @return a new measurement data object with the transaction executions of
+	 *         the steady-state window, or this object if there are no
+	 *         executions
+	 * @see TimeBucketAggregator#getSteadyStateWindow(String)
+	 */
+	@JsonIgnore
+	public LGMeasurementData trimToSteadyState() {
+		TimeSpan window = aggregate(TimeBucketAggregator.DEFAULT_BUCKET_MILLIS).getSteadyStateWindow(null);
+		return window == null ? this : filter(window);
+	}
+
 	/**
 	 * 
 	 * @return a set of transaction names
@@ -0,0 +1,393 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.loadgenerator.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.lpe.common.util.NumericPairList;
+import org.lpe.common.util.concurrency.ExecutorRegistry;
+import org.lpe.common.util.stats.SteadyStateDetector;
+
+/**
+ * Aggregates transaction executions into per-transaction summaries per time
+ * bucket. Executions are assigned to the bucket containing their stop
+ * timestamp. Executions can be added incrementally while the measurement is
+ * running; {@link #addAll(LGMeasurementData)} aggregates a complete data set
+ * in one parallel pass.
+ * 
+ * Coarser resolutions, e.g. 10 s or 1 min buckets for 1 s base buckets, are
+ * rolled up from the bucket summaries, so queries never scan the raw time
+ * spans. Thread-safe.
+ * 
+ */
+public class TimeBucketAggregator {
+	/** default bucket width in [ms]. */
+	public static final long DEFAULT_BUCKET_MILLIS = 1000;
+
+	private static final int CHUNK_SIZE = 1 << 16;
+	private static final double MILLIS_PER_SECOND = 1000.0;
+	private static final String EXECUTOR_NAME = "time-bucket-aggregation";
+	private static final int THREADS = Runtime.getRuntime().availableProcessors();
+
+	private final long bucketMillis;
+	private final ConcurrentMap<String, TransactionBuckets> transactions = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructor using buckets of {@link #DEFAULT_BUCKET_MILLIS}.
+	 */
+	public TimeBucketAggregator() {
+		this(DEFAULT_BUCKET_MILLIS);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param bucketMillis
+	 *            width of the base buckets in [ms]
+	 */
+	public TimeBucketAggregator(long bucketMillis) {
+		if (bucketMillis < 1) {
+			throw new IllegalArgumentException("Bucket width must be positive.");
+		}
+		this.bucketMillis = bucketMillis;
+	}
+
+	/**
+	 * Adds a transaction execution.
+	 * 
+	 * @param transaction
+	 *            transaction name
+	 * @param startTimestamp
+	 *            timestamp of the transaction begin in [ms]
+	 * @param stopTimestamp
+	 *            timestamp of the transaction end in [ms]
+	 * @param error
+	 *            true, if the transaction failed
+	 */
+	public void add(String transaction, long startTimestamp, long stopTimestamp, boolean error) {
+		getBuckets(transaction).add(bucketStart(stopTimestamp, bucketMillis), stopTimestamp - startTimestamp, error);
+	}
+
+	/**
+	 * Adds a successful transaction execution.
+	 * 
+	 * @param transaction
+	 *            transaction name
+	 * @param span
+	 *            time span of the execution
+	 */
+	public void add(String transaction, TimeSpan span) {
+		add(transaction, span.getStart(), span.getStop(), false);
+	}
+
+	/**
+	 * Adds all transaction executions of the given measurement data. The time
+	 * spans are split into chunks that are aggregated in parallel and merged
+	 * afterwards. The time spans must not be modified concurrently.
+	 * 
+	 * @param data
+	 *            measurement data
+	 */
+	public void addAll(LGMeasurementData data) {
+		List<Callable<Void>> chunks = new ArrayList<>();
+		for (Entry<String, List<TimeSpan>> entry : data.getTransactionTimes().entrySet()) {
+			final TransactionBuckets target = getBuckets(entry.getKey());
+			List<TimeSpan> spans = entry.getValue();
+			for (int from = 0; from < spans.size(); from += CHUNK_SIZE) {
+				final List<TimeSpan> chunk = spans.subList(from, Math.min(spans.size(), from + CHUNK_SIZE));
+				chunks.add(new Callable<Void>() {
+					@Override
+					public Void call() {
+						TransactionBuckets local = new TransactionBuckets();
+						for (TimeSpan span : chunk) {
+							local.add(bucketStart(span.getStop(), bucketMillis), span.getStop() - span.getStart(),
+									false);
+						}
+						target.merge(local);
+						return null;
+					}
+				});
+			}
+		}
+
+		int threads = Math.min(THREADS, chunks.size());
+		if (threads <= 1) {
+			for (Callable<Void> chunk : chunks) {
+				try {
+					chunk.call();
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			}
+			return;
+		}
+		ExecutorService executor = ExecutorRegistry.getInstance().getExecutor(EXECUTOR_NAME, THREADS, THREADS);
+		try {
+			for (Future<Void> future : ExecutorRegistry.invokeAll(executor, chunks, threads)) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	/**
+	 * @return the width of the base buckets in [ms]
+	 */
+	public long getBucketMillis() {
+		return bucketMillis;
+	}
+
+	/**
+	 * @return the names of all transactions with executions
+	 */
+	public Set<String> getTransactionNames() {
+		return Collections.unmodifiableSet(new TreeSet<>(transactions.keySet()));
+	}
+
+	/**
+	 * Returns the summaries of a transaction per time bucket of the given
+	 * resolution.
+	 * 
+	 * @param transaction
+	 *            transaction name, null for all transactions
+	 * @param resolutionMillis
+	 *            bucket width in [ms], a multiple of the base bucket width
+	 * @return summaries by bucket start timestamp; empty buckets are omitted
+	 */
+	public SortedMap<Long, TransactionSummary> getSummaries(String transaction, long resolutionMillis) {
+		if (resolutionMillis < bucketMillis || resolutionMillis % bucketMillis != 0) {
+			throw new IllegalArgumentException("Resolution must be a multiple of " + bucketMillis + " ms.");
+		}
+		SortedMap<Long, TransactionSummary> result = new TreeMap<>();
+		for (TransactionBuckets buckets : select(transaction)) {
+			buckets.rollUpInto(result, resolutionMillis, Long.MIN_VALUE, Long.MAX_VALUE);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the summary of all executions of a transaction.
+	 * 
+	 * @param transaction
+	 *            transaction name, null for all transactions
+	 * @return summary, which is empty if there are no executions
+	 */
+	public TransactionSummary getSummary(String transaction) {
+		return summarize(transaction, Long.MIN_VALUE, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Returns the summary of the executions of a transaction within the
+	 * buckets covering the given interval.
+	 * 
+	 * @param transaction
+	 *            transaction name, null for all transactions
+	 * @param from
+	 *            start timestamp in [ms]
+	 * @param to
+	 *            end timestamp in [ms], exclusive
+	 * @return summary, which is empty if there are no executions
+	 */
+	public TransactionSummary getSummary(String transaction, long from, long to) {
+		return summarize(transaction, bucketStart(from, bucketMillis), to);
+	}
+
+	/**
+	 * Returns the throughput of a transaction per time bucket. Buckets without
+	 * executions between the first and the last execution are reported with a
+	 * throughput of 0.
+	 * 
+	 * @param transaction
+	 *            transaction name, null for all transactions
+	 * @param resolutionMillis
+	 *            bucket width in [ms], a multiple of the base bucket width
+	 * @return pairs of bucket start timestamp and executions per second
+	 */
+	public NumericPairList<Long, Double> getThroughput(String transaction, long resolutionMillis) {
+		SortedMap<Long, TransactionSummary> summaries = getSummaries(transaction, resolutionMillis);
+		NumericPairList<Long, Double> result = new NumericPairList<>();
+		if (summaries.isEmpty()) {
+			return result;
+		}
+		double seconds = resolutionMillis / MILLIS_PER_SECOND;
+		for (long bucket = summaries.firstKey(); bucket <= summaries.lastKey(); bucket += resolutionMillis) {
+			TransactionSummary summary = summaries.get(bucket);
+			result.add(bucket, summary == null ? 0.0 : summary.getCount() / seconds);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a response time percentile of a transaction per time bucket.
+	 * 
+	 * @param transaction
+	 *            transaction name, null for all transactions
+	 * @param resolutionMillis
+	 *            bucket width in [ms], a multiple of the base bucket width
+	 * @param percentile
+	 *            percentile in the range (0, 100]
+	 * @return pairs of bucket start timestamp and response time in [ms]; empty
+	 *         buckets are omitted
+	 */
+	public NumericPairList<Long, Double> getPercentiles(String transaction, long resolutionMillis, double percentile) {
+		NumericPairList<Long, Double> result = new NumericPairList<>();
+		for (Entry<Long, TransactionSummary> entry : getSummaries(transaction, resolutionMillis).entrySet()) {
+			result.add(entry.getKey(), (double) entry.getValue().getPercentile(percentile));
+		}
+		return result;
+	}
+
+	/**
+	 * Detects the steady-state phase of the measurement, i.e. the window
+	 * without warm-up and cool-down. The MSER-5 rule is applied to the mean
+	 * number of concurrent executions per base bucket, which is the
+	 * throughput times the mean response time (Little's law). Thus, both
+	 * changes of the load and of the response times end the steady state.
+	 * Only bucket summaries are evaluated.
+	 * 
+	 * @param transaction
+	 *            transaction name, null for all transactions
+	 * @return the steady-state window in [ms] or null if there are no
+	 *         executions
+	 */
+	public TimeSpan getSteadyStateWindow(String transaction) {
+		SortedMap<Long, TransactionSummary> summaries = getSummaries(transaction, bucketMillis);
+		if (summaries.isEmpty()) {
+			return null;
+		}
+		long first = summaries.firstKey();
+		int numBuckets = (int) ((summaries.lastKey() - first) / bucketMillis) + 1;
+		double[] concurrency = new double[numBuckets];
+		for (Entry<Long, TransactionSummary> entry : summaries.entrySet()) {
+			TransactionSummary summary = entry.getValue();
+			int bucket = (int) ((entry.getKey() - first) / bucketMillis);
+			concurrency[bucket] = summary.getCount() * summary.getMean() / bucketMillis;
+		}
+
+		SteadyStateDetector.Window window = SteadyStateDetector.detectWindow(concurrency,
+				SteadyStateDetector.DEFAULT_BATCH_SIZE);
+		int from = window.getFrom();
+		int to = window.getTo();
+		if (to <= from) {
+			from = 0;
+			to = numBuckets;
+		}
+		return new TimeSpan(first + from * bucketMillis, first + to * bucketMillis);
+	}
+
+	/**
+	 * Removes all executions.
+	 */
+	public void clear() {
+		transactions.clear();
+	}
+
+	private TransactionSummary summarize(String transaction, long fromBucket, long to) {
+		TransactionSummary summary = new TransactionSummary();
+		for (TransactionBuckets buckets : select(transaction)) {
+			buckets.mergeInto(summary, fromBucket, to);
+		}
+		return summary;
+	}
+
+	private TransactionBuckets getBuckets(String transaction) {
+		TransactionBuckets buckets = transactions.get(transaction);
+		if (buckets == null) {
+			TransactionBuckets created = new TransactionBuckets();
+			buckets = transactions.putIfAbsent(transaction, created);
+			if (buckets == null) {
+				buckets = created;
+			}
+		}
+		return buckets;
+	}
+
+	private List<TransactionBuckets> select(String transaction) {
+		if (transaction == null) {
+			return new ArrayList<>(transactions.values());
+		}
+		TransactionBuckets buckets = transactions.get(transaction);
+		return buckets == null ? Collections.<TransactionBuckets> emptyList() : Collections.singletonList(buckets);
+	}
+
+	private static long bucketStart(long timestamp, long width) {
+		long remainder = timestamp % width;
+		return remainder < 0 ? timestamp - remainder - width : timestamp - remainder;
+	}
+
+	/**
+	 * Summaries of one transaction by base bucket start timestamp.
+	 */
+	private static final class TransactionBuckets {
+		private final TreeMap<Long, TransactionSummary> buckets = new TreeMap<>();
+
+		synchronized void add(long bucket, long responseTime, boolean error) {
+			TransactionSummary summary = buckets.get(bucket);
+			if (summary == null) {
+				summary = new TransactionSummary();
+				buckets.put(bucket, summary);
+			}
+			summary.add(responseTime, error);
+		}
+
+		synchronized void merge(TransactionBuckets other) {
+			for (Entry<Long, TransactionSummary> entry : other.buckets.entrySet()) {
+				TransactionSummary summary = buckets.get(entry.getKey());
+				if (summary == null) {
+					buckets.put(entry.getKey(), entry.getValue());
+				} else {
+					summary.merge(entry.getValue());
+				}
+			}
+		}
+
+		synchronized void rollUpInto(Map<Long, TransactionSummary> result, long resolution, long from, long to) {
+			for (Entry<Long, TransactionSummary> entry : buckets.subMap(from, to).entrySet()) {
+				long bucket = bucketStart(entry.getKey(), resolution);
+				TransactionSummary summary = result.get(bucket);
+				if (summary == null) {
+					result.put(bucket, entry.getValue().copy());
+				} else {
+					summary.merge(entry.getValue());
+				}
+			}
+		}
+
+		synchronized void mergeInto(TransactionSummary result, long from, long to) {
+			for (TransactionSummary summary : buckets.subMap(from, to).values()) {
+				result.merge(summary);
+			}
+		}
+	}
+}
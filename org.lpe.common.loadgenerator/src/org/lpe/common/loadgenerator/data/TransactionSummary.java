@@ -0,0 +1,153 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.loadgenerator.data;
+
+import java.util.concurrent.TimeUnit;
+
+import org.lpe.common.util.web.metrics.LatencyHistogram;
+
+/**
+ * Mergeable summary of the response times of a transaction within a time
+ * bucket: count, errors, minimum, maximum, mean and a
+ * {@link LatencyHistogram} for percentiles. Instances are not
+ * thread-safe.
+ * 
+ */
+public class TransactionSummary {
+	private long count;
+	private long errorCount;
+	private long min = Long.MAX_VALUE;
+	private long max = Long.MIN_VALUE;
+	private long sum;
+	private final LatencyHistogram histogram;
+
+	/**
+	 * Constructor for an empty summary.
+	 */
+	public TransactionSummary() {
+		histogram = new LatencyHistogram();
+	}
+
+	private TransactionSummary(TransactionSummary other) {
+		count = other.count;
+		errorCount = other.errorCount;
+		min = other.min;
+		max = other.max;
+		sum = other.sum;
+		histogram = other.histogram.copy();
+	}
+
+	/**
+	 * Adds a transaction execution.
+	 * 
+	 * @param responseTime
+	 *            response time in [ms]
+	 * @param error
+	 *            true, if the transaction failed
+	 */
+	public void add(long responseTime, boolean error) {
+		count++;
+		if (error) {
+			errorCount++;
+		}
+		min = Math.min(min, responseTime);
+		max = Math.max(max, responseTime);
+		sum += responseTime;
+		histogram.record(TimeUnit.MILLISECONDS.toNanos(responseTime));
+	}
+
+	/**
+	 * Adds all executions of the given summary to this summary.
+	 * 
+	 * @param other
+	 *            summary to merge
+	 */
+	public void merge(TransactionSummary other) {
+		count += other.count;
+		errorCount += other.errorCount;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+		sum += other.sum;
+		histogram.merge(other.histogram);
+	}
+
+	/**
+	 * 
+	 * @return a copy of this summary
+	 */
+	public TransactionSummary copy() {
+		return new TransactionSummary(this);
+	}
+
+	/**
+	 * @return the number of executions
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the number of failed executions
+	 */
+	public long getErrorCount() {
+		return errorCount;
+	}
+
+	/**
+	 * @return the minimal response time in [ms], 0 if empty
+	 */
+	public long getMin() {
+		return count == 0 ? 0 : min;
+	}
+
+	/**
+	 * @return the maximal response time in [ms], 0 if empty
+	 */
+	public long getMax() {
+		return count == 0 ? 0 : max;
+	}
+
+	/**
+	 * @return the mean response time in [ms], 0 if empty
+	 */
+	public double getMean() {
+		return count == 0 ? 0.0 : (double) sum / count;
+	}
+
+	/**
+	 * Returns an estimate of the response time at the given percentile. The
+	 * estimate is within the relative error of the
+	 * {@link LatencyHistogram} and never outside of the minimum and
+	 * maximum.
+	 * 
+	 * @param percentile
+	 *            percentile in the range (0, 100]
+	 * @return response time in [ms], 0 if empty
+	 */
+	public long getPercentile(double percentile) {
+		if (count == 0) {
+			return 0;
+		}
+		long estimate = TimeUnit.MICROSECONDS.toMillis(histogram.getValueAtPercentile(percentile));
+		return Math.max(min, Math.min(max, estimate));
+	}
+
+	@Override
+	public String toString() {
+		return "[count=" + count + ", errors=" + errorCount + ", min=" + getMin() + ", mean="
+				+ String.format("%.1f", getMean()) + ", max=" + getMax() + "]";
+	}
+}
@@ -0,0 +1,518 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.loadgenerator.engine;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.lpe.common.loadgenerator.config.LGWorkloadConfig;
+import org.lpe.common.loadgenerator.data.LGMeasurementData;
+import org.lpe.common.loadgenerator.data.TimeSpan;
+import org.lpe.common.loadgenerator.scenario.SchedulingMode;
+import org.lpe.common.util.clock.HighResolutionClock;
+import org.lpe.common.util.concurrency.ExecutorRegistry;
+import org.lpe.common.util.web.metrics.LatencyHistogram;
+import org.lpe.common.util.workload.ArrivalListener;
+import org.lpe.common.util.workload.ArrivalSchedule;
+import org.lpe.common.util.workload.ArrivalScheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Built-in load generator executing an {@link HttpScript} with the virtual
+ * users, ramp-up, duration and cool-down of a {@link LGWorkloadConfig}. All
+ * connections are multiplexed on one non-blocking client and virtual users do
+ * not own threads, so that a single machine can simulate tens of thousands of
+ * users.
+ * <p>
+ * With {@link SchedulingMode#runUntilCompletion} each user executes the script
+ * once; with {@link SchedulingMode#dynamicScheduling} the users repeat the
+ * script until they are stopped by the cool-down after the experiment
+ * duration. With {@link SchedulingMode#openWorkload} the script is executed
+ * once per arrival of the {@link ArrivalSchedule}, independent of the
+ * response times; the number of users limits the concurrent executions and
+ * further arrivals wait for a free user. The response times are recorded per transaction; failed requests
+ * and responses with an error status are recorded under the transaction name
+ * followed by {@link #ERROR_SUFFIX}.
+ * <p>
+ * A closed workload under-reports slow responses because a stalled user does
+ * not issue the requests it would have issued in the meantime (coordinated
+ * omission). If enabled, the engine adds a sample for each request the user
+ * missed, in the same way as HdrHistogram's expected interval correction. The
+ * expected interval is the observed cycle of the transaction, i.e. the median
+ * response time of its successful requests plus the mean think time. The
+ * added samples are recorded under the transaction name followed by
+ * {@link #CORRECTED_SUFFIX}, thus the measured samples stay untouched; failed
+ * requests are never corrected. Open workloads need no correction, as the
+ * first request of an arrival is measured from its intended start time.
+ * 
+ */
+public final class HttpLoadEngine {
+	/**
+	 * Suffix of the transaction names under which failed requests are
+	 * recorded.
+	 */
+	public static final String ERROR_SUFFIX = ".failed";
+	/**
+	 * Suffix of the transaction names under which the samples added by the
+	 * coordinated omission correction are recorded.
+	 */
+	public static final String CORRECTED_SUFFIX = ".corrected";
+	/**
+	 * Default time after which an unanswered request fails.
+	 */
+	public static final long DEFAULT_REQUEST_TIMEOUT_MILLIS = 60000;
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(HttpLoadEngine.class);
+	private static final String SCHEDULER_NAME = "http-engine";
+	private static final long MILLIS_PER_SECOND = 1000;
+	private static final double MEDIAN = 50.0;
+
+	private final HttpScript script;
+	private final LGWorkloadConfig config;
+	private final boolean repeat;
+	private final boolean open;
+	private final ScheduledExecutorService scheduler;
+	private final LGMeasurementData data = new LGMeasurementData();
+	private final Set<VirtualUser> runningUsers = new LinkedHashSet<>();
+	private final List<ScheduledFuture<?>> plan = new ArrayList<>();
+	private final CountDownLatch finished = new CountDownLatch(1);
+	private final AtomicLong failedRequests = new AtomicLong();
+	private final AtomicBoolean finishing = new AtomicBoolean();
+	private final Deque<Long> backlog = new ArrayDeque<>();
+	private long requestTimeoutMillis = DEFAULT_REQUEST_TIMEOUT_MILLIS;
+	private final Map<String, LatencyHistogram> responseTimes = new HashMap<>();
+	private boolean correctCoordinatedOmission = false;
+	private volatile NioHttpClient client;
+	private boolean started;
+	private int plannedUsers;
+	private int startedUsers;
+	private long nextSeed;
+	private ArrivalScheduler arrivals;
+	private boolean arrivalsDone;
+	private int maxUsers;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param script
+	 *            script executed by each virtual user
+	 * @param config
+	 *            number of users, ramp-up, duration, cool-down and start time
+	 *            of the experiment
+	 */
+	public HttpLoadEngine(HttpScript script, LGWorkloadConfig config) {
+		this.script = script;
+		this.config = config;
+		this.repeat = config.getSchedulingMode() == SchedulingMode.dynamicScheduling;
+		this.open = config.getSchedulingMode() == SchedulingMode.openWorkload;
+		this.scheduler = ExecutorRegistry.getInstance().getScheduledExecutor(SCHEDULER_NAME,
+				Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param requestTimeoutMillis
+	 *            time after which an unanswered request fails
+	 */
+	public synchronized void setRequestTimeoutMillis(long requestTimeoutMillis) {
+		this.requestTimeoutMillis = requestTimeoutMillis;
+	}
+
+	/**
+	 * @param correctCoordinatedOmission
+	 *            true to record samples for the requests missed by stalled
+	 *            users, false (default) to record only the measured response
+	 *            times
+	 */
+	public void setCorrectCoordinatedOmission(boolean correctCoordinatedOmission) {
+		synchronized (data) {
+			this.correctCoordinatedOmission = correctCoordinatedOmission;
+		}
+	}
+
+	/**
+	 * Schedules the experiment. The first users start at the start time of
+	 * the configuration or immediately if it has passed.
+	 * 
+	 * @throws IOException
+	 *             if the HTTP client cannot be started
+	 */
+	public synchronized void start() throws IOException {
+		if (started) {
+			throw new IllegalStateException("The engine has already been started!");
+		}
+		if (open && config.getArrivalSchedule() == null) {
+			throw new IllegalArgumentException("Open workload requires an arrival schedule!");
+		}
+		started = true;
+		client = new NioHttpClient(requestTimeoutMillis);
+		if (open) {
+			startArrivals();
+			return;
+		}
+		plannedUsers = Math.max(0, config.getNumUsers());
+		if (plannedUsers == 0) {
+			finish();
+			return;
+		}
+
+		long delay = Math.max(0, config.getStartTime() - HighResolutionClock.currentTimeMillis());
+		int rampUpBatch = usersPerInterval(config.getRampUpUsersPerInterval(), config.getRampUpIntervalLength());
+		long rampUpInterval = config.getRampUpIntervalLength() * MILLIS_PER_SECOND;
+		int rampUpBatches = (plannedUsers + rampUpBatch - 1) / rampUpBatch;
+		for (int i = 0; i < rampUpBatches; i++) {
+			final int count = Math.min(rampUpBatch, plannedUsers - i * rampUpBatch);
+			plan.add(scheduler.schedule(new Runnable() {
+				@Override
+				public void run() {
+					startUsers(count);
+				}
+			}, delay + i * rampUpInterval, TimeUnit.MILLISECONDS));
+		}
+		if (!repeat) {
+			return;
+		}
+
+		long coolDownStart = delay + (rampUpBatches - 1) * rampUpInterval + config.getExperimentDuration()
+				* MILLIS_PER_SECOND;
+		int coolDownBatch = usersPerInterval(config.getCoolDownUsersPerInterval(), config.getCoolDownIntervalLength());
+		long coolDownInterval = config.getCoolDownIntervalLength() * MILLIS_PER_SECOND;
+		int coolDownBatches = (plannedUsers + coolDownBatch - 1) / coolDownBatch;
+		for (int i = 0; i < coolDownBatches; i++) {
+			final int count = i == coolDownBatches - 1 ? Integer.MAX_VALUE : coolDownBatch;
+			plan.add(scheduler.schedule(new Runnable() {
+				@Override
+				public void run() {
+					stopUsers(count);
+				}
+			}, coolDownStart + i * coolDownInterval, TimeUnit.MILLISECONDS));
+		}
+	}
+
+	private void startArrivals() {
+		maxUsers = config.getNumUsers() > 0 ? config.getNumUsers() : Integer.MAX_VALUE;
+		arrivals = new ArrivalScheduler(config.getArrivalSchedule(), nextSeed++);
+		arrivals.start(config.getStartTime(), new ArrivalListener() {
+			@Override
+			public void arrival(long intendedTimeNanos) {
+				arrived(intendedTimeNanos);
+			}
+
+			@Override
+			public void arrivalsCompleted() {
+				completeArrivals();
+			}
+		});
+	}
+
+	private int usersPerInterval(int usersPerInterval, int intervalLength) {
+		return usersPerInterval > 0 && intervalLength > 0 ? usersPerInterval : plannedUsers;
+	}
+
+	/**
+	 * Stops the experiment: no further users are started and the running
+	 * users finish after their current request.
+	 */
+	public void stop() {
+		boolean done;
+		synchronized (this) {
+			cancelPlan();
+			if (arrivals != null) {
+				arrivals.stop();
+			}
+			arrivalsDone = true;
+			backlog.clear();
+			plannedUsers = startedUsers;
+			stopUsers(Integer.MAX_VALUE);
+			done = started && runningUsers.isEmpty();
+		}
+		if (done) {
+			finish();
+		}
+	}
+
+	/**
+	 * @return true if all users have finished
+	 */
+	public boolean isFinished() {
+		return finished.getCount() == 0;
+	}
+
+	/**
+	 * Waits until all users have finished.
+	 * 
+	 * @param timeout
+	 *            maximum time to wait
+	 * @param unit
+	 *            unit of the timeout
+	 * @return true if the experiment has finished, false if the timeout
+	 *         elapsed
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	public boolean awaitFinished(long timeout, TimeUnit unit) throws InterruptedException {
+		return finished.await(timeout, unit);
+	}
+
+	/**
+	 * @return number of users currently executing the script
+	 */
+	public synchronized int getActiveUsers() {
+		return runningUsers.size();
+	}
+
+	/**
+	 * @return number of arrivals of an open workload waiting for a free user
+	 */
+	public synchronized int getQueuedArrivals() {
+		return backlog.size();
+	}
+
+	/**
+	 * @return number of requests which failed without a response
+	 */
+	public long getFailedRequests() {
+		return failedRequests.get();
+	}
+
+	/**
+	 * @return a copy of the response times recorded so far
+	 */
+	public LGMeasurementData getMeasurementData() {
+		LGMeasurementData copy = new LGMeasurementData();
+		synchronized (data) {
+			for (Entry<String, List<TimeSpan>> entry : data.getTransactionTimes().entrySet()) {
+				copy.getTransactionTimes().put(entry.getKey(), new ArrayList<>(entry.getValue()));
+			}
+		}
+		return copy;
+	}
+
+	private void startUsers(int count) {
+		List<VirtualUser> users = new ArrayList<>(count);
+		synchronized (this) {
+			for (int i = 0; i < count && startedUsers < plannedUsers; i++) {
+				VirtualUser user = new VirtualUser(this, script, repeat, nextSeed++);
+				runningUsers.add(user);
+				startedUsers++;
+				users.add(user);
+			}
+		}
+		LOGGER.debug("Starting {} virtual users", users.size());
+		for (VirtualUser user : users) {
+			user.run();
+		}
+	}
+
+	private void arrived(long intendedTimeNanos) {
+		VirtualUser user = null;
+		synchronized (this) {
+			if (arrivalsDone) {
+				return;
+			}
+			if (runningUsers.size() < maxUsers) {
+				user = newSession(intendedTimeNanos);
+			} else {
+				backlog.add(intendedTimeNanos);
+			}
+		}
+		if (user != null) {
+			user.run();
+		}
+	}
+
+	private void completeArrivals() {
+		boolean done;
+		synchronized (this) {
+			arrivalsDone = true;
+			done = runningUsers.isEmpty() && backlog.isEmpty();
+		}
+		if (done) {
+			finish();
+		}
+	}
+
+	private VirtualUser newSession(long intendedTimeNanos) {
+		VirtualUser user = new VirtualUser(this, script, false, nextSeed++);
+		user.setIntendedStart(intendedTimeNanos);
+		runningUsers.add(user);
+		startedUsers++;
+		return user;
+	}
+
+	private synchronized void stopUsers(int count) {
+		int stopped = 0;
+		Iterator<VirtualUser> iterator = runningUsers.iterator();
+		while (stopped < count && iterator.hasNext()) {
+			VirtualUser user = iterator.next();
+			if (!user.isStopRequested()) {
+				user.stop();
+				stopped++;
+			}
+		}
+		LOGGER.debug("Stopping {} virtual users", stopped);
+	}
+
+	private synchronized void cancelPlan() {
+		for (ScheduledFuture<?> future : plan) {
+			future.cancel(false);
+		}
+		plan.clear();
+	}
+
+	private void finish() {
+		if (!finishing.compareAndSet(false, true)) {
+			return;
+		}
+		cancelPlan();
+		if (arrivals != null) {
+			arrivals.stop();
+		}
+		try {
+			client.close();
+		} catch (IOException e) {
+			LOGGER.warn("Failed closing the HTTP client", e);
+		}
+		finished.countDown();
+		LOGGER.debug("HTTP load experiment finished");
+	}
+
+	/**
+	 * Called by a virtual user which has executed its last request.
+	 * 
+	 * @param user
+	 *            the finished user
+	 */
+	void userFinished(VirtualUser user) {
+		boolean done;
+		VirtualUser next = null;
+		synchronized (this) {
+			runningUsers.remove(user);
+			if (!backlog.isEmpty()) {
+				next = newSession(backlog.poll());
+			}
+			boolean allStarted = open ? arrivalsDone && backlog.isEmpty() : startedUsers == plannedUsers;
+			done = runningUsers.isEmpty() && allStarted;
+		}
+		if (next != null) {
+			next.run();
+		}
+		if (done) {
+			finish();
+		}
+	}
+
+	/**
+	 * Records the response time of a request.
+	 * 
+	 * @param step
+	 *            the executed request
+	 * @param startMillis
+	 *            time when the request was sent
+	 * @param stopMillis
+	 *            time when the response was complete
+	 * @param error
+	 *            true if the request failed
+	 */
+	void record(HttpStep step, long startMillis, long stopMillis, boolean error) {
+		if (error) {
+			synchronized (data) {
+				data.addTransactionTime(step.getTransactionName() + ERROR_SUFFIX, startMillis, stopMillis);
+			}
+			return;
+		}
+		String transaction = step.getTransactionName();
+		long responseTime = stopMillis - startMillis;
+		synchronized (data) {
+			data.addTransactionTime(transaction, startMillis, stopMillis);
+			if (!correctCoordinatedOmission || open) {
+				return;
+			}
+			LatencyHistogram histogram = responseTimes.get(transaction);
+			if (histogram == null) {
+				histogram = new LatencyHistogram();
+				responseTimes.put(transaction, histogram);
+			}
+			if (histogram.getCount() > 0) {
+				long interval = TimeUnit.MICROSECONDS.toMillis(histogram.getValueAtPercentile(MEDIAN))
+						+ step.getMeanThinkTimeMillis();
+				if (interval > 0) {
+					for (long missed = responseTime - interval; missed >= interval; missed -= interval) {
+						data.addTransactionTime(transaction + CORRECTED_SUFFIX, stopMillis - missed, stopMillis);
+					}
+				}
+			}
+			histogram.record(TimeUnit.MILLISECONDS.toNanos(responseTime));
+		}
+	}
+
+	/**
+	 * Notes a request which failed without a response.
+	 * 
+	 * @param step
+	 *            the failed request
+	 * @param e
+	 *            the cause
+	 */
+	void requestFailed(HttpStep step, IOException e) {
+		if (failedRequests.getAndIncrement() == 0) {
+			LOGGER.warn("Request " + step + " failed: " + e.getMessage());
+		} else {
+			LOGGER.debug("Request " + step + " failed: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Continues a virtual user after its think time.
+	 * 
+	 * @param user
+	 *            user to continue
+	 * @param delayMillis
+	 *            think time
+	 */
+	void schedule(VirtualUser user, long delayMillis) {
+		try {
+			scheduler.schedule(user, delayMillis, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			LOGGER.warn("Scheduler of the HTTP load engine has been shut down");
+			user.stop();
+			user.run();
+		}
+	}
+
+	/**
+	 * @return the client shared by all virtual users
+	 */
+	NioHttpClient getClient() {
+		return client;
+	}
+}
@@ -0,0 +1,267 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.loadgenerator.engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Incremental parser of HTTP/1.x responses. It consumes the bytes as they
+ * arrive on a non-blocking channel, keeps only the status code and the framing
+ * information and discards the body.
+ * 
+ */
+final class HttpResponseParser {
+	private static final int MAX_LINE_LENGTH = 8192;
+	private static final int HEX_RADIX = 16;
+	private static final int STATUS_CONTINUE_MAX = 199;
+	private static final int STATUS_NO_CONTENT = 204;
+	private static final int STATUS_NOT_MODIFIED = 304;
+	private static final int STATUS_CODE_LENGTH = 3;
+
+	private enum State {
+		STATUS_LINE, HEADERS, BODY, CHUNK_SIZE, CHUNK_DATA, CHUNK_END, TRAILERS, BODY_UNTIL_CLOSE, DONE
+	}
+
+	private final StringBuilder line = new StringBuilder();
+	private boolean lineComplete;
+	private State state;
+	private boolean bodyless;
+	private boolean started;
+	private int status;
+	private boolean keepAlive;
+	private boolean chunked;
+	private long contentLength;
+	private long remaining;
+
+	/**
+	 * Prepares the parser for the next response.
+	 * 
+	 * @param bodylessResponse
+	 *            true if the request was a HEAD request
+	 */
+	void reset(boolean bodylessResponse) {
+		bodyless = bodylessResponse;
+		started = false;
+		lineComplete = false;
+		line.setLength(0);
+		startResponse();
+	}
+
+	private void startResponse() {
+		state = State.STATUS_LINE;
+		status = 0;
+		keepAlive = true;
+		chunked = false;
+		contentLength = -1;
+		remaining = 0;
+	}
+
+	/**
+	 * Consumes the available bytes.
+	 * 
+	 * @param buffer
+	 *            buffer in read mode
+	 * @return true if the response is complete
+	 * @throws IOException
+	 *             if the response is malformed
+	 */
+	boolean parse(ByteBuffer buffer) throws IOException {
+		started |= buffer.hasRemaining();
+		while (buffer.hasRemaining() && state != State.DONE) {
+			switch (state) {
+			case STATUS_LINE:
+				if (readLine(buffer)) {
+					parseStatusLine();
+				}
+				break;
+			case HEADERS:
+				if (readLine(buffer)) {
+					parseHeader();
+				}
+				break;
+			case BODY:
+			case CHUNK_DATA:
+				skip(buffer);
+				break;
+			case CHUNK_SIZE:
+				if (readLine(buffer)) {
+					parseChunkSize();
+				}
+				break;
+			case CHUNK_END:
+				if (readLine(buffer)) {
+					state = State.CHUNK_SIZE;
+				}
+				break;
+			case TRAILERS:
+				if (readLine(buffer) && line.length() == 0) {
+					state = State.DONE;
+				}
+				break;
+			case BODY_UNTIL_CLOSE:
+				buffer.position(buffer.limit());
+				break;
+			default:
+				throw new IllegalStateException("Unexpected parser state " + state);
+			}
+		}
+		return state == State.DONE;
+	}
+
+	/**
+	 * Signals that the server closed the connection.
+	 * 
+	 * @return true if the closed connection completes the response
+	 */
+	boolean endOfStream() {
+		if (state == State.BODY_UNTIL_CLOSE) {
+			state = State.DONE;
+			return true;
+		}
+		return state == State.DONE;
+	}
+
+	/**
+	 * @return true if any byte of the response has been received
+	 */
+	boolean hasStarted() {
+		return started;
+	}
+
+	/**
+	 * @return the status code of the response
+	 */
+	int getStatus() {
+		return status;
+	}
+
+	/**
+	 * @return true if the connection can be reused for the next request
+	 */
+	boolean isKeepAlive() {
+		return keepAlive;
+	}
+
+	private boolean readLine(ByteBuffer buffer) throws IOException {
+		if (lineComplete) {
+			line.setLength(0);
+			lineComplete = false;
+		}
+		while (buffer.hasRemaining()) {
+			char c = (char) (buffer.get() & 0xFF);
+			if (c == '\n') {
+				int length = line.length();
+				if (length > 0 && line.charAt(length - 1) == '\r') {
+					line.setLength(length - 1);
+				}
+				lineComplete = true;
+				return true;
+			}
+			if (line.length() >= MAX_LINE_LENGTH) {
+				throw new IOException("Response line exceeds " + MAX_LINE_LENGTH + " characters");
+			}
+			line.append(c);
+		}
+		return false;
+	}
+
+	private void skip(ByteBuffer buffer) {
+		int count = (int) Math.min(remaining, buffer.remaining());
+		buffer.position(buffer.position() + count);
+		remaining -= count;
+		if (remaining == 0) {
+			state = state == State.BODY ? State.DONE : State.CHUNK_END;
+		}
+	}
+
+	private void parseStatusLine() throws IOException {
+		String statusLine = line.toString();
+		if (statusLine.isEmpty()) {
+			return;
+		}
+		int firstSpace = statusLine.indexOf(' ');
+		if (!statusLine.startsWith("HTTP/") || firstSpace < 0
+				|| statusLine.length() < firstSpace + 1 + STATUS_CODE_LENGTH) {
+			throw new IOException("Malformed status line: " + statusLine);
+		}
+		try {
+			status = Integer.parseInt(statusLine.substring(firstSpace + 1, firstSpace + 1 + STATUS_CODE_LENGTH));
+		} catch (NumberFormatException e) {
+			throw new IOException("Malformed status line: " + statusLine, e);
+		}
+		keepAlive = !statusLine.startsWith("HTTP/1.0");
+		state = State.HEADERS;
+	}
+
+	private void parseHeader() throws IOException {
+		if (line.length() == 0) {
+			endOfHeaders();
+			return;
+		}
+		String header = line.toString();
+		int colon = header.indexOf(':');
+		if (colon <= 0) {
+			throw new IOException("Malformed header: " + header);
+		}
+		String name = header.substring(0, colon).trim();
+		String value = header.substring(colon + 1).trim().toLowerCase();
+		if ("Content-Length".equalsIgnoreCase(name)) {
+			try {
+				contentLength = Long.parseLong(value);
+			} catch (NumberFormatException e) {
+				throw new IOException("Malformed header: " + header, e);
+			}
+		} else if ("Transfer-Encoding".equalsIgnoreCase(name)) {
+			chunked = value.contains("chunked");
+		} else if ("Connection".equalsIgnoreCase(name)) {
+			if (value.contains("close")) {
+				keepAlive = false;
+			} else if (value.contains("keep-alive")) {
+				keepAlive = true;
+			}
+		}
+	}
+
+	private void endOfHeaders() {
+		if (status <= STATUS_CONTINUE_MAX) {
+			// interim response, the final one follows on the same connection
+			startResponse();
+		} else if (bodyless || status == STATUS_NO_CONTENT || status == STATUS_NOT_MODIFIED) {
+			state = State.DONE;
+		} else if (chunked) {
+			state = State.CHUNK_SIZE;
+		} else if (contentLength >= 0) {
+			remaining = contentLength;
+			state = contentLength == 0 ? State.DONE : State.BODY;
+		} else {
+			keepAlive = false;
+			state = State.BODY_UNTIL_CLOSE;
+		}
+	}
+
+	private void parseChunkSize() throws IOException {
+		String sizeLine = line.toString();
+		int extension = sizeLine.indexOf(';');
+		String size = (extension < 0 ? sizeLine : sizeLine.substring(0, extension)).trim();
+		try {
+			remaining = Long.parseLong(size, HEX_RADIX);
+		} catch (NumberFormatException e) {
+			throw new IOException("Malformed chunk size: " + sizeLine, e);
+		}
+		state = remaining == 0 ? State.TRAILERS : State.CHUNK_DATA;
+	}
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.loadgenerator.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Request script executed by each virtual user of the {@link HttpLoadEngine}.
+ * A script file contains one request per line:
+ * 
+ * <pre>
+ * # transaction  method  url                           think time [ms]  body
+ * login          POST    http://host:8080/shop/login   1000-3000        user=a&amp;pw=b
+ * browse         GET     http://host:8080/shop/items   2000
+ * </pre>
+ * 
+ * The think time is either a fixed value or a range from which it is drawn
+ * uniformly; it defaults to zero. Everything after the think time is sent as
+ * request body. Empty lines and lines starting with <code>#</code> are
+ * ignored.
+ * 
+ */
+public final class HttpScript {
+	private static final String COMMENT_PREFIX = "#";
+	private static final int MAX_TOKENS = 5;
+	private static final int THINK_TIME_TOKEN = 3;
+	private static final int BODY_TOKEN = 4;
+
+	private final List<HttpStep> steps;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param steps
+	 *            requests to execute in the given order
+	 */
+	public HttpScript(List<HttpStep> steps) {
+		if (steps == null || steps.isEmpty()) {
+			throw new IllegalArgumentException("A script requires at least one request!");
+		}
+		this.steps = Collections.unmodifiableList(new ArrayList<>(steps));
+	}
+
+	/**
+	 * @return the requests in execution order
+	 */
+	public List<HttpStep> getSteps() {
+		return steps;
+	}
+
+	/**
+	 * Reads a script file.
+	 * 
+	 * @param file
+	 *            script file in UTF-8
+	 * @return the parsed script
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public static HttpScript parse(File file) throws IOException {
+		return parse(Files.readAllLines(file.toPath(), Charset.forName("UTF-8")));
+	}
+
+	/**
+	 * Parses the lines of a script.
+	 * 
+	 * @param lines
+	 *            script lines
+	 * @return the parsed script
+	 */
+	public static HttpScript parse(List<String> lines) {
+		List<HttpStep> steps = new ArrayList<>();
+		int lineNumber = 0;
+		for (String line : lines) {
+			lineNumber++;
+			String trimmed = line.trim();
+			if (trimmed.isEmpty() || trimmed.startsWith(COMMENT_PREFIX)) {
+				continue;
+			}
+			try {
+				steps.add(parseStep(trimmed));
+			} catch (IllegalArgumentException | URISyntaxException e) {
+				throw new IllegalArgumentException("Invalid request in line " + lineNumber + ": " + e.getMessage(),
+						e);
+			}
+		}
+		return new HttpScript(steps);
+	}
+
+	private static HttpStep parseStep(String line) throws URISyntaxException {
+		String[] tokens = line.split("\\s+", MAX_TOKENS);
+		if (tokens.length < THINK_TIME_TOKEN) {
+			throw new IllegalArgumentException("expected <transaction> <method> <url> [<think time>] [<body>]");
+		}
+		long minThinkTime = 0;
+		long maxThinkTime = 0;
+		if (tokens.length > THINK_TIME_TOKEN) {
+			String thinkTime = tokens[THINK_TIME_TOKEN];
+			int separator = thinkTime.indexOf('-');
+			if (separator < 0) {
+				minThinkTime = Long.parseLong(thinkTime);
+				maxThinkTime = minThinkTime;
+			} else {
+				minThinkTime = Long.parseLong(thinkTime.substring(0, separator));
+				maxThinkTime = Long.parseLong(thinkTime.substring(separator + 1));
+			}
+		}
+		String body = tokens.length > BODY_TOKEN ? tokens[BODY_TOKEN] : null;
+		return new HttpStep(tokens[0], tokens[1], new URI(tokens[2]), body, minThinkTime, maxThinkTime);
+	}
+}
@@ -0,0 +1,196 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.loadgenerator.engine;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+/**
+ * A single request of an {@link HttpScript}: the transaction name under which
+ * its response time is recorded, the HTTP request itself and the think time a
+ * virtual user waits after the response before issuing its next request. The
+ * request bytes are rendered once and shared by all virtual users.
+ * 
+ */
+public final class HttpStep {
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+	private static final int DEFAULT_PORT = 80;
+	private static final String CRLF = "\r\n";
+
+	private final String transactionName;
+	private final String method;
+	private final URI uri;
+	private final InetSocketAddress address;
+	private final long minThinkTimeMillis;
+	private final long maxThinkTimeMillis;
+	private final byte[] request;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param transactionName
+	 *            name under which the response times are recorded
+	 * @param method
+	 *            HTTP method, e.g. GET or POST
+	 * @param uri
+	 *            absolute http URI to request
+	 * @param body
+	 *            request body, null or empty for none
+	 * @param minThinkTimeMillis
+	 *            lower bound of the think time after the response
+	 * @param maxThinkTimeMillis
+	 *            upper bound of the think time after the response, the think
+	 *            time is drawn uniformly from the range
+	 */
+	public HttpStep(String transactionName, String method, URI uri, String body, long minThinkTimeMillis,
+			long maxThinkTimeMillis) {
+		if (transactionName == null || transactionName.isEmpty()) {
+			throw new IllegalArgumentException("Transaction name must not be empty!");
+		}
+		if (uri == null || !"http".equalsIgnoreCase(uri.getScheme()) || uri.getHost() == null) {
+			throw new IllegalArgumentException("Only absolute http URIs are supported: " + uri);
+		}
+		if (minThinkTimeMillis < 0 || maxThinkTimeMillis < minThinkTimeMillis) {
+			throw new IllegalArgumentException("Invalid think time range: " + minThinkTimeMillis + "-"
+					+ maxThinkTimeMillis);
+		}
+		this.transactionName = transactionName;
+		this.method = method.toUpperCase();
+		this.uri = uri;
+		this.address = new InetSocketAddress(uri.getHost(), uri.getPort() < 0 ? DEFAULT_PORT : uri.getPort());
+		this.minThinkTimeMillis = minThinkTimeMillis;
+		this.maxThinkTimeMillis = maxThinkTimeMillis;
+		this.request = renderRequest(body == null ? new byte[0] : body.getBytes(CHARSET), body);
+	}
+
+	private byte[] renderRequest(byte[] bodyBytes, String body) {
+		String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+		if (uri.getRawQuery() != null) {
+			path += "?" + uri.getRawQuery();
+		}
+		StringBuilder head = new StringBuilder();
+		head.append(method).append(' ').append(path).append(" HTTP/1.1").append(CRLF);
+		head.append("Host: ").append(uri.getHost());
+		if (uri.getPort() >= 0) {
+			head.append(':').append(uri.getPort());
+		}
+		head.append(CRLF);
+		head.append("User-Agent: lpe-loadgenerator").append(CRLF);
+		head.append("Accept: */*").append(CRLF);
+		if (bodyBytes.length > 0) {
+			String trimmed = body.trim();
+			boolean json = trimmed.startsWith("{") || trimmed.startsWith("[");
+			head.append("Content-Type: ").append(json ? "application/json" : "application/x-www-form-urlencoded")
+					.append(CRLF);
+		}
+		if (bodyBytes.length > 0 || "POST".equals(method) || "PUT".equals(method)) {
+			head.append("Content-Length: ").append(bodyBytes.length).append(CRLF);
+		}
+		head.append(CRLF);
+
+		byte[] headBytes = head.toString().getBytes(CHARSET);
+		byte[] bytes = new byte[headBytes.length + bodyBytes.length];
+		System.arraycopy(headBytes, 0, bytes, 0, headBytes.length);
+		System.arraycopy(bodyBytes, 0, bytes, headBytes.length, bodyBytes.length);
+		return bytes;
+	}
+
+	/**
+	 * @return name under which the response times are recorded
+	 */
+	public String getTransactionName() {
+		return transactionName;
+	}
+
+	/**
+	 * @return the HTTP method
+	 */
+	public String getMethod() {
+		return method;
+	}
+
+	/**
+	 * @return the requested URI
+	 */
+	public URI getUri() {
+		return uri;
+	}
+
+	/**
+	 * @return lower bound of the think time in milliseconds
+	 */
+	public long getMinThinkTimeMillis() {
+		return minThinkTimeMillis;
+	}
+
+	/**
+	 * @return upper bound of the think time in milliseconds
+	 */
+	public long getMaxThinkTimeMillis() {
+		return maxThinkTimeMillis;
+	}
+
+	/**
+	 * @return mean think time in milliseconds
+	 */
+	public long getMeanThinkTimeMillis() {
+		return (minThinkTimeMillis + maxThinkTimeMillis) / 2;
+	}
+
+	/**
+	 * Draws a think time from the configured range.
+	 * 
+	 * @param random
+	 *            random source of the calling virtual user
+	 * @return think time in milliseconds
+	 */
+	long nextThinkTimeMillis(Random random) {
+		long range = maxThinkTimeMillis - minThinkTimeMillis;
+		if (range == 0) {
+			return minThinkTimeMillis;
+		}
+		return minThinkTimeMillis + (long) (random.nextDouble() * (range + 1));
+	}
+
+	/**
+	 * @return the resolved address of the target server
+	 */
+	InetSocketAddress getAddress() {
+		return address;
+	}
+
+	/**
+	 * @return true if the response to this request carries no body
+	 */
+	boolean isBodylessResponse() {
+		return "HEAD".equals(method);
+	}
+
+	/**
+	 * @return a fresh buffer over the rendered request bytes
+	 */
+	ByteBuffer newRequestBuffer() {
+		return ByteBuffer.wrap(request);
+	}
+
+	@Override
+	public String toString() {
+		return transactionName + " " + method + " " + uri;
+	}
+}
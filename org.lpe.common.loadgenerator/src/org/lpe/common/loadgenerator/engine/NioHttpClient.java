@@ -0,0 +1,389 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.loadgenerator.engine;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.lpe.common.util.concurrency.ExecutorRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Non-blocking HTTP/1.1 client multiplexing the keep-alive connections of all
+ * virtual users on a single selector thread. Requests are handed over from any
+ * thread; the callbacks are invoked on the selector thread and must therefore
+ * return quickly.
+ * 
+ */
+final class NioHttpClient implements Closeable {
+	private static final Logger LOGGER = LoggerFactory.getLogger(NioHttpClient.class);
+	private static final String EXECUTOR_NAME = "http-engine-io";
+	private static final long SELECT_TIMEOUT_MILLIS = 100;
+	private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Receives the outcome of a request.
+	 */
+	interface Callback {
+		/**
+		 * Called when the complete response has been received.
+		 * 
+		 * @param status
+		 *            HTTP status code
+		 */
+		void completed(int status);
+
+		/**
+		 * Called when the request failed or timed out.
+		 * 
+		 * @param e
+		 *            the cause
+		 */
+		void failed(IOException e);
+	}
+
+	/**
+	 * Connection owned by a single virtual user. It carries at most one
+	 * request at a time and is reused as long as the server keeps it alive.
+	 */
+	static final class Connection {
+		private final HttpResponseParser parser = new HttpResponseParser();
+		private SocketChannel channel;
+		private SelectionKey key;
+		private InetSocketAddress address;
+		private HttpStep step;
+		private ByteBuffer request;
+		private Callback callback;
+		private long deadlineNanos;
+		private boolean reused;
+		private boolean retried;
+		private boolean released;
+	}
+
+	private final long requestTimeoutNanos;
+	private final Selector selector;
+	private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+	private final Queue<Connection> pending = new ConcurrentLinkedQueue<>();
+	private final Set<Connection> inFlight = new HashSet<>();
+	private final Future<?> ioLoop;
+	private volatile Thread ioThread;
+	private volatile boolean running = true;
+	private long lastExpiryNanos = System.nanoTime();
+
+	/**
+	 * Opens the selector and starts the selector thread.
+	 * 
+	 * @param requestTimeoutMillis
+	 *            time after which an unanswered request fails
+	 * @throws IOException
+	 *             if the selector cannot be opened
+	 */
+	NioHttpClient(long requestTimeoutMillis) throws IOException {
+		this.requestTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(requestTimeoutMillis);
+		this.selector = Selector.open();
+		this.ioLoop = ExecutorRegistry.getInstance().getExecutor(EXECUTOR_NAME).submit(new Runnable() {
+			@Override
+			public void run() {
+				runLoop();
+			}
+		});
+	}
+
+	/**
+	 * Sends a request over the given connection.
+	 * 
+	 * @param connection
+	 *            connection of the calling virtual user, must be idle
+	 * @param step
+	 *            request to send
+	 * @param callback
+	 *            receiver of the outcome
+	 */
+	void execute(Connection connection, HttpStep step, Callback callback) {
+		connection.step = step;
+		connection.request = step.newRequestBuffer();
+		connection.callback = callback;
+		connection.retried = false;
+		connection.parser.reset(step.isBodylessResponse());
+		enqueue(connection);
+	}
+
+	/**
+	 * Closes the connection of a virtual user which has finished.
+	 * 
+	 * @param connection
+	 *            idle connection to close
+	 */
+	void release(Connection connection) {
+		connection.released = true;
+		enqueue(connection);
+	}
+
+	private void enqueue(Connection connection) {
+		pending.add(connection);
+		selector.wakeup();
+	}
+
+	/**
+	 * Stops the selector thread and closes all connections. Requests still in
+	 * flight are abandoned without invoking their callbacks. If the selector
+	 * thread stops on its own, all outstanding requests fail instead. When
+	 * called from a callback, the selector thread stops after the callback
+	 * returns.
+	 * 
+	 * @throws IOException
+	 *             if the selector thread failed
+	 */
+	@Override
+	public void close() throws IOException {
+		running = false;
+		selector.wakeup();
+		if (Thread.currentThread() == ioThread) {
+			return;
+		}
+		try {
+			ioLoop.get(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		} catch (TimeoutException e) {
+			ioLoop.cancel(true);
+		}
+	}
+
+	private void runLoop() {
+		ioThread = Thread.currentThread();
+		try {
+			while (running) {
+				selector.select(SELECT_TIMEOUT_MILLIS);
+				processPending();
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					handle(key);
+				}
+				expireRequests();
+			}
+		} catch (IOException | RuntimeException e) {
+			LOGGER.error("Selector of the HTTP load engine failed", e);
+		} finally {
+			if (running) {
+				failAll(new IOException("Selector of the HTTP load engine stopped"));
+			}
+			for (SelectionKey key : selector.keys()) {
+				closeQuietly(key.channel());
+			}
+			closeQuietly(selector);
+		}
+	}
+
+	private void processPending() {
+		Connection connection = pending.poll();
+		while (connection != null) {
+			if (connection.released) {
+				closeChannel(connection);
+			} else {
+				connection.deadlineNanos = System.nanoTime() + requestTimeoutNanos;
+				inFlight.add(connection);
+				try {
+					dispatch(connection);
+				} catch (IOException e) {
+					fail(connection, e);
+				} catch (RuntimeException e) {
+					fail(connection, new IOException(e));
+				}
+			}
+			connection = pending.poll();
+		}
+	}
+
+	private void dispatch(Connection connection) throws IOException {
+		InetSocketAddress address = connection.step.getAddress();
+		if (connection.channel != null && connection.channel.isOpen() && address.equals(connection.address)) {
+			connection.reused = true;
+			connection.key.interestOps(SelectionKey.OP_WRITE);
+			return;
+		}
+		closeChannel(connection);
+		if (address.isUnresolved()) {
+			throw new UnknownHostException(address.getHostString());
+		}
+		SocketChannel channel = SocketChannel.open();
+		connection.channel = channel;
+		connection.address = address;
+		connection.reused = false;
+		channel.configureBlocking(false);
+		channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+		boolean connected = channel.connect(address);
+		connection.key = channel.register(selector, connected ? SelectionKey.OP_WRITE : SelectionKey.OP_CONNECT,
+				connection);
+	}
+
+	private void handle(SelectionKey key) {
+		Connection connection = (Connection) key.attachment();
+		try {
+			if (!key.isValid()) {
+				return;
+			}
+			if (key.isConnectable() && connection.channel.finishConnect()) {
+				key.interestOps(SelectionKey.OP_WRITE);
+			}
+			if (key.isValid() && key.isWritable()) {
+				connection.channel.write(connection.request);
+				if (!connection.request.hasRemaining()) {
+					key.interestOps(SelectionKey.OP_READ);
+				}
+			}
+			if (key.isValid() && key.isReadable()) {
+				read(connection);
+			}
+		} catch (IOException e) {
+			fail(connection, e);
+		} catch (RuntimeException e) {
+			LOGGER.warn("Failed handling the response of " + connection.step, e);
+			fail(connection, new IOException(e));
+		}
+	}
+
+	private void read(Connection connection) throws IOException {
+		readBuffer.clear();
+		int count = connection.channel.read(readBuffer);
+		if (count < 0) {
+			if (connection.parser.endOfStream()) {
+				complete(connection);
+			} else if (connection.reused && !connection.parser.hasStarted() && !connection.retried) {
+				// the server dropped the idle keep-alive connection, resend
+				// once over a fresh one
+				connection.retried = true;
+				connection.request.rewind();
+				closeChannel(connection);
+				dispatch(connection);
+			} else {
+				throw new EOFException("Connection closed before the response was complete");
+			}
+			return;
+		}
+		readBuffer.flip();
+		if (connection.parser.parse(readBuffer)) {
+			complete(connection);
+		}
+	}
+
+	private void complete(Connection connection) {
+		inFlight.remove(connection);
+		if (connection.parser.isKeepAlive() && connection.key.isValid()) {
+			connection.key.interestOps(0);
+		} else {
+			closeChannel(connection);
+		}
+		Callback callback = connection.callback;
+		connection.callback = null;
+		try {
+			callback.completed(connection.parser.getStatus());
+		} catch (RuntimeException e) {
+			LOGGER.warn("Callback of " + connection.step + " failed", e);
+		}
+	}
+
+	private void fail(Connection connection, IOException e) {
+		inFlight.remove(connection);
+		closeChannel(connection);
+		Callback callback = connection.callback;
+		connection.callback = null;
+		if (callback != null) {
+			try {
+				callback.failed(e);
+			} catch (RuntimeException re) {
+				LOGGER.warn("Callback of " + connection.step + " failed", re);
+			}
+		}
+	}
+
+	private void failAll(IOException e) {
+		List<Connection> abandoned = new ArrayList<>(inFlight);
+		Connection connection = pending.poll();
+		while (connection != null) {
+			if (!connection.released) {
+				abandoned.add(connection);
+			}
+			connection = pending.poll();
+		}
+		for (Connection c : abandoned) {
+			fail(c, e);
+		}
+	}
+
+	private void expireRequests() {
+		long now = System.nanoTime();
+		if (inFlight.isEmpty() || now - lastExpiryNanos < TimeUnit.MILLISECONDS.toNanos(SELECT_TIMEOUT_MILLIS)) {
+			return;
+		}
+		lastExpiryNanos = now;
+		List<Connection> expired = new ArrayList<>();
+		for (Connection connection : inFlight) {
+			if (now - connection.deadlineNanos > 0) {
+				expired.add(connection);
+			}
+		}
+		for (Connection connection : expired) {
+			fail(connection, new SocketTimeoutException("No response within "
+					+ TimeUnit.NANOSECONDS.toMillis(requestTimeoutNanos) + " ms"));
+		}
+	}
+
+	private void closeChannel(Connection connection) {
+		if (connection.key != null) {
+			connection.key.cancel();
+			connection.key = null;
+		}
+		if (connection.channel != null) {
+			closeQuietly(connection.channel);
+			connection.channel = null;
+		}
+	}
+
+	private static void closeQuietly(Closeable closeable) {
+		try {
+			closeable.close();
+		} catch (IOException e) {
+			LOGGER.debug("Failed closing " + closeable, e);
+		}
+	}
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.loadgenerator.engine;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.lpe.common.util.clock.HighResolutionClock;
+
+/**
+ * A virtual user of the {@link HttpLoadEngine}. Instead of occupying a thread,
+ * a virtual user is a small state machine: it hands its next request to the
+ * non-blocking client, is called back with the response and parks on the
+ * engine's scheduler during its think time. Requests, callbacks and scheduled
+ * continuations of one user never overlap.
+ * 
+ */
+final class VirtualUser implements Runnable, NioHttpClient.Callback {
+	private static final int HTTP_ERROR_STATUS = 400;
+
+	private final HttpLoadEngine engine;
+	private final List<HttpStep> steps;
+	private final boolean repeat;
+	private final Random random;
+	private final NioHttpClient.Connection connection = new NioHttpClient.Connection();
+	private volatile boolean stopRequested;
+	private int stepIndex;
+	private HttpStep current;
+	private long intendedStartNanos = -1;
+	private long startNanos;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param engine
+	 *            engine executing this user
+	 * @param script
+	 *            script to execute
+	 * @param repeat
+	 *            true if the script is repeated until the user is stopped,
+	 *            false if it is executed once
+	 * @param seed
+	 *            seed of the think time distribution
+	 */
+	VirtualUser(HttpLoadEngine engine, HttpScript script, boolean repeat, long seed) {
+		this.engine = engine;
+		this.steps = script.getSteps();
+		this.repeat = repeat;
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * Sets the time at which the first request was due. Its response time is
+	 * measured from this time instead of the actual start, so that the delay
+	 * of an arrival which had to wait for a free user is included.
+	 * 
+	 * @param epochNanos
+	 *            intended start time in nanoseconds since the epoch
+	 */
+	void setIntendedStart(long epochNanos) {
+		intendedStartNanos = epochNanos;
+	}
+
+	/**
+	 * Asks the user to finish after its current request.
+	 */
+	void stop() {
+		stopRequested = true;
+	}
+
+	/**
+	 * @return true if the user has been asked to stop
+	 */
+	boolean isStopRequested() {
+		return stopRequested;
+	}
+
+	/**
+	 * Issues the next request of the script.
+	 */
+	@Override
+	public void run() {
+		if (stopRequested) {
+			finish();
+			return;
+		}
+		current = steps.get(stepIndex);
+		if (intendedStartNanos >= 0) {
+			startNanos = intendedStartNanos;
+			intendedStartNanos = -1;
+		} else {
+			startNanos = HighResolutionClock.currentTimeNanos();
+		}
+		engine.getClient().execute(connection, current, this);
+	}
+
+	@Override
+	public void completed(int status) {
+		record(status >= HTTP_ERROR_STATUS);
+	}
+
+	@Override
+	public void failed(IOException e) {
+		engine.requestFailed(current, e);
+		record(true);
+	}
+
+	private void record(boolean error) {
+		long stopNanos = HighResolutionClock.currentTimeNanos();
+		engine.record(current, TimeUnit.NANOSECONDS.toMillis(startNanos), TimeUnit.NANOSECONDS.toMillis(stopNanos),
+				error);
+
+		long thinkTime = current.nextThinkTimeMillis(random);
+		stepIndex++;
+		if (stepIndex == steps.size()) {
+			stepIndex = 0;
+			if (!repeat) {
+				stopRequested = true;
+			}
+		}
+		if (stopRequested) {
+			finish();
+		} else if (thinkTime > 0) {
+			engine.schedule(this, thinkTime);
+		} else {
+			run();
+		}
+	}
+
+	private void finish() {
+		engine.getClient().release(connection);
+		engine.userFinished(this);
+	}
+}
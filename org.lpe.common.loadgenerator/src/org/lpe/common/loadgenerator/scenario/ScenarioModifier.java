@@ -25,6 +25,7 @@ import java.util.HashMap;
 import java.util.LinkedList;
 
 import org.lpe.common.loadgenerator.config.LGWorkloadConfig;
+import org.lpe.common.util.workload.ArrivalSchedule;
 
 /**
  * Modifier class to adapt load generator scenarios.
@@ -307,7 +308,8 @@ public class ScenarioModifier {
 			writeBuffer.append("            <RunUntilComplete>");
 			writeBuffer.append(NEWLINE);
 			writeBuffer.append(NEWLINE);
-			insertRampUp(writeBuffer, numUsers);
+			insertRampUp(writeBuffer, numUsers, lrConfig.getRampUpUsersPerInterval(),
+					lrConfig.getRampUpIntervalLength());
 			writeBuffer.append("            </RunUntilComplete>");
 			writeBuffer.append(NEWLINE);
 			writeBuffer.append(NEWLINE);
@@ -316,9 +318,33 @@ public class ScenarioModifier {
 			writeBuffer.append("            <DynamicScheduling>");
 			writeBuffer.append(NEWLINE);
 			writeBuffer.append(NEWLINE);
-			insertRampUp(writeBuffer, numUsers);
-			insertDuration(writeBuffer);
-			insertRampDownAll(writeBuffer);
+			insertRampUp(writeBuffer, numUsers, lrConfig.getRampUpUsersPerInterval(),
+					lrConfig.getRampUpIntervalLength());
+			insertDuration(writeBuffer, lrConfig.getExperimentDuration());
+			insertRampDownAll(writeBuffer, lrConfig.getCoolDownUsersPerInterval(),
+					lrConfig.getCoolDownIntervalLength());
+			writeBuffer.append("            </DynamicScheduling>");
+			writeBuffer.append(NEWLINE);
+			writeBuffer.append(NEWLINE);
+			break;
+		case openWorkload:
+			// the scenario format has no arrival-rate scheduling: the v-user
+			// pool is started at once for the duration of the schedule and the
+			// rate has to be enforced by the pacing of the script
+			ArrivalSchedule schedule = lrConfig.getArrivalSchedule();
+			if (schedule == null) {
+				throw new IllegalArgumentException("Open workload requires an arrival schedule!");
+			}
+			if (numUsers <= 0) {
+				throw new IllegalArgumentException(
+						"Open workload requires a fixed number of users to pace the arrivals with!");
+			}
+			writeBuffer.append("            <DynamicScheduling>");
+			writeBuffer.append(NEWLINE);
+			writeBuffer.append(NEWLINE);
+			insertRampUp(writeBuffer, numUsers, numUsers, 0);
+			insertDuration(writeBuffer, schedule.getDurationSeconds());
+			insertRampDownAll(writeBuffer, numUsers, 0);
 			writeBuffer.append("            </DynamicScheduling>");
 			writeBuffer.append(NEWLINE);
 			writeBuffer.append(NEWLINE);
@@ -438,7 +464,8 @@ public class ScenarioModifier {
 	/**
 	 * Insert the ramp-up behavior
 	 */
-	private void insertRampUp(StringBuilder writeBuffer, int numUsers) throws IOException {
+	private void insertRampUp(StringBuilder writeBuffer, int numUsers, int usersPerInterval, int intervalLength)
+			throws IOException {
 
 		writeBuffer.append("              <RampUp>");
 		writeBuffer.append(NEWLINE);
@@ -457,13 +484,13 @@ public class ScenarioModifier {
 		writeBuffer.append(NEWLINE);
 
 		writeBuffer.append("                  <Count>");
-		writeBuffer.append(lrConfig.getRampUpUsersPerInterval());
+		writeBuffer.append(usersPerInterval);
 		writeBuffer.append("</Count>");
 		writeBuffer.append(NEWLINE);
 		writeBuffer.append(NEWLINE);
 
 		writeBuffer.append("                  <Interval>");
-		writeBuffer.append(lrConfig.getRampUpIntervalLength());
+		writeBuffer.append(intervalLength);
 		writeBuffer.append("</Interval>");
 
 		writeBuffer.append(NEWLINE);
@@ -484,7 +511,7 @@ public class ScenarioModifier {
 	/**
 	 * Insert experiment run duration
 	 */
-	private void insertDuration(StringBuilder writeBuffer) throws IOException {
+	private void insertDuration(StringBuilder writeBuffer, int duration) throws IOException {
 		writeBuffer.append("              <Duration>");
 		writeBuffer.append(NEWLINE);
 		writeBuffer.append(NEWLINE);
@@ -498,7 +525,7 @@ public class ScenarioModifier {
 		writeBuffer.append(NEWLINE);
 		writeBuffer.append(NEWLINE);
 		writeBuffer.append("                <RunFor>");
-		writeBuffer.append(lrConfig.getExperimentDuration());
+		writeBuffer.append(duration);
 		writeBuffer.append("</RunFor>");
 		writeBuffer.append(NEWLINE);
 		writeBuffer.append(NEWLINE);
@@ -510,7 +537,8 @@ public class ScenarioModifier {
 	/**
 	 * Insert cool down behavior
 	 */
-	private void insertRampDownAll(StringBuilder writeBuffer) throws IOException {
+	private void insertRampDownAll(StringBuilder writeBuffer, int usersPerInterval, int intervalLength)
+			throws IOException {
 
 		writeBuffer.append("              <RampDownAll>");
 		writeBuffer.append(NEWLINE);
@@ -529,13 +557,13 @@ public class ScenarioModifier {
 		writeBuffer.append(NEWLINE);
 
 		writeBuffer.append("                  <Count>");
-		writeBuffer.append(lrConfig.getCoolDownUsersPerInterval());
+		writeBuffer.append(usersPerInterval);
 		writeBuffer.append("</Count>");
 		writeBuffer.append(NEWLINE);
 		writeBuffer.append(NEWLINE);
 
 		writeBuffer.append("                  <Interval>");
-		writeBuffer.append(lrConfig.getCoolDownIntervalLength());
+		writeBuffer.append(intervalLength);
 		writeBuffer.append("</Interval>");
 
 		writeBuffer.append(NEWLINE);
@@ -21,6 +21,7 @@ import java.io.IOException;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.lpe.common.loadgenerator.config.LGWorkloadConfig;
+import org.lpe.common.util.clock.HighResolutionClock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,6 +45,8 @@ public class ScenarioRunner implements Runnable {
 	public void run() {
 		finished = false;
 
+		waitForStartTime(lrConfig.getStartTime());
+
 		cleanResultDir(lrConfig.getResultPath());
 
 		runLoadGeneratorExperiment(lrConfig.getResultPath());
@@ -51,6 +54,19 @@ public class ScenarioRunner implements Runnable {
 		finished = true;
 	}
 
+	private void waitForStartTime(long startTime) {
+		long delay = startTime - HighResolutionClock.currentTimeMillis();
+		if (delay <= 0) {
+			return;
+		}
+		LOGGER.debug("Waiting {} ms for the scheduled start...", delay);
+		try {
+			Thread.sleep(delay);
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
 	private void cleanResultDir(String resultDir) {
 		try {
 			File file = new File(resultDir);
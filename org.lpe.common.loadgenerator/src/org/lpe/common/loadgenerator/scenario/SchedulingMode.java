@@ -31,5 +31,12 @@ public enum SchedulingMode {
 	 * v-users run in a closed workload with an initial ramp-up phase and an
 	 * finalizing cool-down phase.
 	 */
-	dynamicScheduling
+	dynamicScheduling,
+
+	/**
+	 * requests arrive at the rate of an arrival schedule independent of the
+	 * response times (open workload); the number of users limits the
+	 * concurrent requests.
+	 */
+	openWorkload
 }
\ No newline at end of file
@@ -26,11 +26,13 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.StreamingOutput;
 
-import org.lpe.common.loadgenerator.LoadGeneratorMeasurementController;
-import org.lpe.common.loadgenerator.LoadGeneratorWorkloadController;
+import org.lpe.common.loadgenerator.DefaultLoadGeneratorBackend;
+import org.lpe.common.loadgenerator.ILoadGeneratorBackend;
 import org.lpe.common.loadgenerator.config.LGMeasurementConfig;
 import org.lpe.common.loadgenerator.config.LGWorkloadConfig;
 import org.lpe.common.loadgenerator.data.LGMeasurementData;
+import org.lpe.common.util.clock.ClockSample;
+import org.lpe.common.util.clock.HighResolutionClock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,6 +47,17 @@ import com.sun.jersey.spi.resource.Singleton;
 @Singleton
 public class LoadGeneratorService {
 	private static final Logger LOGGER = LoggerFactory.getLogger(LoadGeneratorService.class);
+	private static volatile ILoadGeneratorBackend backend = DefaultLoadGeneratorBackend.getInstance();
+
+	/**
+	 * Replaces the backend which executes the requests of this service.
+	 * 
+	 * @param newBackend
+	 *            backend to use, null restores the default backend
+	 */
+	public static void setBackend(ILoadGeneratorBackend newBackend) {
+		backend = newBackend == null ? DefaultLoadGeneratorBackend.getInstance() : newBackend;
+	}
 
 	/**
 	 * Starts a load generator experiment.
@@ -60,7 +73,7 @@ public class LoadGeneratorService {
 	public void startLoad(LGWorkloadConfig lrConfig) throws IOException {
 		LOGGER.info("Starting load with {} users ...", lrConfig.getNumUsers() );
 		lrConfig.correctPathSeparators();
-		LoadGeneratorWorkloadController.getInstance().startExperiment(lrConfig);
+		backend.startExperiment(lrConfig);
 	}
 
 	/**
@@ -71,7 +84,7 @@ public class LoadGeneratorService {
 	@Path("isLoadFinished")
 	@Produces(MediaType.APPLICATION_JSON)
 	public boolean isLoadFinished() {
-		boolean finished =  LoadGeneratorWorkloadController.getInstance().isFinished();
+		boolean finished =  backend.isFinished();
 		
 		if(finished){
 			LOGGER.info("Load generation finished!");
@@ -81,16 +94,30 @@ public class LoadGeneratorService {
 
 	/**
 	 * 
-	 * @return true if experiment has been finished
+	 * @return current local time in [ms]
+	 * @deprecated a single time request ignores the network delay, use
+	 *             {@link #getClockSample()} instead
 	 */
+	@Deprecated
 	@GET
 	@Path("currentTime")
 	@Produces(MediaType.APPLICATION_JSON)
 	public long getCurrentTime() {
-		LOGGER.info("CURRENT TIME CALLED!");
 		return System.currentTimeMillis();
 	}
 
+	/**
+	 * Answers a clock synchronization request.
+	 * 
+	 * @return receive and transmit time of this request
+	 */
+	@GET
+	@Path("clockSample")
+	@Produces(MediaType.APPLICATION_JSON)
+	public ClockSample getClockSample() {
+		return ClockSample.create(HighResolutionClock.currentTimeNanos());
+	}
+
 	/**
 	 * 
 	 * @return true if connection established
@@ -117,7 +144,7 @@ public class LoadGeneratorService {
 	public LGMeasurementData getData(LGMeasurementConfig lrmConfig) throws IOException {
 		LOGGER.info("Requested measurement data ...");
 		lrmConfig.correctPathSeparators();
-		LGMeasurementData data =  LoadGeneratorMeasurementController.getInstance().getMeasurementData(lrmConfig);
+		LGMeasurementData data =  backend.getMeasurementData(lrmConfig);
 		LOGGER.info("Measurement data has {} items.", data.getTransactionTimes().size());
 		return data;
 	}
@@ -140,7 +167,7 @@ public class LoadGeneratorService {
 			@Override
 			public void write(OutputStream os) {
 				try {
-					LoadGeneratorMeasurementController.getInstance().pipeReportToOutputStream(finalConfig, os);
+					backend.pipeReportToOutputStream(finalConfig, os);
 				} catch (Exception e) {
 					throw new RuntimeException();
 				}
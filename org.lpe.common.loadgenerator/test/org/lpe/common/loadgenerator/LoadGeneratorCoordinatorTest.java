@@ -0,0 +1,237 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.loadgenerator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.lpe.common.loadgenerator.config.LGWorkloadConfig;
+import org.lpe.common.loadgenerator.data.LGMeasurementData;
+import org.lpe.common.loadgenerator.data.TimeSpan;
+import org.lpe.common.loadgenerator.scenario.SchedulingMode;
+import org.lpe.common.util.clock.ClockOffset;
+import org.lpe.common.util.workload.ArrivalPattern;
+import org.lpe.common.util.workload.ArrivalSchedule;
+
+/**
+ * Tests the {@link LoadGeneratorCoordinator}.
+ * 
+ */
+public class LoadGeneratorCoordinatorTest {
+
+	/**
+	 * Tests that users and ramp rates are split in proportion to the
+	 * capacities and the arrival rates in proportion to the users.
+	 */
+	@Test
+	public void testSplit() {
+		LGWorkloadConfig config = new LGWorkloadConfig();
+		config.setNumUsers(1000);
+		config.setRampUpUsersPerInterval(50);
+		config.setCoolDownUsersPerInterval(20);
+		config.setExperimentDuration(300);
+		config.setArrivalSchedule(new ArrivalSchedule(ArrivalPattern.ramp, 60, 120, 1, 300));
+
+		List<LGWorkloadConfig> parts = LoadGeneratorCoordinator.split(config, new double[] { 1, 2, 3, 0 });
+		assertEquals(4, parts.size());
+		int users = 0;
+		for (LGWorkloadConfig part : parts) {
+			users += part.getNumUsers();
+			assertEquals(300, part.getExperimentDuration());
+		}
+		assertEquals(1000, users);
+		assertEquals(167, parts.get(0).getNumUsers());
+		assertEquals(333, parts.get(1).getNumUsers());
+		assertEquals(500, parts.get(2).getNumUsers());
+		assertEquals(0, parts.get(3).getNumUsers());
+		assertEquals(25, parts.get(2).getRampUpUsersPerInterval());
+		assertEquals(10, parts.get(2).getCoolDownUsersPerInterval());
+		assertEquals(1, parts.get(3).getRampUpUsersPerInterval());
+		assertEquals(30, parts.get(2).getArrivalSchedule().getStartRate(), 1e-9);
+		assertEquals(120 * 333 / 1000.0, parts.get(1).getArrivalSchedule().getTargetRate(), 1e-9);
+		assertEquals(0, parts.get(3).getArrivalSchedule().getTargetRate(), 1e-9);
+		assertEquals(60, config.getArrivalSchedule().getStartRate(), 1e-9);
+		assertEquals(1000, config.getNumUsers());
+	}
+
+	/**
+	 * Tests that the nodes started successfully remain active if another node
+	 * cannot be started.
+	 * 
+	 * @throws IOException
+	 *             if polling fails
+	 */
+	@Test
+	public void testPartialStart() throws IOException {
+		List<FakeNode> nodes = Arrays.asList(new FakeNode(false), new FakeNode(true), new FakeNode(false));
+		LoadGeneratorCoordinator coordinator = new LoadGeneratorCoordinator(new ArrayList<LoadGeneratorClient>(nodes));
+		coordinator.setStartDelayMillis(0);
+		LGWorkloadConfig config = new LGWorkloadConfig();
+		config.setNumUsers(30);
+		config.setRampUpUsersPerInterval(3);
+		config.setCoolDownUsersPerInterval(3);
+		try {
+			coordinator.startLoad(config);
+			fail("Expected a start failure.");
+		} catch (IOException e) {
+			// expected
+		}
+		assertEquals(10, nodes.get(0).users);
+		assertEquals(10, nodes.get(2).users);
+		assertTrue(coordinator.isLoadFinished());
+		assertEquals(1, nodes.get(0).polls.get());
+		assertEquals(0, nodes.get(1).polls.get());
+		assertEquals(1, nodes.get(2).polls.get());
+	}
+
+	/**
+	 * Tests that an open workload with an unlimited number of users is started
+	 * on all nodes with a share of the arrival rate.
+	 * 
+	 * @throws IOException
+	 *             if a node cannot be started
+	 */
+	@Test
+	public void testOpenWorkloadStart() throws IOException {
+		List<FakeNode> nodes = Arrays.asList(new FakeNode(false), new FakeNode(false), new FakeNode(false));
+		LoadGeneratorCoordinator coordinator = new LoadGeneratorCoordinator(new ArrayList<LoadGeneratorClient>(nodes),
+				new double[] { 1, 3, 0 });
+		coordinator.setStartDelayMillis(0);
+		LGWorkloadConfig config = new LGWorkloadConfig();
+		config.setSchedulingMode(SchedulingMode.openWorkload);
+		config.setNumUsers(0);
+		config.setArrivalSchedule(new ArrivalSchedule(ArrivalPattern.constant, 40, 40, 1, 60));
+		coordinator.startLoad(config);
+		assertEquals(10, nodes.get(0).arrivalRate, 1e-9);
+		assertEquals(30, nodes.get(1).arrivalRate, 1e-9);
+		assertEquals(0, nodes.get(2).starts.get());
+		assertTrue(coordinator.isLoadFinished());
+		assertEquals(0, nodes.get(2).polls.get());
+	}
+
+	/**
+	 * Tests that an open workload with a fixed number of users assigns no
+	 * arrivals to nodes without users.
+	 * 
+	 * @throws IOException
+	 *             if a node cannot be started
+	 */
+	@Test
+	public void testOpenWorkloadFixedUsers() throws IOException {
+		List<FakeNode> nodes = Arrays.asList(new FakeNode(false), new FakeNode(false), new FakeNode(false));
+		LoadGeneratorCoordinator coordinator = new LoadGeneratorCoordinator(new ArrayList<LoadGeneratorClient>(nodes));
+		coordinator.setStartDelayMillis(0);
+		LGWorkloadConfig config = new LGWorkloadConfig();
+		config.setSchedulingMode(SchedulingMode.openWorkload);
+		config.setNumUsers(2);
+		config.setArrivalSchedule(new ArrivalSchedule(ArrivalPattern.constant, 30, 30, 1, 60));
+		coordinator.startLoad(config);
+		int started = 0;
+		double rate = 0;
+		for (FakeNode node : nodes) {
+			if (node.starts.get() > 0) {
+				started++;
+				assertEquals(1, node.users);
+				assertEquals(15, node.arrivalRate, 1e-9);
+			}
+			rate += node.arrivalRate;
+		}
+		assertEquals(2, started);
+		assertEquals(30, rate, 1e-9);
+	}
+
+	/**
+	 * Tests that the merge orders the spans of all nodes by stop timestamp.
+	 */
+	@Test
+	public void testMerge() {
+		Random random = new Random(1);
+		List<LGMeasurementData> parts = new ArrayList<>();
+		int total = 0;
+		for (int node = 0; node < 5; node++) {
+			LGMeasurementData data = new LGMeasurementData();
+			long time = 0;
+			for (int i = 0; i < 1000 * (node + 1); i++) {
+				time += random.nextInt(10);
+				data.addTransactionTime("buy", time - 5, time);
+				total++;
+			}
+			if (node == 3) {
+				// unsorted input
+				data.addTransactionTime("buy", 0, 1);
+				data.addTransactionTime("login", 10, 20);
+				total++;
+			}
+			parts.add(data);
+		}
+		LGMeasurementData merged = LoadGeneratorCoordinator.merge(parts);
+		List<TimeSpan> spans = merged.getTimesForTransaction("buy");
+		assertEquals(total, spans.size());
+		for (int i = 1; i < spans.size(); i++) {
+			assertTrue(spans.get(i - 1).getStop() <= spans.get(i).getStop());
+		}
+		assertEquals(1, merged.getTimesForTransaction("login").size());
+	}
+
+	/**
+	 * Load generator node accepting or rejecting the load without a service.
+	 */
+	private static final class FakeNode extends LoadGeneratorClient {
+		private static final AtomicInteger PORTS = new AtomicInteger(1);
+		private final boolean failing;
+		private final AtomicInteger polls = new AtomicInteger();
+		private final AtomicInteger starts = new AtomicInteger();
+		private volatile int users;
+		private volatile double arrivalRate;
+
+		private FakeNode(boolean failing) {
+			super("localhost", String.valueOf(PORTS.getAndIncrement()));
+			this.failing = failing;
+		}
+
+		@Override
+		public ClockOffset getClockOffset() {
+			return new ClockOffset(0, 0, System.nanoTime(), 0, 1);
+		}
+
+		@Override
+		public void startLoad(LGWorkloadConfig config) {
+			if (failing) {
+				throw new IllegalStateException("Node unavailable.");
+			}
+			starts.incrementAndGet();
+			users = config.getNumUsers();
+			if (config.getArrivalSchedule() != null) {
+				arrivalRate = config.getArrivalSchedule().getTargetRate();
+			}
+		}
+
+		@Override
+		public boolean isLoadFinished() {
+			polls.incrementAndGet();
+			return true;
+		}
+	}
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.loadgenerator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import org.junit.Test;
+import org.lpe.common.util.web.WebServer;
+
+/**
+ * Tests the {@link ServerLauncher}.
+ * 
+ */
+public class ServerLauncherTest {
+	private static final long STARTUP_TIMEOUT_MILLIS = 30000;
+	private static final long SURVIVAL_MILLIS = 5000;
+
+	/**
+	 * Tests that the server keeps running after the main method has returned
+	 * and terminates on a shutdown request.
+	 * 
+	 * @throws Exception
+	 *             if the launcher cannot be executed
+	 */
+	@Test
+	public void testServerOutlivesMain() throws Exception {
+		int port;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+				ServerLauncher.class.getName(), "start", "port=" + port);
+		builder.redirectErrorStream(true);
+		builder.redirectOutput(new File(System.getProperty("java.io.tmpdir"), "ServerLauncherTest.log"));
+		Process process = builder.start();
+		try {
+			long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT_MILLIS;
+			while (!isListening(port)) {
+				assertTrue("server did not start", isAlive(process) && System.currentTimeMillis() < deadline);
+				Thread.sleep(100);
+			}
+			Thread.sleep(SURVIVAL_MILLIS);
+			assertTrue("server exited after main returned", isAlive(process));
+
+			WebServer.triggerServerShutdown(port, "");
+			assertEquals(0, process.waitFor());
+		} finally {
+			process.destroy();
+		}
+	}
+
+	private static boolean isListening(int port) {
+		try (Socket socket = new Socket("localhost", port)) {
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	private static boolean isAlive(Process process) {
+		try {
+			process.exitValue();
+			return false;
+		} catch (IllegalThreadStateException e) {
+			return true;
+		}
+	}
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.loadgenerator.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.SortedMap;
+
+import org.junit.Test;
+import org.lpe.common.util.NumericPairList;
+import org.lpe.common.util.web.metrics.LatencyHistogram;
+
+/**
+ * Tests the {@link TimeBucketAggregator}.
+ * 
+ */
+public class TimeBucketAggregatorTest {
+	private static final long START = 1400000040000L;
+	private static final int SECONDS = 120;
+	private static final int PER_SECOND = 1000;
+
+	/**
+	 * Tests that parallel aggregation, incremental aggregation and roll-ups
+	 * match the raw data.
+	 */
+	@Test
+	public void testAggregation() {
+		Random random = new Random(7);
+		LGMeasurementData data = new LGMeasurementData();
+		TimeBucketAggregator incremental = new TimeBucketAggregator();
+		List<Long> responseTimes = new ArrayList<>();
+		for (int s = 0; s < SECONDS; s++) {
+			for (int i = 0; i < PER_SECOND; i++) {
+				long stop = START + s * 1000L + i;
+				long responseTime = 1 + (long) Math.abs(random.nextGaussian() * 200);
+				data.addTransactionTime("buy", stop - responseTime, stop);
+				incremental.add("buy", new TimeSpan(stop - responseTime, stop));
+				responseTimes.add(responseTime);
+			}
+			if (s % 2 == 0) {
+				data.addTransactionTime("browse", START + s * 1000L, START + s * 1000L + 5);
+			}
+		}
+		TimeBucketAggregator aggregator = data.aggregate(1000);
+
+		TransactionSummary total = aggregator.getSummary("buy");
+		assertEquals(SECONDS * PER_SECOND, total.getCount());
+		assertEquals(total.getCount(), incremental.getSummary("buy").getCount());
+		assertEquals(Collections.min(responseTimes).longValue(), total.getMin());
+		assertEquals(Collections.max(responseTimes).longValue(), total.getMax());
+		double sum = 0;
+		for (long responseTime : responseTimes) {
+			sum += responseTime;
+		}
+		assertEquals(sum / responseTimes.size(), total.getMean(), 1e-9);
+
+		Collections.sort(responseTimes);
+		long exact = responseTimes.get((int) Math.ceil(0.95 * responseTimes.size()) - 1);
+		long estimate = total.getPercentile(95);
+		assertTrue(estimate >= exact);
+		assertTrue(estimate <= exact * (1 + 1.0 / LatencyHistogram.SUB_BUCKETS));
+		assertEquals(estimate, incremental.getSummary("buy").getPercentile(95));
+
+		SortedMap<Long, TransactionSummary> perMinute = aggregator.getSummaries("buy", 60000);
+		assertEquals(SECONDS / 60, perMinute.size());
+		for (TransactionSummary summary : perMinute.values()) {
+			assertEquals(60 * PER_SECOND, summary.getCount());
+		}
+		assertEquals(10 * PER_SECOND, aggregator.getSummary("buy", START + 10000, START + 20000).getCount());
+
+		NumericPairList<Long, Double> browse = aggregator.getThroughput("browse", 1000);
+		assertEquals(SECONDS - 1, browse.size());
+		assertEquals(1.0, browse.get(0).getValue(), 0.0);
+		assertEquals(0.0, browse.get(1).getValue(), 0.0);
+		assertEquals(SECONDS / 2 + total.getCount(), aggregator.getSummary(null).getCount());
+		assertEquals(SECONDS / 10, aggregator.getPercentiles(null, 10000, 50).size());
+	}
+
+	/**
+	 * Tests that ramp-up and ramp-down of the load are cut off and that the
+	 * data can be filtered to the steady-state window.
+	 */
+	@Test
+	public void testSteadyState() {
+		Random random = new Random(11);
+		LGMeasurementData data = new LGMeasurementData();
+		int rampSeconds = 60;
+		int steadySeconds = 600;
+		int total = 2 * rampSeconds + steadySeconds;
+		for (int s = 0; s < total; s++) {
+			int users = Math.min(100, Math.min(s, total - 1 - s) * 100 / rampSeconds);
+			for (int i = 0; i < users; i++) {
+				long stop = START + s * 1000L + random.nextInt(1000);
+				data.addTransactionTime("buy", stop - 50 - random.nextInt(20), stop);
+			}
+		}
+		TimeSpan window = data.aggregate(1000).getSteadyStateWindow(null);
+		// the window lies within the steady phase and covers most of it
+		assertTrue(window.getStart() >= START + (rampSeconds - 5) * 1000L);
+		assertTrue(window.getStart() <= START + (rampSeconds + steadySeconds / 4) * 1000L);
+		assertTrue(window.getStop() <= START + (rampSeconds + steadySeconds + 5) * 1000L);
+		assertTrue(window.getStop() >= START + (rampSeconds + steadySeconds * 3 / 4) * 1000L);
+
+		LGMeasurementData trimmed = data.trimToSteadyState();
+		for (TimeSpan span : trimmed.getTimesForTransaction("buy")) {
+			assertTrue(span.getStart() >= window.getStart() && span.getStop() <= window.getStop());
+		}
+		assertTrue(trimmed.getTimesForTransaction("buy").size() > 100 * steadySeconds / 2);
+	}
+
+	/**
+	 * Tests that errors are counted and that resolutions must be multiples of
+	 * the base bucket width.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testErrorsAndResolution() {
+		TimeBucketAggregator aggregator = new TimeBucketAggregator(1000);
+		aggregator.add("login", START, START + 10, true);
+		aggregator.add("login", START, START + 20, false);
+		TransactionSummary summary = aggregator.getSummary("login");
+		assertEquals(2, summary.getCount());
+		assertEquals(1, summary.getErrorCount());
+		assertEquals(15.0, summary.getMean(), 0.0);
+		aggregator.getSummaries("login", 1500);
+	}
+}
@@ -0,0 +1,444 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.loadgenerator.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.lpe.common.loadgenerator.config.LGWorkloadConfig;
+import org.lpe.common.loadgenerator.data.LGMeasurementData;
+import org.lpe.common.loadgenerator.data.TimeSpan;
+import org.lpe.common.loadgenerator.scenario.SchedulingMode;
+import org.lpe.common.util.workload.ArrivalPattern;
+import org.lpe.common.util.workload.ArrivalSchedule;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests the {@link HttpLoadEngine}.
+ * 
+ */
+public class HttpLoadEngineTest {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final long TIMEOUT_SECONDS = 30;
+	private static final long SLOW_RESPONSE_MILLIS = 350;
+	private static final long STALL_MILLIS = 1000;
+	private static final int STALL_AFTER = 4;
+
+	private HttpServer server;
+	private ExecutorService serverExecutor;
+	private String baseUrl;
+	private final AtomicInteger requests = new AtomicInteger();
+	private final AtomicInteger postedBytes = new AtomicInteger();
+	private final AtomicInteger stallRequests = new AtomicInteger();
+
+	/**
+	 * Starts a local HTTP server.
+	 * 
+	 * @throws IOException
+	 *             if the server cannot be started
+	 */
+	@Before
+	public void startServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/fixed", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				respond(exchange, 200, "fixed length body".getBytes(UTF8), false);
+			}
+		});
+		server.createContext("/chunked", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				respond(exchange, 200, new byte[100000], true);
+			}
+		});
+		server.createContext("/error", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				respond(exchange, 500, "error".getBytes(UTF8), false);
+			}
+		});
+		server.createContext("/slow", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				try {
+					Thread.sleep(SLOW_RESPONSE_MILLIS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				respond(exchange, 200, new byte[10], false);
+			}
+		});
+		server.createContext("/stall", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				if (stallRequests.incrementAndGet() == STALL_AFTER + 1) {
+					try {
+						Thread.sleep(STALL_MILLIS);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				respond(exchange, 200, new byte[10], false);
+			}
+		});
+		serverExecutor = Executors.newCachedThreadPool();
+		server.setExecutor(serverExecutor);
+		server.start();
+		baseUrl = "http://localhost:" + server.getAddress().getPort();
+	}
+
+	private void respond(HttpExchange exchange, int status, byte[] body, boolean chunked) throws IOException {
+		requests.incrementAndGet();
+		try (InputStream in = exchange.getRequestBody()) {
+			byte[] buffer = new byte[1024];
+			for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+				postedBytes.addAndGet(read);
+			}
+		}
+		exchange.sendResponseHeaders(status, chunked ? 0 : body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	/**
+	 * Stops the local HTTP server.
+	 */
+	@After
+	public void stopServer() {
+		server.stop(0);
+		serverExecutor.shutdownNow();
+	}
+
+	/**
+	 * Tests the parsing of script files.
+	 */
+	@Test
+	public void testParseScript() {
+		HttpScript script = HttpScript.parse(Arrays.asList("# comment", "", "login POST http://host:81/login 1000-3000 a=1 b",
+				"browse get http://host/items?page=2 500", "home GET http://host"));
+		List<HttpStep> steps = script.getSteps();
+		assertEquals(3, steps.size());
+		assertEquals("login", steps.get(0).getTransactionName());
+		assertEquals("POST", steps.get(0).getMethod());
+		assertEquals(1000, steps.get(0).getMinThinkTimeMillis());
+		assertEquals(3000, steps.get(0).getMaxThinkTimeMillis());
+		assertEquals(2000, steps.get(0).getMeanThinkTimeMillis());
+		assertEquals(81, steps.get(0).getAddress().getPort());
+		assertTrue(new String(steps.get(0).newRequestBuffer().array(), UTF8).endsWith(
+				"Content-Length: 5\r\n\r\na=1 b"));
+		assertEquals("GET", steps.get(1).getMethod());
+		assertEquals(500, steps.get(1).getMaxThinkTimeMillis());
+		assertTrue(new String(steps.get(1).newRequestBuffer().array(), UTF8).startsWith(
+				"GET /items?page=2 HTTP/1.1\r\nHost: host\r\n"));
+		assertEquals(80, steps.get(2).getAddress().getPort());
+		assertEquals(0, steps.get(2).getMaxThinkTimeMillis());
+	}
+
+	/**
+	 * Tests that malformed script lines are rejected.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testParseInvalidScript() {
+		HttpScript.parse(Arrays.asList("login POST https://host/login"));
+	}
+
+	/**
+	 * Tests that each user executes the script once and that all responses are
+	 * recorded.
+	 * 
+	 * @throws Exception
+	 *             if the experiment fails
+	 */
+	@Test
+	public void testRunUntilCompletion() throws Exception {
+		int users = 200;
+		HttpScript script = HttpScript.parse(Arrays.asList("fixed GET " + baseUrl + "/fixed",
+				"chunked GET " + baseUrl + "/chunked 0-5", "post POST " + baseUrl + "/fixed 0 hello",
+				"error GET " + baseUrl + "/error"));
+		LGWorkloadConfig config = createConfig(users, SchedulingMode.runUntilCompletion);
+		config.setRampUpUsersPerInterval(100);
+		config.setRampUpIntervalLength(1);
+
+		HttpLoadEngine engine = new HttpLoadEngine(script, config);
+		engine.start();
+		assertTrue(engine.awaitFinished(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+		LGMeasurementData data = engine.getMeasurementData();
+		assertEquals(users, data.getTimesForTransaction("fixed").size());
+		assertEquals(users, data.getTimesForTransaction("chunked").size());
+		assertEquals(users, data.getTimesForTransaction("post").size());
+		assertEquals(users, data.getTimesForTransaction("error" + HttpLoadEngine.ERROR_SUFFIX).size());
+		assertNull(data.getTimesForTransaction("error"));
+		assertEquals(4 * users, requests.get());
+		assertEquals(5 * users, postedBytes.get());
+		assertEquals(0, engine.getFailedRequests());
+		assertEquals(0, engine.getActiveUsers());
+	}
+
+	/**
+	 * Tests that users repeat the script until the cool-down stops them.
+	 * 
+	 * @throws Exception
+	 *             if the experiment fails
+	 */
+	@Test
+	public void testDynamicScheduling() throws Exception {
+		HttpScript script = HttpScript.parse(Arrays.asList("fixed GET " + baseUrl + "/fixed 20-40"));
+		LGWorkloadConfig config = createConfig(4, SchedulingMode.dynamicScheduling);
+		config.setRampUpUsersPerInterval(2);
+		config.setRampUpIntervalLength(1);
+		config.setExperimentDuration(1);
+		config.setCoolDownUsersPerInterval(2);
+		config.setCoolDownIntervalLength(1);
+
+		long start = System.currentTimeMillis();
+		HttpLoadEngine engine = new HttpLoadEngine(script, config);
+		engine.start();
+		assertFalse(engine.awaitFinished(500, TimeUnit.MILLISECONDS));
+		assertEquals(2, engine.getActiveUsers());
+		assertTrue(engine.awaitFinished(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		long duration = System.currentTimeMillis() - start;
+
+		// ramp-up of 1 s, duration of 1 s and cool-down of 1 s
+		assertTrue(duration >= 3000);
+		int samples = engine.getMeasurementData().getTimesForTransaction("fixed").size();
+		// users repeat the script, but not faster than the think time allows
+		// within the 8 user-seconds of the experiment
+		assertTrue(samples > 4 * 2);
+		assertTrue(samples <= 8000 / 20 + 4);
+	}
+
+	/**
+	 * Tests that a stall is complemented by the samples the user missed, which
+	 * are recorded apart from the measured samples.
+	 * 
+	 * @throws Exception
+	 *             if the experiment fails
+	 */
+	@Test
+	public void testCoordinatedOmissionCorrection() throws Exception {
+		HttpScript script = HttpScript.parse(Collections.nCopies(STALL_AFTER + 2, "stall GET " + baseUrl
+				+ "/stall 20"));
+		HttpLoadEngine engine = new HttpLoadEngine(script, createConfig(1, SchedulingMode.runUntilCompletion));
+		engine.start();
+		assertTrue(engine.awaitFinished(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		assertEquals(STALL_AFTER + 2, engine.getMeasurementData().getTimesForTransaction("stall").size());
+		assertNull(engine.getMeasurementData().getTimesForTransaction("stall" + HttpLoadEngine.CORRECTED_SUFFIX));
+
+		stallRequests.set(0);
+		engine = new HttpLoadEngine(script, createConfig(1, SchedulingMode.runUntilCompletion));
+		engine.setCorrectCoordinatedOmission(true);
+		engine.start();
+		assertTrue(engine.awaitFinished(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		LGMeasurementData data = engine.getMeasurementData();
+		assertEquals(STALL_AFTER + 2, data.getTimesForTransaction("stall").size());
+		// a stall of 1000 ms with a cycle of about 20 ms misses dozens of
+		// requests
+		List<TimeSpan> corrected = data.getTimesForTransaction("stall" + HttpLoadEngine.CORRECTED_SUFFIX);
+		assertTrue(corrected.size() >= 10);
+		for (TimeSpan span : corrected) {
+			assertTrue(span.getStop() - span.getStart() < STALL_MILLIS);
+		}
+	}
+
+	/**
+	 * Tests that the correction adds no samples to a closed loop without
+	 * stalls and never corrects failed requests.
+	 * 
+	 * @throws Exception
+	 *             if the experiment fails
+	 */
+	@Test
+	public void testNoCorrectionWithoutStall() throws Exception {
+		HttpScript script = HttpScript.parse(Collections.nCopies(10, "fixed GET " + baseUrl + "/fixed 50"));
+		LGWorkloadConfig config = createConfig(4, SchedulingMode.runUntilCompletion);
+		config.setRampUpUsersPerInterval(4);
+		HttpLoadEngine engine = new HttpLoadEngine(script, config);
+		engine.setCorrectCoordinatedOmission(true);
+		engine.start();
+		assertTrue(engine.awaitFinished(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		assertEquals(40, engine.getMeasurementData().getTimesForTransaction("fixed").size());
+		assertNull(engine.getMeasurementData().getTimesForTransaction("fixed" + HttpLoadEngine.CORRECTED_SUFFIX));
+
+		int port;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		script = HttpScript.parse(Collections.nCopies(3, "refused GET http://localhost:" + port + "/ 0"));
+		engine = new HttpLoadEngine(script, createConfig(1, SchedulingMode.runUntilCompletion));
+		engine.setCorrectCoordinatedOmission(true);
+		engine.start();
+		assertTrue(engine.awaitFinished(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		assertEquals(3, engine.getMeasurementData().getTimesForTransaction("refused" + HttpLoadEngine.ERROR_SUFFIX)
+				.size());
+		assertNull(engine.getMeasurementData().getTimesForTransaction(
+				"refused" + HttpLoadEngine.ERROR_SUFFIX + HttpLoadEngine.CORRECTED_SUFFIX));
+	}
+
+	/**
+	 * Tests that an open workload executes the script once per arrival.
+	 * 
+	 * @throws Exception
+	 *             if the experiment fails
+	 */
+	@Test
+	public void testOpenWorkload() throws Exception {
+		HttpScript script = HttpScript.parse(Arrays.asList("fixed GET " + baseUrl + "/fixed 0",
+				"chunked GET " + baseUrl + "/chunked"));
+		LGWorkloadConfig config = createConfig(50, SchedulingMode.openWorkload);
+		config.setArrivalSchedule(new ArrivalSchedule(ArrivalPattern.constant, 100, 0, 1, 2));
+
+		long start = System.currentTimeMillis();
+		HttpLoadEngine engine = new HttpLoadEngine(script, config);
+		engine.start();
+		assertTrue(engine.awaitFinished(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		assertTrue(System.currentTimeMillis() - start >= 1990);
+
+		LGMeasurementData data = engine.getMeasurementData();
+		assertEquals(200, data.getTimesForTransaction("fixed").size());
+		assertEquals(200, data.getTimesForTransaction("chunked").size());
+	}
+
+	/**
+	 * Tests that the response times of an open workload include the time an
+	 * arrival waited for a free user.
+	 * 
+	 * @throws Exception
+	 *             if the experiment fails
+	 */
+	@Test
+	public void testOpenWorkloadQueueing() throws Exception {
+		HttpScript script = HttpScript.parse(Arrays.asList("slow GET " + baseUrl + "/slow 0"));
+		LGWorkloadConfig config = createConfig(2, SchedulingMode.openWorkload);
+		config.setArrivalSchedule(new ArrivalSchedule(ArrivalPattern.constant, 20, 0, 1, 1));
+
+		HttpLoadEngine engine = new HttpLoadEngine(script, config);
+		engine.start();
+		Thread.sleep(1500);
+		assertTrue(engine.getQueuedArrivals() > 0);
+		assertTrue(engine.awaitFinished(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+		List<TimeSpan> spans = engine.getMeasurementData().getTimesForTransaction("slow");
+		assertEquals(20, spans.size());
+		long maxResponseTime = 0;
+		for (TimeSpan span : spans) {
+			maxResponseTime = Math.max(maxResponseTime, span.getStop() - span.getStart());
+		}
+		// 20 arrivals within 1 s served by 2 users in 350 ms each
+		assertTrue(maxResponseTime > 2000);
+	}
+
+	/**
+	 * Tests that unreachable servers are recorded as failed requests.
+	 * 
+	 * @throws Exception
+	 *             if the experiment fails
+	 */
+	@Test
+	public void testConnectionRefused() throws Exception {
+		int port;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		HttpScript script = HttpScript.parse(Arrays.asList("refused GET http://localhost:" + port + "/"));
+		HttpLoadEngine engine = new HttpLoadEngine(script, createConfig(3, SchedulingMode.runUntilCompletion));
+		engine.start();
+		assertTrue(engine.awaitFinished(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		assertEquals(3, engine.getMeasurementData().getTimesForTransaction("refused" + HttpLoadEngine.ERROR_SUFFIX)
+				.size());
+		assertEquals(3, engine.getFailedRequests());
+	}
+
+	/**
+	 * Tests that a failing callback affects only its own request.
+	 * 
+	 * @throws Exception
+	 *             if the client fails
+	 */
+	@Test
+	public void testFailingCallback() throws Exception {
+		final HttpStep step = HttpScript.parse(Arrays.asList("fixed GET " + baseUrl + "/fixed")).getSteps().get(0);
+		final CountDownLatch completed = new CountDownLatch(1);
+		try (NioHttpClient client = new NioHttpClient(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS))) {
+			client.execute(new NioHttpClient.Connection(), step, new NioHttpClient.Callback() {
+				@Override
+				public void completed(int status) {
+					completed.countDown();
+					throw new IllegalStateException("failing callback");
+				}
+
+				@Override
+				public void failed(IOException e) {
+					throw new IllegalStateException("failing callback", e);
+				}
+			});
+			assertTrue(awaitStatus(client, step, 200));
+			assertTrue(awaitStatus(client, step, 200));
+			assertTrue(completed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		}
+	}
+
+	private static boolean awaitStatus(NioHttpClient client, HttpStep step, final int expected)
+			throws InterruptedException {
+		final CountDownLatch done = new CountDownLatch(1);
+		final AtomicInteger status = new AtomicInteger();
+		client.execute(new NioHttpClient.Connection(), step, new NioHttpClient.Callback() {
+			@Override
+			public void completed(int code) {
+				status.set(code);
+				done.countDown();
+			}
+
+			@Override
+			public void failed(IOException e) {
+				done.countDown();
+			}
+		});
+		return done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS) && status.get() == expected;
+	}
+
+	private static LGWorkloadConfig createConfig(int users, SchedulingMode mode) {
+		LGWorkloadConfig config = new LGWorkloadConfig();
+		config.setNumUsers(users);
+		config.setSchedulingMode(mode);
+		return config;
+	}
+}
@@ -22,8 +22,17 @@ import java.net.HttpURLConnection;
 import javax.ws.rs.core.MediaType;
 
 import org.lpe.common.remotecontrol.data.FileContainer;
+import org.lpe.common.remotecontrol.data.ResourceSampleQuery;
+import org.lpe.common.remotecontrol.data.ResourceSamplingConfig;
+import org.lpe.common.util.BinarySeries;
+import org.lpe.common.util.clock.ClockOffset;
+import org.lpe.common.util.clock.ClockOffsetTable;
+import org.lpe.common.util.clock.ClockSample;
+import org.lpe.common.util.clock.ClockSampleSource;
+import org.lpe.common.util.monitoring.ResourceSamples;
 import org.lpe.common.util.web.LpeWebUtils;
 
+import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.WebResource;
 
 /**
@@ -32,16 +41,20 @@ import com.sun.jersey.api.client.WebResource;
  * @author Christoph Heger
  * 
  */
-public class RemoteControlClient {
+public class RemoteControlClient implements ClockSampleSource {
 
 	private static final String REST = "remotecontrol";
 	private static final String TEST_CONNECTION = "testConnection";
 	private static final String CURRENT_TIME = "currentTime";
+	private static final String CLOCK_SAMPLE = "clockSample";
 	private static final String EXECUTE_SHELL_SCRIPT = "execute";
 	private static final String GET_CONFIG_FILE = "getConfigFile";
 	private static final String WRITE_FILE = "writeFile";
 	private static final String STREAM_FILE = "streamFile";
 	private static final String SET_FILE_TO_STREAM = "setFileToStream";
+	private static final String START_RESOURCE_SAMPLING = "startResourceSampling";
+	private static final String STOP_RESOURCE_SAMPLING = "stopResourceSampling";
+	private static final String GET_RESOURCE_SAMPLES = "getResourceSamples";
 
 	private String url;
 	private WebResource service;
@@ -58,14 +71,49 @@ public class RemoteControlClient {
 		service = LpeWebUtils.getWebClient().resource(url);
 	}
 
+	/**
+	 * 
+	 * @return the base URL of the remote control service
+	 */
+	public String getUrl() {
+		return url;
+	}
+
 	/**
 	 * 
 	 * @return current local time of the remote control service machine
+	 * @deprecated a single time request ignores the network delay, use
+	 *             {@link #getClockOffset()} instead
 	 */
+	@Deprecated
 	public long getCurrentTime() {
 		return service.path(REST).path(CURRENT_TIME).accept(MediaType.APPLICATION_JSON).get(long.class);
 	}
 
+	@Override
+	public ClockSample requestClockSample() {
+		return service.path(REST).path(CLOCK_SAMPLE).accept(MediaType.APPLICATION_JSON).get(ClockSample.class);
+	}
+
+	/**
+	 * Estimates the clock offset of the remote control service machine and
+	 * keeps it up to date in the {@link ClockOffsetTable}.
+	 * 
+	 * @return the initial clock offset estimate
+	 */
+	public ClockOffset synchronizeClock() {
+		return ClockOffsetTable.getInstance().register(url, this, ClockOffsetTable.DEFAULT_PERIOD_MILLIS);
+	}
+
+	/**
+	 * 
+	 * @return the current clock offset estimate of the remote control service
+	 *         machine or null, if the clocks have not been synchronized
+	 */
+	public ClockOffset getClockOffset() {
+		return ClockOffsetTable.getInstance().getOffset(url);
+	}
+
 	/**
 	 * Executes a given shell script on the remote controlled machine.
 	 * 
@@ -119,6 +167,89 @@ public class RemoteControlClient {
 		
 	}
 
+	/**
+	 * Starts sampling the resources of the remote machine. A running sampling
+	 * session is replaced.
+	 * 
+	 * @param intervalMillis
+	 *            sampling interval in [ms]
+	 * @param capacity
+	 *            number of samples to keep on the remote machine
+	 */
+	public void startResourceSampling(long intervalMillis, int capacity) {
+		ResourceSamplingConfig config = new ResourceSamplingConfig();
+		config.setIntervalMillis(intervalMillis);
+		config.setCapacity(capacity);
+		service.path(REST).path(START_RESOURCE_SAMPLING).type(MediaType.APPLICATION_JSON).post(config);
+	}
+
+	/**
+	 * Stops sampling the resources of the remote machine.
+	 */
+	public void stopResourceSampling() {
+		service.path(REST).path(STOP_RESOURCE_SAMPLING).post();
+	}
+
+	/**
+	 * Retrieves the resource samples of the remote machine. Timestamps are
+	 * given in the time of the remote machine.
+	 * 
+	 * @param fromMillis
+	 *            start of the range in remote time [ms] (inclusive)
+	 * @param toMillis
+	 *            end of the range in remote time [ms] (inclusive)
+	 * @return the samples
+	 * @throws IOException
+	 *             if the samples cannot be read
+	 */
+	public ResourceSamples getResourceSamples(long fromMillis, long toMillis) throws IOException {
+		ResourceSampleQuery query = new ResourceSampleQuery();
+		query.setFromMillis(fromMillis);
+		query.setToMillis(toMillis);
+		ClientResponse response = service.path(REST).path(GET_RESOURCE_SAMPLES).type(MediaType.APPLICATION_JSON)
+				.accept(MediaType.APPLICATION_OCTET_STREAM).post(ClientResponse.class, query);
+		if (response.getStatus() != ClientResponse.Status.OK.getStatusCode()) {
+			throw new IOException("Failed to retrieve resource samples from " + url + ": HTTP "
+					+ response.getStatus());
+		}
+		try (InputStream in = response.getEntityInputStream()) {
+			return ResourceSamples.fromBinarySeries(BinarySeries.read(in));
+		}
+	}
+
+	/**
+	 * Retrieves the resource samples of the remote machine and converts all
+	 * timestamps into the local time of this machine. Synchronizes the clocks
+	 * if this has not been done before, see {@link #synchronizeClock()}.
+	 * 
+	 * @param fromMillis
+	 *            start of the range in local time [ms] (inclusive)
+	 * @param toMillis
+	 *            end of the range in local time [ms] (inclusive)
+	 * @return the samples in local time
+	 * @throws IOException
+	 *             if the samples cannot be read
+	 */
+	public ResourceSamples getAlignedResourceSamples(long fromMillis, long toMillis) throws IOException {
+		ClockOffset offset = getOrSynchronizeClockOffset();
+		long remoteFrom = fromMillis == Long.MIN_VALUE ? fromMillis : offset.toRemoteTimeMillis(fromMillis);
+		long remoteTo = toMillis == Long.MAX_VALUE ? toMillis : offset.toRemoteTimeMillis(toMillis);
+		return getResourceSamples(remoteFrom, remoteTo).toLocalTime(offset);
+	}
+
+	/**
+	 * 
+	 * @return the current clock offset estimate; the clocks are synchronized
+	 *         if this has not been done before
+	 */
+	ClockOffset getOrSynchronizeClockOffset() {
+		ClockOffset offset = getClockOffset();
+		if (offset == null) {
+			offset = synchronizeClock();
+		}
+		return offset;
+	}
+
 	/**
 	 * 
 	 * @return true if connecting to service possible
@@ -0,0 +1,186 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.remotecontrol;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.lpe.common.util.clock.ClockOffset;
+import org.lpe.common.util.concurrency.ExecutorRegistry;
+import org.lpe.common.util.monitoring.ResourceSamples;
+
+/**
+ * Controls resource sampling sessions on several remote control services and
+ * collects their samples concurrently. All returned samples are converted
+ * into the local time of this machine, so that the nodes can be compared with
+ * each other and with locally measured response times.
+ * 
+ * Samples are transferred as compressed binary series. {@link #poll()}
+ * fetches only the samples that have been taken since the previous poll,
+ * which keeps the transferred volume proportional to the sampling rate.
+ * 
+ */
+public class ResourceTelemetryCollector {
+	private static final int MAX_PARALLEL_REQUESTS = 16;
+	private static final String EXECUTOR_NAME = "resource-telemetry";
+
+	private final List<RemoteControlClient> clients;
+	private final Map<String, Long> lastRemoteTimestamps = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param clients
+	 *            clients of the nodes to collect from
+	 */
+	public ResourceTelemetryCollector(Collection<RemoteControlClient> clients) {
+		if (clients.isEmpty()) {
+			throw new IllegalArgumentException("At least one node is required.");
+		}
+		this.clients = new ArrayList<>(clients);
+	}
+
+	/**
+	 * Synchronizes the clocks of all nodes and starts sampling on them.
+	 * 
+	 * @param intervalMillis
+	 *            sampling interval in [ms]
+	 * @param capacity
+	 *            number of samples to keep on each node
+	 * @throws IOException
+	 *             if a node cannot be started
+	 */
+	public void start(final long intervalMillis, final int capacity) throws IOException {
+		lastRemoteTimestamps.clear();
+		forAll(new NodeTask<Void>() {
+			@Override
+			public Void call(RemoteControlClient client) {
+				client.getOrSynchronizeClockOffset();
+				client.startResourceSampling(intervalMillis, capacity);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Stops sampling on all nodes.
+	 * 
+	 * @throws IOException
+	 *             if a node cannot be stopped
+	 */
+	public void stop() throws IOException {
+		forAll(new NodeTask<Void>() {
+			@Override
+			public Void call(RemoteControlClient client) {
+				client.stopResourceSampling();
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Collects the samples of all nodes within the given time range.
+	 * 
+	 * @param fromMillis
+	 *            start of the range in local time [ms] (inclusive)
+	 * @param toMillis
+	 *            end of the range in local time [ms] (inclusive)
+	 * @return samples in local time per node URL, in the order of the clients
+	 * @throws IOException
+	 *             if the samples of a node cannot be retrieved
+	 */
+	public Map<String, ResourceSamples> collect(final long fromMillis, final long toMillis) throws IOException {
+		return forAll(new NodeTask<ResourceSamples>() {
+			@Override
+			public ResourceSamples call(RemoteControlClient client) throws IOException {
+				return client.getAlignedResourceSamples(fromMillis, toMillis);
+			}
+		});
+	}
+
+	/**
+	 * Collects the samples of all nodes that have been taken since the
+	 * previous call (or since {@link #start(long, int)}).
+	 * 
+	 * @return new samples in local time per node URL, in the order of the
+	 *         clients
+	 * @throws IOException
+	 *             if the samples of a node cannot be retrieved
+	 */
+	public Map<String, ResourceSamples> poll() throws IOException {
+		return forAll(new NodeTask<ResourceSamples>() {
+			@Override
+			public ResourceSamples call(RemoteControlClient client) throws IOException {
+				ClockOffset offset = client.getOrSynchronizeClockOffset();
+				Long last = lastRemoteTimestamps.get(client.getUrl());
+				long from = last == null ? Long.MIN_VALUE : last + 1;
+				ResourceSamples samples = client.getResourceSamples(from, Long.MAX_VALUE);
+				if (samples.size() > 0) {
+					lastRemoteTimestamps.put(client.getUrl(), samples.getTimestamp(samples.size() - 1));
+				}
+				return samples.toLocalTime(offset);
+			}
+		});
+	}
+
+	private <T> Map<String, T> forAll(final NodeTask<T> task) throws IOException {
+		ExecutorService executor = ExecutorRegistry.getInstance().getExecutor(EXECUTOR_NAME);
+		try {
+			List<Callable<T>> calls = new ArrayList<>(clients.size());
+			for (final RemoteControlClient client : clients) {
+				calls.add(new Callable<T>() {
+					@Override
+					public T call() throws Exception {
+						return task.call(client);
+					}
+				});
+			}
+			List<Future<T>> futures = ExecutorRegistry.invokeAll(executor, calls, MAX_PARALLEL_REQUESTS);
+			Map<String, T> result = new LinkedHashMap<>();
+			for (int i = 0; i < clients.size(); i++) {
+				result.put(clients.get(i).getUrl(), futures.get(i).get());
+			}
+			return result;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while contacting nodes.", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Failed to contact node.", e.getCause());
+		}
+	}
+
+	/**
+	 * Operation on a single node.
+	 * 
+	 * @param <T>
+	 *            result type
+	 */
+	private interface NodeTask<T> {
+		T call(RemoteControlClient client) throws IOException;
+	}
+}
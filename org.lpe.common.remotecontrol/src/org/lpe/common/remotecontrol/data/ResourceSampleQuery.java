@@ -0,0 +1,62 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.remotecontrol.data;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Time range of requested resource samples in the time of the sampling node,
+ * to be used for JSON interfaces.
+ * 
+ */
+@XmlRootElement
+@XmlAccessorType(XmlAccessType.FIELD)
+public class ResourceSampleQuery {
+	private long fromMillis;
+	private long toMillis = Long.MAX_VALUE;
+
+	/**
+	 * @return start of the range in [ms] (inclusive)
+	 */
+	public long getFromMillis() {
+		return fromMillis;
+	}
+
+	/**
+	 * @param fromMillis
+	 *            start of the range in [ms] (inclusive) to set
+	 */
+	public void setFromMillis(long fromMillis) {
+		this.fromMillis = fromMillis;
+	}
+
+	/**
+	 * @return end of the range in [ms] (inclusive)
+	 */
+	public long getToMillis() {
+		return toMillis;
+	}
+
+	/**
+	 * @param toMillis
+	 *            end of the range in [ms] (inclusive) to set
+	 */
+	public void setToMillis(long toMillis) {
+		this.toMillis = toMillis;
+	}
+}
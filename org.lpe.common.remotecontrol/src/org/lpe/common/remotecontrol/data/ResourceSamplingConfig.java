@@ -0,0 +1,68 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.remotecontrol.data;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Configuration of a resource sampling session, to be used for JSON
+ * interfaces.
+ * 
+ */
+@XmlRootElement
+@XmlAccessorType(XmlAccessType.FIELD)
+public class ResourceSamplingConfig {
+	/** default sampling interval in [ms]. */
+	public static final long DEFAULT_INTERVAL_MILLIS = 1000;
+	/** default number of samples kept on the node. */
+	public static final int DEFAULT_CAPACITY = 36000;
+
+	private long intervalMillis = DEFAULT_INTERVAL_MILLIS;
+	private int capacity = DEFAULT_CAPACITY;
+
+	/**
+	 * @return the sampling interval in [ms]
+	 */
+	public long getIntervalMillis() {
+		return intervalMillis;
+	}
+
+	/**
+	 * @param intervalMillis
+	 *            the sampling interval in [ms] to set
+	 */
+	public void setIntervalMillis(long intervalMillis) {
+		this.intervalMillis = intervalMillis;
+	}
+
+	/**
+	 * @return the number of samples kept on the node; older samples are
+	 *         overwritten
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @param capacity
+	 *            the number of samples kept on the node to set
+	 */
+	public void setCapacity(int capacity) {
+		this.capacity = capacity;
+	}
+}
@@ -34,8 +34,15 @@ import javax.ws.rs.core.Response;
 import javax.ws.rs.core.StreamingOutput;
 
 import org.lpe.common.remotecontrol.data.FileContainer;
+import org.lpe.common.remotecontrol.data.ResourceSampleQuery;
+import org.lpe.common.remotecontrol.data.ResourceSamplingConfig;
 import org.lpe.common.remotecontrol.exceptions.RemoteControlException;
+import org.lpe.common.util.BinarySeries;
 import org.lpe.common.util.LpeStreamUtils;
+import org.lpe.common.util.clock.ClockSample;
+import org.lpe.common.util.clock.HighResolutionClock;
+import org.lpe.common.util.monitoring.ResourceSampler;
+import org.lpe.common.util.monitoring.ResourceSamples;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -53,7 +60,8 @@ public class RemoteControlService {
 
 	private static final int BUFFER_SIZE = 4096;
 	private static final Logger LOGGER = LoggerFactory.getLogger(RemoteControlService.class);
-	private FileReader fileReader;
+
+	private ResourceSampler sampler;
 
 	/**
 	 * Executes a command on the remote controlled system.
@@ -156,8 +164,11 @@ public class RemoteControlService {
 
 	/**
 	 * 
-	 * @return true if experiment has been finished
+	 * @return current local time in [ms]
+	 * @deprecated a single time request ignores the network delay, use
+	 *             {@link #getClockSample()} instead
 	 */
+	@Deprecated
 	@GET
 	@Path("currentTime")
 	@Produces(MediaType.APPLICATION_JSON)
@@ -165,6 +176,87 @@ public class RemoteControlService {
 		return System.currentTimeMillis();
 	}
 
+	/**
+	 * Answers a clock synchronization request.
+	 * 
+	 * @return receive and transmit time of this request
+	 */
+	@GET
+	@Path("clockSample")
+	@Produces(MediaType.APPLICATION_JSON)
+	public ClockSample getClockSample() {
+		return ClockSample.create(HighResolutionClock.currentTimeNanos());
+	}
+
+	/**
+	 * Starts a resource sampling session on this node. A running session is
+	 * replaced, its samples are discarded.
+	 * 
+	 * @param config
+	 *            sampling interval and number of samples to keep
+	 * @throws RemoteControlException
+	 *             if the resources of this node cannot be sampled
+	 */
+	@POST
+	@Path("startResourceSampling")
+	@Consumes(MediaType.APPLICATION_JSON)
+	public void startResourceSampling(ResourceSamplingConfig config) throws RemoteControlException {
+		synchronized (this) {
+			closeSampler();
+			try {
+				sampler = createSampler(config);
+			} catch (IOException | IllegalArgumentException e) {
+				throw new RemoteControlException("Cannot sample resources of this node!", e);
+			}
+			sampler.start();
+			LOGGER.info("Started resource sampling every {} ms using {}.", config.getIntervalMillis(),
+					sampler.getSourceName());
+		}
+	}
+
+	/**
+	 * Stops the resource sampling session. The samples remain available until
+	 * the next session is started.
+	 */
+	@POST
+	@Path("stopResourceSampling")
+	public void stopResourceSampling() {
+		synchronized (this) {
+			if (sampler != null) {
+				sampler.stop();
+				LOGGER.info("Stopped resource sampling.");
+			}
+		}
+	}
+
+	/**
+	 * Returns the resource samples within the given time range as compressed
+	 * {@link BinarySeries}, see {@link ResourceSamples#toBinarySeries()}.
+	 * 
+	 * @param query
+	 *            time range in local time of this node
+	 * @return the samples
+	 */
+	@POST
+	@Path("getResourceSamples")
+	@Consumes(MediaType.APPLICATION_JSON)
+	@Produces(MediaType.APPLICATION_OCTET_STREAM)
+	public StreamingOutput getResourceSamples(ResourceSampleQuery query) {
+		final ResourceSamples samples;
+		synchronized (this) {
+			if (sampler == null) {
+				throw new IllegalStateException("No resource sampling session has been started!");
+			}
+			samples = sampler.getSamples(query.getFromMillis(), query.getToMillis());
+		}
+		return new StreamingOutput() {
+			@Override
+			public void write(OutputStream os) throws IOException {
+				samples.toBinarySeries().write(os, BinarySeries.Compression.COMPRESSED);
+			}
+		};
+	}
+
 	/**
 	 * 
 	 * @return true if connection established
@@ -176,6 +268,30 @@ public class RemoteControlService {
 		return true;
 	}
 
+	/**
+	 * Creates the sampler of a new resource sampling session.
+	 * 
+	 * @param config
+	 *            sampling interval and number of samples to keep
+	 * @return a sampler for this node
+	 * @throws IOException
+	 *             if the resources of this node cannot be sampled
+	 */
+	protected ResourceSampler createSampler(ResourceSamplingConfig config) throws IOException {
+		return ResourceSampler.create(config.getIntervalMillis(), config.getCapacity());
+	}
+
+	private void closeSampler() {
+		if (sampler != null) {
+			try {
+				sampler.close();
+			} catch (IOException e) {
+				LOGGER.warn("Failed to close resource sampler: {}", e.getMessage());
+			}
+			sampler = null;
+		}
+	}
+
 	private void executeShellScript(String fileName) throws RemoteControlException {
 		checkFile(fileName);
 
@@ -220,11 +336,10 @@ public class RemoteControlService {
 	private FileContainer readConfigFile(String fileName) throws RemoteControlException {
 		FileContainer fContainer = new FileContainer();
 		fContainer.setFileName(fileName);
-		try {
-			fileReader = new FileReader(fileName);
-
+		// the service is a singleton, the reader must not be shared between
+		// concurrent requests
+		try (BufferedReader bReader = new BufferedReader(new FileReader(fileName))) {
 			StringBuffer sBuffer = new StringBuffer();
-			BufferedReader bReader = new BufferedReader(fileReader);
 
 			String line = bReader.readLine();
 
@@ -241,15 +356,6 @@ public class RemoteControlService {
 			return fContainer;
 		} catch (IOException e) {
 			throw new RemoteControlException("Failed reading config file!", e);
-		} finally {
-			if (fileReader != null) {
-				try {
-					fileReader.close();
-				} catch (IOException e) {
-					throw new RemoteControlException("Error while closing file reader for file " + fileName, e);
-				}
-			}
-
 		}
 	}
 
@@ -0,0 +1,195 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.remotecontrol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.lpe.common.util.clock.ClockOffset;
+import org.lpe.common.util.clock.ClockOffsetTable;
+import org.lpe.common.util.clock.ClockSample;
+import org.lpe.common.util.clock.ClockSampleSource;
+import org.lpe.common.util.clock.HighResolutionClock;
+import org.lpe.common.util.monitoring.ResourceMetric;
+import org.lpe.common.util.monitoring.ResourceSamples;
+import org.lpe.common.util.monitoring.StubResourceReader;
+
+/**
+ * Tests the resource sampling of the {@link RemoteControlClient} against a
+ * local remote control service.
+ * 
+ */
+public class RemoteControlClientTest {
+	private static final long INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+	private static final int CAPACITY = 100;
+	private static final long OFFSET_MILLIS = 10000;
+
+	private StubRemoteControlServer server;
+	private RemoteControlClient client;
+
+	/**
+	 * Starts the service.
+	 * 
+	 * @throws IOException
+	 *             if the service cannot be started
+	 */
+	@Before
+	public void startServer() throws IOException {
+		server = new StubRemoteControlServer();
+		client = server.getClient();
+	}
+
+	/**
+	 * Stops the service and forgets all clock offsets.
+	 */
+	@After
+	public void stopServer() {
+		ClockOffsetTable.getInstance().clear();
+		server.close();
+	}
+
+	/**
+	 * Tests that samples cannot be fetched before a session has been started.
+	 */
+	@Test
+	public void testNoSession() {
+		try {
+			client.getResourceSamples(Long.MIN_VALUE, Long.MAX_VALUE);
+			fail("Expected an IOException");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains(client.getUrl()));
+		}
+	}
+
+	/**
+	 * Tests the transfer of the samples, time range queries, an empty session
+	 * and fetching after the session has been stopped.
+	 * 
+	 * @throws Exception
+	 *             if the service fails
+	 */
+	@Test
+	public void testResourceSamples() throws Exception {
+		client.startResourceSampling(INTERVAL_MILLIS, CAPACITY);
+		server.awaitInitialReading();
+		assertEquals(0, client.getResourceSamples(Long.MIN_VALUE, Long.MAX_VALUE).size());
+
+		server.sample(5);
+		ResourceSamples samples = client.getResourceSamples(Long.MIN_VALUE, Long.MAX_VALUE);
+		assertEquals(5, samples.size());
+		assertEquals(StubResourceReader.NUM_CORES, samples.getNumCores());
+		for (int i = 0; i < samples.size(); i++) {
+			assertEquals(0.5, samples.getValue(ResourceMetric.CPU_UTILIZATION, i), 0.0);
+			assertEquals(0.5, samples.getCoreUtilization(1, i), 0.0);
+			assertEquals(StubResourceReader.MEMORY_USED, samples.getValue(ResourceMetric.MEMORY_USED, i), 0.0);
+		}
+
+		ResourceSamples range = client.getResourceSamples(samples.getTimestamp(1), samples.getTimestamp(3));
+		assertEquals(3, range.size());
+		assertEquals(samples.getTimestamp(1), range.getTimestamp(0));
+		assertEquals(samples.getTimestamp(3), range.getTimestamp(2));
+		assertEquals(0, client.getResourceSamples(samples.getTimestamp(4) + 1, Long.MAX_VALUE).size());
+
+		client.stopResourceSampling();
+		assertFalse(server.getSampler().isRunning());
+		assertEquals(5, client.getResourceSamples(Long.MIN_VALUE, Long.MAX_VALUE).size());
+
+		// a new session discards the samples of the previous one
+		client.startResourceSampling(INTERVAL_MILLIS, CAPACITY);
+		server.awaitInitialReading();
+		assertEquals(0, client.getResourceSamples(Long.MIN_VALUE, Long.MAX_VALUE).size());
+		client.stopResourceSampling();
+	}
+
+	/**
+	 * Tests that aligned samples and their time range are converted with the
+	 * clock offset of the service.
+	 * 
+	 * @throws Exception
+	 *             if the service fails
+	 */
+	@Test
+	public void testAlignedResourceSamples() throws Exception {
+		ClockOffset offset = ClockOffsetTable.getInstance().register(client.getUrl(), new ShiftedClock(), 0);
+		assertEquals(OFFSET_MILLIS, TimeUnit.NANOSECONDS.toMillis(offset.getOffsetNanos()), 1);
+
+		client.startResourceSampling(INTERVAL_MILLIS, CAPACITY);
+		server.awaitInitialReading();
+		server.sample(5);
+		client.stopResourceSampling();
+
+		// the service runs in this process, thus its samples are shifted
+		// by the registered offset only
+		ResourceSamples remote = client.getResourceSamples(Long.MIN_VALUE, Long.MAX_VALUE);
+		ResourceSamples aligned = client.getAlignedResourceSamples(Long.MIN_VALUE, Long.MAX_VALUE);
+		assertEquals(remote.size(), aligned.size());
+		for (int i = 0; i < remote.size(); i++) {
+			assertEquals(offset.toLocalTimeMillis(remote.getTimestamp(i)), aligned.getTimestamp(i));
+			assertEquals(remote.getTimestamp(i) - OFFSET_MILLIS, aligned.getTimestamp(i), 1);
+		}
+
+		// samples are at least 5 ms apart, a margin of 2 ms covers rounding
+		ResourceSamples range = client.getAlignedResourceSamples(aligned.getTimestamp(1) - 2,
+				aligned.getTimestamp(3) + 2);
+		assertEquals(3, range.size());
+		assertEquals(aligned.getTimestamp(1), range.getTimestamp(0));
+	}
+
+	/**
+	 * Tests the conversion of remote timestamps into local time.
+	 * 
+	 * @throws Exception
+	 *             if the service fails
+	 */
+	@Test
+	public void testToLocalTime() throws Exception {
+		client.startResourceSampling(INTERVAL_MILLIS, CAPACITY);
+		server.awaitInitialReading();
+		server.sample(3);
+		ResourceSamples remote = client.getResourceSamples(Long.MIN_VALUE, Long.MAX_VALUE);
+
+		ClockOffset offset = new ClockOffset(TimeUnit.MILLISECONDS.toNanos(OFFSET_MILLIS), 0.0, 0, 0, 1);
+		ResourceSamples local = remote.toLocalTime(offset);
+		assertEquals(remote.size(), local.size());
+		for (int i = 0; i < remote.size(); i++) {
+			assertEquals(remote.getTimestamp(i) - OFFSET_MILLIS, local.getTimestamp(i));
+			assertEquals(remote.getValue(ResourceMetric.CPU_UTILIZATION, i),
+					local.getValue(ResourceMetric.CPU_UTILIZATION, i), 0.0);
+		}
+	}
+
+	/**
+	 * Clock of a node which is ahead of this machine by
+	 * {@link RemoteControlClientTest#OFFSET_MILLIS}.
+	 */
+	private static class ShiftedClock implements ClockSampleSource {
+		@Override
+		public ClockSample requestClockSample() {
+			ClockSample sample = ClockSample.create(HighResolutionClock.currentTimeNanos()
+					+ TimeUnit.MILLISECONDS.toNanos(OFFSET_MILLIS));
+			sample.setTransmitTimeNanos(sample.getReceiveTimeNanos());
+			return sample;
+		}
+	}
+}
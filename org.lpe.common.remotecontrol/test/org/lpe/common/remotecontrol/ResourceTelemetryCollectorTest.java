@@ -0,0 +1,173 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.remotecontrol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.lpe.common.util.clock.ClockOffsetTable;
+import org.lpe.common.util.monitoring.ResourceSamples;
+
+/**
+ * Tests the {@link ResourceTelemetryCollector}.
+ * 
+ */
+public class ResourceTelemetryCollectorTest {
+	private static final long INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+	private static final int CAPACITY = 100;
+	private static final int NUM_NODES = 3;
+
+	private final List<StubRemoteControlServer> servers = new ArrayList<>();
+	private final List<RemoteControlClient> clients = new ArrayList<>();
+
+	/**
+	 * Starts the services.
+	 * 
+	 * @throws IOException
+	 *             if a service cannot be started
+	 */
+	@Before
+	public void startServers() throws IOException {
+		for (int i = 0; i < NUM_NODES; i++) {
+			StubRemoteControlServer server = new StubRemoteControlServer();
+			servers.add(server);
+			clients.add(server.getClient());
+		}
+	}
+
+	/**
+	 * Stops the services and forgets all clock offsets.
+	 */
+	@After
+	public void stopServers() {
+		ClockOffsetTable.getInstance().clear();
+		for (StubRemoteControlServer server : servers) {
+			server.close();
+		}
+	}
+
+	/**
+	 * Tests starting, polling, collecting and stopping all nodes.
+	 * 
+	 * @throws Exception
+	 *             if a node fails
+	 */
+	@Test
+	public void testPollAndCollect() throws Exception {
+		ResourceTelemetryCollector collector = new ResourceTelemetryCollector(clients);
+		collector.start(INTERVAL_MILLIS, CAPACITY);
+		for (StubRemoteControlServer server : servers) {
+			assertTrue(server.getSampler().isRunning());
+			assertNotNull(server.getClient().getClockOffset());
+			server.awaitInitialReading();
+		}
+
+		Map<String, ResourceSamples> polled = collector.poll();
+		assertEquals(urls(), new ArrayList<>(polled.keySet()));
+		for (ResourceSamples samples : polled.values()) {
+			assertEquals(0, samples.size());
+		}
+
+		for (int i = 0; i < NUM_NODES; i++) {
+			servers.get(i).sample(i + 1);
+		}
+		polled = collector.poll();
+		for (int i = 0; i < NUM_NODES; i++) {
+			assertEquals(i + 1, polled.get(clients.get(i).getUrl()).size());
+		}
+
+		// only samples taken since the previous poll are returned
+		servers.get(0).sample(2);
+		polled = collector.poll();
+		assertEquals(2, polled.get(clients.get(0).getUrl()).size());
+		assertEquals(0, polled.get(clients.get(1).getUrl()).size());
+
+		collector.stop();
+		for (StubRemoteControlServer server : servers) {
+			assertFalse(server.getSampler().isRunning());
+		}
+		Map<String, ResourceSamples> collected = collector.collect(Long.MIN_VALUE, Long.MAX_VALUE);
+		assertEquals(3, collected.get(clients.get(0).getUrl()).size());
+		assertEquals(2, collected.get(clients.get(1).getUrl()).size());
+		assertEquals(3, collected.get(clients.get(2).getUrl()).size());
+	}
+
+	/**
+	 * Tests that an unreachable node fails the operation while the other
+	 * nodes are still handled.
+	 * 
+	 * @throws Exception
+	 *             if a node fails unexpectedly
+	 */
+	@Test
+	public void testUnreachableNode() throws Exception {
+		int port;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		RemoteControlClient unreachable = new RemoteControlClient("localhost", String.valueOf(port));
+		ResourceTelemetryCollector collector = new ResourceTelemetryCollector(Arrays.asList(clients.get(0),
+				unreachable, clients.get(1)));
+		try {
+			collector.start(INTERVAL_MILLIS, CAPACITY);
+			fail("Expected an IOException");
+		} catch (IOException e) {
+			assertNotNull(e.getCause());
+		}
+		assertTrue(servers.get(0).getSampler().isRunning());
+		assertTrue(servers.get(1).getSampler().isRunning());
+
+		try {
+			collector.poll();
+			fail("Expected an IOException");
+		} catch (IOException e) {
+			assertNotNull(e.getCause());
+		}
+		new ResourceTelemetryCollector(Collections.singleton(clients.get(0))).stop();
+		assertFalse(servers.get(0).getSampler().isRunning());
+	}
+
+	/**
+	 * Tests that a collector requires at least one node.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testNoNodes() {
+		new ResourceTelemetryCollector(Collections.<RemoteControlClient> emptyList());
+	}
+
+	private List<String> urls() {
+		List<String> urls = new ArrayList<>();
+		for (RemoteControlClient client : clients) {
+			urls.add(client.getUrl());
+		}
+		return urls;
+	}
+}
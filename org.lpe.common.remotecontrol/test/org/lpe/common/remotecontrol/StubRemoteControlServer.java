@@ -0,0 +1,139 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.remotecontrol;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.Path;
+
+import org.codehaus.jackson.jaxrs.JacksonJsonProvider;
+import org.lpe.common.remotecontrol.data.ResourceSamplingConfig;
+import org.lpe.common.remotecontrol.service.RemoteControlService;
+import org.lpe.common.util.monitoring.ResourceSampler;
+import org.lpe.common.util.monitoring.StubResourceReader;
+
+import com.sun.grizzly.http.SelectorThread;
+import com.sun.jersey.api.container.grizzly.GrizzlyServerFactory;
+import com.sun.jersey.api.core.DefaultResourceConfig;
+import com.sun.jersey.api.json.JSONConfiguration;
+
+/**
+ * Remote control service on an ephemeral local port whose resource samplers
+ * read from a {@link StubResourceReader}.
+ * 
+ */
+public class StubRemoteControlServer implements Closeable {
+	private static final long TIMEOUT_MILLIS = 10000;
+
+	private final StubService service = new StubService();
+	private final SelectorThread server;
+	private final RemoteControlClient client;
+
+	/**
+	 * Starts the server.
+	 * 
+	 * @throws IOException
+	 *             if the server cannot be started
+	 */
+	public StubRemoteControlServer() throws IOException {
+		int port;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		DefaultResourceConfig config = new DefaultResourceConfig();
+		config.getSingletons().add(service);
+		config.getClasses().add(JacksonJsonProvider.class);
+		config.getFeatures().put(JSONConfiguration.FEATURE_POJO_MAPPING, Boolean.TRUE);
+		server = GrizzlyServerFactory.create("http://localhost:" + port + "/", config);
+		client = new RemoteControlClient("localhost", String.valueOf(port));
+	}
+
+	/**
+	 * 
+	 * @return a client of this server
+	 */
+	public RemoteControlClient getClient() {
+		return client;
+	}
+
+	/**
+	 * 
+	 * @return the sampler of the current session or null
+	 */
+	public ResourceSampler getSampler() {
+		return service.sampler;
+	}
+
+	/**
+	 * Waits until the sampler of the current session has read the initial
+	 * counters, so that further samples can be taken deterministically.
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted
+	 */
+	public void awaitInitialReading() throws InterruptedException {
+		long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+		while (service.reader == null || service.reader.getReads() == 0) {
+			if (System.currentTimeMillis() > deadline) {
+				throw new IllegalStateException("Sampler did not start.");
+			}
+			TimeUnit.MILLISECONDS.sleep(1);
+		}
+	}
+
+	/**
+	 * Takes the given number of samples, each in a different millisecond.
+	 * 
+	 * @param count
+	 *            number of samples to take
+	 * @throws IOException
+	 *             if sampling fails
+	 * @throws InterruptedException
+	 *             if interrupted
+	 */
+	public void sample(int count) throws IOException, InterruptedException {
+		for (int i = 0; i < count; i++) {
+			TimeUnit.MILLISECONDS.sleep(5);
+			getSampler().sample();
+		}
+	}
+
+	@Override
+	public void close() {
+		server.stopEndpoint();
+	}
+
+	/**
+	 * Service creating samplers that read from a stub.
+	 */
+	@Path("remotecontrol")
+	public static class StubService extends RemoteControlService {
+		private volatile StubResourceReader reader;
+		private volatile ResourceSampler sampler;
+
+		@Override
+		protected ResourceSampler createSampler(ResourceSamplingConfig config) {
+			StubResourceReader newReader = new StubResourceReader();
+			ResourceSampler newSampler = newReader.createSampler(config.getIntervalMillis(), config.getCapacity());
+			reader = newReader;
+			sampler = newSampler;
+			return newSampler;
+		}
+	}
+}
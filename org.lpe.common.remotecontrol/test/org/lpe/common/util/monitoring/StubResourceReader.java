@@ -0,0 +1,83 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.monitoring;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resource reader with deterministic counters. Every reading adds half of the
+ * CPU time as busy time, thus all samples report a CPU utilization of 0.5.
+ * 
+ */
+public class StubResourceReader implements ResourceReader {
+	/** number of cores reported by the stub. */
+	public static final int NUM_CORES = 2;
+	/** memory reported as used. */
+	public static final long MEMORY_USED = 1024;
+	private static final long TICKS = 100;
+
+	private final AtomicInteger reads = new AtomicInteger();
+	private long ticks;
+
+	/**
+	 * Creates a sampler reading from this stub.
+	 * 
+	 * @param intervalMillis
+	 *            sampling interval in milliseconds
+	 * @param capacity
+	 *            number of samples to keep
+	 * @return the sampler
+	 */
+	public ResourceSampler createSampler(long intervalMillis, int capacity) {
+		return new ResourceSampler(this, intervalMillis, capacity);
+	}
+
+	@Override
+	public String getName() {
+		return "stub";
+	}
+
+	@Override
+	public int getNumCores() {
+		return NUM_CORES;
+	}
+
+	@Override
+	public synchronized void read(ResourceCounters counters) {
+		ticks += TICKS;
+		counters.cpuBusy = ticks / 2;
+		counters.cpuTotal = ticks;
+		for (int core = 0; core < NUM_CORES; core++) {
+			counters.coreBusy[core] = ticks / 2;
+			counters.coreTotal[core] = ticks;
+		}
+		counters.memoryUsed = MEMORY_USED;
+		counters.memoryTotal = 2 * MEMORY_USED;
+		reads.incrementAndGet();
+	}
+
+	/**
+	 * 
+	 * @return number of readings so far
+	 */
+	public int getReads() {
+		return reads.get();
+	}
+
+	@Override
+	public void close() {
+	}
+}
@@ -0,0 +1,713 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Column oriented numeric series with a compact binary file format. The
+ * columns are held as primitive arrays of equal length; integral columns as
+ * <code>long[]</code>, all others as <code>double[]</code>.
+ * <p>
+ * The file consists of a header followed by the columns, all little-endian:
+ * 
+ * <pre>
+ * int    magic ("LPES")
+ * byte   version
+ * byte   compression (0 = none, 1 = compressed)
+ * short  reserved
+ * int    number of columns
+ * int    number of rows
+ * per column: byte type (0 = long, 1 = double), short name length,
+ *             UTF-8 name, long payload length
+ * per column: payload
+ * </pre>
+ * 
+ * Uncompressed payloads are plain primitive arrays and are read in bulk from
+ * a memory mapped file. Compressed long columns store zig-zag varints of the
+ * delta of deltas (one byte per row for equidistant timestamps); compressed
+ * double columns use the XOR encoding of Facebook's Gorilla time series
+ * database. Compressed payloads are limited to 2 GB per column.
+ * <p>
+ * Files are a cheap cache between analysis stages, e.g. instead of
+ * {@link LpeFileUtils#writeObject(String, Object)} for a
+ * {@link NumericPairList}.
+ * 
+ */
+public final class BinarySeries {
+	/** compression of the column payloads. */
+	public enum Compression {
+		/** plain primitive arrays. */
+		NONE,
+		/** delta of delta for long columns, Gorilla XOR for double columns. */
+		COMPRESSED
+	}
+
+	/** column name of the keys of converted {@link NumericPairList}s. */
+	public static final String KEY_COLUMN = "key";
+	/** column name of the values of converted {@link NumericPairList}s. */
+	public static final String VALUE_COLUMN = "value";
+
+	private static final int MAGIC = 'L' | 'P' << 8 | 'E' << 16 | 'S' << 24;
+	private static final byte VERSION = 1;
+	private static final byte TYPE_LONG = 0;
+	private static final byte TYPE_DOUBLE = 1;
+	private static final int IO_BUFFER_SIZE = 1024 * 1024;
+	private static final int MAX_NAME_LENGTH = 0xFFFF;
+	private static final long MAX_MAPPING_SIZE = 1L << 30;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final Map<String, Object> columns = new LinkedHashMap<>();
+	private int numRows = -1;
+
+	/**
+	 * Adds an integral column.
+	 * 
+	 * @param name
+	 *            unique column name
+	 * @param values
+	 *            column values; the array is not copied
+	 */
+	public void addColumn(String name, long[] values) {
+		putColumn(name, values, values.length);
+	}
+
+	/**
+	 * Adds a floating point column.
+	 * 
+	 * @param name
+	 *            unique column name
+	 * @param values
+	 *            column values; the array is not copied
+	 */
+	public void addColumn(String name, double[] values) {
+		putColumn(name, values, values.length);
+	}
+
+	private void putColumn(String name, Object values, int length) {
+		if (columns.containsKey(name)) {
+			throw new IllegalArgumentException("Column " + name + " exists already.");
+		}
+		if (numRows >= 0 && numRows != length) {
+			throw new IllegalArgumentException("Column " + name + " has " + length + " rows, expected " + numRows
+					+ ".");
+		}
+		numRows = length;
+		columns.put(name, values);
+	}
+
+	/**
+	 * 
+	 * @return number of rows, 0 if there are no columns
+	 */
+	public int getNumRows() {
+		return Math.max(0, numRows);
+	}
+
+	/**
+	 * 
+	 * @return column names in insertion order
+	 */
+	public List<String> getColumnNames() {
+		return Collections.unmodifiableList(new ArrayList<>(columns.keySet()));
+	}
+
+	/**
+	 * 
+	 * @param name
+	 *            column name
+	 * @return true, if the column holds long values
+	 */
+	public boolean isLongColumn(String name) {
+		return column(name) instanceof long[];
+	}
+
+	/**
+	 * 
+	 * @param name
+	 *            name of an integral column
+	 * @return the values of the column (not copied)
+	 */
+	public long[] getLongColumn(String name) {
+		Object column = column(name);
+		if (!(column instanceof long[])) {
+			throw new IllegalArgumentException("Column " + name + " is not a long column.");
+		}
+		return (long[]) column;
+	}
+
+	/**
+	 * 
+	 * @param name
+	 *            column name
+	 * @return the values of the column; long columns are converted
+	 */
+	public double[] getDoubleColumn(String name) {
+		Object column = column(name);
+		if (column instanceof double[]) {
+			return (double[]) column;
+		}
+		long[] longs = (long[]) column;
+		double[] result = new double[longs.length];
+		for (int i = 0; i < longs.length; i++) {
+			result[i] = longs[i];
+		}
+		return result;
+	}
+
+	private Object column(String name) {
+		Object column = columns.get(name);
+		if (column == null) {
+			throw new IllegalArgumentException("Column " + name + " not found.");
+		}
+		return column;
+	}
+
+	/**
+	 * Converts a pair list into a series with the columns {@link #KEY_COLUMN}
+	 * and {@link #VALUE_COLUMN}. Keys and values of integral types are stored
+	 * as long columns, all others as double columns.
+	 * 
+	 * @param list
+	 *            list to convert
+	 * @return series
+	 */
+	public static BinarySeries fromPairList(NumericPairList<? extends Number, ? extends Number> list) {
+		int size = list.size();
+		boolean integralKeys = true;
+		boolean integralValues = true;
+		for (NumericPair<? extends Number, ? extends Number> pair : list) {
+			integralKeys &= isIntegral(pair.getKey());
+			integralValues &= isIntegral(pair.getValue());
+		}
+		BinarySeries series = new BinarySeries();
+		if (integralKeys) {
+			long[] keys = new long[size];
+			for (int i = 0; i < size; i++) {
+				keys[i] = list.get(i).getKey().longValue();
+			}
+			series.addColumn(KEY_COLUMN, keys);
+		} else {
+			series.addColumn(KEY_COLUMN, list.getKeyArrayAsDouble());
+		}
+		if (integralValues) {
+			long[] values = new long[size];
+			for (int i = 0; i < size; i++) {
+				values[i] = list.get(i).getValue().longValue();
+			}
+			series.addColumn(VALUE_COLUMN, values);
+		} else {
+			series.addColumn(VALUE_COLUMN, list.getValueArrayAsDouble());
+		}
+		return series;
+	}
+
+	private static boolean isIntegral(Number number) {
+		return number instanceof Long || number instanceof Integer || number instanceof Short
+				|| number instanceof Byte;
+	}
+
+	/**
+	 * Converts two columns into a pair list.
+	 * 
+	 * @param keyColumn
+	 *            name of the key column
+	 * @param valueColumn
+	 *            name of the value column
+	 * @return pair list
+	 */
+	public NumericPairList<Double, Double> toPairList(String keyColumn, String valueColumn) {
+		double[] keys = getDoubleColumn(keyColumn);
+		double[] values = getDoubleColumn(valueColumn);
+		NumericPairList<Double, Double> list = new NumericPairList<>();
+		for (int i = 0; i < keys.length; i++) {
+			list.add(keys[i], values[i]);
+		}
+		return list;
+	}
+
+	/**
+	 * Writes the series to a file. An existing file is replaced.
+	 * 
+	 * @param file
+	 *            target file
+	 * @param compression
+	 *            compression of the columns
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	public void write(File file, Compression compression) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			write(channel, compression);
+		}
+	}
+
+	/**
+	 * Writes the series to a stream in the same format as
+	 * {@link #write(File, Compression)}. The stream is not closed.
+	 * 
+	 * @param out
+	 *            target stream
+	 * @param compression
+	 *            compression of the columns
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	public void write(OutputStream out, Compression compression) throws IOException {
+		write(Channels.newChannel(out), compression);
+	}
+
+	private void write(WritableByteChannel channel, Compression compression) throws IOException {
+		boolean compressed = compression == Compression.COMPRESSED;
+		List<byte[]> names = new ArrayList<>();
+		List<byte[]> payloads = new ArrayList<>();
+		int headerSize = 16;
+		for (Map.Entry<String, Object> column : columns.entrySet()) {
+			byte[] name = column.getKey().getBytes(UTF8);
+			if (name.length > MAX_NAME_LENGTH) {
+				throw new IllegalArgumentException("Column name " + column.getKey() + " is too long.");
+			}
+			names.add(name);
+			headerSize += 1 + 2 + name.length + 8;
+			if (compressed) {
+				payloads.add(column.getValue() instanceof long[] ? encodeDeltas((long[]) column.getValue())
+						: encodeXor((double[]) column.getValue()));
+			}
+		}
+
+		ByteBuffer header = ByteBuffer.allocate(headerSize).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC).put(VERSION).put((byte) (compressed ? 1 : 0)).putShort((short) 0);
+		header.putInt(columns.size()).putInt(getNumRows());
+		int index = 0;
+		for (Object values : columns.values()) {
+			byte[] name = names.get(index);
+			header.put(values instanceof long[] ? TYPE_LONG : TYPE_DOUBLE);
+			header.putShort((short) name.length).put(name);
+			header.putLong(compressed ? payloads.get(index).length : 8L * getNumRows());
+			index++;
+		}
+		header.flip();
+
+		writeFully(channel, header);
+		if (compressed) {
+			for (byte[] payload : payloads) {
+				writeFully(channel, ByteBuffer.wrap(payload));
+			}
+			return;
+		}
+		ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		int chunk = IO_BUFFER_SIZE / 8;
+		for (Object values : columns.values()) {
+			for (int offset = 0; offset < getNumRows(); offset += chunk) {
+				int length = Math.min(chunk, getNumRows() - offset);
+				buffer.clear();
+				if (values instanceof long[]) {
+					buffer.asLongBuffer().put((long[]) values, offset, length);
+				} else {
+					buffer.asDoubleBuffer().put((double[]) values, offset, length);
+				}
+				buffer.limit(length * 8);
+				writeFully(channel, buffer);
+			}
+		}
+	}
+
+	private static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	/**
+	 * Reads a series from a file.
+	 * 
+	 * @param file
+	 *            file written by {@link #write(File, Compression)}
+	 * @return series
+	 * @throws IOException
+	 *             if reading fails or the file is not a series file
+	 */
+	public static BinarySeries read(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer fixed = readFully(channel, 0, 16);
+			if (fixed.getInt() != MAGIC) {
+				throw new IOException(file + " is not a binary series file.");
+			}
+			byte version = fixed.get();
+			if (version != VERSION) {
+				throw new IOException("Unsupported binary series version " + version + ".");
+			}
+			boolean compressed = fixed.get() == 1;
+			fixed.getShort();
+			int numColumns = fixed.getInt();
+			int numRows = fixed.getInt();
+
+			long position = 16;
+			String[] names = new String[numColumns];
+			byte[] types = new byte[numColumns];
+			long[] lengths = new long[numColumns];
+			for (int i = 0; i < numColumns; i++) {
+				ByteBuffer meta = readFully(channel, position, 3);
+				types[i] = meta.get();
+				int nameLength = meta.getShort() & 0xFFFF;
+				ByteBuffer rest = readFully(channel, position + 3, nameLength + 8);
+				byte[] name = new byte[nameLength];
+				rest.get(name);
+				names[i] = new String(name, UTF8);
+				lengths[i] = rest.getLong();
+				position += 3 + nameLength + 8;
+			}
+
+			BinarySeries series = new BinarySeries();
+			for (int i = 0; i < numColumns; i++) {
+				if (types[i] == TYPE_LONG) {
+					long[] values = new long[numRows];
+					if (compressed) {
+						decodeDeltas(map(channel, position, lengths[i]), values);
+					} else {
+						readLongs(channel, position, values);
+					}
+					series.addColumn(names[i], values);
+				} else {
+					double[] values = new double[numRows];
+					if (compressed) {
+						decodeXor(map(channel, position, lengths[i]), values);
+					} else {
+						readDoubles(channel, position, values);
+					}
+					series.addColumn(names[i], values);
+				}
+				position += lengths[i];
+			}
+			return series;
+		}
+	}
+
+	/**
+	 * Reads a series from a stream written by
+	 * {@link #write(OutputStream, Compression)}. The stream is consumed
+	 * completely but not closed.
+	 * 
+	 * @param in
+	 *            source stream
+	 * @return series
+	 * @throws IOException
+	 *             if reading fails or the stream does not contain a series
+	 */
+	public static BinarySeries read(InputStream in) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(IOUtils.toByteArray(in)).order(ByteOrder.LITTLE_ENDIAN);
+		try {
+			if (buffer.getInt() != MAGIC) {
+				throw new IOException("Stream does not contain a binary series.");
+			}
+			byte version = buffer.get();
+			if (version != VERSION) {
+				throw new IOException("Unsupported binary series version " + version + ".");
+			}
+			boolean compressed = buffer.get() == 1;
+			buffer.getShort();
+			int numColumns = buffer.getInt();
+			int numRows = buffer.getInt();
+
+			String[] names = new String[numColumns];
+			byte[] types = new byte[numColumns];
+			long[] lengths = new long[numColumns];
+			for (int i = 0; i < numColumns; i++) {
+				types[i] = buffer.get();
+				byte[] name = new byte[buffer.getShort() & 0xFFFF];
+				buffer.get(name);
+				names[i] = new String(name, UTF8);
+				lengths[i] = buffer.getLong();
+			}
+
+			BinarySeries series = new BinarySeries();
+			for (int i = 0; i < numColumns; i++) {
+				int end = buffer.position() + (int) lengths[i];
+				if (types[i] == TYPE_LONG) {
+					long[] values = new long[numRows];
+					if (compressed) {
+						decodeDeltas(buffer, values);
+					} else {
+						buffer.asLongBuffer().get(values);
+					}
+					series.addColumn(names[i], values);
+				} else {
+					double[] values = new double[numRows];
+					if (compressed) {
+						decodeXor(buffer, values);
+					} else {
+						buffer.asDoubleBuffer().get(values);
+					}
+					series.addColumn(names[i], values);
+				}
+				buffer.position(end);
+			}
+			return series;
+		} catch (BufferUnderflowException | IllegalArgumentException e) {
+			throw new IOException("Unexpected end of binary series stream.", e);
+		}
+	}
+
+	private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("Unexpected end of binary series file.");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	private static MappedByteBuffer map(FileChannel channel, long position, long length) throws IOException {
+		if (length > Integer.MAX_VALUE) {
+			throw new IOException("Compressed column exceeds 2 GB.");
+		}
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		return buffer;
+	}
+
+	private static void readLongs(FileChannel channel, long position, long[] values) throws IOException {
+		int chunk = (int) (MAX_MAPPING_SIZE / 8);
+		for (int offset = 0; offset < values.length; offset += chunk) {
+			int length = Math.min(chunk, values.length - offset);
+			map(channel, position + 8L * offset, 8L * length).asLongBuffer().get(values, offset, length);
+		}
+	}
+
+	private static void readDoubles(FileChannel channel, long position, double[] values) throws IOException {
+		int chunk = (int) (MAX_MAPPING_SIZE / 8);
+		for (int offset = 0; offset < values.length; offset += chunk) {
+			int length = Math.min(chunk, values.length - offset);
+			map(channel, position + 8L * offset, 8L * length).asDoubleBuffer().get(values, offset, length);
+		}
+	}
+
+	/**
+	 * Encodes zig-zag varints of the delta of deltas.
+	 */
+	static byte[] encodeDeltas(long[] values) {
+		ByteSink sink = new ByteSink(values.length + 16);
+		long previous = 0;
+		long previousDelta = 0;
+		for (long value : values) {
+			long delta = value - previous;
+			long deltaOfDelta = delta - previousDelta;
+			long zigZag = (deltaOfDelta << 1) ^ (deltaOfDelta >> 63);
+			while ((zigZag & ~0x7FL) != 0) {
+				sink.write((int) ((zigZag & 0x7F) | 0x80));
+				zigZag >>>= 7;
+			}
+			sink.write((int) zigZag);
+			previous = value;
+			previousDelta = delta;
+		}
+		return sink.toByteArray();
+	}
+
+	static void decodeDeltas(ByteBuffer buffer, long[] values) {
+		long previous = 0;
+		long previousDelta = 0;
+		for (int i = 0; i < values.length; i++) {
+			long zigZag = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = buffer.get();
+				zigZag |= (long) (b & 0x7F) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+			long deltaOfDelta = (zigZag >>> 1) ^ -(zigZag & 1);
+			previousDelta += deltaOfDelta;
+			previous += previousDelta;
+			values[i] = previous;
+		}
+	}
+
+	/**
+	 * Encodes doubles with the Gorilla XOR scheme: identical values take one
+	 * bit, values sharing the leading and trailing zero window of the
+	 * previous XOR take two bits plus the meaningful bits.
+	 */
+	static byte[] encodeXor(double[] values) {
+		BitSink sink = new BitSink(values.length * 2 + 16);
+		long previous = 0;
+		int previousLeading = -1;
+		int previousTrailing = 0;
+		for (int i = 0; i < values.length; i++) {
+			long bits = Double.doubleToRawLongBits(values[i]);
+			if (i == 0) {
+				sink.write(bits, 64);
+				previous = bits;
+				continue;
+			}
+			long xor = bits ^ previous;
+			previous = bits;
+			if (xor == 0) {
+				sink.write(0, 1);
+				continue;
+			}
+			int leading = Math.min(31, Long.numberOfLeadingZeros(xor));
+			int trailing = Long.numberOfTrailingZeros(xor);
+			if (previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+				sink.write(2, 2);
+				sink.write(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+			} else {
+				int significant = 64 - leading - trailing;
+				sink.write(3, 2);
+				sink.write(leading, 5);
+				sink.write(significant - 1, 6);
+				sink.write(xor >>> trailing, significant);
+				previousLeading = leading;
+				previousTrailing = trailing;
+			}
+		}
+		return sink.toByteArray();
+	}
+
+	static void decodeXor(ByteBuffer buffer, double[] values) {
+		BitSource source = new BitSource(buffer);
+		long previous = 0;
+		int leading = 0;
+		int trailing = 0;
+		for (int i = 0; i < values.length; i++) {
+			if (i == 0) {
+				previous = source.read(64);
+			} else if (source.read(1) != 0) {
+				if (source.read(1) != 0) {
+					leading = (int) source.read(5);
+					int significant = (int) source.read(6) + 1;
+					trailing = 64 - leading - significant;
+				}
+				previous ^= source.read(64 - leading - trailing) << trailing;
+			}
+			values[i] = Double.longBitsToDouble(previous);
+		}
+	}
+
+	/**
+	 * Growable byte array.
+	 */
+	private static class ByteSink {
+		private byte[] bytes;
+		private int size;
+
+		ByteSink(int capacity) {
+			bytes = new byte[Math.max(16, capacity)];
+		}
+
+		void write(int b) {
+			if (size == bytes.length) {
+				if (bytes.length == Integer.MAX_VALUE) {
+					throw new IllegalStateException("Compressed column exceeds 2 GB.");
+				}
+				bytes = Arrays.copyOf(bytes, (int) Math.min(Integer.MAX_VALUE, bytes.length * 2L));
+			}
+			bytes[size++] = (byte) b;
+		}
+
+		byte[] toByteArray() {
+			return Arrays.copyOf(bytes, size);
+		}
+	}
+
+	/**
+	 * Writes bits most significant first.
+	 */
+	private static final class BitSink extends ByteSink {
+		private long current;
+		private int numBits;
+
+		BitSink(int capacity) {
+			super(capacity);
+		}
+
+		void write(long value, int bits) {
+			for (int remaining = bits; remaining > 0;) {
+				int free = 8 - numBits;
+				int take = Math.min(free, remaining);
+				long part = (value >>> (remaining - take)) & ((1L << take) - 1);
+				current = (current << take) | part;
+				numBits += take;
+				remaining -= take;
+				if (numBits == 8) {
+					write((int) current);
+					current = 0;
+					numBits = 0;
+				}
+			}
+		}
+
+		@Override
+		byte[] toByteArray() {
+			if (numBits > 0) {
+				write(0, 8 - numBits);
+			}
+			return super.toByteArray();
+		}
+	}
+
+	/**
+	 * Reads bits most significant first.
+	 */
+	private static final class BitSource {
+		private final ByteBuffer buffer;
+		private int current;
+		private int numBits;
+
+		private BitSource(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		private long read(int bits) {
+			long result = 0;
+			for (int remaining = bits; remaining > 0;) {
+				if (numBits == 0) {
+					current = buffer.get() & 0xFF;
+					numBits = 8;
+				}
+				int take = Math.min(numBits, remaining);
+				int part = (current >>> (numBits - take)) & ((1 << take) - 1);
+				result = (result << take) | part;
+				numBits -= take;
+				remaining -= take;
+			}
+			return result;
+		}
+	}
+}
@@ -0,0 +1,380 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+import org.lpe.common.util.concurrency.ExecutorRegistry;
+
+/**
+ * NIO based file tree operations used by {@link LpeFileUtils}: tree walks via
+ * {@link Files#walkFileTree}, channel to channel file copies and atomic moves
+ * with a copy fallback. All walks follow symbolic links like the
+ * {@link java.io.File} based operations they replace; links back to an
+ * ancestor directory are skipped.
+ * 
+ */
+final class FileTree {
+	/** default number of concurrent file copies. */
+	static final int DEFAULT_IO_CONCURRENCY = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+	private static final String COPY_EXECUTOR_NAME = "file-copy";
+	private static final Set<FileVisitOption> FOLLOW_LINKS = EnumSet.of(FileVisitOption.FOLLOW_LINKS);
+
+	/**
+	 * private constructor due to utility class.
+	 */
+	private FileTree() {
+	}
+
+	/**
+	 * Collects all regular files below the given root.
+	 * 
+	 * @param root
+	 *            file or directory
+	 * @return absolute paths of all files, empty if root does not exist
+	 * @throws IOException
+	 *             if the tree cannot be read
+	 */
+	static List<String> listFiles(Path root) throws IOException {
+		final List<String> result = new ArrayList<>();
+		if (!Files.exists(root)) {
+			return result;
+		}
+		Files.walkFileTree(root, FOLLOW_LINKS, Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+				if (attrs.isRegularFile() || Files.isRegularFile(file)) {
+					result.add(file.toAbsolutePath().toString());
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+				return skipLoop(exc);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Walks the tree lazily in depth first order. Only the entries of the
+	 * directories on the current path are held in memory and no directory
+	 * handle stays open between calls, thus, iterations may be abandoned at
+	 * any point.
+	 * 
+	 * @param root
+	 *            file or directory
+	 * @return regular files below root
+	 */
+	static Iterable<Path> walk(final Path root) {
+		return new Iterable<Path>() {
+			@Override
+			public Iterator<Path> iterator() {
+				return new FileIterator(root);
+			}
+		};
+	}
+
+	/**
+	 * Copies a file using {@link FileChannel#transferTo}. An existing target is
+	 * replaced.
+	 * 
+	 * @param source
+	 *            file to copy
+	 * @param target
+	 *            target file
+	 * @throws IOException
+	 *             if copying fails
+	 */
+	static void copyFile(Path source, Path target) throws IOException {
+		try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+				FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+						StandardOpenOption.TRUNCATE_EXISTING)) {
+			long size = in.size();
+			long position = 0;
+			while (position < size) {
+				long transferred = in.transferTo(position, size - position, out);
+				if (transferred <= 0) {
+					// the source shrank while copying
+					break;
+				}
+				position += transferred;
+			}
+		}
+	}
+
+	/**
+	 * Copies a file or directory tree. Directories are created by the walking
+	 * thread, files are copied by up to ioConcurrency threads.
+	 * 
+	 * @param source
+	 *            file or directory to copy
+	 * @param target
+	 *            target file or directory
+	 * @param ioConcurrency
+	 *            maximal number of concurrent file copies
+	 * @throws IOException
+	 *             if copying fails
+	 */
+	static void copyTree(final Path source, final Path target, int ioConcurrency) throws IOException {
+		if (!Files.isDirectory(source)) {
+			copyFile(source, target);
+			return;
+		}
+		if (ioConcurrency <= 1) {
+			Files.walkFileTree(source, FOLLOW_LINKS, Integer.MAX_VALUE, new CopyVisitor(source, target, null, null,
+					null));
+			return;
+		}
+
+		ExecutorService executor = ExecutorRegistry.getInstance().getExecutor(COPY_EXECUTOR_NAME);
+		List<Future<?>> futures = new ArrayList<>();
+		Semaphore queued = new Semaphore(ioConcurrency);
+		try {
+			Files.walkFileTree(source, FOLLOW_LINKS, Integer.MAX_VALUE, new CopyVisitor(source, target, executor,
+					queued, futures));
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while copying " + source, e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		} finally {
+			for (Future<?> future : futures) {
+				future.cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * Moves a file. Tries an atomic move first, then a plain move and finally
+	 * copies and deletes the source (e.g. across file stores). An existing
+	 * target file is replaced.
+	 * 
+	 * @param source
+	 *            file to move
+	 * @param target
+	 *            target file
+	 * @throws IOException
+	 *             if moving fails
+	 */
+	static void move(Path source, Path target) throws IOException {
+		try {
+			Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			return;
+		} catch (AtomicMoveNotSupportedException e) {
+			// fall through to the non atomic variants
+		}
+		try {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			if (!Files.isRegularFile(source)) {
+				throw e;
+			}
+			copyFile(source, target);
+			Files.delete(source);
+		}
+	}
+
+	/**
+	 * Continues a walk at a link back to an ancestor directory and rethrows
+	 * all other failures.
+	 */
+	private static FileVisitResult skipLoop(IOException exc) throws IOException {
+		if (exc instanceof FileSystemLoopException) {
+			return FileVisitResult.CONTINUE;
+		}
+		throw exc;
+	}
+
+	/**
+	 * Creates the directories and copies or schedules the files.
+	 */
+	private static final class CopyVisitor extends SimpleFileVisitor<Path> {
+		private final Path source;
+		private final Path target;
+		private final ExecutorService executor;
+		private final Semaphore queued;
+		private final List<Future<?>> futures;
+
+		private CopyVisitor(Path source, Path target, ExecutorService executor, Semaphore queued,
+				List<Future<?>> futures) {
+			this.source = source;
+			this.target = target;
+			this.executor = executor;
+			this.queued = queued;
+			this.futures = futures;
+		}
+
+		@Override
+		public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+			Files.createDirectories(target.resolve(source.relativize(dir).toString()));
+			return FileVisitResult.CONTINUE;
+		}
+
+		@Override
+		public FileVisitResult visitFile(final Path file, BasicFileAttributes attrs) throws IOException {
+			final Path targetFile = target.resolve(source.relativize(file).toString());
+			if (executor == null) {
+				copyFile(file, targetFile);
+				return FileVisitResult.CONTINUE;
+			}
+			try {
+				queued.acquire();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while copying " + file, e);
+			}
+			Callable<Void> copy = new Callable<Void>() {
+				@Override
+				public Void call() throws IOException {
+					try {
+						copyFile(file, targetFile);
+					} finally {
+						queued.release();
+					}
+					return null;
+				}
+			};
+			try {
+				futures.add(executor.submit(copy));
+			} catch (RejectedExecutionException e) {
+				// the shared executor is saturated, copy in the walking thread
+				try {
+					copyFile(file, targetFile);
+				} finally {
+					queued.release();
+				}
+			}
+			return FileVisitResult.CONTINUE;
+		}
+
+		@Override
+		public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+			return skipLoop(exc);
+		}
+	}
+
+	/**
+	 * Depth first iterator over the regular files of a tree.
+	 */
+	private static final class FileIterator implements Iterator<Path> {
+		private final Deque<Iterator<Path>> stack = new ArrayDeque<>();
+		private final Deque<Path> openDirectories = new ArrayDeque<>();
+		private final Set<Path> ancestors = new HashSet<>();
+		private Path next;
+
+		private FileIterator(Path root) {
+			if (Files.isDirectory(root)) {
+				enter(root);
+			} else if (Files.isRegularFile(root)) {
+				next = root;
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (next == null && !stack.isEmpty()) {
+				Iterator<Path> current = stack.peek();
+				if (!current.hasNext()) {
+					stack.pop();
+					ancestors.remove(openDirectories.pop());
+					continue;
+				}
+				Path path = current.next();
+				if (Files.isDirectory(path)) {
+					enter(path);
+				} else if (Files.isRegularFile(path)) {
+					next = path;
+				}
+			}
+			return next != null;
+		}
+
+		@Override
+		public Path next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			Path result = next;
+			next = null;
+			return result;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		private void enter(Path dir) {
+			Path realPath;
+			try {
+				realPath = dir.toRealPath();
+			} catch (IOException e) {
+				throw new RuntimeException("Failed to resolve directory " + dir, e);
+			}
+			if (ancestors.add(realPath)) {
+				openDirectories.push(realPath);
+				stack.push(list(dir));
+			}
+		}
+
+		private static Iterator<Path> list(Path dir) {
+			List<Path> children = new ArrayList<>();
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+				for (Path child : stream) {
+					children.add(child);
+				}
+			} catch (IOException e) {
+				throw new RuntimeException("Failed to list directory " + dir, e);
+			}
+			return children.iterator();
+		}
+	}
+}
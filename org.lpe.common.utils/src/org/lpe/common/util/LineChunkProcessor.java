@@ -0,0 +1,36 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util;
+
+/**
+ * Processes the lines of one chunk of a file, see
+ * {@link LpeFileUtils#processLines(String, int, LineChunkProcessor)}. Chunks
+ * are processed concurrently, each by a single thread.
+ * 
+ * @param <R>
+ *            type of the chunk result
+ */
+public interface LineChunkProcessor<R> {
+
+	/**
+	 * Processes the lines of a chunk.
+	 * 
+	 * @param lines
+	 *            lazy lines of the chunk in file order
+	 * @return result of the chunk
+	 */
+	R process(Iterable<String> lines);
+}
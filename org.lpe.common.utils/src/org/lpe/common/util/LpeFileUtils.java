@@ -18,10 +18,10 @@ package org.lpe.common.util;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
@@ -30,18 +30,24 @@ import java.io.InputStreamReader;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Enumeration;
 import java.util.List;
-import java.util.jar.JarEntry;
-import java.util.jar.JarOutputStream;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
-import java.util.zip.ZipOutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
 
 import org.apache.tools.ant.DirectoryScanner;
+import org.lpe.common.util.concurrency.ExecutorRegistry;
 
 /**
  * Utility class for file operations.
@@ -51,10 +57,12 @@ import org.apache.tools.ant.DirectoryScanner;
  */
 public final class LpeFileUtils {
 
-	private static final String MANIFEST_PATH = "META-INF/MANIFEST.MF";
 	private static final String JAR_FILE_EXTENSION = ".jar";
-	private static final int BUFFER_SIZE = 1024 * 512;
-	private static final byte[] BUFFER = new byte[BUFFER_SIZE];
+	private static final int ZIP_PARALLELISM = Runtime.getRuntime().availableProcessors();
+	private static final int WRITER_BUFFER_SIZE = 1024 * 1024;
+	private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+	private static final String LINES_EXECUTOR_NAME = "line-processing";
+	private static final int LINES_THREADS = Runtime.getRuntime().availableProcessors();
 
 	/**
 	 * private constructor due to utility class.
@@ -101,13 +109,163 @@ public final class LpeFileUtils {
 	 *             thrown if file cannot be opened
 	 */
 	public static void writeLines(String fileName, List<String> lines) throws IOException {
-		PrintWriter pw = new PrintWriter(new FileOutputStream(fileName));
+		try (Writer writer = newLineWriter(fileName)) {
+			for (String line : lines) {
+				writer.write(line);
+				writer.write(LINE_SEPARATOR);
+			}
+		}
+	}
+
+	/**
+	 * Opens a writer with a large buffer for the given file using the default
+	 * charset. Existing content is replaced.
+	 * 
+	 * @param fileName
+	 *            file to write
+	 * @return buffered writer, to be closed by the caller
+	 * @throws IOException
+	 *             if the file cannot be opened
+	 */
+	public static BufferedWriter newLineWriter(String fileName) throws IOException {
+		return newLineWriter(fileName, Charset.defaultCharset());
+	}
+
+	/**
+	 * Opens a writer with a large buffer for the given file. Existing content
+	 * is replaced.
+	 * 
+	 * @param fileName
+	 *            file to write
+	 * @param charset
+	 *            charset to encode the content with
+	 * @return buffered writer, to be closed by the caller
+	 * @throws IOException
+	 *             if the file cannot be opened
+	 */
+	public static BufferedWriter newLineWriter(String fileName, Charset charset) throws IOException {
+		return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(fileName), charset),
+				WRITER_BUFFER_SIZE);
+	}
+
+	/**
+	 * Reads the lines of the given file lazily from a memory mapped file using
+	 * the default charset. In contrast to {@link #readLines(String)} the lines
+	 * are not materialized, thus, files larger than the heap can be read.
+	 * 
+	 * @param fileName
+	 *            file to read
+	 * @return lazy lines, to be closed by the caller
+	 * @throws IOException
+	 *             if the file cannot be opened
+	 */
+	public static MappedLineReader lines(String fileName) throws IOException {
+		return lines(fileName, Charset.defaultCharset());
+	}
+
+	/**
+	 * Reads the lines of the given file lazily from a memory mapped file.
+	 * 
+	 * @param fileName
+	 *            file to read
+	 * @param charset
+	 *            charset of the file
+	 * @return lazy lines, to be closed by the caller
+	 * @throws IOException
+	 *             if the file cannot be opened
+	 */
+	public static MappedLineReader lines(String fileName, Charset charset) throws IOException {
+		return new MappedLineReader(new File(fileName), charset);
+	}
+
+	/**
+	 * Processes the lines of the given file in parallel using the default
+	 * charset. The file is split into up to parallelism chunks at line
+	 * boundaries; each chunk is processed by one thread.
+	 * 
+	 * @param fileName
+	 *            file to read
+	 * @param parallelism
+	 *            maximal number of chunks processed concurrently
+	 * @param processor
+	 *            processor of the chunks
+	 * @param <R>
+	 *            type of the chunk results
+	 * @return results of the chunks in file order
+	 * @throws IOException
+	 *             if reading fails
+	 */
+	public static <R> List<R> processLines(String fileName, int parallelism, LineChunkProcessor<R> processor)
+			throws IOException {
+		return processLines(fileName, Charset.defaultCharset(), parallelism, processor);
+	}
 
-		for (String line : lines) {
-			pw.println(line);
+	/**
+	 * Processes the lines of the given file in parallel. The file is split into
+	 * up to parallelism chunks at line boundaries; each chunk is processed by
+	 * one thread.
+	 * 
+	 * @param fileName
+	 *            file to read
+	 * @param charset
+	 *            charset of the file
+	 * @param parallelism
+	 *            maximal number of chunks processed concurrently
+	 * @param processor
+	 *            processor of the chunks
+	 * @param <R>
+	 *            type of the chunk results
+	 * @return results of the chunks in file order
+	 * @throws IOException
+	 *             if reading fails
+	 */
+	public static <R> List<R> processLines(String fileName, final Charset charset, int parallelism,
+			final LineChunkProcessor<R> processor) throws IOException {
+		final File file = new File(fileName);
+		final long[] bounds = MappedLineReader.chunkBounds(file, parallelism);
+		List<Callable<R>> tasks = new ArrayList<>();
+		for (int i = 0; i < bounds.length - 1; i++) {
+			final int chunk = i;
+			tasks.add(new Callable<R>() {
+				@Override
+				public R call() throws IOException {
+					try (MappedLineReader reader = new MappedLineReader(file, charset, bounds[chunk],
+							bounds[chunk + 1])) {
+						return processor.process(reader);
+					}
+				}
+			});
 		}
 
-		pw.close();
+		List<R> results = new ArrayList<>();
+		if (tasks.size() == 1) {
+			try {
+				results.add(tasks.get(0).call());
+			} catch (IOException | RuntimeException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new IOException(e);
+			}
+			return results;
+		}
+		ExecutorService executor = ExecutorRegistry.getInstance().getExecutor(LINES_EXECUTOR_NAME, LINES_THREADS,
+				LINES_THREADS);
+		try {
+			for (Future<R> future : ExecutorRegistry.invokeAll(executor, tasks, tasks.size())) {
+				results.add(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while processing " + fileName, e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			} else if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+		return results;
 	}
 
 	/**
@@ -137,7 +295,9 @@ public final class LpeFileUtils {
 	 * @see LpeStreamUtils#readFromInputStream(java.io.InputStream)
 	 */
 	public static String readFromFile(String fileName) throws IOException {
-		return LpeStreamUtils.readFromInputStream(new FileInputStream(fileName));
+		try (InputStream in = new FileInputStream(fileName)) {
+			return LpeStreamUtils.readFromInputStream(in);
+		}
 	}
 
 	/**
@@ -368,15 +528,8 @@ public final class LpeFileUtils {
 	 */
 	public static String copyFileToDir(String sourceFile, String targetDir) throws IOException {
 		File source = new File(sourceFile);
-		if (!targetDir.endsWith("/")) {
-			targetDir += "/";
-		}
-		File target = new File(targetDir + source.getName());
-		FileInputStream fis = new FileInputStream(source);
-		FileOutputStream fos = new FileOutputStream(target);
-		copy(fis, fos);
-		fis.close();
-		fos.close();
+		File target = new File(targetDir, source.getName());
+		FileTree.copyFile(source.toPath(), target.toPath());
 		return target.getAbsolutePath();
 	}
 
@@ -388,25 +541,30 @@ public final class LpeFileUtils {
 	 * @return a set of full file names
 	 */
 	public static List<String> getAllFiles(String directory) {
-		List<String> resultList = new ArrayList<>();
-		getAllFiles(new File(directory), resultList);
-		return resultList;
+		try {
+			return FileTree.listFiles(Paths.get(directory));
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to list files in " + directory, e);
+		}
 	}
 
-	private static void getAllFiles(File file, final List<String> resultList) {
-		if (!file.exists()) {
-			return;
-		} else if (file.isFile()) {
-			resultList.add(file.getAbsolutePath());
-		} else if (file.isDirectory()) {
-			for (File child : file.listFiles()) {
-				getAllFiles(child, resultList);
-			}
-		}
+	/**
+	 * Walks lazily over all files in the given directory and its
+	 * sub-directories. In contrast to {@link #getAllFiles(String)} the paths
+	 * are not collected upfront, thus, large trees can be processed with
+	 * constant memory.
+	 * 
+	 * @param directory
+	 *            directory to walk
+	 * @return files in depth first order
+	 */
+	public static Iterable<Path> walkFiles(String directory) {
+		return FileTree.walk(Paths.get(directory));
 	}
 
 	/**
-	 * Copies a whole directory.
+	 * Copies a whole directory. The files are copied in parallel with the
+	 * default I/O concurrency.
 	 * 
 	 * @param source
 	 *            directory to be copied
@@ -416,39 +574,34 @@ public final class LpeFileUtils {
 	 *             if copying fails
 	 */
 	public static void copyDirectory(String source, String destination) throws IOException {
+		copyDirectory(source, destination, FileTree.DEFAULT_IO_CONCURRENCY);
+	}
 
-		File srcDir = new File(source);
-		File destDir = new File(destination);
-
-		if (!srcDir.exists()) {
+	/**
+	 * Copies a whole directory.
+	 * 
+	 * @param source
+	 *            directory to be copied
+	 * @param destination
+	 *            destination path for the copy
+	 * @param ioConcurrency
+	 *            maximal number of files copied concurrently; 1 copies
+	 *            sequentially
+	 * @throws IOException
+	 *             if copying fails
+	 */
+	public static void copyDirectory(String source, String destination, int ioConcurrency) throws IOException {
+		Path srcPath = Paths.get(source);
+		if (!Files.exists(srcPath)) {
 			throw new IOException("Failed copying directory! Source directory does not exist.");
 		}
-
-		if (srcDir.isDirectory()) {
-
-			// if directory not exists, create it
-			if (!destDir.exists()) {
-				destDir.mkdir();
-			}
-
-			for (File srcFile : srcDir.listFiles()) {
-				File destFile = new File(destDir, srcFile.getName());
-				// recursive copy
-				copyDirectory(srcFile.getAbsolutePath(), destFile.getAbsolutePath());
-			}
-
-		} else {
-
-			InputStream in = new FileInputStream(srcDir);
-			OutputStream out = new FileOutputStream(destDir);
-			copy(in, out);
-			in.close();
-			out.close();
-		}
+		FileTree.copyTree(srcPath, Paths.get(destination), ioConcurrency);
 	}
 
 	/**
-	 * Copies all bytes from an input stream to a given output stream.
+	 * Copies all bytes from an input stream to a given output stream. Uses a
+	 * buffer owned by the calling thread, thus, concurrent copies do not
+	 * interfere.
 	 * 
 	 * @param in
 	 *            the input stream to read from
@@ -458,10 +611,7 @@ public final class LpeFileUtils {
 	 *             if copying fails
 	 */
 	protected static void copy(final InputStream in, final OutputStream out) throws IOException {
-		int bytesRead;
-		while ((bytesRead = in.read(BUFFER)) != -1) {
-			out.write(BUFFER, 0, bytesRead);
-		}
+		ParallelZip.copy(in, out);
 	}
 
 	/**
@@ -486,7 +636,8 @@ public final class LpeFileUtils {
 	}
 
 	/**
-	 * Unpacks the specified file into the specified directory.
+	 * Unpacks the specified file into the specified directory. The entries are
+	 * extracted in parallel.
 	 * 
 	 * @param file
 	 *            the file to unpack
@@ -495,32 +646,7 @@ public final class LpeFileUtils {
 	 */
 	public static void unzip(final File file, final File directory) {
 		try {
-			final ZipFile zipFile = new ZipFile(file, ZipFile.OPEN_READ);
-			try {
-				final Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
-				while (zipEntries.hasMoreElements()) {
-					final ZipEntry zipEntry = zipEntries.nextElement();
-					final String zipEntryPath = zipEntry.getName();
-					final File targetFile = new File(directory, zipEntryPath);
-					targetFile.getParentFile().mkdirs();
-					if (zipEntry.isDirectory()) {
-						continue;
-					}
-					final InputStream zipEntryIn = zipFile.getInputStream(zipEntry);
-					try {
-						final OutputStream out = new FileOutputStream(targetFile);
-						try {
-							copy(zipEntryIn, out);
-						} finally {
-							out.close();
-						}
-					} finally {
-						zipEntryIn.close();
-					}
-				}
-			} finally {
-				zipFile.close();
-			}
+			ParallelZip.unzip(file, directory, ZIP_PARALLELISM);
 		} catch (final IOException e) {
 			throw new RuntimeException("Failed to unzip file:", e);
 		}
@@ -539,7 +665,34 @@ public final class LpeFileUtils {
 	 *            may be <code>null</code>
 	 */
 	public static void zip(final File source, final File target, final FileFilter fileFilter) {
-		pack(source, target, fileFilter);
+		zip(source, target, fileFilter, Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * Packs the content of the specified source folder into the specified
+	 * target ZIP file. The entries are compressed in parallel; already
+	 * compressed files (archives, images) are stored as they are.
+	 * 
+	 * @param source
+	 *            the source folder holding the content
+	 * @param target
+	 *            the ZIP file to pack the content into
+	 * @param fileFilter
+	 *            the file filter used to filter the files that will be added;
+	 *            may be <code>null</code>
+	 * @param level
+	 *            compression level from 0 (store) to 9 (best compression) or
+	 *            {@link Deflater#DEFAULT_COMPRESSION}
+	 */
+	public static void zip(final File source, final File target, final FileFilter fileFilter, final int level) {
+		if (target.exists() && target.isDirectory()) {
+			throw new RuntimeException("Target for zip must not be a directory but a file!");
+		}
+		try (OutputStream out = new FileOutputStream(target)) {
+			ParallelZip.zip(source, out, fileFilter, level, ZIP_PARALLELISM);
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
 	}
 
 	/**
@@ -570,6 +723,49 @@ public final class LpeFileUtils {
 		zip(srcFile, targetFile);
 	}
 
+	/**
+	 * Packs the content of the specified source folder as ZIP archive into the
+	 * given stream without creating a temporary file. The stream is not
+	 * closed.
+	 * 
+	 * @param source
+	 *            the source folder holding the content
+	 * @param out
+	 *            the stream to write the archive to
+	 * @param fileFilter
+	 *            the file filter used to filter the files that will be added;
+	 *            may be <code>null</code>
+	 * @throws IOException
+	 *             if reading the files or writing to the stream fails
+	 */
+	public static void zipTo(final File source, final OutputStream out, final FileFilter fileFilter)
+			throws IOException {
+		zipTo(source, out, fileFilter, Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * Packs the content of the specified source folder as ZIP archive into the
+	 * given stream without creating a temporary file. The stream is not
+	 * closed.
+	 * 
+	 * @param source
+	 *            the source folder holding the content
+	 * @param out
+	 *            the stream to write the archive to
+	 * @param fileFilter
+	 *            the file filter used to filter the files that will be added;
+	 *            may be <code>null</code>
+	 * @param level
+	 *            compression level from 0 (store) to 9 (best compression) or
+	 *            {@link Deflater#DEFAULT_COMPRESSION}
+	 * @throws IOException
+	 *             if reading the files or writing to the stream fails
+	 */
+	public static void zipTo(final File source, final OutputStream out, final FileFilter fileFilter,
+			final int level) throws IOException {
+		ParallelZip.zip(source, out, fileFilter, level, ZIP_PARALLELISM);
+	}
+
 	/**
 	 * Moves a file.
 	 * 
@@ -592,8 +788,10 @@ public final class LpeFileUtils {
 					+ " is not a file.");
 		}
 
-		if (!srcFile.renameTo(new File(targetDir.getAbsolutePath() + "/" + srcFile.getName()))) {
-			throw new IOException("Failed moving file " + sourceFile + " to directory " + destination + "!");
+		try {
+			FileTree.move(srcFile.toPath(), targetDir.toPath().resolve(srcFile.getName()));
+		} catch (IOException e) {
+			throw new IOException("Failed moving file " + sourceFile + " to directory " + destination + "!", e);
 		}
 	}
 
@@ -608,121 +806,10 @@ public final class LpeFileUtils {
 	 *             if moving fails
 	 */
 	public static void moveFile(final String sourceFile, final String destinationFile) throws IOException {
-		File srcFile = new File(sourceFile);
-		File targetFile = new File(destinationFile);
-		if (targetFile.exists()) {
-			targetFile.delete();
-		}
-		if (!srcFile.renameTo(targetFile)) {
-			throw new IOException("Failed moving file " + sourceFile + " to file " + destinationFile + "!");
-		}
-
-	}
-
-	/**
-	 * Packs the content of the specified source folder into the specified
-	 * target file.
-	 * 
-	 * @param source
-	 *            the source folder holding the content
-	 * @param target
-	 *            the file to pack the content into
-	 * @param fileFilter
-	 *            the file filter used to filter the files that will be added;
-	 *            may be <code>null</code>
-	 */
-	private static void pack(final File source, final File target, final FileFilter fileFilter) {
-		if (target.exists() && target.isDirectory()) {
-			throw new RuntimeException("Target for zip must not be a directory but a file!");
-		}
-		final ZipOutputStream zipOut;
 		try {
-
-			zipOut = new ZipOutputStream(new FileOutputStream(target));
-
-			pack(source, zipOut, source.getAbsolutePath().length() + 1, fileFilter);
-			zipOut.close();
-		} catch (final FileNotFoundException e) {
-			throw new RuntimeException(e);
-		} catch (final IOException e) {
-			throw new RuntimeException(e);
-		}
-	}
-
-	private static void pack(final File file, final ZipOutputStream out, final int pathStartIndex,
-			final FileFilter fileFilter) {
-		if (fileFilter != null && !fileFilter.accept(file)) {
-			/*
-			 * Ignore file/directory.
-			 */
-			return;
-		}
-
-		final String filePath = file.getAbsolutePath();
-		String entryName = "";
-		if (filePath.length() > pathStartIndex) {
-			entryName = filePath.substring(pathStartIndex).replace('\\', '/');
-		}
-		if (file.isDirectory()) {
-			if (!entryName.isEmpty()) {
-				try {
-					/*
-					 * Directory entries are determined as such by the trailing
-					 * '/'.
-					 */
-					final ZipEntry zipEntry;
-					final boolean packAsJar = out instanceof JarOutputStream;
-					if (packAsJar) {
-						zipEntry = new JarEntry(entryName + "/");
-					} else {
-						zipEntry = new ZipEntry(entryName + "/");
-					}
-					out.putNextEntry(zipEntry);
-					out.closeEntry();
-				} catch (final IOException e) {
-					throw new RuntimeException("Failed to write folder entry to zip file: ", e);
-				}
-			}
-			for (final File directoryItem : file.listFiles()) {
-				pack(directoryItem, out, pathStartIndex, fileFilter);
-			}
-		} else {
-			/*
-			 * Manifest was added earlier (see according comment above).
-			 */
-			if (!MANIFEST_PATH.equals(entryName)) {
-				packFile(file, out, entryName);
-			}
-		}
-	}
-
-	private static void packFile(final File file, final ZipOutputStream out, final String entryName) {
-		FileInputStream fileIn;
-		try {
-			fileIn = new FileInputStream(file);
-		} catch (final FileNotFoundException e) {
-			throw new RuntimeException(e);
-		}
-		try {
-			try {
-				final ZipEntry zipEntry;
-				final boolean packAsJar = out instanceof JarOutputStream;
-				if (packAsJar) {
-					zipEntry = new JarEntry(entryName);
-				} else {
-					zipEntry = new ZipEntry(entryName);
-				}
-				out.putNextEntry(zipEntry);
-				try {
-					copy(fileIn, out);
-				} finally {
-					out.closeEntry();
-				}
-			} finally {
-				fileIn.close();
-			}
-		} catch (final IOException e) {
-			throw new RuntimeException("Failed to write file content to zip file: ", e);
+			FileTree.move(Paths.get(sourceFile), Paths.get(destinationFile));
+		} catch (IOException e) {
+			throw new IOException("Failed moving file " + sourceFile + " to file " + destinationFile + "!", e);
 		}
 	}
 
@@ -15,6 +15,7 @@
  */
 package org.lpe.common.util;
 
+import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.text.DecimalFormat;
@@ -32,7 +33,11 @@ import org.apache.commons.math3.ml.clustering.DBSCANClusterer;
 import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
 import org.apache.commons.math3.stat.inference.TestUtils;
 import org.apache.commons.math3.stat.regression.SimpleRegression;
+import org.lpe.common.util.queueing.ErlangFormulas;
+import org.lpe.common.util.queueing.ErlangTable;
 import org.lpe.common.util.stats.IQROutlierDetector;
+import org.lpe.common.util.stats.ResamplingEngine;
+import org.lpe.common.util.stats.SampleStatistic;
 
 import au.com.bytecode.opencsv.CSVWriter;
 
@@ -44,6 +49,9 @@ import au.com.bytecode.opencsv.CSVWriter;
  */
 public final class LpeNumericUtils {
 	private static final int NUM_ITEMS_IN_SUM = 6;
+	private static final long RESAMPLING_SEED = 4711;
+	private static final double RESAMPLING_CONFIDENCE = 0.95;
+	private static final double REFERENCE_UTILIZATION = 0.01;
 	private static final int kilo = 1000;
 	private static final int SEC_IN_MIN = 60;
 	private static final int MIN_IN_H = 60;
@@ -611,6 +619,40 @@ public final class LpeNumericUtils {
 
 	}
 
+	/**
+	 * Exports a pair list in the compressed binary series format (see
+	 * {@link BinarySeries}). Considerably faster and smaller than CSV or Java
+	 * serialization.
+	 * 
+	 * @param list
+	 *            pair list to export
+	 * @param file
+	 *            target file
+	 */
+	public static void exportAsBinary(NumericPairList<? extends Number, ? extends Number> list, String file) {
+		try {
+			BinarySeries.fromPairList(list).write(new File(file), BinarySeries.Compression.COMPRESSED);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Imports a pair list exported by
+	 * {@link #exportAsBinary(NumericPairList, String)}.
+	 * 
+	 * @param file
+	 *            file to read
+	 * @return pair list
+	 */
+	public static NumericPairList<Double, Double> importPairListFromBinary(String file) {
+		try {
+			return BinarySeries.read(new File(file)).toPairList(BinarySeries.KEY_COLUMN, BinarySeries.VALUE_COLUMN);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
 	/**
 	 * Marks the outliers in the given list of values using the 1.5*IQR method.
 	 * 
@@ -658,6 +700,34 @@ public final class LpeNumericUtils {
 
 	}
 
+	/**
+	 * Calculates the two-sided p-value for a difference of the means of the
+	 * given samples by a parallel permutation test (see
+	 * {@link ResamplingEngine}). In contrast to
+	 * {@link #tTestOnNonNormalDistributedSample(List, List)} no assumption on
+	 * the distribution of the samples is made.
+	 * 
+	 * @param values1
+	 *            sample one
+	 * @param values2
+	 *            sample two
+	 * @return p-value in range (0-1]
+	 */
+	public static double permutationTest(List<? extends Number> values1, List<? extends Number> values2) {
+		ResamplingEngine engine = new ResamplingEngine(ResamplingEngine.DEFAULT_ITERATIONS, RESAMPLING_SEED);
+		return engine.permutationTest(toDoubleArray(values1), toDoubleArray(values2), SampleStatistic.MEAN,
+				RESAMPLING_CONFIDENCE).getPValue();
+	}
+
+	private static double[] toDoubleArray(List<? extends Number> values) {
+		double[] result = new double[values.size()];
+		int i = 0;
+		for (Number value : values) {
+			result[i++] = value.doubleValue();
+		}
+		return result;
+	}
+
 	/**
 	 * Creates normal distribution by bootstrapping the given samples.
 	 * 
@@ -864,21 +934,7 @@ public final class LpeNumericUtils {
 	 * @return the calculated value for the given parameters
 	 */
 	public static double calculateErlangsCFormula(int numServers, double utilization) {
-		double c = (double) numServers;
-		double p = utilization;
-		double cp = c * p;
-		double cpC = Math.pow(cp, c);
-		double cFac = factorial(numServers);
-		double termA = (cpC / cFac) * (1 / (1 - p));
-
-		double termB = 0;
-		for (int i = 0; i < numServers; i++) {
-			double cpI = Math.pow(cp, i);
-			double iFac = factorial(i);
-			termB += cpI / iFac;
-		}
-
-		return termA / (termB + termA);
+		return ErlangFormulas.erlangC(numServers, utilization);
 	}
 
 	/**
@@ -956,30 +1012,23 @@ public final class LpeNumericUtils {
 				+ Math.pow((point_1.getValue().doubleValue() - point_2.getValue().doubleValue()) * valueFactor, 2));
 	}
 
+	/**
+	 * Calculates the utilization of a multi-server queue at which the mean
+	 * response time has grown by the given factor compared to the response
+	 * time at 1% utilization (cf. queueing theory). The reference response
+	 * time is dominated by the service time, so it stays well defined for
+	 * large server counts where the waiting time at 1% utilization underflows.
+	 * 
+	 * @param rtFactor
+	 *            growth factor of the response time
+	 * @param numCores
+	 *            number of servers
+	 * @return utilization per server
+	 */
 	public static double getUtilizationForResponseTimeFactorQT(double rtFactor, int numCores) {
-
-		double left = 0.01;
-		double right = 1.0;
-		double mid = 0.5;
-		double epsilon = 1.0;
-		double epsilonThreshold = 0.01;
-		double result = mid;
-		double smallUtilization = 0.01;
-		double refValue = 1.0 / (1.0 - smallUtilization) * LpeNumericUtils.calculateErlangsCFormula(numCores, smallUtilization);
-		while (epsilon > epsilonThreshold) {
-			double value = 1.0 / (1.0 - mid) * LpeNumericUtils.calculateErlangsCFormula(numCores, mid);
-			double proportion = refValue/value;
-			epsilon = Math.abs((proportion - rtFactor));
-			result = mid;
-			if (proportion < rtFactor) {
-				left = mid;
-				mid = mid + 0.5 * (right - mid);
-			} else {
-				right = mid;
-				mid = left + 0.5 * (mid - left);
-			}
-		}
-		return result;
+		ErlangTable table = ErlangTable.forServers(numCores);
+		double refValue = table.responseTimeFactor(REFERENCE_UTILIZATION);
+		return Math.max(REFERENCE_UTILIZATION, table.utilizationForResponseTimeFactor(rtFactor * refValue));
 	}
 
 }
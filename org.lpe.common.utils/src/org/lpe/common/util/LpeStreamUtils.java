@@ -80,11 +80,11 @@ public final class LpeStreamUtils {
 	public static String readFromInputStream(InputStream is) throws IOException {
 		BufferedReader reader = new BufferedReader(new InputStreamReader(is));
 
-		StringBuffer content = new StringBuffer();
+		StringBuilder content = new StringBuilder();
 		String line;
 
 		while ((line = reader.readLine()) != null) {
-			content.append(line + " ");
+			content.append(line).append(' ');
 		}
 
 		return content.toString();
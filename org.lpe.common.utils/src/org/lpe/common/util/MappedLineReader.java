@@ -0,0 +1,268 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazy line reader over a memory mapped file. The file is mapped in windows
+ * of {@link #WINDOW_SIZE} bytes, thus, files larger than the heap (and larger
+ * than 2 GB) can be read. Lines are split at <code>'\n'</code>; a preceding
+ * <code>'\r'</code> is removed. The charset must encode <code>'\n'</code> and
+ * <code>'\r'</code> as single bytes (e.g. UTF-8, ISO-8859-1).
+ * <p>
+ * A reader may be restricted to a byte range of the file. The range then
+ * covers all lines starting within the range (see
+ * {@link LpeFileUtils#processLines(String, int, LineChunkProcessor)}).
+ * 
+ */
+public final class MappedLineReader implements Iterable<String>, Closeable {
+	/** size of the mapped windows. */
+	static final int WINDOW_SIZE = 64 * 1024 * 1024;
+	private static final long MIN_CHUNK_SIZE = 1024 * 1024;
+	private static final byte LF = '\n';
+	private static final byte CR = '\r';
+
+	private final FileChannel channel;
+	private final Charset charset;
+	private final long start;
+	private final long end;
+	private final long fileSize;
+	private final int windowSize;
+	private boolean iterated = false;
+
+	/**
+	 * Opens the whole file.
+	 * 
+	 * @param file
+	 *            file to read
+	 * @param charset
+	 *            charset of the file
+	 * @throws IOException
+	 *             if the file cannot be opened
+	 */
+	public MappedLineReader(File file, Charset charset) throws IOException {
+		this(file, charset, 0, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Opens a byte range of the file. The reader returns all lines starting at
+	 * or after the first line break before <code>start</code> (or at 0) and
+	 * before <code>end</code>.
+	 * 
+	 * @param file
+	 *            file to read
+	 * @param charset
+	 *            charset of the file
+	 * @param start
+	 *            first byte of the range
+	 * @param end
+	 *            end of the range (exclusive)
+	 * @throws IOException
+	 *             if the file cannot be opened
+	 */
+	public MappedLineReader(File file, Charset charset, long start, long end) throws IOException {
+		this(file, charset, start, end, WINDOW_SIZE);
+	}
+
+	/**
+	 * Opens a byte range of the file using the given window size.
+	 */
+	MappedLineReader(File file, Charset charset, long start, long end, int windowSize) throws IOException {
+		this.windowSize = windowSize;
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		this.charset = charset;
+		this.fileSize = channel.size();
+		this.start = Math.min(start, fileSize);
+		this.end = Math.min(end, fileSize);
+	}
+
+	/**
+	 * The returned iterator may only be requested once.
+	 * 
+	 * @return lazy iterator over the lines
+	 */
+	@Override
+	public synchronized Iterator<String> iterator() {
+		if (iterated) {
+			throw new IllegalStateException("Lines of a MappedLineReader can be iterated only once.");
+		}
+		iterated = true;
+		return new LineIterator();
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Splits a file into ranges of similar size whose bounds lie directly
+	 * after a line break.
+	 * 
+	 * @param file
+	 *            file to split
+	 * @param numChunks
+	 *            maximal number of chunks
+	 * @return bounds of the chunks; chunk i covers [bounds[i], bounds[i+1])
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	static long[] chunkBounds(File file, int numChunks) throws IOException {
+		return chunkBounds(file, numChunks, MIN_CHUNK_SIZE);
+	}
+
+	/**
+	 * Splits a file into ranges of at least minChunkSize bytes.
+	 */
+	static long[] chunkBounds(File file, int numChunks, long minChunkSize) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			int chunks = (int) Math.max(1, Math.min(numChunks, size / minChunkSize + 1));
+			long[] bounds = new long[chunks + 1];
+			bounds[chunks] = size;
+			ByteBuffer buffer = ByteBuffer.allocate(8192);
+			for (int i = 1; i < chunks; i++) {
+				long position = Math.max(bounds[i - 1], size * i / chunks);
+				bounds[i] = nextLineStart(channel, position, size, buffer);
+			}
+			return bounds;
+		}
+	}
+
+	private static long nextLineStart(FileChannel channel, long position, long size, ByteBuffer buffer)
+			throws IOException {
+		if (position == 0) {
+			return 0;
+		}
+		// a line starts at position if the preceding byte is a line break
+		long current = position - 1;
+		while (current < size) {
+			buffer.clear();
+			int read = channel.read(buffer, current);
+			if (read <= 0) {
+				break;
+			}
+			for (int i = 0; i < read; i++) {
+				if (buffer.get(i) == LF) {
+					return current + i + 1;
+				}
+			}
+			current += read;
+		}
+		return size;
+	}
+
+	/**
+	 * Iterates the lines window by window.
+	 */
+	private final class LineIterator implements Iterator<String> {
+		private MappedByteBuffer window;
+		private long windowStart;
+		private long position;
+		private String next;
+		private byte[] bytes = new byte[256];
+
+		private LineIterator() {
+			try {
+				position = nextLineStart(channel, start, fileSize, ByteBuffer.allocate(8192));
+			} catch (IOException e) {
+				throw new RuntimeException("Failed to read file.", e);
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (next == null && position < end) {
+				try {
+					next = readLine();
+				} catch (IOException e) {
+					throw new RuntimeException("Failed to read file.", e);
+				}
+			}
+			return next != null;
+		}
+
+		@Override
+		public String next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			String line = next;
+			next = null;
+			return line;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		private String readLine() throws IOException {
+			long size = windowSize;
+			while (true) {
+				if (window == null || position < windowStart || position >= windowStart + window.limit()) {
+					map(position, size);
+				}
+				int offset = (int) (position - windowStart);
+				int limit = window.limit();
+				int index = offset;
+				while (index < limit && window.get(index) != LF) {
+					index++;
+				}
+				boolean atEndOfFile = windowStart + limit >= fileSize;
+				if (index == limit && !atEndOfFile) {
+					// the line crosses the window, remap starting at the line
+					if (offset == 0) {
+						size = Math.min(Integer.MAX_VALUE, size * 2);
+					}
+					map(position, size);
+					continue;
+				}
+				int length = index - offset;
+				position = windowStart + Math.min(index + 1, limit);
+				if (length > 0 && window.get(offset + length - 1) == CR) {
+					length--;
+				}
+				return decode(offset, length);
+			}
+		}
+
+		private void map(long from, long size) throws IOException {
+			windowStart = from;
+			window = channel.map(FileChannel.MapMode.READ_ONLY, from, Math.min(size, fileSize - from));
+		}
+
+		private String decode(int offset, int length) {
+			if (bytes.length < length) {
+				bytes = new byte[Math.max(length, bytes.length * 2)];
+			}
+			ByteBuffer view = window.duplicate();
+			view.position(offset);
+			view.get(bytes, 0, length);
+			return new String(bytes, 0, length, charset);
+		}
+	}
+}
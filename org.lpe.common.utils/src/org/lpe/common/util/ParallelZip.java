@@ -0,0 +1,668 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.lpe.common.util.concurrency.ExecutorRegistry;
+
+/**
+ * Parallel ZIP packing and unpacking used by {@link LpeFileUtils}.
+ * <p>
+ * Packing compresses the entries concurrently into memory and writes them in
+ * a deterministic order (depth first, sorted by name) to the target stream.
+ * Files that are already compressed (e.g. archives, images) are stored
+ * without compression. Files larger than {@link #IN_MEMORY_LIMIT} are streamed
+ * by the writing thread. The archive is written without ZIP64 extensions;
+ * trees exceeding the ZIP32 limits are packed sequentially with a
+ * {@link ZipOutputStream}.
+ * <p>
+ * Unpacking inflates the entries concurrently, each worker using its own copy
+ * buffer. Both run on the shared {@code zip} executor of the
+ * {@link ExecutorRegistry}.
+ * 
+ */
+final class ParallelZip {
+	/** files above this size are not compressed into memory. */
+	static final long IN_MEMORY_LIMIT = 8L * 1024 * 1024;
+	private static final long MAX_IN_FLIGHT_BYTES = 64L * 1024 * 1024;
+	private static final String EXECUTOR_NAME = "zip";
+	private static final int THREADS = Runtime.getRuntime().availableProcessors();
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final String MANIFEST_PATH = "META-INF/MANIFEST.MF";
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final Set<String> COMPRESSED_EXTENSIONS = new HashSet<>(Arrays.asList("zip", "jar", "war",
+			"ear", "gz", "tgz", "bz2", "xz", "7z", "rar", "png", "jpg", "jpeg", "gif", "mp3", "mp4", "avi", "docx",
+			"xlsx", "pptx"));
+
+	private static final long ZIP32_LIMIT = 0xFFFFFFFFL;
+	private static final int MAX_ZIP32_ENTRIES = 0xFFFF;
+	private static final int LOCAL_HEADER_SIG = 0x04034b50;
+	private static final int DATA_DESCRIPTOR_SIG = 0x08074b50;
+	private static final int CENTRAL_HEADER_SIG = 0x02014b50;
+	private static final int END_OF_CENTRAL_DIR_SIG = 0x06054b50;
+	private static final int VERSION_STORED = 10;
+	private static final int VERSION_DEFLATED = 20;
+	private static final int FLAG_DATA_DESCRIPTOR = 0x0008;
+	private static final int FLAG_UTF8 = 0x0800;
+	private static final int HEADER_OVERHEAD = 30 + 46 + 16;
+
+	private static final ThreadLocal<byte[]> BUFFERS = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[BUFFER_SIZE];
+		}
+	};
+
+	/**
+	 * private constructor due to utility class.
+	 */
+	private ParallelZip() {
+	}
+
+	/**
+	 * 
+	 * @return a copy buffer owned by the calling thread
+	 */
+	static byte[] buffer() {
+		return BUFFERS.get();
+	}
+
+	/**
+	 * Packs the content of the source folder into the given stream. The stream
+	 * is not closed.
+	 * 
+	 * @param source
+	 *            folder to pack
+	 * @param out
+	 *            stream to write the archive to
+	 * @param fileFilter
+	 *            filter for files and folders, may be null
+	 * @param level
+	 *            compression level (0-9 or {@link Deflater#DEFAULT_COMPRESSION})
+	 * @param parallelism
+	 *            maximal number of entries compressed concurrently
+	 * @throws IOException
+	 *             if reading or writing fails
+	 */
+	static void zip(File source, OutputStream out, FileFilter fileFilter, int level, int parallelism)
+			throws IOException {
+		if (level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+			throw new IllegalArgumentException("Invalid compression level " + level);
+		}
+		List<Entry> entries = new ArrayList<>();
+		collect(source, source.getAbsolutePath().length() + 1, fileFilter, entries);
+
+		if (exceedsZip32(entries)) {
+			zipSequentially(entries, out, level);
+			return;
+		}
+
+		ZipWriter writer = new ZipWriter(out);
+		if (parallelism <= 1) {
+			for (Entry entry : entries) {
+				if (entry.isDirectory() || entry.size > IN_MEMORY_LIMIT) {
+					writer.write(entry, level);
+				} else {
+					writer.write(compress(entry, level));
+				}
+			}
+			writer.finish();
+			return;
+		}
+
+		ExecutorService executor = ExecutorRegistry.getInstance().getExecutor(EXECUTOR_NAME, THREADS, THREADS);
+		final Semaphore running = new Semaphore(parallelism);
+		Deque<Future<CompressedEntry>> pending = new ArrayDeque<>();
+		try {
+			Deque<Entry> pendingEntries = new ArrayDeque<>();
+			long inFlightBytes = 0;
+			int next = 0;
+			while (next < entries.size() || !pending.isEmpty()) {
+				// submit entries ahead of the writer, bounded by memory
+				while (next < entries.size()) {
+					Entry entry = entries.get(next);
+					if (entry.isDirectory() || entry.size > IN_MEMORY_LIMIT) {
+						if (!pending.isEmpty()) {
+							break;
+						}
+						writer.write(entry, level);
+						next++;
+						continue;
+					}
+					if (!pending.isEmpty() && inFlightBytes + entry.size > MAX_IN_FLIGHT_BYTES) {
+						break;
+					}
+					pending.add(submit(executor, new CompressTask(entry, level), running));
+					pendingEntries.add(entry);
+					inFlightBytes += entry.size;
+					next++;
+				}
+				if (!pending.isEmpty()) {
+					writer.write(get(pending.poll()));
+					inFlightBytes -= pendingEntries.poll().size;
+				}
+			}
+			writer.finish();
+		} finally {
+			for (Future<CompressedEntry> future : pending) {
+				future.cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * Submits a task once fewer than the permitted number of tasks are
+	 * running. A task rejected by the saturated executor runs in the calling
+	 * thread.
+	 */
+	private static <T> Future<T> submit(ExecutorService executor, Callable<T> task, final Semaphore running)
+			throws IOException {
+		try {
+			running.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while packing.", e);
+		}
+		FutureTask<T> future = new FutureTask<T>(task) {
+			@Override
+			protected void done() {
+				running.release();
+			}
+		};
+		try {
+			executor.execute(future);
+		} catch (RejectedExecutionException e) {
+			future.run();
+		}
+		return future;
+	}
+
+	/**
+	 * Unpacks the archive into the given directory.
+	 * 
+	 * @param file
+	 *            archive to unpack
+	 * @param directory
+	 *            target directory
+	 * @param parallelism
+	 *            maximal number of entries extracted concurrently
+	 * @throws IOException
+	 *             if reading or writing fails
+	 */
+	static void unzip(File file, File directory, int parallelism) throws IOException {
+		final ZipFile zipFile = new ZipFile(file, ZipFile.OPEN_READ);
+		try {
+			String rootPath = directory.getCanonicalPath() + File.separator;
+			List<Callable<Void>> tasks = new ArrayList<>();
+			Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+			while (zipEntries.hasMoreElements()) {
+				final ZipEntry zipEntry = zipEntries.nextElement();
+				final File targetFile = new File(directory, zipEntry.getName());
+				if (!targetFile.getCanonicalPath().startsWith(rootPath)) {
+					throw new IOException("Zip entry " + zipEntry.getName() + " is outside of the target directory.");
+				}
+				if (zipEntry.isDirectory()) {
+					targetFile.mkdirs();
+					continue;
+				}
+				targetFile.getParentFile().mkdirs();
+				tasks.add(new Callable<Void>() {
+					@Override
+					public Void call() throws IOException {
+						try (InputStream in = zipFile.getInputStream(zipEntry);
+								OutputStream out = new FileOutputStream(targetFile)) {
+							copy(in, out);
+						}
+						return null;
+					}
+				});
+			}
+
+			if (parallelism <= 1 || tasks.size() <= 1) {
+				for (Callable<Void> task : tasks) {
+					task.call();
+				}
+				return;
+			}
+			ExecutorService executor = ExecutorRegistry.getInstance().getExecutor(EXECUTOR_NAME, THREADS, THREADS);
+			try {
+				for (Future<Void> future : ExecutorRegistry.invokeAll(executor, tasks, parallelism)) {
+					get(future);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while unpacking " + file, e);
+			}
+		} catch (IOException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException(e);
+		} finally {
+			zipFile.close();
+		}
+	}
+
+	/**
+	 * Copies all bytes using the buffer of the calling thread.
+	 */
+	static void copy(InputStream in, OutputStream out) throws IOException {
+		byte[] buffer = BUFFERS.get();
+		int bytesRead;
+		while ((bytesRead = in.read(buffer)) != -1) {
+			out.write(buffer, 0, bytesRead);
+		}
+	}
+
+	private static <T> T get(Future<T> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while packing", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+	}
+
+	private static void collect(File file, int pathStartIndex, FileFilter fileFilter, List<Entry> entries) {
+		if (fileFilter != null && !fileFilter.accept(file)) {
+			return;
+		}
+		String filePath = file.getAbsolutePath();
+		String entryName = "";
+		if (filePath.length() > pathStartIndex) {
+			entryName = filePath.substring(pathStartIndex).replace('\\', '/');
+		}
+		if (file.isDirectory()) {
+			if (!entryName.isEmpty()) {
+				entries.add(new Entry(file, entryName + "/", 0));
+			}
+			File[] children = file.listFiles();
+			if (children == null) {
+				return;
+			}
+			Arrays.sort(children);
+			for (File child : children) {
+				collect(child, pathStartIndex, fileFilter, entries);
+			}
+		} else if (!MANIFEST_PATH.equals(entryName)) {
+			// manifests are skipped as by the former sequential packing
+			entries.add(new Entry(file, entryName, file.length()));
+		}
+	}
+
+	private static boolean exceedsZip32(List<Entry> entries) {
+		if (entries.size() > MAX_ZIP32_ENTRIES) {
+			return true;
+		}
+		long total = 0;
+		for (Entry entry : entries) {
+			// deflate may expand incompressible data slightly
+			total += entry.size + entry.size / 100 + HEADER_OVERHEAD + 2 * entry.nameBytes.length;
+		}
+		return total >= ZIP32_LIMIT;
+	}
+
+	private static void zipSequentially(List<Entry> entries, OutputStream out, int level) throws IOException {
+		ZipOutputStream zipOut = new ZipOutputStream(out);
+		zipOut.setLevel(level);
+		for (Entry entry : entries) {
+			ZipEntry zipEntry = new ZipEntry(entry.name);
+			zipEntry.setTime(entry.file.lastModified());
+			zipOut.putNextEntry(zipEntry);
+			if (!entry.isDirectory()) {
+				try (InputStream in = new FileInputStream(entry.file)) {
+					copy(in, zipOut);
+				}
+			}
+			zipOut.closeEntry();
+		}
+		zipOut.finish();
+	}
+
+	/**
+	 * 
+	 * @param name
+	 *            file name
+	 * @return true, if the file format is compressed already
+	 */
+	static boolean isCompressed(String name) {
+		int index = name.lastIndexOf('.');
+		return index >= 0 && COMPRESSED_EXTENSIONS.contains(name.substring(index + 1).toLowerCase(Locale.ENGLISH));
+	}
+
+	private static CompressedEntry compress(Entry entry, int level) throws IOException {
+		CRC32 crc = new CRC32();
+		byte[] buffer = BUFFERS.get();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) Math.max(32, entry.size / 2));
+		boolean stored = level == Deflater.NO_COMPRESSION || isCompressed(entry.name);
+		Deflater deflater = stored ? null : new Deflater(level, true);
+		try (InputStream in = new FileInputStream(entry.file)) {
+			OutputStream out = stored ? bytes : new DeflaterOutputStream(bytes, deflater, BUFFER_SIZE);
+			long size = 0;
+			int bytesRead;
+			while ((bytesRead = in.read(buffer)) != -1) {
+				crc.update(buffer, 0, bytesRead);
+				out.write(buffer, 0, bytesRead);
+				size += bytesRead;
+			}
+			out.close();
+			return new CompressedEntry(entry, stored, crc.getValue(), size, bytes.toByteArray());
+		} finally {
+			if (deflater != null) {
+				deflater.end();
+			}
+		}
+	}
+
+	/**
+	 * File or folder to pack.
+	 */
+	private static final class Entry {
+		private final File file;
+		private final String name;
+		private final byte[] nameBytes;
+		private final long size;
+		private final long time;
+
+		private Entry(File file, String name, long size) {
+			this.file = file;
+			this.name = name;
+			this.nameBytes = name.getBytes(UTF8);
+			this.size = size;
+			this.time = file.lastModified();
+		}
+
+		private boolean isDirectory() {
+			return name.endsWith("/");
+		}
+	}
+
+	/**
+	 * Entry compressed into memory.
+	 */
+	private static final class CompressedEntry {
+		private final Entry entry;
+		private final boolean stored;
+		private final long crc;
+		private final long size;
+		private final byte[] data;
+
+		private CompressedEntry(Entry entry, boolean stored, long crc, long size, byte[] data) {
+			this.entry = entry;
+			this.stored = stored;
+			this.crc = crc;
+			this.size = size;
+			this.data = data;
+		}
+	}
+
+	/**
+	 * Compresses an entry into memory.
+	 */
+	private static final class CompressTask implements Callable<CompressedEntry> {
+		private final Entry entry;
+		private final int level;
+
+		private CompressTask(Entry entry, int level) {
+			this.entry = entry;
+			this.level = level;
+		}
+
+		@Override
+		public CompressedEntry call() throws IOException {
+			return compress(entry, level);
+		}
+	}
+
+	/**
+	 * Writes the ZIP structure (local headers, data, central directory).
+	 */
+	private static final class ZipWriter {
+		private final OutputStream out;
+		private final ByteArrayOutputStream centralDirectory = new ByteArrayOutputStream();
+		private final byte[] header = new byte[46];
+		private long offset;
+		private int numEntries;
+
+		private ZipWriter(OutputStream out) {
+			this.out = new BufferedOutputStream(out, BUFFER_SIZE);
+		}
+
+		/**
+		 * Writes an entry compressed into memory.
+		 */
+		private void write(CompressedEntry compressed) throws IOException {
+			int method = compressed.stored ? ZipEntry.STORED : ZipEntry.DEFLATED;
+			long localHeaderOffset = offset;
+			writeLocalHeader(compressed.entry, method, 0, compressed.crc, compressed.data.length, compressed.size);
+			out.write(compressed.data);
+			offset += compressed.data.length;
+			addCentralEntry(compressed.entry, method, 0, compressed.crc, compressed.data.length, compressed.size,
+					localHeaderOffset);
+		}
+
+		/**
+		 * Writes a directory or streams a large file.
+		 */
+		private void write(Entry entry, int level) throws IOException {
+			long localHeaderOffset = offset;
+			if (entry.isDirectory()) {
+				writeLocalHeader(entry, ZipEntry.STORED, 0, 0, 0, 0);
+				addCentralEntry(entry, ZipEntry.STORED, 0, 0, 0, 0, localHeaderOffset);
+				return;
+			}
+			if (level == Deflater.NO_COMPRESSION || isCompressed(entry.name)) {
+				// stored entries require the CRC in the local header
+				CRC32 crc = new CRC32();
+				byte[] buffer = BUFFERS.get();
+				long size = 0;
+				try (InputStream in = new FileInputStream(entry.file)) {
+					int bytesRead;
+					while ((bytesRead = in.read(buffer)) != -1) {
+						crc.update(buffer, 0, bytesRead);
+						size += bytesRead;
+					}
+				}
+				writeLocalHeader(entry, ZipEntry.STORED, 0, crc.getValue(), size, size);
+				long copied = 0;
+				try (InputStream in = new FileInputStream(entry.file)) {
+					int bytesRead;
+					while (copied < size && (bytesRead = in.read(buffer, 0, (int) Math.min(buffer.length, size - copied))) != -1) {
+						out.write(buffer, 0, bytesRead);
+						copied += bytesRead;
+					}
+				}
+				if (copied != size) {
+					throw new IOException("File " + entry.file + " changed while packing.");
+				}
+				offset += size;
+				addCentralEntry(entry, ZipEntry.STORED, 0, crc.getValue(), size, size, localHeaderOffset);
+				return;
+			}
+
+			writeLocalHeader(entry, ZipEntry.DEFLATED, FLAG_DATA_DESCRIPTOR, 0, 0, 0);
+			CRC32 crc = new CRC32();
+			CountingStream counter = new CountingStream(out);
+			Deflater deflater = new Deflater(level, true);
+			long size = 0;
+			try (InputStream in = new FileInputStream(entry.file)) {
+				DeflaterOutputStream deflaterOut = new DeflaterOutputStream(counter, deflater, BUFFER_SIZE);
+				byte[] buffer = BUFFERS.get();
+				int bytesRead;
+				while ((bytesRead = in.read(buffer)) != -1) {
+					crc.update(buffer, 0, bytesRead);
+					deflaterOut.write(buffer, 0, bytesRead);
+					size += bytesRead;
+				}
+				deflaterOut.finish();
+			} finally {
+				deflater.end();
+			}
+			offset += counter.count;
+			writeInt(header, 0, DATA_DESCRIPTOR_SIG);
+			writeInt(header, 4, crc.getValue());
+			writeInt(header, 8, counter.count);
+			writeInt(header, 12, size);
+			out.write(header, 0, 16);
+			offset += 16;
+			addCentralEntry(entry, ZipEntry.DEFLATED, FLAG_DATA_DESCRIPTOR, crc.getValue(), counter.count, size,
+					localHeaderOffset);
+		}
+
+		private void writeLocalHeader(Entry entry, int method, int flags, long crc, long compressedSize, long size)
+				throws IOException {
+			writeInt(header, 0, LOCAL_HEADER_SIG);
+			writeShort(header, 4, method == ZipEntry.STORED ? VERSION_STORED : VERSION_DEFLATED);
+			writeShort(header, 6, flags | FLAG_UTF8);
+			writeShort(header, 8, method);
+			writeInt(header, 10, dosTime(entry.time));
+			writeInt(header, 14, crc);
+			writeInt(header, 18, compressedSize);
+			writeInt(header, 22, size);
+			writeShort(header, 26, entry.nameBytes.length);
+			writeShort(header, 28, 0);
+			out.write(header, 0, 30);
+			out.write(entry.nameBytes);
+			offset += 30 + entry.nameBytes.length;
+		}
+
+		private void addCentralEntry(Entry entry, int method, int flags, long crc, long compressedSize, long size,
+				long localHeaderOffset) throws IOException {
+			if (localHeaderOffset >= ZIP32_LIMIT || compressedSize >= ZIP32_LIMIT) {
+				throw new IOException("Archive exceeds the ZIP32 limits.");
+			}
+			byte[] central = new byte[46];
+			writeInt(central, 0, CENTRAL_HEADER_SIG);
+			writeShort(central, 4, VERSION_DEFLATED);
+			writeShort(central, 6, method == ZipEntry.STORED ? VERSION_STORED : VERSION_DEFLATED);
+			writeShort(central, 8, flags | FLAG_UTF8);
+			writeShort(central, 10, method);
+			writeInt(central, 12, dosTime(entry.time));
+			writeInt(central, 16, crc);
+			writeInt(central, 20, compressedSize);
+			writeInt(central, 24, size);
+			writeShort(central, 28, entry.nameBytes.length);
+			// extra, comment, disk, internal and external attributes are 0
+			writeInt(central, 42, localHeaderOffset);
+			centralDirectory.write(central);
+			centralDirectory.write(entry.nameBytes);
+			numEntries++;
+		}
+
+		private void finish() throws IOException {
+			long centralOffset = offset;
+			centralDirectory.writeTo(out);
+			byte[] end = new byte[22];
+			writeInt(end, 0, END_OF_CENTRAL_DIR_SIG);
+			writeShort(end, 8, numEntries);
+			writeShort(end, 10, numEntries);
+			writeInt(end, 12, centralDirectory.size());
+			writeInt(end, 16, centralOffset);
+			out.write(end);
+			out.flush();
+		}
+
+		private static void writeShort(byte[] buffer, int index, int value) {
+			buffer[index] = (byte) value;
+			buffer[index + 1] = (byte) (value >>> 8);
+		}
+
+		private static void writeInt(byte[] buffer, int index, long value) {
+			buffer[index] = (byte) value;
+			buffer[index + 1] = (byte) (value >>> 8);
+			buffer[index + 2] = (byte) (value >>> 16);
+			buffer[index + 3] = (byte) (value >>> 24);
+		}
+
+		private static long dosTime(long time) {
+			Calendar calendar = Calendar.getInstance();
+			calendar.setTimeInMillis(time);
+			int year = calendar.get(Calendar.YEAR);
+			if (year < 1980) {
+				return (1 << 21) | (1 << 16);
+			}
+			return (year - 1980) << 25 | (calendar.get(Calendar.MONTH) + 1) << 21
+					| calendar.get(Calendar.DAY_OF_MONTH) << 16 | calendar.get(Calendar.HOUR_OF_DAY) << 11
+					| calendar.get(Calendar.MINUTE) << 5 | calendar.get(Calendar.SECOND) >> 1;
+		}
+	}
+
+	/**
+	 * Counts the bytes written to the underlying stream without closing it.
+	 */
+	private static final class CountingStream extends OutputStream {
+		private final OutputStream out;
+		private long count;
+
+		private CountingStream(OutputStream out) {
+			this.out = out;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+
+		@Override
+		public void close() {
+			// the archive stream stays open
+		}
+	}
+}
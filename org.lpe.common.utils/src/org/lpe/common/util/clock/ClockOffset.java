@@ -0,0 +1,151 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.clock;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable estimate of the offset between the clock of a remote node and the
+ * local clock. The offset is defined as <code>remote - local</code>.
+ * 
+ */
+public final class ClockOffset {
+	private static final double NANOS_PER_SECOND = 1.0E9;
+
+	private final long offsetNanos;
+	private final double driftNanosPerSecond;
+	private final long referenceTimeNanos;
+	private final long roundTripNanos;
+	private final int numSamples;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param offsetNanos
+	 *            offset at the reference time in [ns]
+	 * @param driftNanosPerSecond
+	 *            change of the offset per second of local time
+	 * @param referenceTimeNanos
+	 *            local time the offset refers to in [ns]
+	 * @param roundTripNanos
+	 *            network round trip time of the best sample in [ns]
+	 * @param numSamples
+	 *            number of samples the estimate is based on
+	 */
+	public ClockOffset(long offsetNanos, double driftNanosPerSecond, long referenceTimeNanos, long roundTripNanos,
+			int numSamples) {
+		this.offsetNanos = offsetNanos;
+		this.driftNanosPerSecond = driftNanosPerSecond;
+		this.referenceTimeNanos = referenceTimeNanos;
+		this.roundTripNanos = roundTripNanos;
+		this.numSamples = numSamples;
+	}
+
+	/**
+	 * Returns the offset at the given local time, extrapolated with the drift.
+	 * 
+	 * @param localTimeNanos
+	 *            local time in [ns]
+	 * @return offset in [ns]
+	 */
+	public long getOffsetNanos(long localTimeNanos) {
+		double elapsedSeconds = (localTimeNanos - referenceTimeNanos) / NANOS_PER_SECOND;
+		return offsetNanos + Math.round(driftNanosPerSecond * elapsedSeconds);
+	}
+
+	/**
+	 * 
+	 * @return offset at the reference time in [ns]
+	 */
+	public long getOffsetNanos() {
+		return offsetNanos;
+	}
+
+	/**
+	 * 
+	 * @return change of the offset per second of local time
+	 */
+	public double getDriftNanosPerSecond() {
+		return driftNanosPerSecond;
+	}
+
+	/**
+	 * 
+	 * @return local time the offset refers to in [ns]
+	 */
+	public long getReferenceTimeNanos() {
+		return referenceTimeNanos;
+	}
+
+	/**
+	 * 
+	 * @return network round trip time of the best sample in [ns]; the error
+	 *         of the offset is bounded by half of it
+	 */
+	public long getRoundTripNanos() {
+		return roundTripNanos;
+	}
+
+	/**
+	 * 
+	 * @return number of samples the estimate is based on
+	 */
+	public int getNumSamples() {
+		return numSamples;
+	}
+
+	/**
+	 * Converts a timestamp of the remote node into local time.
+	 * 
+	 * @param remoteTimeNanos
+	 *            remote timestamp in [ns]
+	 * @return local timestamp in [ns]
+	 */
+	public long toLocalTimeNanos(long remoteTimeNanos) {
+		return remoteTimeNanos - getOffsetNanos(remoteTimeNanos - offsetNanos);
+	}
+
+	/**
+	 * Converts a timestamp of the remote node into local time.
+	 * 
+	 * @param remoteTimeMillis
+	 *            remote timestamp in [ms]
+	 * @return local timestamp in [ms]
+	 */
+	public long toLocalTimeMillis(long remoteTimeMillis) {
+		long remoteNanos = TimeUnit.MILLISECONDS.toNanos(remoteTimeMillis);
+		long offset = getOffsetNanos(remoteNanos - offsetNanos);
+		return remoteTimeMillis - Math.round(offset / (double) TimeUnit.MILLISECONDS.toNanos(1));
+	}
+
+	/**
+	 * Converts a local timestamp into the time of the remote node.
+	 * 
+	 * @param localTimeMillis
+	 *            local timestamp in [ms]
+	 * @return remote timestamp in [ms]
+	 */
+	public long toRemoteTimeMillis(long localTimeMillis) {
+		long offset = getOffsetNanos(TimeUnit.MILLISECONDS.toNanos(localTimeMillis));
+		return localTimeMillis + Math.round(offset / (double) TimeUnit.MILLISECONDS.toNanos(1));
+	}
+
+	@Override
+	public String toString() {
+		return "ClockOffset [offset=" + offsetNanos + "ns, drift=" + driftNanosPerSecond + "ns/s, rtt="
+				+ roundTripNanos + "ns, samples=" + numSamples + "]";
+	}
+}
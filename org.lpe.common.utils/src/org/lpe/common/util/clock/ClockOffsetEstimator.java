@@ -0,0 +1,172 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.clock;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.apache.commons.math3.stat.regression.SimpleRegression;
+
+/**
+ * Estimates the clock offset and drift of a remote node with an NTP-style
+ * protocol. Each synchronization round takes several request/response samples
+ * and keeps only the one with the minimal round trip time, as its offset has
+ * the smallest error bound. The drift is the slope of a linear regression over
+ * the offsets of the last rounds. If the local or the remote
+ * {@link HighResolutionClock} has been re-anchored since the last round, the
+ * history is discarded, as older offsets refer to a stale anchor.
+ * 
+ */
+public class ClockOffsetEstimator {
+	/** default number of samples per synchronization round. */
+	public static final int DEFAULT_SAMPLES_PER_ROUND = 8;
+	private static final int HISTORY_SIZE = 32;
+	private static final double NANOS_PER_SECOND = 1.0E9;
+	private static final double MIN_DRIFT_SPAN_SECONDS = 1.0;
+	private static final long RTT_TOLERANCE_FACTOR = 2;
+
+	private final ClockSampleSource source;
+	private final int samplesPerRound;
+	private final Deque<long[]> history = new ArrayDeque<long[]>();
+	private long localAnchorNanos;
+	private long remoteAnchorNanos;
+	private volatile ClockOffset offset;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param source
+	 *            source of clock samples of the remote node
+	 */
+	public ClockOffsetEstimator(ClockSampleSource source) {
+		this(source, DEFAULT_SAMPLES_PER_ROUND);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param source
+	 *            source of clock samples of the remote node
+	 * @param samplesPerRound
+	 *            number of samples per synchronization round
+	 */
+	public ClockOffsetEstimator(ClockSampleSource source, int samplesPerRound) {
+		if (samplesPerRound < 1) {
+			throw new IllegalArgumentException("At least one sample per round is required!");
+		}
+		this.source = source;
+		this.samplesPerRound = samplesPerRound;
+	}
+
+	/**
+	 * Performs a synchronization round and updates the estimate.
+	 * 
+	 * @return the updated estimate
+	 */
+	public synchronized ClockOffset synchronize() {
+		long bestRoundTrip = Long.MAX_VALUE;
+		long bestOffset = 0;
+		long bestTime = 0;
+		long bestLocalAnchor = 0;
+		long bestRemoteAnchor = 0;
+		for (int i = 0; i < samplesPerRound; i++) {
+			long t0 = HighResolutionClock.currentTimeNanos();
+			ClockSample sample = source.requestClockSample();
+			long t3 = HighResolutionClock.currentTimeNanos();
+			long t1 = sample.getReceiveTimeNanos();
+			long t2 = sample.getTransmitTimeNanos();
+
+			long roundTrip = (t3 - t0) - (t2 - t1);
+			if (roundTrip < bestRoundTrip) {
+				bestRoundTrip = roundTrip;
+				bestOffset = ((t1 - t0) + (t2 - t3)) / 2;
+				bestTime = t0 + (t3 - t0) / 2;
+				bestLocalAnchor = HighResolutionClock.getAnchorEpochNanos();
+				bestRemoteAnchor = sample.getAnchorEpochNanos();
+			}
+		}
+		if (bestLocalAnchor != localAnchorNanos || bestRemoteAnchor != remoteAnchorNanos) {
+			history.clear();
+			localAnchorNanos = bestLocalAnchor;
+			remoteAnchorNanos = bestRemoteAnchor;
+		}
+		return addMeasurement(bestTime, bestOffset, Math.max(0L, bestRoundTrip));
+	}
+
+	/**
+	 * Adds a measured offset to the history and updates the estimate.
+	 * 
+	 * @param localTimeNanos
+	 *            local time of the measurement in [ns]
+	 * @param offsetNanos
+	 *            measured offset in [ns]
+	 * @param roundTripNanos
+	 *            round trip time of the measurement in [ns]
+	 * @return the updated estimate
+	 */
+	synchronized ClockOffset addMeasurement(long localTimeNanos, long offsetNanos, long roundTripNanos) {
+		history.addLast(new long[] { localTimeNanos, offsetNanos, roundTripNanos });
+		if (history.size() > HISTORY_SIZE) {
+			history.removeFirst();
+		}
+
+		long minRoundTrip = Long.MAX_VALUE;
+		for (long[] entry : history) {
+			minRoundTrip = Math.min(minRoundTrip, entry[2]);
+		}
+		// measurements taken under congestion have a larger error bound
+		long maxRoundTrip = Math.max(minRoundTrip * RTT_TOLERANCE_FACTOR, minRoundTrip + 1);
+
+		SimpleRegression regression = new SimpleRegression();
+		long firstTime = history.getFirst()[0];
+		double span = (localTimeNanos - firstTime) / NANOS_PER_SECOND;
+		for (long[] entry : history) {
+			if (entry[2] <= maxRoundTrip) {
+				regression.addData((entry[0] - firstTime) / NANOS_PER_SECOND, entry[1]);
+			}
+		}
+
+		ClockOffset newOffset;
+		if (regression.getN() >= 2 && span >= MIN_DRIFT_SPAN_SECONDS) {
+			double x = (localTimeNanos - firstTime) / NANOS_PER_SECOND;
+			newOffset = new ClockOffset(Math.round(regression.predict(x)), regression.getSlope(), localTimeNanos,
+					roundTripNanos, history.size());
+		} else {
+			newOffset = new ClockOffset(offsetNanos, 0.0, localTimeNanos, roundTripNanos, history.size());
+		}
+		offset = newOffset;
+		return newOffset;
+	}
+
+	/**
+	 * 
+	 * @return the current estimate or null, if no round has been performed,
+	 *         yet
+	 */
+	public ClockOffset getOffset() {
+		return offset;
+	}
+
+	/**
+	 * 
+	 * @return true, if the local {@link HighResolutionClock} has been
+	 *         re-anchored since the last round, thus the estimate has to be
+	 *         re-estimated before converting local timestamps
+	 */
+	public synchronized boolean isStale() {
+		return localAnchorNanos != HighResolutionClock.getAnchorEpochNanos();
+	}
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.clock;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.lpe.common.util.concurrency.ExecutorRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Table of the clock offsets of all known remote nodes. Registered nodes are
+ * re-synchronized periodically in the background, so that remote timestamps
+ * can be converted to local time without additional calls. The periodic
+ * re-synchronization also follows re-anchorings of the remote
+ * {@link HighResolutionClock}; estimates made before a re-anchoring of the
+ * local clock are not returned.
+ * 
+ */
+public final class ClockOffsetTable {
+	/** default re-synchronization period in [ms]. */
+	public static final long DEFAULT_PERIOD_MILLIS = 30000;
+	private static final Logger LOGGER = LoggerFactory.getLogger(ClockOffsetTable.class);
+	private static final String EXECUTOR_NAME = "clock-sync";
+	private static ClockOffsetTable instance;
+
+	/**
+	 * 
+	 * @return singleton instance
+	 */
+	public static synchronized ClockOffsetTable getInstance() {
+		if (instance == null) {
+			instance = new ClockOffsetTable();
+		}
+		return instance;
+	}
+
+	private final ConcurrentMap<String, ClockOffsetEstimator> estimators = new ConcurrentHashMap<String, ClockOffsetEstimator>();
+	private final ConcurrentMap<String, ScheduledFuture<?>> tasks = new ConcurrentHashMap<String, ScheduledFuture<?>>();
+
+	/**
+	 * private constructor due to singleton class.
+	 */
+	private ClockOffsetTable() {
+	}
+
+	/**
+	 * Registers a node, synchronizes it once and schedules periodic
+	 * re-synchronization. Registering a known node again replaces its source.
+	 * 
+	 * @param node
+	 *            identifier of the node, e.g. its base URL
+	 * @param source
+	 *            source of clock samples of the node
+	 * @param periodMillis
+	 *            re-synchronization period in [ms], no periodic
+	 *            re-synchronization if not positive
+	 * @return the initial offset estimate
+	 */
+	public ClockOffset register(final String node, ClockSampleSource source, long periodMillis) {
+		final ClockOffsetEstimator estimator = new ClockOffsetEstimator(source);
+		ClockOffset offset = estimator.synchronize();
+		estimators.put(node, estimator);
+		LOGGER.debug("Clock offset of {}: {}", node, offset);
+
+		ScheduledFuture<?> previous = tasks.remove(node);
+		if (previous != null) {
+			previous.cancel(false);
+		}
+		if (periodMillis > 0) {
+			ScheduledFuture<?> task = getScheduler().scheduleAtFixedRate(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						estimator.synchronize();
+					} catch (RuntimeException e) {
+						LOGGER.warn("Clock synchronization with {} failed: {}", node, e.getMessage());
+					}
+				}
+			}, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+			tasks.put(node, task);
+		}
+		return offset;
+	}
+
+	/**
+	 * Removes a node and stops its re-synchronization.
+	 * 
+	 * @param node
+	 *            identifier of the node
+	 */
+	public void unregister(String node) {
+		estimators.remove(node);
+		ScheduledFuture<?> task = tasks.remove(node);
+		if (task != null) {
+			task.cancel(false);
+		}
+	}
+
+	/**
+	 * Synchronizes the given node immediately.
+	 * 
+	 * @param node
+	 *            identifier of the node
+	 * @return the updated estimate
+	 */
+	public ClockOffset synchronize(String node) {
+		ClockOffsetEstimator estimator = estimators.get(node);
+		if (estimator == null) {
+			throw new IllegalArgumentException("Node " + node + " has not been registered!");
+		}
+		return estimator.synchronize();
+	}
+
+	/**
+	 * 
+	 * @param node
+	 *            identifier of the node
+	 * @return the current offset estimate of the node or null, if the node is
+	 *         unknown or its estimate refers to a stale anchor of the local
+	 *         clock
+	 */
+	public ClockOffset getOffset(String node) {
+		ClockOffsetEstimator estimator = estimators.get(node);
+		return estimator == null || estimator.isStale() ? null : estimator.getOffset();
+	}
+
+	/**
+	 * 
+	 * @return the current offset estimates of all nodes
+	 */
+	public Map<String, ClockOffset> getOffsets() {
+		Map<String, ClockOffset> result = new TreeMap<String, ClockOffset>();
+		for (Map.Entry<String, ClockOffsetEstimator> entry : estimators.entrySet()) {
+			ClockOffset offset = getOffset(entry.getKey());
+			if (offset != null) {
+				result.put(entry.getKey(), offset);
+			}
+		}
+		return Collections.unmodifiableMap(result);
+	}
+
+	/**
+	 * Converts a timestamp of the given node into local time.
+	 * 
+	 * @param node
+	 *            identifier of the node
+	 * @param remoteTimeMillis
+	 *            remote timestamp in [ms]
+	 * @return local timestamp in [ms]
+	 */
+	public long toLocalTimeMillis(String node, long remoteTimeMillis) {
+		ClockOffset offset = getOffset(node);
+		if (offset == null) {
+			throw new IllegalStateException("No clock offset available for node " + node + "!");
+		}
+		return offset.toLocalTimeMillis(remoteTimeMillis);
+	}
+
+	/**
+	 * Stops all re-synchronizations and removes all nodes.
+	 */
+	public synchronized void clear() {
+		for (ScheduledFuture<?> task : tasks.values()) {
+			task.cancel(false);
+		}
+		tasks.clear();
+		estimators.clear();
+	}
+
+	private ScheduledExecutorService getScheduler() {
+		return ExecutorRegistry.getInstance().getScheduledExecutor(EXECUTOR_NAME, 1);
+	}
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.clock;
+
+/**
+ * Answer of a remote node to a clock synchronization request. Contains the
+ * time the request was received and the time the answer was sent, both read
+ * from the {@link HighResolutionClock} of the remote node.
+ * 
+ */
+public class ClockSample {
+	private long receiveTimeNanos;
+	private long transmitTimeNanos;
+	private long anchorEpochNanos;
+
+	/**
+	 * Creates a sample for the current request. The receive time is the
+	 * given time, the transmit time is read when calling this method.
+	 * 
+	 * @param receiveTimeNanos
+	 *            time the request has been received in [ns]
+	 * @return the sample
+	 */
+	public static ClockSample create(long receiveTimeNanos) {
+		ClockSample sample = new ClockSample();
+		sample.setReceiveTimeNanos(receiveTimeNanos);
+		sample.setTransmitTimeNanos(HighResolutionClock.currentTimeNanos());
+		sample.setAnchorEpochNanos(HighResolutionClock.getAnchorEpochNanos());
+		return sample;
+	}
+
+	/**
+	 * @return the time the request has been received in [ns]
+	 */
+	public long getReceiveTimeNanos() {
+		return receiveTimeNanos;
+	}
+
+	/**
+	 * @param receiveTimeNanos
+	 *            the time the request has been received in [ns]
+	 */
+	public void setReceiveTimeNanos(long receiveTimeNanos) {
+		this.receiveTimeNanos = receiveTimeNanos;
+	}
+
+	/**
+	 * @return the time the answer has been sent in [ns]
+	 */
+	public long getTransmitTimeNanos() {
+		return transmitTimeNanos;
+	}
+
+	/**
+	 * @param transmitTimeNanos
+	 *            the time the answer has been sent in [ns]
+	 */
+	public void setTransmitTimeNanos(long transmitTimeNanos) {
+		this.transmitTimeNanos = transmitTimeNanos;
+	}
+
+	/**
+	 * @return the anchor of the remote clock the times refer to, see
+	 *         {@link HighResolutionClock#getAnchorEpochNanos()}
+	 */
+	public long getAnchorEpochNanos() {
+		return anchorEpochNanos;
+	}
+
+	/**
+	 * @param anchorEpochNanos
+	 *            the anchor of the remote clock the times refer to
+	 */
+	public void setAnchorEpochNanos(long anchorEpochNanos) {
+		this.anchorEpochNanos = anchorEpochNanos;
+	}
+}
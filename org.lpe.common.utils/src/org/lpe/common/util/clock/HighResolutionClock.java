@@ -0,0 +1,128 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.clock;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Wall clock with nanosecond resolution. The clock is anchored to
+ * {@link System#currentTimeMillis()} and advanced by {@link System#nanoTime()}
+ * . The anchor is checked against the wall clock periodically and re-anchored,
+ * if the wall clock has been adjusted or the two clocks have drifted apart, so
+ * that timestamps of this clock and of the wall clock can be aligned with the
+ * same {@link ClockOffset}. Between two re-anchorings the clock is monotonic.
+ * 
+ */
+public final class HighResolutionClock {
+	/** maximal deviation from the wall clock in [ns]. */
+	public static final long MAX_DEVIATION_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+	private static final long CHECK_PERIOD_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	private static volatile Anchor anchor = Anchor.create();
+	private static final AtomicLong NEXT_CHECK = new AtomicLong(anchor.nanoTime + CHECK_PERIOD_NANOS);
+
+	/**
+	 * Pair of a wall clock time and the corresponding
+	 * {@link System#nanoTime()}.
+	 */
+	private static final class Anchor {
+		private final long epochNanos;
+		private final long nanoTime;
+
+		private Anchor(long epochNanos, long nanoTime) {
+			this.epochNanos = epochNanos;
+			this.nanoTime = nanoTime;
+		}
+
+		private static Anchor create() {
+			long millis = System.currentTimeMillis();
+			long nanoTime = System.nanoTime();
+			// wait for the next millisecond tick to minimize the anchoring
+			// error
+			long next = System.currentTimeMillis();
+			while (next == millis) {
+				nanoTime = System.nanoTime();
+				next = System.currentTimeMillis();
+			}
+			return new Anchor(TimeUnit.MILLISECONDS.toNanos(next), nanoTime);
+		}
+
+		private long toEpochNanos(long nanoTime) {
+			return epochNanos + (nanoTime - this.nanoTime);
+		}
+	}
+
+	/**
+	 * private constructor due to utility class.
+	 */
+	private HighResolutionClock() {
+	}
+
+	/**
+	 * 
+	 * @return current time in nanoseconds since the epoch
+	 */
+	public static long currentTimeNanos() {
+		long nanoTime = System.nanoTime();
+		Anchor current = anchor;
+		long nextCheck = NEXT_CHECK.get();
+		if (nanoTime - nextCheck >= 0 && NEXT_CHECK.compareAndSet(nextCheck, nanoTime + CHECK_PERIOD_NANOS)) {
+			current = checkAnchor(current, nanoTime);
+		}
+		return current.toEpochNanos(nanoTime);
+	}
+
+	/**
+	 * 
+	 * @return current time in milliseconds since the epoch
+	 */
+	public static long currentTimeMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(currentTimeNanos());
+	}
+
+	/**
+	 * Identifies the current anchor. Clock offsets estimated against an older
+	 * anchor are stale and have to be re-estimated.
+	 * 
+	 * @return wall clock time of the current anchor in nanoseconds since the
+	 *         epoch
+	 */
+	public static long getAnchorEpochNanos() {
+		return anchor.epochNanos;
+	}
+
+	/**
+	 * 
+	 * @return time since the clock has been anchored to the wall clock in [ns]
+	 */
+	public static long getAnchorAgeNanos() {
+		return System.nanoTime() - anchor.nanoTime;
+	}
+
+	private static Anchor checkAnchor(Anchor current, long nanoTime) {
+		long wallNanos = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+		// the wall clock is truncated to milliseconds, thus it lags behind by
+		// up to one millisecond
+		long deviation = current.toEpochNanos(nanoTime) - wallNanos - TimeUnit.MILLISECONDS.toNanos(1) / 2;
+		if (Math.abs(deviation) <= MAX_DEVIATION_NANOS) {
+			return current;
+		}
+		Anchor newAnchor = Anchor.create();
+		anchor = newAnchor;
+		return newAnchor;
+	}
+}
@@ -87,10 +87,11 @@ public abstract class ConcurrentJobProcessor<IN, OUT> implements Runnable {
 	private ArrayList<OUT> results = new ArrayList<OUT>();
 
 	/**
-	 * Starts this concurrent processor in a new thread.
+	 * Starts this concurrent processor on the executor named after
+	 * {@link #processorName}.
 	 */
 	public void startProcessingThread() {
-		(new Thread(this, processorName)).start();
+		ExecutorRegistry.getInstance().getExecutor(processorName).execute(this);
 	}
 
 	@Override
@@ -0,0 +1,463 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.concurrency;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registry of named, bounded executors, one per subsystem. All threads are
+ * named after their executor and are daemon threads unless requested
+ * otherwise. Three kinds of executors are offered:
+ * 
+ * <ul>
+ * <li>{@link #getExecutor(String)}: executors for tasks that mainly wait,
+ * e.g. for a process or a monitor. Threads are created on demand up to
+ * {@link #DEFAULT_MAX_THREADS}, use a small stack and terminate when idle.</li>
+ * <li>{@link #getExecutor(String, int, int)}: fixed-size executors with a
+ * bounded queue for computations.</li>
+ * <li>{@link #getScheduledExecutor(String, int)}: executors for periodic
+ * tasks such as sampling.</li>
+ * </ul>
+ * 
+ * Tasks exceeding the capacity of an executor are rejected with a
+ * {@link RejectedExecutionException}; the number of rejections is part of the
+ * {@link ExecutorStats}. Batches of tasks can be run on a shared executor
+ * with {@link #invokeAll(ExecutorService, Collection, int)}, which limits the
+ * tasks in flight per batch instead of relying on the queue capacity.
+ * 
+ */
+public final class ExecutorRegistry {
+	/** maximal number of threads of executors for waiting tasks. */
+	public static final int DEFAULT_MAX_THREADS = 64;
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ExecutorRegistry.class);
+	private static final long KEEP_ALIVE_SECONDS = 60;
+	private static final long WAITER_STACK_SIZE = 256 * 1024;
+
+	private static ExecutorRegistry instance;
+
+	private final Map<String, ManagedExecutor> executors = new LinkedHashMap<>();
+
+	/**
+	 * 
+	 * @return the singleton instance
+	 */
+	public static synchronized ExecutorRegistry getInstance() {
+		if (instance == null) {
+			instance = new ExecutorRegistry();
+		}
+		return instance;
+	}
+
+	private ExecutorRegistry() {
+	}
+
+	/**
+	 * Returns the executor for waiting tasks with the given name, creating it
+	 * if necessary.
+	 * 
+	 * @param name
+	 *            executor name
+	 * @return the executor
+	 */
+	public synchronized ExecutorService getExecutor(String name) {
+		return getExecutor(name, true);
+	}
+
+	/**
+	 * Returns the executor for waiting tasks with the given name, creating it
+	 * if necessary. Executors with non-daemon threads keep the JVM alive while
+	 * they run a task, e.g. a server's shutdown monitor after the main thread
+	 * has returned. If the executor already exists, the flag is ignored.
+	 * 
+	 * @param name
+	 *            executor name
+	 * @param daemon
+	 *            true for daemon threads
+	 * @return the executor
+	 */
+	public synchronized ExecutorService getExecutor(String name, boolean daemon) {
+		ManagedExecutor executor = executors.get(name);
+		if (executor == null) {
+			executor = new ManagedThreadPool(name, 0, DEFAULT_MAX_THREADS, new SynchronousQueue<Runnable>(),
+					WAITER_STACK_SIZE, daemon);
+			register(executor);
+		}
+		return asExecutorService(executor, name);
+	}
+
+	/**
+	 * Returns the fixed-size executor with the given name, creating it if
+	 * necessary. If the executor already exists, the given sizes are ignored.
+	 * 
+	 * @param name
+	 *            executor name
+	 * @param threads
+	 *            number of threads
+	 * @param queueCapacity
+	 *            maximal number of waiting tasks, 0 for none
+	 * @return the executor
+	 */
+	public synchronized ExecutorService getExecutor(String name, int threads, int queueCapacity) {
+		if (threads < 1 || queueCapacity < 0) {
+			throw new IllegalArgumentException("Invalid executor size.");
+		}
+		ManagedExecutor executor = executors.get(name);
+		if (executor == null) {
+			BlockingQueue<Runnable> queue = queueCapacity == 0 ? new SynchronousQueue<Runnable>()
+					: new ArrayBlockingQueue<Runnable>(queueCapacity);
+			ManagedThreadPool pool = new ManagedThreadPool(name, threads, threads, queue, 0, true);
+			pool.allowCoreThreadTimeOut(true);
+			executor = pool;
+			register(executor);
+		}
+		return asExecutorService(executor, name);
+	}
+
+	/**
+	 * Returns the scheduled executor with the given name, creating it if
+	 * necessary. Cancelled tasks are removed from its queue immediately.
+	 * 
+	 * @param name
+	 *            executor name
+	 * @param threads
+	 *            number of threads
+	 * @return the executor
+	 */
+	public synchronized ScheduledExecutorService getScheduledExecutor(String name, int threads) {
+		ManagedExecutor executor = executors.get(name);
+		if (executor == null) {
+			executor = new ManagedScheduledPool(name, threads);
+			register(executor);
+		}
+		if (!(executor instanceof ScheduledExecutorService)) {
+			throw new IllegalStateException("Executor " + name + " is not a scheduled executor.");
+		}
+		return (ScheduledExecutorService) executor;
+	}
+
+	/**
+	 * 
+	 * @return statistics of all executors
+	 */
+	public synchronized List<ExecutorStats> getStats() {
+		List<ExecutorStats> stats = new ArrayList<>(executors.size());
+		for (ManagedExecutor executor : executors.values()) {
+			stats.add(executor.getStats());
+		}
+		return stats;
+	}
+
+	/**
+	 * 
+	 * @param name
+	 *            executor name
+	 * @return statistics of the executor or null, if there is no such executor
+	 */
+	public synchronized ExecutorStats getStats(String name) {
+		ManagedExecutor executor = executors.get(name);
+		return executor == null ? null : executor.getStats();
+	}
+
+	/**
+	 * Shuts down the executor with the given name. Running tasks are
+	 * interrupted if they do not finish within the timeout.
+	 * 
+	 * @param name
+	 *            executor name
+	 * @param timeout
+	 *            time to wait for running tasks
+	 * @param unit
+	 *            unit of the timeout
+	 * @return true, if the executor has terminated
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	public boolean shutdown(String name, long timeout, TimeUnit unit) throws InterruptedException {
+		ManagedExecutor executor;
+		synchronized (this) {
+			executor = executors.remove(name);
+		}
+		if (executor == null) {
+			return true;
+		}
+		return terminate(executor, System.nanoTime() + unit.toNanos(timeout));
+	}
+
+	/**
+	 * Removes the executor with the given name from the registry and shuts it
+	 * down without waiting. Running and queued tasks are completed. May be
+	 * called by a task of the executor itself.
+	 * 
+	 * @param name
+	 *            executor name
+	 */
+	public void release(String name) {
+		ManagedExecutor executor;
+		synchronized (this) {
+			executor = executors.remove(name);
+		}
+		if (executor != null) {
+			((ExecutorService) executor).shutdown();
+		}
+	}
+
+	/**
+	 * Shuts down all executors. Running tasks are interrupted if they do not
+	 * finish within the timeout. Executors requested afterwards are created
+	 * anew.
+	 * 
+	 * @param timeout
+	 *            time to wait for running tasks
+	 * @param unit
+	 *            unit of the timeout
+	 * @return true, if all executors have terminated
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	public boolean shutdownAll(long timeout, TimeUnit unit) throws InterruptedException {
+		List<ManagedExecutor> toTerminate;
+		synchronized (this) {
+			toTerminate = new ArrayList<>(executors.values());
+			executors.clear();
+		}
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		for (ManagedExecutor executor : toTerminate) {
+			((ExecutorService) executor).shutdown();
+		}
+		boolean terminated = true;
+		for (ManagedExecutor executor : toTerminate) {
+			terminated &= terminate(executor, deadline);
+		}
+		return terminated;
+	}
+
+	private boolean terminate(ManagedExecutor executor, long deadline) throws InterruptedException {
+		ExecutorService service = (ExecutorService) executor;
+		service.shutdown();
+		if (service.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+			return true;
+		}
+		LOGGER.warn("Executor {} did not terminate in time, interrupting its tasks.", executor.getName());
+		service.shutdownNow();
+		return false;
+	}
+
+	/**
+	 * Runs a batch of tasks on a shared executor and waits for all of them,
+	 * like {@link ExecutorService#invokeAll(Collection)}. At most the given
+	 * number of tasks of the batch are submitted at a time. A task rejected by
+	 * the saturated executor runs in the calling thread instead. If the
+	 * calling thread is interrupted, the remaining tasks are cancelled.
+	 * 
+	 * @param executor
+	 *            executor to run the tasks on
+	 * @param tasks
+	 *            tasks to run
+	 * @param parallelism
+	 *            maximal number of tasks of the batch in flight
+	 * @param <T>
+	 *            result type
+	 * @return the completed futures in the order of the tasks
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	public static <T> List<Future<T>> invokeAll(ExecutorService executor, Collection<? extends Callable<T>> tasks,
+			int parallelism) throws InterruptedException {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("Parallelism must be positive.");
+		}
+		final Semaphore permits = new Semaphore(parallelism);
+		List<Future<T>> futures = new ArrayList<>(tasks.size());
+		boolean done = false;
+		try {
+			for (Callable<T> task : tasks) {
+				permits.acquire();
+				FutureTask<T> future = new FutureTask<T>(task) {
+					@Override
+					protected void done() {
+						permits.release();
+					}
+				};
+				futures.add(future);
+				try {
+					executor.execute(future);
+				} catch (RejectedExecutionException e) {
+					future.run();
+				}
+			}
+			for (Future<T> future : futures) {
+				try {
+					future.get();
+				} catch (ExecutionException | CancellationException e) {
+					// reported by the returned future
+				}
+			}
+			done = true;
+			return futures;
+		} finally {
+			if (!done) {
+				for (Future<T> future : futures) {
+					future.cancel(true);
+				}
+			}
+		}
+	}
+
+	private void register(ManagedExecutor executor) {
+		executors.put(executor.getName(), executor);
+		LOGGER.debug("Created executor {}.", executor.getName());
+	}
+
+	private static ExecutorService asExecutorService(ManagedExecutor executor, String name) {
+		if (executor instanceof ScheduledExecutorService) {
+			throw new IllegalStateException("Executor " + name + " is a scheduled executor.");
+		}
+		return (ExecutorService) executor;
+	}
+
+	/**
+	 * Executor with a name and statistics.
+	 */
+	private interface ManagedExecutor {
+		String getName();
+
+		ExecutorStats getStats();
+	}
+
+	/**
+	 * Counts and rejects tasks.
+	 */
+	private static final class CountingRejectionHandler implements RejectedExecutionHandler {
+		private final String name;
+		private final AtomicLong rejected = new AtomicLong();
+
+		private CountingRejectionHandler(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+			rejected.incrementAndGet();
+			throw new RejectedExecutionException("Executor " + name
+					+ (executor.isShutdown() ? " has been shut down." : " is saturated."));
+		}
+	}
+
+	/**
+	 * Creates named threads.
+	 */
+	private static final class NamedThreadFactory implements ThreadFactory {
+		private final String name;
+		private final long stackSize;
+		private final boolean daemon;
+		private final AtomicInteger counter = new AtomicInteger();
+
+		private NamedThreadFactory(String name, long stackSize, boolean daemon) {
+			this.name = name;
+			this.stackSize = stackSize;
+			this.daemon = daemon;
+		}
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(null, runnable, name + "-" + counter.incrementAndGet(), stackSize);
+			thread.setDaemon(daemon);
+			return thread;
+		}
+	}
+
+	/**
+	 * Thread pool with name and statistics.
+	 */
+	private static final class ManagedThreadPool extends ThreadPoolExecutor implements ManagedExecutor {
+		private final String name;
+		private final CountingRejectionHandler rejectionHandler;
+
+		private ManagedThreadPool(String name, int coreThreads, int maxThreads, BlockingQueue<Runnable> queue,
+				long stackSize, boolean daemon) {
+			super(coreThreads, maxThreads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, queue, new NamedThreadFactory(name,
+					stackSize, daemon), new CountingRejectionHandler(name));
+			this.name = name;
+			this.rejectionHandler = (CountingRejectionHandler) getRejectedExecutionHandler();
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public ExecutorStats getStats() {
+			return new ExecutorStats(name, getActiveCount(), getPoolSize(), getLargestPoolSize(),
+					getMaximumPoolSize(), getQueue().size(), getQueue().remainingCapacity(),
+					getCompletedTaskCount(), rejectionHandler.rejected.get());
+		}
+	}
+
+	/**
+	 * Scheduled thread pool with name and statistics.
+	 */
+	private static final class ManagedScheduledPool extends ScheduledThreadPoolExecutor implements ManagedExecutor {
+		private final String name;
+		private final CountingRejectionHandler rejectionHandler;
+
+		private ManagedScheduledPool(String name, int threads) {
+			super(threads, new NamedThreadFactory(name, 0, true), new CountingRejectionHandler(name));
+			this.name = name;
+			this.rejectionHandler = (CountingRejectionHandler) getRejectedExecutionHandler();
+			setRemoveOnCancelPolicy(true);
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public ExecutorStats getStats() {
+			return new ExecutorStats(name, getActiveCount(), getPoolSize(), getLargestPoolSize(),
+					getCorePoolSize(), getQueue().size(), Integer.MAX_VALUE, getCompletedTaskCount(),
+					rejectionHandler.rejected.get());
+		}
+	}
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.concurrency;
+
+/**
+ * Snapshot of the state of an executor managed by the
+ * {@link ExecutorRegistry}.
+ * 
+ */
+public final class ExecutorStats {
+	private final String name;
+	private final int activeThreads;
+	private final int poolSize;
+	private final int largestPoolSize;
+	private final int maxPoolSize;
+	private final int queuedTasks;
+	private final int remainingQueueCapacity;
+	private final long completedTasks;
+	private final long rejectedTasks;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param name
+	 *            executor name
+	 * @param activeThreads
+	 *            number of threads executing tasks
+	 * @param poolSize
+	 *            current number of threads
+	 * @param largestPoolSize
+	 *            largest number of threads so far
+	 * @param maxPoolSize
+	 *            maximal number of threads
+	 * @param queuedTasks
+	 *            number of waiting tasks
+	 * @param remainingQueueCapacity
+	 *            number of tasks that can still be queued
+	 * @param completedTasks
+	 *            number of completed tasks
+	 * @param rejectedTasks
+	 *            number of rejected tasks
+	 */
+	ExecutorStats(String name, int activeThreads, int poolSize, int largestPoolSize, int maxPoolSize,
+			int queuedTasks, int remainingQueueCapacity, long completedTasks, long rejectedTasks) {
+		this.name = name;
+		this.activeThreads = activeThreads;
+		this.poolSize = poolSize;
+		this.largestPoolSize = largestPoolSize;
+		this.maxPoolSize = maxPoolSize;
+		this.queuedTasks = queuedTasks;
+		this.remainingQueueCapacity = remainingQueueCapacity;
+		this.completedTasks = completedTasks;
+		this.rejectedTasks = rejectedTasks;
+	}
+
+	/**
+	 * @return the executor name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the number of threads executing tasks
+	 */
+	public int getActiveThreads() {
+		return activeThreads;
+	}
+
+	/**
+	 * @return the current number of threads
+	 */
+	public int getPoolSize() {
+		return poolSize;
+	}
+
+	/**
+	 * @return the largest number of threads so far
+	 */
+	public int getLargestPoolSize() {
+		return largestPoolSize;
+	}
+
+	/**
+	 * @return the maximal number of threads
+	 */
+	public int getMaxPoolSize() {
+		return maxPoolSize;
+	}
+
+	/**
+	 * @return the number of waiting tasks
+	 */
+	public int getQueuedTasks() {
+		return queuedTasks;
+	}
+
+	/**
+	 * @return the number of tasks that can still be queued
+	 */
+	public int getRemainingQueueCapacity() {
+		return remainingQueueCapacity;
+	}
+
+	/**
+	 * @return the number of completed tasks
+	 */
+	public long getCompletedTasks() {
+		return completedTasks;
+	}
+
+	/**
+	 * @return the number of tasks rejected because the executor was saturated
+	 *         or shut down
+	 */
+	public long getRejectedTasks() {
+		return rejectedTasks;
+	}
+
+	@Override
+	public String toString() {
+		return name + "[active=" + activeThreads + ", threads=" + poolSize + "/" + maxPoolSize + ", queued="
+				+ queuedTasks + ", completed=" + completedTasks + ", rejected=" + rejectedTasks + "]";
+	}
+}
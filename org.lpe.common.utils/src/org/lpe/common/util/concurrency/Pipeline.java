@@ -0,0 +1,299 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.concurrency;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Chain of processing stages connected by bounded queues. Each stage has its
+ * own number of workers, batch size and ordering option. If a stage is slower
+ * than its predecessors, its input queue fills up and the predecessors block,
+ * up to {@link #submit(Object)}. Thus, the memory used by a pipeline is
+ * bounded by the queue capacities independent of the amount of input.
+ * 
+ * A pipeline is created with a {@link PipelineBuilder} and runs once:
+ * 
+ * <pre>
+ * Pipeline&lt;String, Trace&gt; pipeline = PipelineBuilder.&lt;String&gt; create(&quot;analysis&quot;, 1024)
+ * 		.addStage(&quot;parse&quot;, parser, 4, 100, true).addStage(&quot;aggregate&quot;, aggregator, 1, 1000, false)
+ * 		.build(exporter);
+ * pipeline.run(lines);
+ * </pre>
+ * 
+ * The workers of a run are the threads of a fixed-size executor of the
+ * {@link ExecutorRegistry} named after the pipeline and the run, which is
+ * released once all stages have terminated.
+ * 
+ * Items must not be null. If a stage or the sink fails, the pipeline is
+ * aborted and the failure is reported by {@link #submit(Object)},
+ * {@link #close()} and {@link #awaitCompletion()}. After {@link #abort()},
+ * these methods throw a {@link CancellationException}.
+ * 
+ * @param <IN>
+ *            type of the input items
+ * @param <OUT>
+ *            type of the items passed to the sink
+ */
+public final class Pipeline<IN, OUT> {
+	private static final Logger LOGGER = LoggerFactory.getLogger(Pipeline.class);
+	private static final long STATE_CHECK_MILLIS = 100;
+	private static final AtomicInteger RUNS = new AtomicInteger();
+
+	private final String name;
+	private final List<PipelineStage<?, ?>> stages;
+	private final BlockingQueue<Object> input;
+
+	private final AtomicReference<Throwable> failure = new AtomicReference<>();
+	private ExecutorService executor;
+	private String executorName;
+	private CountDownLatch finished;
+	private volatile boolean aborted;
+	private volatile long startNanos;
+	private volatile long endNanos;
+	private boolean closed;
+
+	Pipeline(String name, List<PipelineStage<?, ?>> stages) {
+		this.name = name;
+		this.stages = stages;
+		for (int i = 0; i < stages.size() - 1; i++) {
+			stages.get(i).setOutput(stages.get(i + 1).getInput());
+		}
+		input = stages.get(0).getInput();
+	}
+
+	/**
+	 * Starts the workers of all stages.
+	 */
+	public synchronized void start() {
+		if (executor != null) {
+			throw new IllegalStateException("Pipeline " + name + " has already been started.");
+		}
+		int numWorkers = 0;
+		for (PipelineStage<?, ?> stage : stages) {
+			numWorkers += stage.getParallelism();
+		}
+		executorName = name + "-" + RUNS.incrementAndGet();
+		executor = ExecutorRegistry.getInstance().getExecutor(executorName, numWorkers, 0);
+		finished = new CountDownLatch(numWorkers);
+		final AtomicInteger runningWorkers = new AtomicInteger(numWorkers);
+		startNanos = System.nanoTime();
+		for (final PipelineStage<?, ?> stage : stages) {
+			for (int i = 0; i < stage.getParallelism(); i++) {
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							stage.runWorker();
+						} catch (Throwable e) {
+							fail(stage, e);
+						} finally {
+							if (runningWorkers.decrementAndGet() == 0) {
+								endNanos = System.nanoTime();
+								ExecutorRegistry.getInstance().release(executorName);
+							}
+							finished.countDown();
+						}
+					}
+				});
+			}
+		}
+	}
+
+	/**
+	 * Passes an item into the pipeline. Blocks while the input queue is full.
+	 * 
+	 * @param item
+	 *            item to process
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 * @throws ExecutionException
+	 *             if the pipeline has failed
+	 */
+	public void submit(IN item) throws InterruptedException, ExecutionException {
+		if (item == null) {
+			throw new IllegalArgumentException("Items must not be null.");
+		}
+		enqueue(item);
+	}
+
+	/**
+	 * Signals that there is no more input. The stages finish processing the
+	 * queued items and terminate.
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for space in the input queue
+	 * @throws ExecutionException
+	 *             if the pipeline has failed
+	 */
+	public void close() throws InterruptedException, ExecutionException {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+		}
+		enqueue(PipelineStage.END);
+	}
+
+	/**
+	 * Waits until all items have been processed and consumed by the sink.
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 * @throws ExecutionException
+	 *             if the pipeline has failed
+	 */
+	public void awaitCompletion() throws InterruptedException, ExecutionException {
+		getFinished().await();
+		checkFailure();
+	}
+
+	/**
+	 * Waits until all items have been processed and consumed by the sink, or
+	 * the timeout elapses.
+	 * 
+	 * @param timeout
+	 *            maximal time to wait
+	 * @param unit
+	 *            unit of the timeout
+	 * @return true, if the pipeline has completed
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 * @throws ExecutionException
+	 *             if the pipeline has failed
+	 */
+	public boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException {
+		boolean completed = getFinished().await(timeout, unit);
+		checkFailure();
+		return completed;
+	}
+
+	/**
+	 * Starts the pipeline, passes all items into it, and waits for completion.
+	 * 
+	 * @param items
+	 *            items to process
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 * @throws ExecutionException
+	 *             if the pipeline has failed
+	 */
+	public void run(Iterator<? extends IN> items) throws InterruptedException, ExecutionException {
+		start();
+		try {
+			while (items.hasNext()) {
+				submit(items.next());
+			}
+			close();
+			awaitCompletion();
+		} finally {
+			if (!isDone()) {
+				abort();
+			}
+		}
+	}
+
+	/**
+	 * Stops all stages immediately. Queued items are discarded.
+	 */
+	public synchronized void abort() {
+		aborted = true;
+		if (executor != null) {
+			executor.shutdownNow();
+			ExecutorRegistry.getInstance().release(executorName);
+		}
+	}
+
+	/**
+	 * @return true, if all stages have terminated
+	 */
+	public synchronized boolean isDone() {
+		return finished != null && finished.getCount() == 0;
+	}
+
+	/**
+	 * @return statistics of all stages, the last one being the sink
+	 */
+	public List<StageStats> getStats() {
+		long start = startNanos;
+		double elapsedSeconds = 0;
+		if (start != 0) {
+			long end = isDone() ? endNanos : System.nanoTime();
+			elapsedSeconds = (end - start) / (double) TimeUnit.SECONDS.toNanos(1);
+		}
+		List<StageStats> stats = new ArrayList<>(stages.size());
+		for (PipelineStage<?, ?> stage : stages) {
+			stats.add(stage.getStats(elapsedSeconds));
+		}
+		return Collections.unmodifiableList(stats);
+	}
+
+	/**
+	 * @return the pipeline name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	private void enqueue(Object item) throws InterruptedException, ExecutionException {
+		getFinished();
+		checkFailure();
+		while (!input.offer(item, STATE_CHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+			checkFailure();
+		}
+	}
+
+	private void fail(PipelineStage<?, ?> stage, Throwable e) {
+		if (e instanceof InterruptedException && aborted) {
+			return;
+		}
+		if (failure.compareAndSet(null, e)) {
+			LOGGER.error("Stage " + stage.getName() + " of pipeline " + name + " failed.", e);
+			abort();
+		}
+	}
+
+	private void checkFailure() throws ExecutionException {
+		Throwable e = failure.get();
+		if (e != null) {
+			throw new ExecutionException(e);
+		}
+		if (aborted) {
+			throw new CancellationException("Pipeline " + name + " has been aborted.");
+		}
+	}
+
+	private synchronized CountDownLatch getFinished() {
+		if (finished == null) {
+			throw new IllegalStateException("Pipeline " + name + " has not been started.");
+		}
+		return finished;
+	}
+}
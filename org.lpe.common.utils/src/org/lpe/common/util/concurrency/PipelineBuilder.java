@@ -0,0 +1,129 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.concurrency;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Composes a {@link Pipeline} stage by stage. Each call of
+ * {@link #addStage(String, StageProcessor, int, int, boolean)} returns a
+ * builder whose output type is the output type of the added stage, so that
+ * only matching stages can be chained.
+ * 
+ * @param <IN>
+ *            type of the input items of the pipeline
+ * @param <OUT>
+ *            type of the items produced by the last added stage
+ */
+public final class PipelineBuilder<IN, OUT> {
+	/** default capacity of the queues between stages. */
+	public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+	private static final String SINK_NAME = "sink";
+
+	private final String name;
+	private final int queueCapacity;
+	private final List<PipelineStage<?, ?>> stages;
+
+	private PipelineBuilder(String name, int queueCapacity, List<PipelineStage<?, ?>> stages) {
+		this.name = name;
+		this.queueCapacity = queueCapacity;
+		this.stages = stages;
+	}
+
+	/**
+	 * Creates a builder for a pipeline with the given name.
+	 * 
+	 * @param name
+	 *            pipeline name, used as prefix of the worker thread names
+	 * @param queueCapacity
+	 *            capacity of the input queue of each stage
+	 * @param <T>
+	 *            type of the input items
+	 * @return a builder without stages
+	 */
+	public static <T> PipelineBuilder<T, T> create(String name, int queueCapacity) {
+		if (queueCapacity < 1) {
+			throw new IllegalArgumentException("Queue capacity must be positive.");
+		}
+		return new PipelineBuilder<>(name, queueCapacity, new ArrayList<PipelineStage<?, ?>>());
+	}
+
+	/**
+	 * Adds a stage.
+	 * 
+	 * @param stageName
+	 *            stage name
+	 * @param processor
+	 *            processing step of the stage
+	 * @param parallelism
+	 *            number of workers of the stage
+	 * @param batchSize
+	 *            maximal number of items passed to one call of the processor
+	 * @param ordered
+	 *            if true, the produced items are passed to the next stage in
+	 *            the order of the consumed items, otherwise in the order of
+	 *            completion
+	 * @param <NEXT>
+	 *            type of the items produced by the stage
+	 * @return a builder for the extended pipeline
+	 */
+	public <NEXT> PipelineBuilder<IN, NEXT> addStage(String stageName, StageProcessor<? super OUT, NEXT> processor,
+			int parallelism, int batchSize, boolean ordered) {
+		List<PipelineStage<?, ?>> extended = new ArrayList<>(stages);
+		extended.add(new PipelineStage<>(stageName, processor, parallelism, batchSize, ordered, queueCapacity));
+		return new PipelineBuilder<>(name, queueCapacity, extended);
+	}
+
+	/**
+	 * Adds a stage with a single worker processing one item at a time.
+	 * 
+	 * @param stageName
+	 *            stage name
+	 * @param processor
+	 *            processing step of the stage
+	 * @param <NEXT>
+	 *            type of the items produced by the stage
+	 * @return a builder for the extended pipeline
+	 */
+	public <NEXT> PipelineBuilder<IN, NEXT> addStage(String stageName, StageProcessor<? super OUT, NEXT> processor) {
+		return addStage(stageName, processor, 1, 1, true);
+	}
+
+	/**
+	 * Creates the pipeline. The sink consumes the items of the last stage in a
+	 * single worker.
+	 * 
+	 * @param sink
+	 *            consumer of the produced items
+	 * @return a pipeline, which has not been started yet
+	 */
+	public Pipeline<IN, OUT> build(final PipelineSink<? super OUT> sink) {
+		List<PipelineStage<?, ?>> all = new ArrayList<>(stages);
+		all.add(new PipelineStage<>(SINK_NAME, new StageProcessor<OUT, Object>() {
+			@Override
+			public List<Object> process(List<OUT> batch) throws Exception {
+				for (OUT item : batch) {
+					sink.accept(item);
+				}
+				return Collections.emptyList();
+			}
+		}, 1, queueCapacity, false, queueCapacity));
+		return new Pipeline<>(name, all);
+	}
+}
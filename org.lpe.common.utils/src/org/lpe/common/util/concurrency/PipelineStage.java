@@ -0,0 +1,193 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.concurrency;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runtime of a single stage of a {@link Pipeline}. Workers take batches from
+ * the bounded input queue and put the produced items into the input queue of
+ * the next stage, blocking if it is full. The last worker of a stage passes
+ * the end of the stream on to the next stage.
+ * 
+ * @param <IN>
+ *            type of the consumed items
+ * @param <OUT>
+ *            type of the produced items
+ */
+final class PipelineStage<IN, OUT> {
+	/** marks the end of the stream in a queue. */
+	static final Object END = new Object();
+
+	private final String name;
+	private final StageProcessor<IN, OUT> processor;
+	private final int parallelism;
+	private final int batchSize;
+	private final boolean ordered;
+	private final int queueCapacity;
+	private final BlockingQueue<Object> input;
+	private BlockingQueue<Object> output;
+
+	private final ReentrantLock takeLock = new ReentrantLock();
+	private boolean inputExhausted;
+	private long nextSequence;
+	private long nextEmitted;
+
+	private final AtomicInteger runningWorkers;
+	private final AtomicInteger busyWorkers = new AtomicInteger();
+	private final AtomicLong processedItems = new AtomicLong();
+	private final AtomicLong producedItems = new AtomicLong();
+	private final AtomicLong processedBatches = new AtomicLong();
+
+	PipelineStage(String name, StageProcessor<IN, OUT> processor, int parallelism, int batchSize, boolean ordered,
+			int queueCapacity) {
+		if (parallelism < 1 || batchSize < 1 || queueCapacity < 1) {
+			throw new IllegalArgumentException("Parallelism, batch size and queue capacity must be positive.");
+		}
+		this.name = name;
+		this.processor = processor;
+		this.parallelism = parallelism;
+		this.batchSize = batchSize;
+		this.ordered = ordered;
+		this.queueCapacity = queueCapacity;
+		input = new ArrayBlockingQueue<>(queueCapacity);
+		runningWorkers = new AtomicInteger(parallelism);
+	}
+
+	String getName() {
+		return name;
+	}
+
+	int getParallelism() {
+		return parallelism;
+	}
+
+	BlockingQueue<Object> getInput() {
+		return input;
+	}
+
+	/**
+	 * @param output
+	 *            input queue of the next stage, null for the last stage
+	 */
+	void setOutput(BlockingQueue<Object> output) {
+		this.output = output;
+	}
+
+	/**
+	 * Processes batches until the end of the stream has been reached.
+	 * 
+	 * @throws Exception
+	 *             if processing fails or the worker is interrupted
+	 */
+	@SuppressWarnings("unchecked")
+	void runWorker() throws Exception {
+		List<Object> batch = new ArrayList<>(batchSize);
+		long sequence;
+		while ((sequence = takeBatch(batch)) >= 0) {
+			busyWorkers.incrementAndGet();
+			List<OUT> produced;
+			try {
+				produced = processor.process((List<IN>) batch);
+			} finally {
+				busyWorkers.decrementAndGet();
+			}
+			processedItems.addAndGet(batch.size());
+			processedBatches.incrementAndGet();
+			emit(sequence, produced);
+			batch = new ArrayList<>(batchSize);
+		}
+		if (runningWorkers.decrementAndGet() == 0 && output != null) {
+			output.put(END);
+		}
+	}
+
+	/**
+	 * Waits for the first item and adds further items as long as they are
+	 * available without waiting.
+	 * 
+	 * @param batch
+	 *            list to fill
+	 * @return the sequence number of the batch or -1 at the end of the stream
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	private long takeBatch(List<Object> batch) throws InterruptedException {
+		takeLock.lockInterruptibly();
+		try {
+			if (inputExhausted) {
+				return -1;
+			}
+			Object item = input.take();
+			while (item != null) {
+				if (item == END) {
+					inputExhausted = true;
+					break;
+				}
+				batch.add(item);
+				if (batch.size() == batchSize) {
+					break;
+				}
+				item = input.poll();
+			}
+			return batch.isEmpty() ? -1 : nextSequence++;
+		} finally {
+			takeLock.unlock();
+		}
+	}
+
+	private void emit(long sequence, List<OUT> produced) throws InterruptedException {
+		if (!ordered) {
+			put(produced);
+			return;
+		}
+		synchronized (this) {
+			while (sequence != nextEmitted) {
+				wait();
+			}
+			try {
+				put(produced);
+			} finally {
+				nextEmitted++;
+				notifyAll();
+			}
+		}
+	}
+
+	private void put(List<OUT> produced) throws InterruptedException {
+		if (produced == null) {
+			return;
+		}
+		if (output != null) {
+			for (OUT item : produced) {
+				output.put(item);
+			}
+		}
+		producedItems.addAndGet(produced.size());
+	}
+
+	StageStats getStats(double elapsedSeconds) {
+		long processed = processedItems.get();
+		return new StageStats(name, parallelism, busyWorkers.get(), input.size(), queueCapacity, processed,
+				producedItems.get(), processedBatches.get(), elapsedSeconds > 0 ? processed / elapsedSeconds : 0);
+	}
+}
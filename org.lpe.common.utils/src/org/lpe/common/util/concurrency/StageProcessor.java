@@ -0,0 +1,43 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.concurrency;
+
+import java.util.List;
+
+/**
+ * Processing step of a {@link Pipeline}.
+ * 
+ * @param <IN>
+ *            type of the consumed items
+ * @param <OUT>
+ *            type of the produced items
+ */
+public interface StageProcessor<IN, OUT> {
+	/**
+	 * Processes a batch of items. The batch contains at least one and at most
+	 * the configured batch size items. An implementation may produce any
+	 * number of items per batch, e.g. to filter, split or aggregate items.
+	 * Implementations are called concurrently if the stage has a parallelism
+	 * greater than one.
+	 * 
+	 * @param batch
+	 *            items to process
+	 * @return produced items, which are passed to the next stage
+	 * @throws Exception
+	 *             if processing fails; this aborts the pipeline
+	 */
+	List<OUT> process(List<IN> batch) throws Exception;
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.concurrency;
+
+/**
+ * Snapshot of the state of a stage of a {@link Pipeline}.
+ * 
+ */
+public final class StageStats {
+	private final String name;
+	private final int parallelism;
+	private final int busyWorkers;
+	private final int queuedItems;
+	private final int queueCapacity;
+	private final long processedItems;
+	private final long producedItems;
+	private final long processedBatches;
+	private final double throughput;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param name
+	 *            stage name
+	 * @param parallelism
+	 *            number of workers
+	 * @param busyWorkers
+	 *            number of workers currently processing a batch
+	 * @param queuedItems
+	 *            number of items waiting in the input queue
+	 * @param queueCapacity
+	 *            capacity of the input queue
+	 * @param processedItems
+	 *            number of consumed items
+	 * @param producedItems
+	 *            number of items passed to the next stage
+	 * @param processedBatches
+	 *            number of processed batches
+	 * @param throughput
+	 *            consumed items per second
+	 */
+	StageStats(String name, int parallelism, int busyWorkers, int queuedItems, int queueCapacity,
+			long processedItems, long producedItems, long processedBatches, double throughput) {
+		this.name = name;
+		this.parallelism = parallelism;
+		this.busyWorkers = busyWorkers;
+		this.queuedItems = queuedItems;
+		this.queueCapacity = queueCapacity;
+		this.processedItems = processedItems;
+		this.producedItems = producedItems;
+		this.processedBatches = processedBatches;
+		this.throughput = throughput;
+	}
+
+	/**
+	 * @return the stage name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the number of workers
+	 */
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * @return the number of workers currently processing a batch
+	 */
+	public int getBusyWorkers() {
+		return busyWorkers;
+	}
+
+	/**
+	 * @return the number of items waiting in the input queue
+	 */
+	public int getQueuedItems() {
+		return queuedItems;
+	}
+
+	/**
+	 * @return the capacity of the input queue
+	 */
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	/**
+	 * @return the number of consumed items
+	 */
+	public long getProcessedItems() {
+		return processedItems;
+	}
+
+	/**
+	 * @return the number of items passed to the next stage
+	 */
+	public long getProducedItems() {
+		return producedItems;
+	}
+
+	/**
+	 * @return the number of processed batches
+	 */
+	public long getProcessedBatches() {
+		return processedBatches;
+	}
+
+	/**
+	 * @return the consumed items per second since the pipeline has been
+	 *         started
+	 */
+	public double getThroughput() {
+		return throughput;
+	}
+
+	@Override
+	public String toString() {
+		return name + "[busy=" + busyWorkers + "/" + parallelism + ", queued=" + queuedItems + "/" + queueCapacity
+				+ ", processed=" + processedItems + ", produced=" + producedItems + ", throughput="
+				+ String.format("%.1f", throughput) + "/s]";
+	}
+}
@@ -15,13 +15,20 @@
  */
 package org.lpe.common.util.csvrandomizer;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.lpe.common.util.concurrency.ExecutorRegistry;
 
 /**
  * Utility class for randomizing originally sequential CSV-Files.
@@ -36,6 +43,11 @@ public final class CSVRandomizer {
 	private static final int ARG_1 = 1;
 	private static final int ARG_2 = 2;
 	private static final int ARG_3 = 3;
+	private static final int ARG_4 = 4;
+	private static final int OUTPUT_BUFFER_SIZE = 1024 * 1024;
+	private static final byte NEW_LINE = '\n';
+	private static final String EXECUTOR_NAME = "csv-randomizer";
+	private static final int THREADS = Runtime.getRuntime().availableProcessors();
 
 	/**
 	 * Private constructor due to utility class.
@@ -50,22 +62,27 @@ public final class CSVRandomizer {
 	 *            program arguments
 	 */
 	public static void main(String[] args) {
-		if (args.length != ARGS_LANGTH) {
+		if (args.length != ARGS_LANGTH && args.length != ARGS_LANGTH + 1) {
 			printUsageAndExit();
 		}
+		int numShards = args.length > ARG_4 ? Integer.parseInt(args[ARG_4]) : 1;
 		randomizeCSV(new File(args[ARG_0]), new File(args[ARG_1]), Double.parseDouble(args[ARG_2]),
-				Integer.parseInt(args[ARG_3]));
+				Integer.parseInt(args[ARG_3]), numShards);
 		System.out.println("CSV Randomized!");
 	}
 
 	private static void printUsageAndExit() {
 		System.out.println("Wrong parameters. Usage:");
-		System.out.println("[srcFile] [destFile] [scaleFacotr] [randomseed]");
+		System.out.println("[srcFile] [destFile] [scaleFacotr] [randomseed] ([numShards])");
 		System.exit(0);
 	}
 
 	/**
 	 * Randomizes the given input csv file.
+	 * <p>
+	 * The source file is not loaded into memory. Instead, an index of the line
+	 * offsets is built and the sampled lines are copied byte-wise from the
+	 * memory mapped source to the destination.
 	 * 
 	 * @param src
 	 *            the source file
@@ -79,40 +96,169 @@ public final class CSVRandomizer {
 	 *            deterministic results.
 	 */
 	public static void randomizeCSV(File src, File dest, double outputSizeMultiplicator, int seed) {
-		ArrayList<String> lines = new ArrayList<>();
-		try (FileReader fr = new FileReader(src); BufferedReader br = new BufferedReader(fr);) {
+		randomizeCSV(src, dest, outputSizeMultiplicator, seed, 1);
+	}
+
+	/**
+	 * Randomizes the given input csv file using parallel shards. The output is
+	 * split into numShards consecutive parts, each generated by its own task
+	 * and random generator. The seeds of the shards are derived from the given
+	 * seed, thus, the same seed and number of shards produce the same output.
+	 * With a single shard the output equals the one of
+	 * {@link #randomizeCSV(File, File, double, int)}.
+	 * 
+	 * @param src
+	 *            the source file
+	 * @param dest
+	 *            the destination file
+	 * @param outputSizeMultiplicator
+	 *            the output file will contain the number of lines in the input
+	 *            file times this factor lines
+	 * @param seed
+	 *            the seed for the random-generator. Same values produce
+	 *            deterministic results.
+	 * @param numShards
+	 *            number of shards generated in parallel
+	 */
+	public static void randomizeCSV(File src, File dest, double outputSizeMultiplicator, int seed, int numShards) {
+		if (numShards < 1) {
+			throw new IllegalArgumentException("Number of shards must be positive.");
+		}
+		try (LineIndex index = LineIndex.build(src);
+				FileChannel out = FileChannel.open(dest.toPath(), StandardOpenOption.CREATE,
+						StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			long outputLineCount = (long) Math.ceil(outputSizeMultiplicator * index.size());
+			if (index.size() == 0 || outputLineCount <= 0) {
+				return;
+			}
 
-			String line = br.readLine();
-			while (line != null) {
-				lines.add(line);
-				line = br.readLine();
+			List<Shard> shards = new ArrayList<>();
+			if (numShards == 1) {
+				shards.add(new Shard(index, out, seed, 0, outputLineCount));
+			} else {
+				Random seeds = new Random(seed);
+				for (int i = 0; i < numShards; i++) {
+					long firstLine = outputLineCount * i / numShards;
+					long lastLine = outputLineCount * (i + 1) / numShards;
+					shards.add(new Shard(index, out, seeds.nextLong(), firstLine, lastLine - firstLine));
+				}
 			}
 
+			// the sizes of the shards determine their offsets in the output
+			runAll(shards, false);
+			long offset = 0;
+			for (Shard shard : shards) {
+				shard.offset = offset;
+				offset += shard.size;
+			}
+			runAll(shards, true);
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
+	}
 
+	private static void runAll(List<Shard> shards, final boolean write) throws IOException {
+		if (shards.size() == 1) {
+			shards.get(0).run(write);
+			return;
+		}
+		List<Callable<Void>> tasks = new ArrayList<>();
+		for (final Shard shard : shards) {
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() throws IOException {
+					shard.run(write);
+					return null;
+				}
+			});
+		}
+		ExecutorService executor = ExecutorRegistry.getInstance().getExecutor(EXECUTOR_NAME, THREADS, THREADS);
 		try {
-			dest.createNewFile();
-		} catch (IOException e) {
-			throw new RuntimeException(e);
+			for (Future<Void> future : ExecutorRegistry.invokeAll(executor, tasks, shards.size())) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
 		}
+	}
 
-		Random rnd = new Random(seed);
-
-		try (FileWriter fw = new FileWriter(dest);) {
+	/**
+	 * Consecutive part of the output. A shard is run twice with the same seed:
+	 * first to compute its size in bytes, then to write its lines at its
+	 * offset.
+	 */
+	private static final class Shard {
+		private final LineIndex index;
+		private final FileChannel out;
+		private final long seed;
+		private final long firstLine;
+		private final long numLines;
+		private long size;
+		private long offset;
 
-			int outputLineCount = (int) Math.ceil(outputSizeMultiplicator * lines.size());
+		private Shard(LineIndex index, FileChannel out, long seed, long firstLine, long numLines) {
+			this.index = index;
+			this.out = out;
+			this.seed = seed;
+			this.firstLine = firstLine;
+			this.numLines = numLines;
+		}
 
-			for (int i = 0; i < outputLineCount; i++) {
-				int index = rnd.nextInt(lines.size());
-				if (i != 0) {
-					fw.write('\n');
+		private void run(boolean write) throws IOException {
+			Random rnd = new Random(seed);
+			ByteBuffer buffer = write ? ByteBuffer.allocate(OUTPUT_BUFFER_SIZE) : null;
+			ByteBuffer[] scratch = new ByteBuffer[1];
+			long position = offset;
+			long bytes = 0;
+			for (long i = 0; i < numLines; i++) {
+				int line = rnd.nextInt(index.size());
+				int length = index.length(line);
+				boolean separator = firstLine + i != 0;
+				bytes += length + (separator ? 1 : 0);
+				if (!write) {
+					continue;
 				}
-				fw.write(lines.get(index));
+				if (separator) {
+					if (!buffer.hasRemaining()) {
+						position = flush(buffer, position);
+					}
+					buffer.put(NEW_LINE);
+				}
+				ByteBuffer content = index.content(line, length, scratch);
+				if (content.remaining() > buffer.remaining()) {
+					position = flush(buffer, position);
+					if (content.remaining() > buffer.capacity()) {
+						position = writeFully(content, position);
+						continue;
+					}
+				}
+				buffer.put(content);
 			}
-		} catch (IOException e) {
-			throw new RuntimeException(e);
+			if (write) {
+				flush(buffer, position);
+			} else {
+				size = bytes;
+			}
+		}
+
+		private long flush(ByteBuffer buffer, long position) throws IOException {
+			buffer.flip();
+			long newPosition = writeFully(buffer, position);
+			buffer.clear();
+			return newPosition;
+		}
+
+		private long writeFully(ByteBuffer buffer, long position) throws IOException {
+			while (buffer.hasRemaining()) {
+				position += out.write(buffer, position);
+			}
+			return position;
 		}
 	}
 }
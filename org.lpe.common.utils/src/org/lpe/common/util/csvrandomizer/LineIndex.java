@@ -0,0 +1,198 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.csvrandomizer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Compact index of the line start offsets of a file. The line contents are
+ * read from memory mapped segments of the file, thus, files larger than the
+ * heap can be indexed; only 8 bytes per line are kept in memory. Lines are
+ * split at <code>'\n'</code>, a preceding <code>'\r'</code> is not part of
+ * the line. Instances are safe for concurrent reads.
+ * 
+ */
+final class LineIndex implements Closeable {
+	private static final long SEGMENT_SIZE = 1L << 30;
+	private static final int SCAN_WINDOW_SIZE = 64 * 1024 * 1024;
+	private static final int INITIAL_CAPACITY = 1024;
+	private static final byte LF = '\n';
+	private static final byte CR = '\r';
+
+	private final FileChannel channel;
+	private final long fileSize;
+	private final int numLines;
+	/** start offsets; entry numLines is the end of the last line plus one. */
+	private final long[] starts;
+	/** null if lines are too long to be covered by overlapping segments. */
+	private final MappedByteBuffer[] segments;
+
+	private LineIndex(FileChannel channel, long[] starts, int numLines, long maxLineLength) throws IOException {
+		this.channel = channel;
+		this.fileSize = channel.size();
+		this.starts = starts;
+		this.numLines = numLines;
+		long mappingSize = SEGMENT_SIZE + maxLineLength + 2;
+		if (mappingSize > Integer.MAX_VALUE) {
+			segments = null;
+			return;
+		}
+		segments = new MappedByteBuffer[(int) ((fileSize + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+		for (int i = 0; i < segments.length; i++) {
+			long offset = i * SEGMENT_SIZE;
+			segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(mappingSize, fileSize - offset));
+		}
+	}
+
+	/**
+	 * Scans the file and builds the index.
+	 * 
+	 * @param file
+	 *            file to index
+	 * @return the index, to be closed by the caller
+	 * @throws IOException
+	 *             if reading fails
+	 */
+	static LineIndex build(File file) throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			long[] starts = new long[INITIAL_CAPACITY];
+			int numLines = 0;
+			long lineStart = 0;
+			long maxLineLength = 0;
+			for (long offset = 0; offset < size; offset += SCAN_WINDOW_SIZE) {
+				MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, offset,
+						Math.min(SCAN_WINDOW_SIZE, size - offset));
+				int limit = window.limit();
+				for (int i = 0; i < limit; i++) {
+					if (window.get(i) == LF) {
+						if (numLines + 1 >= starts.length) {
+							starts = grow(starts);
+						}
+						starts[numLines++] = lineStart;
+						maxLineLength = Math.max(maxLineLength, offset + i - lineStart);
+						lineStart = offset + i + 1;
+					}
+				}
+			}
+			long end = size + 1;
+			if (lineStart < size) {
+				// last line without trailing line break
+				if (numLines + 1 >= starts.length) {
+					starts = grow(starts);
+				}
+				starts[numLines++] = lineStart;
+				maxLineLength = Math.max(maxLineLength, size - lineStart);
+			} else {
+				end = size;
+			}
+			starts[numLines] = end;
+			return new LineIndex(channel, starts, numLines, maxLineLength);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	private static long[] grow(long[] array) {
+		if (array.length == Integer.MAX_VALUE - 1) {
+			throw new IllegalStateException("File has too many lines to be indexed.");
+		}
+		return Arrays.copyOf(array, (int) Math.min(Integer.MAX_VALUE - 1L, array.length * 2L));
+	}
+
+	/**
+	 * 
+	 * @return number of lines
+	 */
+	int size() {
+		return numLines;
+	}
+
+	/**
+	 * 
+	 * @param line
+	 *            line number
+	 * @return length of the line in bytes without line break
+	 * @throws IOException
+	 *             if reading fails
+	 */
+	int length(int line) throws IOException {
+		int length = (int) (starts[line + 1] - 1 - starts[line]);
+		if (length > 0 && byteAt(starts[line] + length - 1) == CR) {
+			length--;
+		}
+		return length;
+	}
+
+	/**
+	 * Provides the bytes of a line.
+	 * 
+	 * @param line
+	 *            line number
+	 * @param length
+	 *            length of the line as returned by {@link #length(int)}
+	 * @param scratch
+	 *            buffer used if the line cannot be served from a mapped
+	 *            segment; may be replaced by a larger one
+	 * @return buffer positioned at the line content and limited to its end
+	 * @throws IOException
+	 *             if reading fails
+	 */
+	ByteBuffer content(int line, int length, ByteBuffer[] scratch) throws IOException {
+		long start = starts[line];
+		if (segments != null) {
+			ByteBuffer view = segments[(int) (start / SEGMENT_SIZE)].duplicate();
+			int offset = (int) (start % SEGMENT_SIZE);
+			view.limit(offset + length).position(offset);
+			return view;
+		}
+		if (scratch[0] == null || scratch[0].capacity() < length) {
+			scratch[0] = ByteBuffer.allocate(length);
+		}
+		ByteBuffer buffer = scratch[0];
+		buffer.clear().limit(length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, start + buffer.position()) < 0) {
+				throw new IOException("Unexpected end of file.");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	private byte byteAt(long position) throws IOException {
+		if (segments != null) {
+			return segments[(int) (position / SEGMENT_SIZE)].get((int) (position % SEGMENT_SIZE));
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(1);
+		channel.read(buffer, position);
+		return buffer.get(0);
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
@@ -0,0 +1,349 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.monitoring;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads resource counters from the Linux <code>/proc</code> file system. The
+ * files are kept open and re-read from offset 0 into a reusable buffer, which
+ * makes the kernel regenerate their content. Parsing works on the raw bytes,
+ * so that a sample does not allocate any objects.
+ * 
+ */
+final class ProcResourceReader implements ResourceReader {
+	private static final String PROC_STAT = "/proc/stat";
+	private static final String PROC_MEMINFO = "/proc/meminfo";
+	private static final String PROC_DISKSTATS = "/proc/diskstats";
+	private static final String PROC_NET_DEV = "/proc/net/dev";
+	private static final String SYS_BLOCK = "/sys/block";
+	private static final String[] VIRTUAL_DISK_PREFIXES = { "loop", "ram", "zram", "dm-", "md" };
+	private static final int INITIAL_BUFFER_SIZE = 16 * 1024;
+	private static final int SECTOR_SIZE = 512;
+	private static final int KILO_BYTE = 1024;
+	private static final int NUM_CPU_FIELDS = 8;
+	private static final int IDLE_FIELD = 3;
+	private static final int IOWAIT_FIELD = 4;
+	private static final int SECTORS_READ_FIELD = 3;
+	private static final int SECTORS_WRITTEN_FIELD = 7;
+	private static final int TRANSMIT_BYTES_FIELD = 8;
+
+	private static final byte[] CPU = bytes("cpu");
+	private static final byte[] MEM_TOTAL = bytes("MemTotal:");
+	private static final byte[] MEM_FREE = bytes("MemFree:");
+	private static final byte[] MEM_AVAILABLE = bytes("MemAvailable:");
+	private static final byte[] LOOPBACK = bytes("lo");
+
+	private final RandomAccessFile stat;
+	private final RandomAccessFile meminfo;
+	private final RandomAccessFile diskstats;
+	private final RandomAccessFile netDev;
+	private final byte[][] diskNames;
+	private final int numCores;
+	private final long[] cpuFields = new long[NUM_CPU_FIELDS];
+
+	private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+	private int pos;
+	private int limit;
+
+	/**
+	 * Opens the <code>/proc</code> files.
+	 * 
+	 * @throws IOException
+	 *             if the files are not available
+	 */
+	ProcResourceReader() throws IOException {
+		stat = new RandomAccessFile(PROC_STAT, "r");
+		try {
+			meminfo = new RandomAccessFile(PROC_MEMINFO, "r");
+			diskstats = openOptional(PROC_DISKSTATS);
+			netDev = openOptional(PROC_NET_DEV);
+		} catch (IOException e) {
+			stat.close();
+			throw e;
+		}
+		diskNames = listPhysicalDisks();
+		numCores = countCores();
+	}
+
+	@Override
+	public String getName() {
+		return "procfs";
+	}
+
+	@Override
+	public int getNumCores() {
+		return numCores;
+	}
+
+	@Override
+	public void read(ResourceCounters counters) throws IOException {
+		readCpu(counters);
+		readMemory(counters);
+		readDisks(counters);
+		readNetwork(counters);
+	}
+
+	@Override
+	public void close() throws IOException {
+		stat.close();
+		meminfo.close();
+		if (diskstats != null) {
+			diskstats.close();
+		}
+		if (netDev != null) {
+			netDev.close();
+		}
+	}
+
+	private void readCpu(ResourceCounters counters) throws IOException {
+		load(stat);
+		while (pos < limit && startsWith(CPU)) {
+			pos += CPU.length;
+			int core = -1;
+			if (pos < limit && isDigit(buffer[pos])) {
+				core = (int) parseLong();
+			}
+			long total = 0;
+			for (int i = 0; i < NUM_CPU_FIELDS; i++) {
+				cpuFields[i] = parseLong();
+				total += cpuFields[i];
+			}
+			long busy = total - cpuFields[IDLE_FIELD] - cpuFields[IOWAIT_FIELD];
+			if (core < 0) {
+				counters.cpuBusy = busy;
+				counters.cpuTotal = total;
+			} else if (core < counters.coreBusy.length) {
+				counters.coreBusy[core] = busy;
+				counters.coreTotal[core] = total;
+			}
+			skipLine();
+		}
+	}
+
+	private void readMemory(ResourceCounters counters) throws IOException {
+		load(meminfo);
+		long total = 0;
+		long free = 0;
+		long available = -1;
+		while (pos < limit) {
+			if (startsWith(MEM_TOTAL)) {
+				pos += MEM_TOTAL.length;
+				total = parseLong();
+			} else if (startsWith(MEM_FREE)) {
+				pos += MEM_FREE.length;
+				free = parseLong();
+			} else if (startsWith(MEM_AVAILABLE)) {
+				pos += MEM_AVAILABLE.length;
+				available = parseLong();
+			}
+			skipLine();
+		}
+		counters.memoryTotal = total * KILO_BYTE;
+		counters.memoryUsed = (total - (available >= 0 ? available : free)) * KILO_BYTE;
+	}
+
+	private void readDisks(ResourceCounters counters) throws IOException {
+		if (diskstats == null) {
+			return;
+		}
+		load(diskstats);
+		long read = 0;
+		long written = 0;
+		while (pos < limit) {
+			parseLong();
+			parseLong();
+			skipSpaces();
+			int nameStart = pos;
+			while (pos < limit && buffer[pos] != ' ' && buffer[pos] != '\n') {
+				pos++;
+			}
+			if (isPhysicalDisk(nameStart, pos)) {
+				for (int field = 1; field <= SECTORS_WRITTEN_FIELD; field++) {
+					long value = parseLong();
+					if (field == SECTORS_READ_FIELD) {
+						read += value;
+					} else if (field == SECTORS_WRITTEN_FIELD) {
+						written += value;
+					}
+				}
+			}
+			skipLine();
+		}
+		counters.diskReadBytes = read * SECTOR_SIZE;
+		counters.diskWriteBytes = written * SECTOR_SIZE;
+	}
+
+	private void readNetwork(ResourceCounters counters) throws IOException {
+		if (netDev == null) {
+			return;
+		}
+		load(netDev);
+		// two header lines
+		skipLine();
+		skipLine();
+		long received = 0;
+		long transmitted = 0;
+		while (pos < limit) {
+			skipSpaces();
+			int nameStart = pos;
+			while (pos < limit && buffer[pos] != ':' && buffer[pos] != '\n') {
+				pos++;
+			}
+			if (pos < limit && buffer[pos] == ':' && !equalsBytes(nameStart, pos, LOOPBACK)) {
+				pos++;
+				received += parseLong();
+				for (int field = 1; field < TRANSMIT_BYTES_FIELD; field++) {
+					parseLong();
+				}
+				transmitted += parseLong();
+			}
+			skipLine();
+		}
+		counters.networkReceiveBytes = received;
+		counters.networkTransmitBytes = transmitted;
+	}
+
+	private void load(RandomAccessFile file) throws IOException {
+		file.seek(0);
+		limit = 0;
+		pos = 0;
+		while (true) {
+			if (limit == buffer.length) {
+				byte[] larger = new byte[buffer.length * 2];
+				System.arraycopy(buffer, 0, larger, 0, limit);
+				buffer = larger;
+			}
+			int read = file.read(buffer, limit, buffer.length - limit);
+			if (read < 0) {
+				return;
+			}
+			limit += read;
+		}
+	}
+
+	private long parseLong() {
+		skipSpaces();
+		long value = 0;
+		while (pos < limit && isDigit(buffer[pos])) {
+			value = value * 10 + (buffer[pos] - '0');
+			pos++;
+		}
+		return value;
+	}
+
+	private void skipSpaces() {
+		while (pos < limit && (buffer[pos] == ' ' || buffer[pos] == '\t')) {
+			pos++;
+		}
+	}
+
+	private void skipLine() {
+		while (pos < limit && buffer[pos] != '\n') {
+			pos++;
+		}
+		pos++;
+	}
+
+	private boolean startsWith(byte[] prefix) {
+		if (limit - pos < prefix.length) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length; i++) {
+			if (buffer[pos + i] != prefix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean equalsBytes(int start, int end, byte[] name) {
+		if (end - start != name.length) {
+			return false;
+		}
+		for (int i = 0; i < name.length; i++) {
+			if (buffer[start + i] != name[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean isPhysicalDisk(int start, int end) {
+		for (byte[] name : diskNames) {
+			if (equalsBytes(start, end, name)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private int countCores() throws IOException {
+		load(stat);
+		int cores = 0;
+		while (pos < limit && startsWith(CPU)) {
+			pos += CPU.length;
+			if (pos < limit && isDigit(buffer[pos])) {
+				cores = Math.max(cores, (int) parseLong() + 1);
+			}
+			skipLine();
+		}
+		return cores;
+	}
+
+	private static byte[][] listPhysicalDisks() {
+		List<byte[]> names = new ArrayList<>();
+		String[] devices = new File(SYS_BLOCK).list();
+		if (devices != null) {
+			for (String device : devices) {
+				if (!isVirtualDisk(device)) {
+					names.add(bytes(device));
+				}
+			}
+		}
+		return names.toArray(new byte[names.size()][]);
+	}
+
+	private static boolean isVirtualDisk(String device) {
+		for (String prefix : VIRTUAL_DISK_PREFIXES) {
+			if (device.startsWith(prefix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static RandomAccessFile openOptional(String fileName) {
+		try {
+			return new RandomAccessFile(fileName, "r");
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	private static boolean isDigit(byte b) {
+		return b >= '0' && b <= '9';
+	}
+
+	private static byte[] bytes(String str) {
+		return str.getBytes(StandardCharsets.US_ASCII);
+	}
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.monitoring;
+
+/**
+ * Mutable set of cumulative resource counters. A reader fills the same
+ * instance on every sample, the sampler derives utilizations and rates from
+ * the difference of two consecutive instances.
+ * 
+ */
+final class ResourceCounters {
+	long cpuBusy;
+	long cpuTotal;
+	final long[] coreBusy;
+	final long[] coreTotal;
+	long memoryUsed;
+	long memoryTotal;
+	long diskReadBytes;
+	long diskWriteBytes;
+	long networkReceiveBytes;
+	long networkTransmitBytes;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param numCores
+	 *            number of cores to track
+	 */
+	ResourceCounters(int numCores) {
+		coreBusy = new long[numCores];
+		coreTotal = new long[numCores];
+	}
+
+	/**
+	 * Copies all counters into the given instance.
+	 * 
+	 * @param target
+	 *            instance to copy to
+	 */
+	void copyTo(ResourceCounters target) {
+		target.cpuBusy = cpuBusy;
+		target.cpuTotal = cpuTotal;
+		System.arraycopy(coreBusy, 0, target.coreBusy, 0, coreBusy.length);
+		System.arraycopy(coreTotal, 0, target.coreTotal, 0, coreTotal.length);
+		target.memoryUsed = memoryUsed;
+		target.memoryTotal = memoryTotal;
+		target.diskReadBytes = diskReadBytes;
+		target.diskWriteBytes = diskWriteBytes;
+		target.networkReceiveBytes = networkReceiveBytes;
+		target.networkTransmitBytes = networkTransmitBytes;
+	}
+}
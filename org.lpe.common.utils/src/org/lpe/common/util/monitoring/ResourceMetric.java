@@ -0,0 +1,63 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.monitoring;
+
+/**
+ * Resource metrics recorded by the {@link ResourceSampler}. Rates are given
+ * per second and averaged over one sampling interval. Per-core utilizations
+ * are not part of this enumeration as their number depends on the host.
+ * 
+ */
+public enum ResourceMetric {
+	/** overall CPU utilization in [0, 1]. */
+	CPU_UTILIZATION("cpu"),
+	/** used physical memory in bytes. */
+	MEMORY_USED("memUsed"),
+	/** total physical memory in bytes. */
+	MEMORY_TOTAL("memTotal"),
+	/** bytes read from disk per second. */
+	DISK_READ_RATE("diskRead"),
+	/** bytes written to disk per second. */
+	DISK_WRITE_RATE("diskWrite"),
+	/** bytes received over the network per second. */
+	NETWORK_RECEIVE_RATE("netReceive"),
+	/** bytes transmitted over the network per second. */
+	NETWORK_TRANSMIT_RATE("netTransmit");
+
+	private static final String CORE_PREFIX = "core";
+
+	private final String columnName;
+
+	private ResourceMetric(String columnName) {
+		this.columnName = columnName;
+	}
+
+	/**
+	 * @return the column name used in exported series
+	 */
+	public String getColumnName() {
+		return columnName;
+	}
+
+	/**
+	 * @param core
+	 *            index of the core
+	 * @return the column name of the utilization of the given core
+	 */
+	public static String getCoreColumnName(int core) {
+		return CORE_PREFIX + core;
+	}
+}
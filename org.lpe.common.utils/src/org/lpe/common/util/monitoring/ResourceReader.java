@@ -0,0 +1,46 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.monitoring;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Source of cumulative resource counters of the local host.
+ * 
+ */
+interface ResourceReader extends Closeable {
+
+	/**
+	 * @return name of the reader for logging purposes
+	 */
+	String getName();
+
+	/**
+	 * @return number of cores reported by this reader
+	 */
+	int getNumCores();
+
+	/**
+	 * Reads the current counters.
+	 * 
+	 * @param counters
+	 *            instance to fill
+	 * @throws IOException
+	 *             if the counters cannot be read
+	 */
+	void read(ResourceCounters counters) throws IOException;
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.monitoring;
+
+/**
+ * Fixed-capacity ring buffer of resource samples. Timestamps and values are
+ * stored in preallocated primitive arrays, values in row-major order with one
+ * row per sample. Appending copies a row and never allocates; once the
+ * buffer is full, the oldest sample is overwritten.
+ * 
+ */
+final class ResourceRingBuffer {
+	private final int capacity;
+	private final int width;
+	private final long[] timestamps;
+	private final double[] values;
+	private long count;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param capacity
+	 *            maximal number of samples
+	 * @param width
+	 *            number of values per sample
+	 */
+	ResourceRingBuffer(int capacity, int width) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive.");
+		}
+		this.capacity = capacity;
+		this.width = width;
+		timestamps = new long[capacity];
+		values = new double[capacity * width];
+	}
+
+	/**
+	 * Appends a sample.
+	 * 
+	 * @param timestamp
+	 *            timestamp in milliseconds, not smaller than the previous one
+	 * @param row
+	 *            values of the sample
+	 */
+	synchronized void append(long timestamp, double[] row) {
+		int slot = (int) (count % capacity);
+		timestamps[slot] = timestamp;
+		System.arraycopy(row, 0, values, slot * width, width);
+		count++;
+	}
+
+	/**
+	 * 
+	 * @return number of samples currently held
+	 */
+	synchronized int size() {
+		return (int) Math.min(count, capacity);
+	}
+
+	/**
+	 * Copies all samples with a timestamp in [from, to] into a snapshot.
+	 * 
+	 * @param from
+	 *            start of the window in milliseconds (inclusive)
+	 * @param to
+	 *            end of the window in milliseconds (inclusive)
+	 * @param numCores
+	 *            number of per-core columns
+	 * @return the samples in the window
+	 */
+	synchronized ResourceSamples query(long from, long to, int numCores) {
+		long oldest = Math.max(0, count - capacity);
+		long first = lowerBound(oldest, count, from);
+		long end = lowerBound(first, count, to == Long.MAX_VALUE ? to : to + 1);
+		int n = (int) (end - first);
+		long[] resultTimestamps = new long[n];
+		double[] resultValues = new double[n * width];
+		for (int i = 0; i < n; i++) {
+			int slot = (int) ((first + i) % capacity);
+			resultTimestamps[i] = timestamps[slot];
+			System.arraycopy(values, slot * width, resultValues, i * width, width);
+		}
+		return new ResourceSamples(numCores, resultTimestamps, resultValues);
+	}
+
+	private long lowerBound(long low, long high, long timestamp) {
+		while (low < high) {
+			long mid = (low + high) >>> 1;
+			if (timestamps[(int) (mid % capacity)] < timestamp) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+}
@@ -0,0 +1,245 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.monitoring;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.lpe.common.util.clock.HighResolutionClock;
+import org.lpe.common.util.concurrency.ExecutorRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Samples CPU, per-core, memory, disk and network usage of the local host at
+ * a fixed rate. Samples are kept in a preallocated ring buffer, thus, memory
+ * consumption is bounded and taking a sample does not allocate. Timestamps
+ * are taken from the {@link HighResolutionClock}, so that the samples can be
+ * correlated with response times measured on the same host.
+ * 
+ * Counters are read through Hyperic Sigar if it is on the classpath and its
+ * native library can be loaded, otherwise from the <code>/proc</code> file
+ * system.
+ * 
+ */
+public class ResourceSampler implements Closeable {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ResourceSampler.class);
+	private static final String EXECUTOR_NAME = "resource-sampling";
+	private static final double MILLIS_PER_SECOND = 1000.0;
+
+	private final ResourceReader reader;
+	private final long intervalMillis;
+	private final int numCores;
+	private final ResourceRingBuffer buffer;
+	private final ResourceCounters current;
+	private final ResourceCounters previous;
+	private final double[] row;
+	private long previousTimestamp = -1;
+	private ScheduledFuture<?> task;
+
+	/**
+	 * Creates a sampler for the local host.
+	 * 
+	 * @param intervalMillis
+	 *            sampling interval in milliseconds
+	 * @param capacity
+	 *            number of samples to keep
+	 * @return the sampler
+	 * @throws IOException
+	 *             if neither Sigar nor <code>/proc</code> are available
+	 */
+	public static ResourceSampler create(long intervalMillis, int capacity) throws IOException {
+		return new ResourceSampler(openReader(), intervalMillis, capacity);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param reader
+	 *            counter source
+	 * @param intervalMillis
+	 *            sampling interval in milliseconds
+	 * @param capacity
+	 *            number of samples to keep
+	 */
+	ResourceSampler(ResourceReader reader, long intervalMillis, int capacity) {
+		if (intervalMillis < 1) {
+			throw new IllegalArgumentException("Sampling interval must be positive.");
+		}
+		this.reader = reader;
+		this.intervalMillis = intervalMillis;
+		numCores = reader.getNumCores();
+		buffer = new ResourceRingBuffer(capacity, ResourceSamples.width(numCores));
+		current = new ResourceCounters(numCores);
+		previous = new ResourceCounters(numCores);
+		row = new double[ResourceSamples.width(numCores)];
+	}
+
+	/**
+	 * Starts sampling at a fixed rate. Does nothing if already started.
+	 */
+	public synchronized void start() {
+		if (task != null) {
+			return;
+		}
+		ScheduledExecutorService executor = ExecutorRegistry.getInstance().getScheduledExecutor(EXECUTOR_NAME, 1);
+		task = executor.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					sample();
+				} catch (IOException e) {
+					LOGGER.warn("Failed to sample resources: {}", e.getMessage());
+				}
+			}
+		}, 0, intervalMillis, TimeUnit.MILLISECONDS);
+		LOGGER.debug("Started resource sampling every {} ms using {}.", intervalMillis, reader.getName());
+	}
+
+	/**
+	 * Stops sampling. The recorded samples remain available.
+	 */
+	public synchronized void stop() {
+		if (task != null) {
+			task.cancel(false);
+			task = null;
+		}
+	}
+
+	/**
+	 * @return true, if the sampler is running
+	 */
+	public synchronized boolean isRunning() {
+		return task != null;
+	}
+
+	/**
+	 * Takes a sample immediately. The first call after creation only
+	 * initializes the counters, because utilizations and rates are derived
+	 * from two consecutive readings.
+	 * 
+	 * @throws IOException
+	 *             if the counters cannot be read
+	 */
+	public void sample() throws IOException {
+		synchronized (current) {
+			reader.read(current);
+			long timestamp = TimeUnit.NANOSECONDS.toMillis(HighResolutionClock.currentTimeNanos());
+			if (previousTimestamp >= 0 && timestamp > previousTimestamp) {
+				double seconds = (timestamp - previousTimestamp) / MILLIS_PER_SECOND;
+				row[ResourceMetric.CPU_UTILIZATION.ordinal()] = ratio(current.cpuBusy - previous.cpuBusy,
+						current.cpuTotal - previous.cpuTotal);
+				row[ResourceMetric.MEMORY_USED.ordinal()] = current.memoryUsed;
+				row[ResourceMetric.MEMORY_TOTAL.ordinal()] = current.memoryTotal;
+				row[ResourceMetric.DISK_READ_RATE.ordinal()] = rate(current.diskReadBytes - previous.diskReadBytes,
+						seconds);
+				row[ResourceMetric.DISK_WRITE_RATE.ordinal()] = rate(current.diskWriteBytes
+						- previous.diskWriteBytes, seconds);
+				row[ResourceMetric.NETWORK_RECEIVE_RATE.ordinal()] = rate(current.networkReceiveBytes
+						- previous.networkReceiveBytes, seconds);
+				row[ResourceMetric.NETWORK_TRANSMIT_RATE.ordinal()] = rate(current.networkTransmitBytes
+						- previous.networkTransmitBytes, seconds);
+				int offset = ResourceSamples.width(0);
+				for (int core = 0; core < numCores; core++) {
+					row[offset + core] = ratio(current.coreBusy[core] - previous.coreBusy[core],
+							current.coreTotal[core] - previous.coreTotal[core]);
+				}
+				buffer.append(timestamp, row);
+			}
+			if (previousTimestamp < 0 || timestamp > previousTimestamp) {
+				current.copyTo(previous);
+				previousTimestamp = timestamp;
+			}
+		}
+	}
+
+	/**
+	 * Returns all samples taken within the given time window.
+	 * 
+	 * @param fromMillis
+	 *            start of the window in milliseconds since the epoch
+	 *            (inclusive)
+	 * @param toMillis
+	 *            end of the window in milliseconds since the epoch (inclusive)
+	 * @return the samples
+	 */
+	public ResourceSamples getSamples(long fromMillis, long toMillis) {
+		return buffer.query(fromMillis, toMillis, numCores);
+	}
+
+	/**
+	 * @return all samples currently held
+	 */
+	public ResourceSamples getSamples() {
+		return getSamples(Long.MIN_VALUE, Long.MAX_VALUE);
+	}
+
+	/**
+	 * @return number of samples currently held
+	 */
+	public int getNumSamples() {
+		return buffer.size();
+	}
+
+	/**
+	 * @return the sampling interval in milliseconds
+	 */
+	public long getIntervalMillis() {
+		return intervalMillis;
+	}
+
+	/**
+	 * @return number of cores of the host
+	 */
+	public int getNumCores() {
+		return numCores;
+	}
+
+	/**
+	 * @return the name of the counter source, either "sigar" or "procfs"
+	 */
+	public String getSourceName() {
+		return reader.getName();
+	}
+
+	@Override
+	public void close() throws IOException {
+		stop();
+		synchronized (current) {
+			reader.close();
+		}
+	}
+
+	private static double ratio(long part, long total) {
+		return total > 0 ? Math.max(0.0, Math.min(1.0, (double) part / (double) total)) : 0.0;
+	}
+
+	private static double rate(long delta, double seconds) {
+		return delta > 0 ? delta / seconds : 0.0;
+	}
+
+	private static ResourceReader openReader() throws IOException {
+		try {
+			return new SigarResourceReader();
+		} catch (ReflectiveOperationException | IOException | LinkageError e) {
+			LOGGER.debug("Sigar is not available, falling back to /proc: {}", e.toString());
+		}
+		return new ProcResourceReader();
+	}
+}
@@ -0,0 +1,209 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.monitoring;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.lpe.common.util.BinarySeries;
+import org.lpe.common.util.clock.ClockOffset;
+
+/**
+ * Immutable snapshot of resource samples within a time window.
+ * 
+ */
+public final class ResourceSamples {
+	/** name of the timestamp column in exported series. */
+	public static final String TIMESTAMP_COLUMN = "timestamp";
+
+	private static final int NUM_METRICS = ResourceMetric.values().length;
+
+	private final int numCores;
+	private final int width;
+	private final long[] timestamps;
+	private final double[] values;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param numCores
+	 *            number of per-core columns
+	 * @param timestamps
+	 *            timestamps in milliseconds
+	 * @param values
+	 *            values in row-major order
+	 */
+	ResourceSamples(int numCores, long[] timestamps, double[] values) {
+		this.numCores = numCores;
+		this.width = width(numCores);
+		this.timestamps = timestamps;
+		this.values = values;
+	}
+
+	/**
+	 * @return number of samples
+	 */
+	public int size() {
+		return timestamps.length;
+	}
+
+	/**
+	 * @return number of cores
+	 */
+	public int getNumCores() {
+		return numCores;
+	}
+
+	/**
+	 * @param index
+	 *            sample index
+	 * @return timestamp of the sample in milliseconds since the epoch
+	 */
+	public long getTimestamp(int index) {
+		return timestamps[index];
+	}
+
+	/**
+	 * @param metric
+	 *            metric of interest
+	 * @param index
+	 *            sample index
+	 * @return value of the metric in the sample
+	 */
+	public double getValue(ResourceMetric metric, int index) {
+		return values[index * width + metric.ordinal()];
+	}
+
+	/**
+	 * @param core
+	 *            core index
+	 * @param index
+	 *            sample index
+	 * @return utilization of the core in the sample
+	 */
+	public double getCoreUtilization(int core, int index) {
+		if (core < 0 || core >= numCores) {
+			throw new IndexOutOfBoundsException("Invalid core: " + core);
+		}
+		return values[index * width + NUM_METRICS + core];
+	}
+
+	/**
+	 * @param metric
+	 *            metric of interest
+	 * @return all values of the metric
+	 */
+	public double[] getValues(ResourceMetric metric) {
+		return column(metric.ordinal());
+	}
+
+	/**
+	 * @param metric
+	 *            metric of interest
+	 * @return mean value of the metric, NaN if there are no samples
+	 */
+	public double getMean(ResourceMetric metric) {
+		if (size() == 0) {
+			return Double.NaN;
+		}
+		double sum = 0;
+		for (int i = 0; i < size(); i++) {
+			sum += getValue(metric, i);
+		}
+		return sum / size();
+	}
+
+	/**
+	 * Converts the timestamps of samples taken on a remote node into local
+	 * time.
+	 * 
+	 * @param offset
+	 *            clock offset of the remote node
+	 * @return samples with local timestamps
+	 */
+	public ResourceSamples toLocalTime(ClockOffset offset) {
+		long[] localTimestamps = new long[timestamps.length];
+		for (int i = 0; i < timestamps.length; i++) {
+			localTimestamps[i] = offset.toLocalTimeMillis(timestamps[i]);
+		}
+		return new ResourceSamples(numCores, localTimestamps, values);
+	}
+
+	/**
+	 * Converts the samples into a {@link BinarySeries} with the column
+	 * {@link #TIMESTAMP_COLUMN}, one column per {@link ResourceMetric} and one
+	 * column per core.
+	 * 
+	 * @return the series
+	 */
+	public BinarySeries toBinarySeries() {
+		BinarySeries series = new BinarySeries();
+		series.addColumn(TIMESTAMP_COLUMN, timestamps.clone());
+		for (ResourceMetric metric : ResourceMetric.values()) {
+			series.addColumn(metric.getColumnName(), column(metric.ordinal()));
+		}
+		for (int core = 0; core < numCores; core++) {
+			series.addColumn(ResourceMetric.getCoreColumnName(core), column(NUM_METRICS + core));
+		}
+		return series;
+	}
+
+	/**
+	 * Restores samples from a series created by {@link #toBinarySeries()}.
+	 * 
+	 * @param series
+	 *            the series
+	 * @return the samples
+	 */
+	public static ResourceSamples fromBinarySeries(BinarySeries series) {
+		List<double[]> columns = new ArrayList<>();
+		for (ResourceMetric metric : ResourceMetric.values()) {
+			columns.add(series.getDoubleColumn(metric.getColumnName()));
+		}
+		int numCores = 0;
+		while (series.getColumnNames().contains(ResourceMetric.getCoreColumnName(numCores))) {
+			columns.add(series.getDoubleColumn(ResourceMetric.getCoreColumnName(numCores)));
+			numCores++;
+		}
+		long[] timestamps = series.getLongColumn(TIMESTAMP_COLUMN);
+		int width = width(numCores);
+		double[] values = new double[timestamps.length * width];
+		for (int c = 0; c < width; c++) {
+			double[] column = columns.get(c);
+			for (int i = 0; i < timestamps.length; i++) {
+				values[i * width + c] = column[i];
+			}
+		}
+		return new ResourceSamples(numCores, timestamps, values);
+	}
+
+	private double[] column(int offset) {
+		double[] column = new double[size()];
+		for (int i = 0; i < column.length; i++) {
+			column[i] = values[i * width + offset];
+		}
+		return column;
+	}
+
+	/**
+	 * @param numCores
+	 *            number of cores
+	 * @return number of values per sample
+	 */
+	static int width(int numCores) {
+		return NUM_METRICS + numCores;
+	}
+}
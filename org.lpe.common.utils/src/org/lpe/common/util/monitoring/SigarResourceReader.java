@@ -0,0 +1,200 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.monitoring;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.lpe.common.util.system.LpeSystemUtils;
+
+/**
+ * Reads resource counters through the Hyperic Sigar API. Sigar is accessed by
+ * reflection, because it is an optional runtime dependency shipped by the
+ * <code>org.lpe.common.hyperic.sigar</code> module. All methods are resolved
+ * once on construction; the objects returned by Sigar itself are allocated
+ * natively on every call.
+ * 
+ */
+final class SigarResourceReader implements ResourceReader {
+	private static final String SIGAR_PACKAGE = "org.hyperic.sigar.";
+	private static final String LOOPBACK = "lo";
+	private static final int TYPE_LOCAL_DISK = 2;
+
+	private final Object sigar;
+	private final Method getCpu;
+	private final Method getCpuList;
+	private final Method cpuTotal;
+	private final Method cpuIdle;
+	private final Method cpuWait;
+	private final Method getMem;
+	private final Method memTotal;
+	private final Method memActualUsed;
+	private final Method getDiskUsage;
+	private final Method diskReadBytes;
+	private final Method diskWriteBytes;
+	private final Method getNetInterfaceStat;
+	private final Method netRxBytes;
+	private final Method netTxBytes;
+	private final Method close;
+	private final String[] diskDirectories;
+	private final String[] netInterfaces;
+	private final int numCores;
+
+	/**
+	 * Loads the native libraries if necessary and creates a Sigar instance.
+	 * 
+	 * @throws ReflectiveOperationException
+	 *             if Sigar is not on the classpath
+	 * @throws IOException
+	 *             if the native library cannot be used
+	 */
+	SigarResourceReader() throws ReflectiveOperationException, IOException {
+		ClassLoader loader = SigarResourceReader.class.getClassLoader();
+		Class<?> sigarClass = Class.forName(SIGAR_PACKAGE + "Sigar", false, loader);
+		Class<?> cpuClass = Class.forName(SIGAR_PACKAGE + "Cpu", false, loader);
+		Class<?> memClass = Class.forName(SIGAR_PACKAGE + "Mem", false, loader);
+		Class<?> fsClass = Class.forName(SIGAR_PACKAGE + "FileSystem", false, loader);
+		Class<?> diskClass = Class.forName(SIGAR_PACKAGE + "DiskUsage", false, loader);
+		Class<?> netClass = Class.forName(SIGAR_PACKAGE + "NetInterfaceStat", false, loader);
+		if (!LpeSystemUtils.areNativeLibrariesLoaded()) {
+			LpeSystemUtils.loadNativeLibraries();
+		}
+
+		getCpu = sigarClass.getMethod("getCpu");
+		getCpuList = sigarClass.getMethod("getCpuList");
+		cpuTotal = cpuClass.getMethod("getTotal");
+		cpuIdle = cpuClass.getMethod("getIdle");
+		cpuWait = cpuClass.getMethod("getWait");
+		getMem = sigarClass.getMethod("getMem");
+		memTotal = memClass.getMethod("getTotal");
+		memActualUsed = memClass.getMethod("getActualUsed");
+		getDiskUsage = sigarClass.getMethod("getDiskUsage", String.class);
+		diskReadBytes = diskClass.getMethod("getReadBytes");
+		diskWriteBytes = diskClass.getMethod("getWriteBytes");
+		getNetInterfaceStat = sigarClass.getMethod("getNetInterfaceStat", String.class);
+		netRxBytes = netClass.getMethod("getRxBytes");
+		netTxBytes = netClass.getMethod("getTxBytes");
+		close = sigarClass.getMethod("close");
+
+		try {
+			sigar = sigarClass.newInstance();
+			numCores = Array.getLength(invoke(getCpuList, sigar));
+			diskDirectories = listLocalDisks(sigarClass.getMethod("getFileSystemList"), fsClass);
+			netInterfaces = listNetInterfaces(sigarClass.getMethod("getNetInterfaceList"));
+		} catch (LinkageError e) {
+			throw new IOException("Sigar native library is not available.", e);
+		}
+	}
+
+	@Override
+	public String getName() {
+		return "sigar";
+	}
+
+	@Override
+	public int getNumCores() {
+		return numCores;
+	}
+
+	@Override
+	public void read(ResourceCounters counters) throws IOException {
+		Object cpu = invoke(getCpu, sigar);
+		counters.cpuTotal = (Long) invoke(cpuTotal, cpu);
+		counters.cpuBusy = counters.cpuTotal - (Long) invoke(cpuIdle, cpu) - (Long) invoke(cpuWait, cpu);
+
+		Object cpus = invoke(getCpuList, sigar);
+		int cores = Math.min(Array.getLength(cpus), counters.coreBusy.length);
+		for (int i = 0; i < cores; i++) {
+			Object core = Array.get(cpus, i);
+			counters.coreTotal[i] = (Long) invoke(cpuTotal, core);
+			counters.coreBusy[i] = counters.coreTotal[i] - (Long) invoke(cpuIdle, core)
+					- (Long) invoke(cpuWait, core);
+		}
+
+		Object mem = invoke(getMem, sigar);
+		counters.memoryTotal = (Long) invoke(memTotal, mem);
+		counters.memoryUsed = (Long) invoke(memActualUsed, mem);
+
+		long read = 0;
+		long written = 0;
+		for (String dir : diskDirectories) {
+			Object usage = invoke(getDiskUsage, sigar, dir);
+			read += Math.max(0L, (Long) invoke(diskReadBytes, usage));
+			written += Math.max(0L, (Long) invoke(diskWriteBytes, usage));
+		}
+		counters.diskReadBytes = read;
+		counters.diskWriteBytes = written;
+
+		long received = 0;
+		long transmitted = 0;
+		for (String name : netInterfaces) {
+			Object netStat = invoke(getNetInterfaceStat, sigar, name);
+			received += Math.max(0L, (Long) invoke(netRxBytes, netStat));
+			transmitted += Math.max(0L, (Long) invoke(netTxBytes, netStat));
+		}
+		counters.networkReceiveBytes = received;
+		counters.networkTransmitBytes = transmitted;
+	}
+
+	@Override
+	public void close() throws IOException {
+		invoke(close, sigar);
+	}
+
+	private String[] listLocalDisks(Method getFileSystemList, Class<?> fsClass) throws ReflectiveOperationException,
+			IOException {
+		Method devName = fsClass.getMethod("getDevName");
+		Method dirName = fsClass.getMethod("getDirName");
+		Method type = fsClass.getMethod("getType");
+		Object fileSystems = invoke(getFileSystemList, sigar);
+		Set<String> devices = new LinkedHashSet<>();
+		List<String> dirs = new ArrayList<>();
+		for (int i = 0; i < Array.getLength(fileSystems); i++) {
+			Object fs = Array.get(fileSystems, i);
+			if ((Integer) invoke(type, fs) == TYPE_LOCAL_DISK && devices.add((String) invoke(devName, fs))) {
+				dirs.add((String) invoke(dirName, fs));
+			}
+		}
+		return dirs.toArray(new String[dirs.size()]);
+	}
+
+	private String[] listNetInterfaces(Method getNetInterfaceList) throws IOException {
+		String[] names = (String[]) invoke(getNetInterfaceList, sigar);
+		List<String> result = new ArrayList<>();
+		for (String name : names) {
+			if (!LOOPBACK.equals(name)) {
+				result.add(name);
+			}
+		}
+		return result.toArray(new String[result.size()]);
+	}
+
+	private static Object invoke(Method method, Object target, Object... args) throws IOException {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw new IOException("Sigar call " + method.getName() + " failed.", e.getCause());
+		} catch (IllegalAccessException e) {
+			throw new IOException("Sigar call " + method.getName() + " failed.", e);
+		}
+	}
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.queueing;
+
+/**
+ * Numerically stable Erlang formulas for M/M/c queues. Erlang B is evaluated
+ * by its recursion over the number of servers, which neither needs factorials
+ * nor powers and, thus, does not overflow for large server counts.
+ * 
+ */
+public final class ErlangFormulas {
+
+	/**
+	 * private constructor due to utility class.
+	 */
+	private ErlangFormulas() {
+	}
+
+	/**
+	 * Calculates the blocking probability of an M/M/c/c system (Erlang B).
+	 * 
+	 * @param numServers
+	 *            number of servers
+	 * @param offeredLoad
+	 *            offered traffic in Erlang (arrival rate times service time)
+	 * @return blocking probability
+	 */
+	public static double erlangB(int numServers, double offeredLoad) {
+		if (numServers < 0 || offeredLoad < 0) {
+			throw new IllegalArgumentException("Number of servers and load must not be negative.");
+		}
+		double b = 1.0;
+		for (int k = 1; k <= numServers; k++) {
+			double ab = offeredLoad * b;
+			b = ab / (k + ab);
+		}
+		return b;
+	}
+
+	/**
+	 * Calculates the probability that a request has to wait in an M/M/c queue
+	 * (Erlang C).
+	 * 
+	 * @param numServers
+	 *            number of servers
+	 * @param utilization
+	 *            utilization per server in [0, 1]
+	 * @return waiting probability; 1 for a saturated system
+	 */
+	public static double erlangC(int numServers, double utilization) {
+		if (numServers < 1) {
+			throw new IllegalArgumentException("Number of servers must be positive.");
+		}
+		if (utilization >= 1.0) {
+			return 1.0;
+		}
+		if (utilization <= 0.0) {
+			return 0.0;
+		}
+		double b = erlangB(numServers, numServers * utilization);
+		return b / (1.0 - utilization * (1.0 - b));
+	}
+
+	/**
+	 * Calculates the mean response time of an M/M/c queue relative to the
+	 * service time: <code>1 + C(c, u) / (c (1 - u))</code>.
+	 * 
+	 * @param numServers
+	 *            number of servers
+	 * @param utilization
+	 *            utilization per server in [0, 1)
+	 * @return response time factor; infinite for a saturated system
+	 */
+	public static double responseTimeFactor(int numServers, double utilization) {
+		if (utilization >= 1.0) {
+			return Double.POSITIVE_INFINITY;
+		}
+		return 1.0 + erlangC(numServers, utilization) / (numServers * (1.0 - utilization));
+	}
+
+	/**
+	 * Calculates the mean waiting time of an M/M/c queue in units of
+	 * <code>c</code> times the service time: <code>C(c, u) / (1 - u)</code>.
+	 * 
+	 * @param numServers
+	 *            number of servers
+	 * @param utilization
+	 *            utilization per server in [0, 1)
+	 * @return waiting time factor; infinite for a saturated system
+	 */
+	public static double waitingTimeFactor(int numServers, double utilization) {
+		if (utilization >= 1.0) {
+			return Double.POSITIVE_INFINITY;
+		}
+		return erlangC(numServers, utilization) / (1.0 - utilization);
+	}
+}
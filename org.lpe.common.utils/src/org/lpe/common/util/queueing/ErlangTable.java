@@ -0,0 +1,164 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.queueing;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Memoized Erlang C lookup table for a fixed number of servers. The waiting
+ * time factor <code>C(c, u) / (1 - u)</code> is precomputed on an equidistant
+ * utilization grid once per server count. Inverse queries locate the
+ * enclosing grid cell by binary search and refine it by bisection with the
+ * exact formula, so that they cost a few dozen evaluations instead of a full
+ * search.
+ * 
+ */
+public final class ErlangTable {
+	private static final int GRID_SIZE = 1024;
+	private static final double TOLERANCE = 1e-9;
+	private static final ConcurrentMap<Integer, ErlangTable> TABLES = new ConcurrentHashMap<>();
+
+	private final int numServers;
+	private final double[] waitingFactors;
+
+	/**
+	 * Returns the table for the given number of servers. Tables are created on
+	 * first use and shared afterwards.
+	 * 
+	 * @param numServers
+	 *            number of servers
+	 * @return lookup table
+	 */
+	public static ErlangTable forServers(int numServers) {
+		if (numServers < 1) {
+			throw new IllegalArgumentException("Number of servers must be positive.");
+		}
+		ErlangTable table = TABLES.get(numServers);
+		if (table == null) {
+			table = new ErlangTable(numServers);
+			ErlangTable existing = TABLES.putIfAbsent(numServers, table);
+			if (existing != null) {
+				table = existing;
+			}
+		}
+		return table;
+	}
+
+	private ErlangTable(int numServers) {
+		this.numServers = numServers;
+		waitingFactors = new double[GRID_SIZE];
+		for (int i = 0; i < GRID_SIZE; i++) {
+			waitingFactors[i] = ErlangFormulas.waitingTimeFactor(numServers, gridPoint(i));
+		}
+	}
+
+	/**
+	 * @return the number of servers of this table
+	 */
+	public int getNumServers() {
+		return numServers;
+	}
+
+	/**
+	 * @param utilization
+	 *            utilization per server
+	 * @return waiting probability (Erlang C)
+	 */
+	public double erlangC(double utilization) {
+		return ErlangFormulas.erlangC(numServers, utilization);
+	}
+
+	/**
+	 * @param utilization
+	 *            utilization per server
+	 * @return mean response time relative to the service time
+	 * @see ErlangFormulas#responseTimeFactor(int, double)
+	 */
+	public double responseTimeFactor(double utilization) {
+		return ErlangFormulas.responseTimeFactor(numServers, utilization);
+	}
+
+	/**
+	 * @param utilization
+	 *            utilization per server
+	 * @return waiting time factor
+	 * @see ErlangFormulas#waitingTimeFactor(int, double)
+	 */
+	public double waitingTimeFactor(double utilization) {
+		return ErlangFormulas.waitingTimeFactor(numServers, utilization);
+	}
+
+	/**
+	 * Calculates the highest utilization at which the mean response time does
+	 * not exceed the given multiple of the service time.
+	 * 
+	 * @param responseTimeFactor
+	 *            response time relative to the service time
+	 * @return utilization per server in [0, 1)
+	 */
+	public double utilizationForResponseTimeFactor(double responseTimeFactor) {
+		if (responseTimeFactor <= 1.0) {
+			return 0.0;
+		}
+		return utilizationForWaitingTimeFactor((responseTimeFactor - 1.0) * numServers);
+	}
+
+	/**
+	 * Calculates the utilization at which the waiting time factor
+	 * <code>C(c, u) / (1 - u)</code> reaches the given value.
+	 * 
+	 * @param waitingTimeFactor
+	 *            target waiting time factor
+	 * @return utilization per server in [0, 1)
+	 */
+	public double utilizationForWaitingTimeFactor(double waitingTimeFactor) {
+		if (Double.isNaN(waitingTimeFactor)) {
+			throw new IllegalArgumentException("Waiting time factor must be a number.");
+		}
+		if (waitingTimeFactor <= 0.0) {
+			return 0.0;
+		}
+		int low = 0;
+		int high = GRID_SIZE;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (waitingFactors[mid] < waitingTimeFactor) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		if (low < GRID_SIZE && waitingFactors[low] == waitingTimeFactor) {
+			return gridPoint(low);
+		}
+		double left = gridPoint(low - 1);
+		double right = low < GRID_SIZE ? gridPoint(low) : 1.0;
+		while (right - left > TOLERANCE) {
+			double mid = 0.5 * (left + right);
+			if (waitingTimeFactor(mid) < waitingTimeFactor) {
+				left = mid;
+			} else {
+				right = mid;
+			}
+		}
+		return left;
+	}
+
+	private static double gridPoint(int index) {
+		return (double) index / (double) GRID_SIZE;
+	}
+}
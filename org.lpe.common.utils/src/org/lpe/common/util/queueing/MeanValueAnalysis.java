@@ -0,0 +1,203 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.queueing;
+
+/**
+ * Exact mean value analysis (MVA) for a single-class closed queueing network.
+ * Every station is described by its service demand per request and its number
+ * of servers; multi-server stations are approximated after Seidmann by a
+ * single-server queue with demand <code>D / c</code> followed by a delay of
+ * <code>D (c - 1) / c</code>. The solver runs in O(N K) for N users and K
+ * stations and yields the results for all populations up to N in one pass.
+ * 
+ */
+public class MeanValueAnalysis {
+	private final double[] serviceDemands;
+	private final int[] numServers;
+	private final double thinkTime;
+
+	/**
+	 * Constructor for single-server stations.
+	 * 
+	 * @param serviceDemands
+	 *            service demand per request of each station
+	 * @param thinkTime
+	 *            think time of the users between two requests
+	 */
+	public MeanValueAnalysis(double[] serviceDemands, double thinkTime) {
+		this(serviceDemands, null, thinkTime);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param serviceDemands
+	 *            service demand per request of each station
+	 * @param numServers
+	 *            number of servers of each station; null for single servers
+	 * @param thinkTime
+	 *            think time of the users between two requests
+	 */
+	public MeanValueAnalysis(double[] serviceDemands, int[] numServers, double thinkTime) {
+		if (serviceDemands == null || serviceDemands.length == 0) {
+			throw new IllegalArgumentException("At least one station is required.");
+		}
+		if (numServers != null && numServers.length != serviceDemands.length) {
+			throw new IllegalArgumentException("Number of servers must be given for each station.");
+		}
+		if (thinkTime < 0) {
+			throw new IllegalArgumentException("Think time must not be negative.");
+		}
+		this.serviceDemands = serviceDemands.clone();
+		this.numServers = new int[serviceDemands.length];
+		for (int k = 0; k < serviceDemands.length; k++) {
+			if (serviceDemands[k] < 0) {
+				throw new IllegalArgumentException("Service demands must not be negative.");
+			}
+			this.numServers[k] = numServers == null ? 1 : numServers[k];
+			if (this.numServers[k] < 1) {
+				throw new IllegalArgumentException("Number of servers must be positive.");
+			}
+		}
+		this.thinkTime = thinkTime;
+	}
+
+	/**
+	 * Solves the network for all populations from 1 to the given number of
+	 * users.
+	 * 
+	 * @param population
+	 *            number of users
+	 * @return the result
+	 */
+	public Result solve(int population) {
+		if (population < 1) {
+			throw new IllegalArgumentException("Population must be positive.");
+		}
+		int numStations = serviceDemands.length;
+		double[] queueDemands = new double[numStations];
+		double delay = thinkTime;
+		for (int k = 0; k < numStations; k++) {
+			queueDemands[k] = serviceDemands[k] / numServers[k];
+			delay += serviceDemands[k] - queueDemands[k];
+		}
+
+		double[] queueLengths = new double[numStations];
+		double[] residenceTimes = new double[numStations];
+		double[] throughputs = new double[population];
+		double[] responseTimes = new double[population];
+		for (int n = 1; n <= population; n++) {
+			double responseTime = delay - thinkTime;
+			for (int k = 0; k < numStations; k++) {
+				residenceTimes[k] = queueDemands[k] * (1.0 + queueLengths[k]);
+				responseTime += residenceTimes[k];
+			}
+			double throughput = n / (thinkTime + responseTime);
+			for (int k = 0; k < numStations; k++) {
+				queueLengths[k] = throughput * residenceTimes[k];
+			}
+			throughputs[n - 1] = throughput;
+			responseTimes[n - 1] = responseTime;
+		}
+
+		double throughput = throughputs[population - 1];
+		double[] utilizations = new double[numStations];
+		double[] stationQueueLengths = new double[numStations];
+		for (int k = 0; k < numStations; k++) {
+			utilizations[k] = throughput * queueDemands[k];
+			double delayPart = serviceDemands[k] - queueDemands[k];
+			stationQueueLengths[k] = queueLengths[k] + throughput * delayPart;
+		}
+		return new Result(throughputs, responseTimes, utilizations, stationQueueLengths);
+	}
+
+	/**
+	 * Result of a mean value analysis.
+	 */
+	public static final class Result {
+		private final double[] throughputs;
+		private final double[] responseTimes;
+		private final double[] utilizations;
+		private final double[] queueLengths;
+
+		private Result(double[] throughputs, double[] responseTimes, double[] utilizations, double[] queueLengths) {
+			this.throughputs = throughputs;
+			this.responseTimes = responseTimes;
+			this.utilizations = utilizations;
+			this.queueLengths = queueLengths;
+		}
+
+		/**
+		 * @return the largest solved population
+		 */
+		public int getPopulation() {
+			return throughputs.length;
+		}
+
+		/**
+		 * @return the system throughput at the solved population
+		 */
+		public double getThroughput() {
+			return throughputs[throughputs.length - 1];
+		}
+
+		/**
+		 * @return the response time (excluding think time) at the solved
+		 *         population
+		 */
+		public double getResponseTime() {
+			return responseTimes[responseTimes.length - 1];
+		}
+
+		/**
+		 * @param population
+		 *            number of users, between 1 and {@link #getPopulation()}
+		 * @return the system throughput for the given population
+		 */
+		public double getThroughput(int population) {
+			return throughputs[population - 1];
+		}
+
+		/**
+		 * @param population
+		 *            number of users, between 1 and {@link #getPopulation()}
+		 * @return the response time for the given population
+		 */
+		public double getResponseTime(int population) {
+			return responseTimes[population - 1];
+		}
+
+		/**
+		 * @param station
+		 *            station index
+		 * @return the utilization per server of the station at the solved
+		 *         population
+		 */
+		public double getUtilization(int station) {
+			return utilizations[station];
+		}
+
+		/**
+		 * @param station
+		 *            station index
+		 * @return the mean number of requests at the station at the solved
+		 *         population
+		 */
+		public double getQueueLength(int station) {
+			return queueLengths[station];
+		}
+	}
+}
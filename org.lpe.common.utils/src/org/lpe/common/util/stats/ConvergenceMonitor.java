@@ -0,0 +1,315 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.stats;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides online when a measured metric (e.g. response times) is precise
+ * enough, so that a measurement can be stopped before its configured
+ * duration.
+ * <p>
+ * Samples may be added concurrently. During the warm-up phase they are
+ * grouped into batches; the warm-up ends as soon as the mean of the last
+ * {@link #setWarmupWindow(int) window} of batch means differs from the mean
+ * of the window before by at most the {@link #setWarmupTolerance(double)
+ * tolerance}, or after {@link #setMaxWarmupSamples(long) a maximal number} of
+ * samples. Warm-up samples are discarded.
+ * <p>
+ * Afterwards each thread accumulates into its own {@link OnlineStatistics}.
+ * The confidence interval is computed over batch means, which are far less
+ * autocorrelated than single samples of a running system. The monitor is
+ * converged if the interval width is at most the target width.
+ * <p>
+ * Configure the monitor before adding samples.
+ * 
+ */
+public class ConvergenceMonitor {
+	private static final int DEFAULT_BATCH_SIZE = 50;
+	private static final int DEFAULT_WARMUP_WINDOW = 5;
+	private static final double DEFAULT_WARMUP_TOLERANCE = 0.05;
+	private static final long DEFAULT_MAX_WARMUP_SAMPLES = 100000;
+	private static final int DEFAULT_MIN_BATCHES = 10;
+	private static final long POLL_INTERVAL_MILLIS = 100;
+
+	private final double significance;
+	private double targetWidth;
+	private boolean relativeTarget = true;
+	private int batchSize = DEFAULT_BATCH_SIZE;
+	private int warmupWindow = DEFAULT_WARMUP_WINDOW;
+	private double warmupTolerance = DEFAULT_WARMUP_TOLERANCE;
+	private long maxWarmupSamples = DEFAULT_MAX_WARMUP_SAMPLES;
+	private int minBatches = DEFAULT_MIN_BATCHES;
+
+	private final Object warmupLock = new Object();
+	private volatile boolean warmedUp = false;
+	private final List<Double> warmupBatchMeans = new ArrayList<>();
+	private double warmupBatchSum;
+	private int warmupBatchCount;
+	private long warmupSamples;
+
+	private final List<Accumulator> accumulators = new CopyOnWriteArrayList<>();
+	private final ThreadLocal<Accumulator> localAccumulator = new ThreadLocal<Accumulator>() {
+		@Override
+		protected Accumulator initialValue() {
+			Accumulator accumulator = new Accumulator();
+			accumulators.add(accumulator);
+			return accumulator;
+		}
+	};
+
+	/**
+	 * Creates a monitor with a target width relative to the mean.
+	 * 
+	 * @param significance
+	 *            significance level of the confidence interval, e.g. 0.05
+	 * @param targetRelativeWidth
+	 *            target width of the confidence interval relative to the mean,
+	 *            e.g. 0.05 for 5 percent
+	 */
+	public ConvergenceMonitor(double significance, double targetRelativeWidth) {
+		if (significance <= 0 || significance >= 1) {
+			throw new IllegalArgumentException("Significance must be in (0, 1).");
+		}
+		this.significance = significance;
+		this.targetWidth = targetRelativeWidth;
+	}
+
+	/**
+	 * Uses an absolute target width instead of a relative one.
+	 * 
+	 * @param width
+	 *            target width of the confidence interval in the unit of the
+	 *            samples
+	 */
+	public void setAbsoluteTargetWidth(double width) {
+		this.targetWidth = width;
+		this.relativeTarget = false;
+	}
+
+	/**
+	 * @param batchSize
+	 *            number of samples per batch; 1 computes the interval over
+	 *            single samples
+	 */
+	public void setBatchSize(int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("Batch size must be positive.");
+		}
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * @param warmupWindow
+	 *            number of batches compared for the warm-up detection; 0
+	 *            disables the warm-up phase
+	 */
+	public void setWarmupWindow(int warmupWindow) {
+		this.warmupWindow = warmupWindow;
+		if (warmupWindow <= 0) {
+			warmedUp = true;
+		}
+	}
+
+	/**
+	 * @param warmupTolerance
+	 *            maximal relative difference of the means of two consecutive
+	 *            windows at the end of the warm-up
+	 */
+	public void setWarmupTolerance(double warmupTolerance) {
+		this.warmupTolerance = warmupTolerance;
+	}
+
+	/**
+	 * @param maxWarmupSamples
+	 *            number of samples after which the warm-up ends in any case
+	 */
+	public void setMaxWarmupSamples(long maxWarmupSamples) {
+		this.maxWarmupSamples = maxWarmupSamples;
+	}
+
+	/**
+	 * @param minBatches
+	 *            minimal number of batches (after the warm-up) before the
+	 *            monitor may converge
+	 */
+	public void setMinBatches(int minBatches) {
+		this.minBatches = Math.max(2, minBatches);
+	}
+
+	/**
+	 * Adds a sample. May be called concurrently.
+	 * 
+	 * @param value
+	 *            sample value
+	 */
+	public void add(double value) {
+		if (!warmedUp) {
+			synchronized (warmupLock) {
+				if (!warmedUp) {
+					addWarmupSample(value);
+					return;
+				}
+			}
+		}
+		localAccumulator.get().add(value);
+	}
+
+	private void addWarmupSample(double value) {
+		warmupSamples++;
+		warmupBatchSum += value;
+		warmupBatchCount++;
+		if (warmupBatchCount == batchSize) {
+			warmupBatchMeans.add(warmupBatchSum / batchSize);
+			warmupBatchSum = 0;
+			warmupBatchCount = 0;
+			if (isStationary()) {
+				warmedUp = true;
+			}
+		}
+		if (warmupSamples >= maxWarmupSamples) {
+			warmedUp = true;
+		}
+	}
+
+	private boolean isStationary() {
+		int size = warmupBatchMeans.size();
+		if (size < 2 * warmupWindow) {
+			return false;
+		}
+		double previous = 0;
+		double last = 0;
+		for (int i = 0; i < warmupWindow; i++) {
+			previous += warmupBatchMeans.get(size - 2 * warmupWindow + i);
+			last += warmupBatchMeans.get(size - warmupWindow + i);
+		}
+		previous /= warmupWindow;
+		last /= warmupWindow;
+		return Math.abs(last - previous) <= warmupTolerance * Math.abs(last);
+	}
+
+	/**
+	 * @return true, if the warm-up phase is over
+	 */
+	public boolean isWarmedUp() {
+		return warmedUp;
+	}
+
+	/**
+	 * @return number of samples discarded as warm-up
+	 */
+	public long getWarmupSamples() {
+		synchronized (warmupLock) {
+			return warmupSamples;
+		}
+	}
+
+	/**
+	 * @return merged statistics of all samples after the warm-up
+	 */
+	public OnlineStatistics getStatistics() {
+		OnlineStatistics result = new OnlineStatistics();
+		for (Accumulator accumulator : accumulators) {
+			accumulator.mergeSamplesInto(result);
+		}
+		return result;
+	}
+
+	/**
+	 * @return width of the confidence interval of the mean after the warm-up,
+	 *         NaN if there are not enough batches yet
+	 */
+	public double getConfidenceIntervalWidth() {
+		OnlineStatistics batchMeans = new OnlineStatistics();
+		for (Accumulator accumulator : accumulators) {
+			accumulator.mergeBatchMeansInto(batchMeans);
+		}
+		if (batchMeans.getN() < minBatches) {
+			return Double.NaN;
+		}
+		return batchMeans.getConfidenceIntervalWidth(significance);
+	}
+
+	/**
+	 * @return true, if the confidence interval reached the target width
+	 */
+	public boolean isConverged() {
+		if (!warmedUp) {
+			return false;
+		}
+		double width = getConfidenceIntervalWidth();
+		if (Double.isNaN(width)) {
+			return false;
+		}
+		double target = relativeTarget ? targetWidth * Math.abs(getStatistics().getMean()) : targetWidth;
+		return width <= target;
+	}
+
+	/**
+	 * Blocks until the monitor converged or the timeout elapsed.
+	 * 
+	 * @param timeout
+	 *            maximal time to wait
+	 * @param unit
+	 *            unit of the timeout
+	 * @return true, if converged
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	public boolean awaitConvergence(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		while (!isConverged()) {
+			long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+			if (remainingMillis <= 0) {
+				return false;
+			}
+			Thread.sleep(Math.min(POLL_INTERVAL_MILLIS, remainingMillis));
+		}
+		return true;
+	}
+
+	/**
+	 * Samples and batch means of one thread.
+	 */
+	private final class Accumulator {
+		private final OnlineStatistics samples = new OnlineStatistics();
+		private final OnlineStatistics batchMeans = new OnlineStatistics();
+		private double batchSum;
+		private int batchCount;
+
+		private synchronized void add(double value) {
+			samples.add(value);
+			batchSum += value;
+			batchCount++;
+			if (batchCount == batchSize) {
+				batchMeans.add(batchSum / batchSize);
+				batchSum = 0;
+				batchCount = 0;
+			}
+		}
+
+		private synchronized void mergeSamplesInto(OnlineStatistics target) {
+			target.merge(samples);
+		}
+
+		private synchronized void mergeBatchMeansInto(OnlineStatistics target) {
+			target.merge(batchMeans);
+		}
+	}
+}
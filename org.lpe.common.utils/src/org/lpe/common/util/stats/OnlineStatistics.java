@@ -0,0 +1,159 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.stats;
+
+import org.lpe.common.util.LpeNumericUtils;
+
+/**
+ * Online accumulator of count, mean, variance, minimum and maximum (Welford's
+ * algorithm). Accumulators of different threads can be merged (Chan et al.),
+ * thus, every thread may update its own instance without synchronization.
+ * Instances are not thread-safe.
+ * 
+ */
+public class OnlineStatistics {
+	private long n;
+	private double mean;
+	private double m2;
+	private double min = Double.NaN;
+	private double max = Double.NaN;
+
+	/**
+	 * Adds a value.
+	 * 
+	 * @param value
+	 *            value to add
+	 */
+	public void add(double value) {
+		n++;
+		double delta = value - mean;
+		mean += delta / n;
+		m2 += delta * (value - mean);
+		if (n == 1) {
+			min = value;
+			max = value;
+		} else {
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+		}
+	}
+
+	/**
+	 * Adds all values of another accumulator.
+	 * 
+	 * @param other
+	 *            accumulator to merge; not modified
+	 */
+	public void merge(OnlineStatistics other) {
+		if (other.n == 0) {
+			return;
+		}
+		if (n == 0) {
+			n = other.n;
+			mean = other.mean;
+			m2 = other.m2;
+			min = other.min;
+			max = other.max;
+			return;
+		}
+		long total = n + other.n;
+		double delta = other.mean - mean;
+		mean += delta * other.n / total;
+		m2 += other.m2 + delta * delta * n * other.n / total;
+		n = total;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+	}
+
+	/**
+	 * 
+	 * @return a copy of this accumulator
+	 */
+	public OnlineStatistics copy() {
+		OnlineStatistics copy = new OnlineStatistics();
+		copy.merge(this);
+		return copy;
+	}
+
+	/**
+	 * @return number of values
+	 */
+	public long getN() {
+		return n;
+	}
+
+	/**
+	 * @return mean, 0 if empty
+	 */
+	public double getMean() {
+		return mean;
+	}
+
+	/**
+	 * @return sum of all values
+	 */
+	public double getSum() {
+		return mean * n;
+	}
+
+	/**
+	 * @return sample variance, NaN if less than two values
+	 */
+	public double getVariance() {
+		return n < 2 ? Double.NaN : m2 / (n - 1);
+	}
+
+	/**
+	 * @return sample standard deviation, NaN if less than two values
+	 */
+	public double getStandardDeviation() {
+		return Math.sqrt(getVariance());
+	}
+
+	/**
+	 * @return minimum, NaN if empty
+	 */
+	public double getMin() {
+		return min;
+	}
+
+	/**
+	 * @return maximum, NaN if empty
+	 */
+	public double getMax() {
+		return max;
+	}
+
+	/**
+	 * Calculates the width of the confidence interval around the mean, see
+	 * {@link LpeNumericUtils#getConfidenceIntervalWidth(long, double, double)}.
+	 * 
+	 * @param significance
+	 *            desired significance level
+	 * @return width of the confidence interval, NaN if less than two values
+	 */
+	public double getConfidenceIntervalWidth(double significance) {
+		if (n < 2) {
+			return Double.NaN;
+		}
+		return LpeNumericUtils.getConfidenceIntervalWidth(n, getStandardDeviation(), significance);
+	}
+
+	@Override
+	public String toString() {
+		return "n=" + n + ", mean=" + mean + ", stdDev=" + getStandardDeviation() + ", min=" + min + ", max=" + max;
+	}
+}
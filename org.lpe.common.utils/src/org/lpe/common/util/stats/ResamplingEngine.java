@@ -0,0 +1,340 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.stats;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.lpe.common.util.concurrency.ExecutorRegistry;
+
+/**
+ * Bootstrap and permutation tests on primitive samples. The iterations are
+ * split into blocks which are processed in parallel. Every block draws from
+ * its own {@link SplitMix64} stream derived from the seed and the block index,
+ * thus, results only depend on the seed and not on the thread scheduling.
+ * <p>
+ * Confidence intervals are percentile intervals of the resampled
+ * distribution. P-values use the (count + 1) / (iterations + 1) estimate, so
+ * they are never zero.
+ * 
+ */
+public class ResamplingEngine {
+	/** default number of resampling iterations. */
+	public static final int DEFAULT_ITERATIONS = 10000;
+	private static final int BLOCK_SIZE = 256;
+	private static final String EXECUTOR_NAME = "resampling";
+	private static final int THREADS = Runtime.getRuntime().availableProcessors();
+
+	private final int iterations;
+	private final long seed;
+	private final int parallelism;
+
+	/**
+	 * Creates an engine using all available processors.
+	 * 
+	 * @param iterations
+	 *            number of resampling iterations
+	 * @param seed
+	 *            seed of the random streams
+	 */
+	public ResamplingEngine(int iterations, long seed) {
+		this(iterations, seed, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param iterations
+	 *            number of resampling iterations
+	 * @param seed
+	 *            seed of the random streams
+	 * @param parallelism
+	 *            maximal number of threads
+	 */
+	public ResamplingEngine(int iterations, long seed, int parallelism) {
+		if (iterations < 1 || parallelism < 1) {
+			throw new IllegalArgumentException("Iterations and parallelism must be positive.");
+		}
+		this.iterations = iterations;
+		this.seed = seed;
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Computes a bootstrap confidence interval of a statistic.
+	 * 
+	 * @param sample
+	 *            sample; not modified
+	 * @param statistic
+	 *            statistic to estimate
+	 * @param confidenceLevel
+	 *            confidence level of the interval, e.g. 0.95
+	 * @return observed statistic and its confidence interval; the p-value is
+	 *         NaN
+	 */
+	public ResamplingResult bootstrap(final double[] sample, final SampleStatistic statistic,
+			double confidenceLevel) {
+		checkSample(sample);
+		double observed = statistic.compute(sample.clone(), sample.length);
+		double[] distribution = run(new BlockTask() {
+			@Override
+			public void run(SplitMix64 random, double[] result, int from, int to) {
+				double[] scratch = new double[sample.length];
+				for (int i = from; i < to; i++) {
+					result[i] = resample(sample, scratch, statistic, random);
+				}
+			}
+		});
+		Arrays.sort(distribution);
+		return interval(observed, distribution, confidenceLevel, Double.NaN);
+	}
+
+	/**
+	 * Bootstraps the difference statistic(sample2) - statistic(sample1). The
+	 * two-sided p-value of the null hypothesis "no difference" is derived from
+	 * the share of resampled differences on either side of zero.
+	 * 
+	 * @param sample1
+	 *            first sample, e.g. the baseline; not modified
+	 * @param sample2
+	 *            second sample; not modified
+	 * @param statistic
+	 *            statistic to compare
+	 * @param confidenceLevel
+	 *            confidence level of the interval, e.g. 0.95
+	 * @return observed difference, its confidence interval and the p-value
+	 */
+	public ResamplingResult bootstrapDifference(final double[] sample1, final double[] sample2,
+			final SampleStatistic statistic, double confidenceLevel) {
+		checkSample(sample1);
+		checkSample(sample2);
+		double observed = statistic.compute(sample2.clone(), sample2.length)
+				- statistic.compute(sample1.clone(), sample1.length);
+		double[] distribution = run(new BlockTask() {
+			@Override
+			public void run(SplitMix64 random, double[] result, int from, int to) {
+				double[] scratch1 = new double[sample1.length];
+				double[] scratch2 = new double[sample2.length];
+				for (int i = from; i < to; i++) {
+					result[i] = resample(sample2, scratch2, statistic, random)
+							- resample(sample1, scratch1, statistic, random);
+				}
+			}
+		});
+		Arrays.sort(distribution);
+		int below = countBelowOrEqual(distribution, 0.0);
+		int above = distribution.length - countBelow(distribution, 0.0);
+		double pValue = Math.min(1.0, 2.0 * (Math.min(below, above) + 1) / (distribution.length + 1));
+		return interval(observed, distribution, confidenceLevel, pValue);
+	}
+
+	/**
+	 * Permutation test of the difference statistic(sample2) -
+	 * statistic(sample1). The samples are pooled and randomly split into two
+	 * groups of the original sizes. The p-value is the share of permutations
+	 * whose absolute difference is at least the observed one (two-sided).
+	 * 
+	 * @param sample1
+	 *            first sample; not modified
+	 * @param sample2
+	 *            second sample; not modified
+	 * @param statistic
+	 *            statistic to compare
+	 * @param confidenceLevel
+	 *            confidence level of the returned interval
+	 * @return observed difference, the p-value and, as interval, the
+	 *         acceptance region of the null hypothesis at the confidence level
+	 */
+	public ResamplingResult permutationTest(final double[] sample1, final double[] sample2,
+			final SampleStatistic statistic, double confidenceLevel) {
+		checkSample(sample1);
+		checkSample(sample2);
+		double observed = statistic.compute(sample2.clone(), sample2.length)
+				- statistic.compute(sample1.clone(), sample1.length);
+		final double[] pooled = new double[sample1.length + sample2.length];
+		System.arraycopy(sample1, 0, pooled, 0, sample1.length);
+		System.arraycopy(sample2, 0, pooled, sample1.length, sample2.length);
+		double pooledSum = 0;
+		for (double value : pooled) {
+			pooledSum += value;
+		}
+		final double total = pooledSum;
+		final int n1 = sample1.length;
+		final int n2 = sample2.length;
+
+		double[] distribution = run(new BlockTask() {
+			@Override
+			public void run(SplitMix64 random, double[] result, int from, int to) {
+				double[] values = pooled.clone();
+				double[] group1 = new double[n1];
+				double[] group2 = new double[n2];
+				for (int i = from; i < to; i++) {
+					// partial Fisher-Yates: the first n1 values form group 1
+					double sum1 = 0;
+					for (int j = 0; j < n1; j++) {
+						int k = j + random.nextInt(values.length - j);
+						double tmp = values[j];
+						values[j] = values[k];
+						values[k] = tmp;
+						sum1 += values[j];
+					}
+					if (statistic == SampleStatistic.MEAN) {
+						result[i] = (total - sum1) / n2 - sum1 / n1;
+					} else {
+						System.arraycopy(values, 0, group1, 0, n1);
+						System.arraycopy(values, n1, group2, 0, n2);
+						result[i] = statistic.compute(group2, n2) - statistic.compute(group1, n1);
+					}
+				}
+			}
+		});
+		int extreme = 0;
+		double threshold = Math.abs(observed) * (1 - 1e-12);
+		for (double difference : distribution) {
+			if (Math.abs(difference) >= threshold) {
+				extreme++;
+			}
+		}
+		Arrays.sort(distribution);
+		double pValue = (extreme + 1.0) / (distribution.length + 1.0);
+		return interval(observed, distribution, confidenceLevel, pValue);
+	}
+
+	private static double resample(double[] sample, double[] scratch, SampleStatistic statistic,
+			SplitMix64 random) {
+		int n = sample.length;
+		if (statistic == SampleStatistic.MEAN) {
+			double sum = 0;
+			for (int j = 0; j < n; j++) {
+				sum += sample[random.nextInt(n)];
+			}
+			return sum / n;
+		}
+		for (int j = 0; j < n; j++) {
+			scratch[j] = sample[random.nextInt(n)];
+		}
+		return statistic.compute(scratch, n);
+	}
+
+	private static void checkSample(double[] sample) {
+		if (sample == null || sample.length == 0) {
+			throw new IllegalArgumentException("Samples must not be empty.");
+		}
+	}
+
+	private static ResamplingResult interval(double observed, double[] sorted, double confidenceLevel,
+			double pValue) {
+		if (confidenceLevel <= 0 || confidenceLevel >= 1) {
+			throw new IllegalArgumentException("Confidence level must be in (0, 1).");
+		}
+		double alpha = 1 - confidenceLevel;
+		return new ResamplingResult(observed, quantile(sorted, alpha / 2), quantile(sorted, 1 - alpha / 2),
+				pValue, sorted.length);
+	}
+
+	/**
+	 * Linear interpolation between the closest ranks.
+	 */
+	static double quantile(double[] sorted, double probability) {
+		double position = probability * (sorted.length - 1);
+		int index = (int) Math.floor(position);
+		if (index >= sorted.length - 1) {
+			return sorted[sorted.length - 1];
+		}
+		double fraction = position - index;
+		return sorted[index] + fraction * (sorted[index + 1] - sorted[index]);
+	}
+
+	private static int countBelow(double[] sorted, double value) {
+		int low = 0;
+		int high = sorted.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (sorted[mid] < value) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private static int countBelowOrEqual(double[] sorted, double value) {
+		int low = 0;
+		int high = sorted.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (sorted[mid] <= value) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private double[] run(final BlockTask task) {
+		final double[] distribution = new double[iterations];
+		int numBlocks = (iterations + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		List<Callable<Void>> blocks = new ArrayList<>(numBlocks);
+		for (int block = 0; block < numBlocks; block++) {
+			final int from = block * BLOCK_SIZE;
+			final int to = Math.min(iterations, from + BLOCK_SIZE);
+			final SplitMix64 random = SplitMix64.forStream(seed, block);
+			blocks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					task.run(random, distribution, from, to);
+					return null;
+				}
+			});
+		}
+
+		int threads = Math.min(parallelism, numBlocks);
+		if (threads <= 1) {
+			for (Callable<Void> block : blocks) {
+				try {
+					block.call();
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			}
+			return distribution;
+		}
+		ExecutorService executor = ExecutorRegistry.getInstance().getExecutor(EXECUTOR_NAME, THREADS, THREADS);
+		try {
+			for (Future<Void> future : ExecutorRegistry.invokeAll(executor, blocks, threads)) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+		return distribution;
+	}
+
+	/**
+	 * Computes the resampled statistics of a block of iterations.
+	 */
+	private interface BlockTask {
+		void run(SplitMix64 random, double[] result, int from, int to);
+	}
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.stats;
+
+/**
+ * Result of a resampling test: the observed statistic, its confidence interval
+ * and the p-value of the null hypothesis.
+ * 
+ */
+public class ResamplingResult {
+	private final double observed;
+	private final double lower;
+	private final double upper;
+	private final double pValue;
+	private final int iterations;
+
+	/**
+	 * @param observed
+	 *            statistic of the original sample(s)
+	 * @param lower
+	 *            lower bound of the confidence interval
+	 * @param upper
+	 *            upper bound of the confidence interval
+	 * @param pValue
+	 *            p-value, NaN if not computed
+	 * @param iterations
+	 *            number of resampling iterations
+	 */
+	public ResamplingResult(double observed, double lower, double upper, double pValue, int iterations) {
+		this.observed = observed;
+		this.lower = lower;
+		this.upper = upper;
+		this.pValue = pValue;
+		this.iterations = iterations;
+	}
+
+	/**
+	 * @return statistic of the original sample(s)
+	 */
+	public double getObserved() {
+		return observed;
+	}
+
+	/**
+	 * @return lower bound of the confidence interval
+	 */
+	public double getLower() {
+		return lower;
+	}
+
+	/**
+	 * @return upper bound of the confidence interval
+	 */
+	public double getUpper() {
+		return upper;
+	}
+
+	/**
+	 * @return p-value, NaN if not computed
+	 */
+	public double getPValue() {
+		return pValue;
+	}
+
+	/**
+	 * @return number of resampling iterations
+	 */
+	public int getIterations() {
+		return iterations;
+	}
+
+	/**
+	 * @param significance
+	 *            significance level, e.g. 0.05
+	 * @return true, if the p-value is below the significance level
+	 */
+	public boolean isSignificant(double significance) {
+		return pValue < significance;
+	}
+
+	@Override
+	public String toString() {
+		return "observed=" + observed + ", ci=[" + lower + ", " + upper + "], p=" + pValue + ", iterations="
+				+ iterations;
+	}
+}
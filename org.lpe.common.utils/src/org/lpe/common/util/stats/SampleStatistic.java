@@ -0,0 +1,72 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.stats;
+
+import java.util.Arrays;
+
+/**
+ * Statistic computed on a (resampled) sample.
+ * 
+ */
+public abstract class SampleStatistic {
+
+	/** arithmetic mean. */
+	public static final SampleStatistic MEAN = new SampleStatistic() {
+		@Override
+		public double compute(double[] values, int length) {
+			double sum = 0;
+			for (int i = 0; i < length; i++) {
+				sum += values[i];
+			}
+			return sum / length;
+		}
+	};
+
+	/** median. */
+	public static final SampleStatistic MEDIAN = percentile(50);
+
+	/**
+	 * Creates a percentile statistic (nearest rank).
+	 * 
+	 * @param percentile
+	 *            percentile in (0, 100]
+	 * @return the statistic
+	 */
+	public static SampleStatistic percentile(final double percentile) {
+		if (percentile <= 0 || percentile > 100) {
+			throw new IllegalArgumentException("Percentile must be in (0, 100].");
+		}
+		return new SampleStatistic() {
+			@Override
+			public double compute(double[] values, int length) {
+				Arrays.sort(values, 0, length);
+				int rank = (int) Math.ceil(percentile / 100.0 * length);
+				return values[Math.max(0, rank - 1)];
+			}
+		};
+	}
+
+	/**
+	 * Computes the statistic.
+	 * 
+	 * @param values
+	 *            sample; may be reordered
+	 * @param length
+	 *            number of valid values at the beginning of the array
+	 * @return the statistic
+	 */
+	public abstract double compute(double[] values, int length);
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.stats;
+
+/**
+ * SplitMix64 pseudo random generator. Cheap to create and to split, thus,
+ * every block of resampling iterations gets its own generator whose seed only
+ * depends on the master seed and the block index. Not thread-safe.
+ * 
+ */
+final class SplitMix64 {
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+	private static final double DOUBLE_UNIT = 1.0 / (1L << 53);
+
+	private long state;
+
+	/**
+	 * @param seed
+	 *            initial state
+	 */
+	SplitMix64(long seed) {
+		this.state = seed;
+	}
+
+	/**
+	 * Creates the generator of a stream derived from a master seed.
+	 * 
+	 * @param seed
+	 *            master seed
+	 * @param stream
+	 *            index of the stream
+	 * @return independent generator for the stream
+	 */
+	static SplitMix64 forStream(long seed, long stream) {
+		return new SplitMix64(mix(seed + mix(stream * GOLDEN_GAMMA + GOLDEN_GAMMA)));
+	}
+
+	/**
+	 * 
+	 * @return next pseudo random long
+	 */
+	long nextLong() {
+		state += GOLDEN_GAMMA;
+		return mix(state);
+	}
+
+	/**
+	 * 
+	 * @param bound
+	 *            exclusive upper bound, positive
+	 * @return pseudo random int in [0, bound)
+	 */
+	int nextInt(int bound) {
+		return (int) (((nextLong() >>> 32) * bound) >>> 32);
+	}
+
+	/**
+	 * 
+	 * @return pseudo random double in [0, 1)
+	 */
+	double nextDouble() {
+		return (nextLong() >>> 11) * DOUBLE_UNIT;
+	}
+
+	private static long mix(long value) {
+		long z = value;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
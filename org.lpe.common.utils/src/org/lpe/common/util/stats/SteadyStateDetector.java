@@ -0,0 +1,251 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.stats;
+
+import java.util.Arrays;
+
+/**
+ * Detects the steady-state part of a measured series with the MSER-m rule
+ * (Marginal Standard Error Rule, White 1997). The series is grouped into
+ * batches of m observations (m = 5 by default, i.e. MSER-5). The warm-up
+ * truncation is the number d of leading batches that minimizes the squared
+ * standard error of the mean of the remaining batch means,
+ * <code>sum((z_j - mean)^2) / (k - d)^2</code>. Only truncations of at most
+ * half of the batches are considered; if the optimum lies at this limit, the
+ * series has not settled and the result is not {@link Window#isReliable()
+ * reliable}. A cool-down phase is detected by applying the rule to the
+ * reversed remainder; both truncations are then refined alternately.
+ * <p>
+ * Values can be passed as an array or added one by one while a measurement
+ * is running. Only batch means are stored, so a detector over a stream uses
+ * 1 / m of the memory of the series. Instances are not thread-safe.
+ * 
+ */
+public class SteadyStateDetector {
+	/** default number of observations per batch (MSER-5). */
+	public static final int DEFAULT_BATCH_SIZE = 5;
+
+	private static final int INITIAL_CAPACITY = 64;
+	private static final int MAX_REFINEMENTS = 4;
+
+	private final int batchSize;
+	private double[] batchMeans = new double[INITIAL_CAPACITY];
+	private int numBatches;
+	private double batchSum;
+	private int batchCount;
+
+	/**
+	 * Creates an MSER-5 detector.
+	 */
+	public SteadyStateDetector() {
+		this(DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param batchSize
+	 *            number of observations per batch
+	 */
+	public SteadyStateDetector(int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("Batch size must be positive.");
+		}
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Adds the next value of the series.
+	 * 
+	 * @param value
+	 *            value to add
+	 */
+	public void add(double value) {
+		batchSum += value;
+		if (++batchCount == batchSize) {
+			if (numBatches == batchMeans.length) {
+				batchMeans = Arrays.copyOf(batchMeans, 2 * numBatches);
+			}
+			batchMeans[numBatches++] = batchSum / batchSize;
+			batchSum = 0;
+			batchCount = 0;
+		}
+	}
+
+	/**
+	 * @return the number of added values
+	 */
+	public long getCount() {
+		return (long) numBatches * batchSize + batchCount;
+	}
+
+	/**
+	 * Returns the number of leading values to discard as warm-up, considering
+	 * the complete batches added so far.
+	 * 
+	 * @return the warm-up truncation in values
+	 */
+	public int getWarmupTruncation() {
+		return getWindow().getFrom();
+	}
+
+	/**
+	 * Detects the steady-state window of the values added so far. Values of
+	 * an incomplete last batch are not included in the window.
+	 * 
+	 * @return the window of value indices
+	 */
+	public Window getWindow() {
+		return window(batchMeans, numBatches, batchSize);
+	}
+
+	/**
+	 * Detects the steady-state window of the given series.
+	 * 
+	 * @param values
+	 *            series in measurement order
+	 * @param batchSize
+	 *            number of observations per batch
+	 * @return the window of value indices
+	 */
+	public static Window detectWindow(double[] values, int batchSize) {
+		SteadyStateDetector detector = new SteadyStateDetector(batchSize);
+		for (double value : values) {
+			detector.add(value);
+		}
+		return detector.getWindow();
+	}
+
+	private static Window window(double[] means, int numBatches, int batchSize) {
+		if (numBatches == 0) {
+			return new Window(0, 0, false);
+		}
+		// a cool-down phase inflates the error of every warm-up truncation and
+		// vice versa, thus, both are refined alternately until they are stable
+		int warmup = truncation(means, 0, numBatches, false);
+		int cooldown = truncation(means, warmup, numBatches, true);
+		for (int i = 0; i < MAX_REFINEMENTS; i++) {
+			int refinedWarmup = truncation(means, 0, numBatches - cooldown, false);
+			int refinedCooldown = truncation(means, refinedWarmup, numBatches, true);
+			if (refinedWarmup == warmup && refinedCooldown == cooldown) {
+				break;
+			}
+			warmup = refinedWarmup;
+			cooldown = refinedCooldown;
+		}
+		int remaining = numBatches - cooldown;
+		boolean reliable = warmup < remaining / 2 || remaining < 2;
+		return new Window(warmup * batchSize, (numBatches - cooldown) * batchSize, reliable);
+	}
+
+	/**
+	 * Computes the MSER truncation of the batch means in [from, to).
+	 * 
+	 * @param means
+	 *            batch means
+	 * @param from
+	 *            first batch
+	 * @param to
+	 *            end of the batches, exclusive
+	 * @param reverse
+	 *            if true, the truncation is computed from the end
+	 * @return number of batches to truncate
+	 */
+	private static int truncation(double[] means, int from, int to, boolean reverse) {
+		int k = to - from;
+		if (k < 2) {
+			return 0;
+		}
+		// center the values to avoid cancellation in sum of squares minus
+		// squared sum
+		double reference = 0;
+		for (int i = from; i < to; i++) {
+			reference += means[i];
+		}
+		reference /= k;
+
+		// suffix sums over the remaining batches for each truncation d
+		double[] sum = new double[k + 1];
+		double[] sumOfSquares = new double[k + 1];
+		for (int d = k - 1; d >= 0; d--) {
+			double z = (reverse ? means[to - 1 - d] : means[from + d]) - reference;
+			sum[d] = sum[d + 1] + z;
+			sumOfSquares[d] = sumOfSquares[d + 1] + z * z;
+		}
+
+		int best = 0;
+		double bestValue = Double.POSITIVE_INFINITY;
+		for (int d = 0; d <= k / 2; d++) {
+			int n = k - d;
+			double squares = Math.max(0, sumOfSquares[d] - sum[d] * sum[d] / n);
+			double value = squares / ((double) n * n);
+			if (value < bestValue) {
+				bestValue = value;
+				best = d;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Steady-state window of a series as range of value indices.
+	 */
+	public static final class Window {
+		private final int from;
+		private final int to;
+		private final boolean reliable;
+
+		private Window(int from, int to, boolean reliable) {
+			this.from = from;
+			this.to = to;
+			this.reliable = reliable;
+		}
+
+		/**
+		 * @return the index of the first steady-state value
+		 */
+		public int getFrom() {
+			return from;
+		}
+
+		/**
+		 * @return the index after the last steady-state value
+		 */
+		public int getTo() {
+			return to;
+		}
+
+		/**
+		 * @return the number of steady-state values
+		 */
+		public int getLength() {
+			return to - from;
+		}
+
+		/**
+		 * @return false, if the warm-up truncation reached half of the series,
+		 *         i.e. the series may not have reached a steady state
+		 */
+		public boolean isReliable() {
+			return reliable;
+		}
+
+		@Override
+		public String toString() {
+			return "[" + from + ", " + to + ")" + (reliable ? "" : " (unreliable)");
+		}
+	}
+}
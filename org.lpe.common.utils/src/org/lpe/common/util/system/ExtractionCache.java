@@ -0,0 +1,515 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.system;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.nio.file.attribute.UserPrincipalNotFoundException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.CRC32;
+
+import org.lpe.common.util.LpeFileUtils;
+import org.lpe.common.util.concurrency.ExecutorRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent cache for files extracted from a classpath directory. A cache
+ * entry is keyed by the names, sizes and checksums of the extracted files
+ * (CRC-32 from the JAR directory, modification time for plain directories)
+ * and by operating system and JVM architecture. Thus, an entry is reused
+ * across JVM restarts as long as the classpath content does not change.
+ * 
+ * The cache root is private to the current user: it is named after the user
+ * and, where POSIX permissions are supported, only accessible by its owner.
+ * Before an entry is reused, the size and CRC-32 of each file are verified
+ * against the classpath content; a modified entry is discarded and extracted
+ * again.
+ * 
+ * Only the entries of interest are read from the JAR files, they are written
+ * in parallel into a staging directory that is atomically renamed into place
+ * once complete. Concurrent JVMs extracting the same content simply use
+ * whichever entry has been published first.
+ * 
+ */
+final class ExtractionCache {
+	/** system property overriding the cache root directory. */
+	static final String CACHE_DIR_PROPERTY = "lpe.extraction.cache.dir";
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ExtractionCache.class);
+	private static final String CACHE_DIR_NAME = "lpe-cache";
+	private static final String COMPLETE_MARKER = ".complete";
+	private static final String STAGING_INFIX = ".tmp-";
+	private static final int KEY_LENGTH = 16;
+	private static final long RETENTION_MILLIS = TimeUnit.DAYS.toMillis(7);
+	private static final String EXECUTOR_NAME = "classpath-extraction";
+	private static final int IO_CONCURRENCY = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+	private static final int BUFFER_SIZE = 8192;
+	private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rwx------");
+
+	/**
+	 * private constructor due to utility class.
+	 */
+	private ExtractionCache() {
+	}
+
+	/**
+	 * Returns the cache directory holding the files of the given classpath
+	 * directory, extracting them if necessary.
+	 * 
+	 * @param srcDirName
+	 *            a directory name in the classpath
+	 * @param destName
+	 *            name prefix of the cache entry
+	 * @param classLoader
+	 *            classloader to use
+	 * @return the cache directory; must not be modified
+	 * @throws IOException
+	 *             if extraction fails
+	 * @throws URISyntaxException
+	 *             if a resource URL cannot be resolved
+	 */
+	static File extract(String srcDirName, String destName, ClassLoader classLoader) throws IOException,
+			URISyntaxException {
+		File root = getCacheRoot();
+		List<JarFile> jars = new ArrayList<>();
+		try {
+			Map<String, Source> sources = listSources(srcDirName, classLoader, jars);
+			String entryName = destName + "-" + computeKey(sources);
+			File entry = new File(root, entryName);
+			prepareRoot(root);
+			if (new File(entry, COMPLETE_MARKER).exists()) {
+				if (isIntact(entry, sources)) {
+					LOGGER.debug("Reusing extracted files in {}.", entry);
+					touch(entry);
+					return entry;
+				}
+				LOGGER.warn("Discarding modified cache entry {}.", entry);
+				discard(root, entry);
+			}
+
+			File staging = new File(root, entryName + STAGING_INFIX + System.nanoTime());
+			if (!staging.mkdir()) {
+				throw new IOException("Could not create directory " + staging.getAbsolutePath());
+			}
+			try {
+				write(sources, staging);
+				if (!new File(staging, COMPLETE_MARKER).createNewFile()) {
+					throw new IOException("Could not complete " + staging.getAbsolutePath());
+				}
+				Files.move(staging.toPath(), entry.toPath(), StandardCopyOption.ATOMIC_MOVE);
+				LOGGER.debug("Extracted {} files to {}.", sources.size(), entry);
+			} catch (IOException e) {
+				if (!new File(entry, COMPLETE_MARKER).exists()) {
+					throw e;
+				}
+				// another JVM has published the same content in the meantime
+			} finally {
+				if (staging.exists()) {
+					LpeFileUtils.removeDir(staging.getAbsolutePath());
+				}
+			}
+			prune(root, destName + "-", entryName);
+			return entry;
+		} finally {
+			closeAll(jars);
+		}
+	}
+
+	/**
+	 * Extracts the files of the given classpath directory into the given
+	 * directory, bypassing the cache.
+	 * 
+	 * @param srcDirName
+	 *            a directory name in the classpath
+	 * @param classLoader
+	 *            classloader to use
+	 * @param targetDir
+	 *            existing target directory
+	 * @throws IOException
+	 *             if extraction fails
+	 * @throws URISyntaxException
+	 *             if a resource URL cannot be resolved
+	 */
+	static void extractTo(String srcDirName, ClassLoader classLoader, File targetDir) throws IOException,
+			URISyntaxException {
+		List<JarFile> jars = new ArrayList<>();
+		try {
+			write(listSources(srcDirName, classLoader, jars), targetDir);
+		} finally {
+			closeAll(jars);
+		}
+	}
+
+	/**
+	 * @return the root directory of the cache
+	 */
+	static File getCacheRoot() {
+		String dir = System.getProperty(CACHE_DIR_PROPERTY);
+		if (dir != null && !dir.trim().isEmpty()) {
+			return new File(dir);
+		}
+		String user = String.valueOf(System.getProperty("user.name")).replaceAll("[^A-Za-z0-9._-]", "_");
+		return new File(LpeSystemUtils.getSystemTempDir(), CACHE_DIR_NAME + "-" + user);
+	}
+
+	/**
+	 * Creates the cache root if necessary and restricts it to the current
+	 * user. Fails if the root belongs to another user.
+	 */
+	private static void prepareRoot(File root) throws IOException {
+		Path path = root.toPath();
+		boolean posix = path.getFileSystem().supportedFileAttributeViews().contains("posix");
+		if (!root.isDirectory()) {
+			if (posix) {
+				try {
+					Files.createDirectories(path, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+				} catch (FileAlreadyExistsException e) {
+					// created concurrently, checked below
+				}
+			} else if (!root.mkdirs() && !root.isDirectory()) {
+				throw new IOException("Could not create directory " + root.getAbsolutePath());
+			}
+		}
+		if (!posix) {
+			return;
+		}
+		UserPrincipal owner = Files.getOwner(path);
+		try {
+			UserPrincipal user = path.getFileSystem().getUserPrincipalLookupService()
+					.lookupPrincipalByName(System.getProperty("user.name"));
+			if (!owner.equals(user)) {
+				throw new IOException("Cache directory " + root.getAbsolutePath() + " is owned by " + owner.getName()
+						+ ", not by " + user.getName() + ".");
+			}
+		} catch (UserPrincipalNotFoundException e) {
+			LOGGER.debug("Could not look up the current user: {}", e.getMessage());
+		}
+		if (!Files.getPosixFilePermissions(path).equals(OWNER_ONLY)) {
+			Files.setPosixFilePermissions(path, OWNER_ONLY);
+		}
+	}
+
+	/**
+	 * Checks that the entry contains every source file with the expected size
+	 * and CRC-32.
+	 */
+	private static boolean isIntact(File entry, Map<String, Source> sources) {
+		try {
+			for (Map.Entry<String, Source> source : sources.entrySet()) {
+				File file = new File(entry, source.getKey());
+				if (!file.isFile() || file.length() != source.getValue().size()) {
+					return false;
+				}
+				try (InputStream in = new FileInputStream(file)) {
+					if (crc(in) != source.getValue().crc()) {
+						return false;
+					}
+				}
+			}
+			return true;
+		} catch (IOException e) {
+			LOGGER.debug("Could not verify cache entry {}: {}", entry, e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Moves the entry out of the way and removes it. The renamed directory is
+	 * pruned later if it cannot be removed now.
+	 */
+	private static void discard(File root, File entry) {
+		File stale = new File(root, entry.getName() + STAGING_INFIX + System.nanoTime());
+		try {
+			Files.move(entry.toPath(), stale.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			LpeFileUtils.removeDir(stale.getAbsolutePath());
+		} catch (IOException e) {
+			// already discarded by another JVM or removed by prune later
+			LOGGER.debug("Could not remove cache entry {}: {}", entry, e.getMessage());
+		}
+	}
+
+	private static long crc(InputStream in) throws IOException {
+		CRC32 crc = new CRC32();
+		byte[] buffer = new byte[BUFFER_SIZE];
+		int read;
+		while ((read = in.read(buffer)) >= 0) {
+			crc.update(buffer, 0, read);
+		}
+		return crc.getValue();
+	}
+
+	/**
+	 * Collects the files directly contained in the classpath directory. Files
+	 * of later classpath entries replace files with the same name of earlier
+	 * ones.
+	 */
+	private static Map<String, Source> listSources(String srcDirName, ClassLoader classLoader, List<JarFile> jars)
+			throws IOException, URISyntaxException {
+		Map<String, Source> sources = new LinkedHashMap<>();
+		String prefix = srcDirName.endsWith("/") ? srcDirName : srcDirName + "/";
+		Enumeration<URL> urls = classLoader.getResources(srcDirName);
+		while (urls.hasMoreElements()) {
+			URL url = urls.nextElement();
+			if (url.getProtocol().equals("bundleresource")) {
+				continue;
+			} else if (url.getProtocol().equals("jar")) {
+				String path = url.getFile();
+				if (path.contains("!")) {
+					path = path.substring(0, path.indexOf('!'));
+				}
+				File jarFile = new File(new URI(path));
+				if (!jarFile.isFile()) {
+					LOGGER.warn("Jar {} not found, could not extract it.", jarFile);
+					continue;
+				}
+				JarFile jar = new JarFile(jarFile);
+				jars.add(jar);
+				Enumeration<JarEntry> entries = jar.entries();
+				while (entries.hasMoreElements()) {
+					JarEntry entry = entries.nextElement();
+					String name = entry.getName();
+					if (entry.isDirectory() || !name.startsWith(prefix) || name.indexOf('/', prefix.length()) >= 0) {
+						continue;
+					}
+					String fileName = name.substring(prefix.length());
+					sources.remove(fileName);
+					sources.put(fileName, new JarSource(jar, entry));
+				}
+			} else {
+				File[] files = new File(url.toURI()).listFiles();
+				if (files == null) {
+					continue;
+				}
+				for (File file : files) {
+					if (file.isFile()) {
+						sources.remove(file.getName());
+						sources.put(file.getName(), new FileSource(file));
+					}
+				}
+			}
+		}
+		return sources;
+	}
+
+	private static String computeKey(Map<String, Source> sources) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			update(digest, System.getProperty("os.name"));
+			update(digest, System.getProperty("os.arch"));
+			update(digest, System.getProperty("sun.arch.data.model"));
+			for (Map.Entry<String, Source> source : sources.entrySet()) {
+				update(digest, source.getKey());
+				update(digest, Long.toString(source.getValue().size()));
+				update(digest, Long.toString(source.getValue().checksum()));
+			}
+			StringBuilder key = new StringBuilder();
+			for (byte b : digest.digest()) {
+				key.append(String.format("%02x", b & 0xFF));
+			}
+			return key.substring(0, KEY_LENGTH);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static void update(MessageDigest digest, String value) {
+		digest.update(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+	}
+
+	private static void write(Map<String, Source> sources, final File targetDir) throws IOException {
+		if (sources.isEmpty()) {
+			return;
+		}
+		ExecutorService executor = ExecutorRegistry.getInstance().getExecutor(EXECUTOR_NAME);
+		try {
+			List<Callable<Void>> tasks = new ArrayList<>(sources.size());
+			for (final Map.Entry<String, Source> source : sources.entrySet()) {
+				tasks.add(new Callable<Void>() {
+					@Override
+					public Void call() throws IOException {
+						try (InputStream in = source.getValue().open()) {
+							Files.copy(in, new File(targetDir, source.getKey()).toPath(),
+									StandardCopyOption.REPLACE_EXISTING);
+						}
+						return null;
+					}
+				});
+			}
+			for (Future<Void> future : ExecutorRegistry.invokeAll(executor, tasks, IO_CONCURRENCY)) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while extracting files.", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	/**
+	 * Removes entries with the same prefix and abandoned staging directories
+	 * that have not been used within the retention period.
+	 */
+	private static void prune(File root, String prefix, String current) {
+		File[] entries = root.listFiles();
+		if (entries == null) {
+			return;
+		}
+		long threshold = System.currentTimeMillis() - RETENTION_MILLIS;
+		for (File entry : entries) {
+			if (entry.getName().startsWith(prefix) && !entry.getName().equals(current)
+					&& entry.lastModified() < threshold) {
+				try {
+					LpeFileUtils.removeDir(entry.getAbsolutePath());
+				} catch (IOException e) {
+					LOGGER.debug("Could not remove outdated cache entry {}: {}", entry, e.getMessage());
+				}
+			}
+		}
+	}
+
+	private static void touch(File entry) {
+		if (!entry.setLastModified(System.currentTimeMillis())) {
+			LOGGER.debug("Could not update modification time of {}.", entry);
+		}
+	}
+
+	private static void closeAll(List<JarFile> jars) {
+		for (JarFile jar : jars) {
+			try {
+				jar.close();
+			} catch (IOException e) {
+				LOGGER.debug("Could not close {}: {}", jar.getName(), e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * A file to extract.
+	 */
+	private interface Source {
+		long size();
+
+		long checksum();
+
+		long crc() throws IOException;
+
+		InputStream open() throws IOException;
+	}
+
+	/**
+	 * Entry of a JAR file.
+	 */
+	private static final class JarSource implements Source {
+		private final JarFile jar;
+		private final JarEntry entry;
+
+		private JarSource(JarFile jar, JarEntry entry) {
+			this.jar = jar;
+			this.entry = entry;
+		}
+
+		@Override
+		public long size() {
+			return entry.getSize();
+		}
+
+		@Override
+		public long checksum() {
+			return entry.getCrc();
+		}
+
+		@Override
+		public long crc() throws IOException {
+			if (entry.getCrc() != -1) {
+				return entry.getCrc();
+			}
+			try (InputStream in = open()) {
+				return ExtractionCache.crc(in);
+			}
+		}
+
+		@Override
+		public InputStream open() throws IOException {
+			return jar.getInputStream(entry);
+		}
+	}
+
+	/**
+	 * Plain file in a classpath directory.
+	 */
+	private static final class FileSource implements Source {
+		private final File file;
+
+		private FileSource(File file) {
+			this.file = file;
+		}
+
+		@Override
+		public long size() {
+			return file.length();
+		}
+
+		@Override
+		public long checksum() {
+			return file.lastModified();
+		}
+
+		@Override
+		public long crc() throws IOException {
+			try (InputStream in = open()) {
+				return ExtractionCache.crc(in);
+			}
+		}
+
+		@Override
+		public InputStream open() throws IOException {
+			return new FileInputStream(file);
+		}
+	}
+}
@@ -29,10 +29,7 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLDecoder;
 import java.util.Enumeration;
-import java.util.Iterator;
 import java.util.Locale;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
@@ -41,6 +38,7 @@ import org.apache.commons.io.FileUtils;
 import org.lpe.common.util.LpeFileUtils;
 import org.lpe.common.util.LpeStreamUtils;
 import org.lpe.common.util.LpeStringUtils;
+import org.lpe.common.util.concurrency.ExecutorRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -59,7 +57,7 @@ public final class LpeSystemUtils {
 
 	private static final String KILLSERVICE_CMD_WINDOWS = "net stop ";
 
-	private static ExecutorService threadPool;
+	private static final String DEFAULT_EXECUTOR = "lpe-tasks";
 
 	private static Logger logger = LoggerFactory.getLogger(LpeSystemUtils.class);
 
@@ -99,26 +97,46 @@ public final class LpeSystemUtils {
 	}
 
 	/**
-	 * Submits a task for concurrent execution.
+	 * Submits a task for concurrent execution on the shared default executor.
 	 * 
 	 * @param command
 	 *            runnable to execute
 	 * @return a future object representing the concurrent task
 	 */
 	public static Future<?> submitTask(Runnable command) {
-		return getThreadPool().submit(command);
+		return submitTask(DEFAULT_EXECUTOR, command);
 	}
 
 	/**
-	 * retrieves a cached thread pool
+	 * Submits a mainly waiting task for concurrent execution on the named
+	 * executor of the {@link ExecutorRegistry}.
 	 * 
-	 * @return thread pool
+	 * @param executorName
+	 *            name of the executor, usually the name of the subsystem
+	 * @param command
+	 *            runnable to execute
+	 * @return a future object representing the concurrent task
 	 */
-	private static synchronized ExecutorService getThreadPool() {
-		if (threadPool == null) {
-			threadPool = Executors.newCachedThreadPool();
-		}
-		return threadPool;
+	public static Future<?> submitTask(String executorName, Runnable command) {
+		return submitTask(executorName, command, true);
+	}
+
+	/**
+	 * Submits a mainly waiting task for concurrent execution on the named
+	 * executor of the {@link ExecutorRegistry}.
+	 * 
+	 * @param executorName
+	 *            name of the executor, usually the name of the subsystem
+	 * @param command
+	 *            runnable to execute
+	 * @param daemon
+	 *            false if the executor's threads shall keep the JVM alive
+	 *            while running the task; only applied when the executor is
+	 *            created
+	 * @return a future object representing the concurrent task
+	 */
+	public static Future<?> submitTask(String executorName, Runnable command, boolean daemon) {
+		return ExecutorRegistry.getInstance().getExecutor(executorName, daemon).submit(command);
 	}
 
 	/**
@@ -294,6 +312,14 @@ public final class LpeSystemUtils {
 
 	}
 
+	/**
+	 * 
+	 * @return true, if {@link #loadNativeLibraries()} has been completed
+	 */
+	public static boolean areNativeLibrariesLoaded() {
+		return nativeLibrariesLoaded;
+	}
+
 	/**
 	 * Returns the system temp directory.
 	 * 
@@ -308,14 +334,18 @@ public final class LpeSystemUtils {
 	}
 
 	/**
-	 * Extracts files from a directory in the classpath to a temp directory
-	 * (with a time stamp) and returns the File instance of the destination
-	 * directory.
+	 * Extracts files from a directory in the classpath to a persistent cache
+	 * directory and returns the name of that directory. The cache entry is
+	 * keyed by the checksums of the files and by the OS and JVM architecture,
+	 * so that it is reused across JVM restarts until the classpath content
+	 * changes. The directory is shared and must not be modified or deleted by
+	 * the caller. The cache location can be changed by the system property
+	 * <code>lpe.extraction.cache.dir</code>.
 	 * 
 	 * @param srcDirName
 	 *            a directory name in the classpath
 	 * @param destName
-	 *            the name of the destination folder in the temp folder
+	 *            the name prefix of the cache directory
 	 * @param fileType
 	 *            a string describing the file types, if a log message is needed
 	 * @param classLoader
@@ -328,16 +358,22 @@ public final class LpeSystemUtils {
 	 * @throws URISyntaxException
 	 *             ...
 	 * 
-	 * @see #extractFilesFromClasspath(String, String, String, boolean)
+	 * @see #extractFilesFromClasspath(String, String, String, ClassLoader,
+	 *      boolean)
 	 */
 	public static String extractFilesFromClasspath(String srcDirName, String destName, String fileType,
 			ClassLoader classLoader) throws IOException, URISyntaxException {
-		return extractFilesFromClasspath(srcDirName, destName, fileType, classLoader, true);
+		if (fileType != null && fileType.trim().length() > 0) {
+			logger.debug("Loading {} from the extraction cache...", fileType);
+		}
+		return ExtractionCache.extract(srcDirName, destName, classLoader).getAbsolutePath();
 	}
 
 	/**
 	 * Extracts files from a directory in the classpath to a temp directory and
-	 * returns the File instance of the destination directory.
+	 * returns the File instance of the destination directory. Unlike
+	 * {@link #extractFilesFromClasspath(String, String, String, ClassLoader)},
+	 * the files are always extracted and the directory is owned by the caller.
 	 * 
 	 * @param srcDirName
 	 *            a directory name in the classpath
@@ -384,63 +420,7 @@ public final class LpeSystemUtils {
 		}
 
 		logger.debug("Copying {} to {}.", fileType, targetDirName);
-
-		Enumeration<URL> urls = classloader.getResources(srcDirName); // getSystemResources(srcDirName);
-
-		if (urls.hasMoreElements()) {
-			logger.debug("There are some urls for resource '{}' provided by the classloader.", srcDirName);
-		} else {
-			logger.debug("There are no urls for resource '{}' provided by the classloader.", srcDirName);
-		}
-
-		while (urls.hasMoreElements()) {
-
-			final URL url = urls.nextElement();
-
-			if (fileType != null && fileType.trim().length() > 0) {
-				logger.debug("Loading {} from {}...", fileType, url);
-			}
-
-			Iterator<File> libs = null;
-			String unpackedJarDir = null;
-			if (url.getProtocol().equals("bundleresource")) {
-				continue;
-			} else if (url.getProtocol().equals("jar")) {
-				try {
-					unpackedJarDir = LpeFileUtils.concatFileName(targetDirName, "temp");
-
-					extractJARtoTemp(url, srcDirName, unpackedJarDir);
-
-					final String unpackedNativeDir = LpeFileUtils.concatFileName(unpackedJarDir, srcDirName);
-					final File unpackedNativeDirFile = new File(unpackedNativeDir);
-					libs = FileUtils.iterateFiles(unpackedNativeDirFile, null, false);
-				} catch (IllegalArgumentException iae) {
-					// ignore
-					LOGGER.warn("Jar not found, could not extract jar. {}", iae);
-
-				}
-			} else {
-				// File nativeLibDir = new
-				// File(url.toString().replaceAll("\\\\", "/"));
-				File nativeLibDir = new File(url.toURI());
-				libs = FileUtils.iterateFiles(nativeLibDir, null, false);
-			}
-
-			while (libs != null && libs.hasNext()) {
-				final File libFile = libs.next();
-				logger.debug("Copying resouce file {}...", libFile.getName());
-				FileUtils.copyFileToDirectory(libFile, targetDirFile);
-			}
-
-			// clean up temp dir
-			if (unpackedJarDir != null) {
-				File dirToRemove = new File(unpackedJarDir);
-				if (dirToRemove.isDirectory() && dirToRemove.exists()) {
-					LpeFileUtils.removeDir(unpackedJarDir);
-				}
-			}
-
-		}
+		ExtractionCache.extractTo(srcDirName, classloader, targetDirFile);
 
 		return targetDirName;
 	}
@@ -29,6 +29,10 @@ import org.glassfish.grizzly.http.server.HttpServer;
 import org.glassfish.grizzly.http.server.NetworkListener;
 import org.glassfish.grizzly.http.server.ServerConfiguration;
 import org.glassfish.grizzly.threadpool.GrizzlyExecutorService;
+import org.glassfish.grizzly.threadpool.ThreadPoolConfig;
+import org.lpe.common.util.web.metrics.InstrumentedHttpHandler;
+import org.lpe.common.util.web.metrics.MetricsResourceFilterFactory;
+import org.lpe.common.util.web.metrics.RequestMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -52,6 +56,7 @@ public final class LpeWebUtils {
 	private static final int KILO = 1000;
 	private static final int DEFAULT_PORT = 80;
 	private static final String JACKSON_PACKAGE = "org.codehaus.jackson.jaxrs";
+	private static final String METRICS_PACKAGE = "org.lpe.common.util.web.metrics";
 	private static final Logger LOGGER = LoggerFactory.getLogger(LpeWebUtils.class);
 	private static final String HTTP_STR = "http://";
 
@@ -113,7 +118,9 @@ public final class LpeWebUtils {
 
 	/**
 	 * Starts a Web server. The server is bound to the given host and port. The
-	 * servicePackages are searched for Jersey services.
+	 * servicePackages are searched for Jersey services. All requests are
+	 * measured by {@link RequestMetrics} and exposed under the path
+	 * <code>metrics</code>.
 	 * 
 	 * @param host
 	 *            host to bind the server to
@@ -131,14 +138,17 @@ public final class LpeWebUtils {
 	 */
 	public static HttpServer startHttpServer(String host, int port, String basePath, String[] servicePackages,
 			Integer minNumWorker, Integer maxNumWorker) {
-		String[] packages = new String[servicePackages.length + 1];
+		String[] packages = new String[servicePackages.length + 2];
 		packages[0] = JACKSON_PACKAGE;
+		packages[1] = METRICS_PACKAGE;
 		for (int i = 0; i < servicePackages.length; i++) {
-			packages[i + 1] = servicePackages[i];
+			packages[i + 2] = servicePackages[i];
 		}
 
 		ResourceConfig config = new PackagesResourceConfig(packages);
 		config.getFeatures().put(JSONConfiguration.FEATURE_POJO_MAPPING, true);
+		config.getProperties().put(ResourceConfig.PROPERTY_RESOURCE_FILTER_FACTORIES,
+				MetricsResourceFilterFactory.class.getName());
 		HttpServer server = null;
 		URI uri = UriBuilder.fromUri(HTTP_STR + host + "/").port(port).path(basePath).build();
 		try {
@@ -157,7 +167,8 @@ public final class LpeWebUtils {
 
 	private static HttpServer createHttpServer(URI uri, ResourceConfig config, Integer minNumWorker,
 			Integer maxNumWorker) throws IOException {
-		final HttpHandler processor = ContainerFactory.createContainer(HttpHandler.class, config);
+		final HttpHandler processor = new InstrumentedHttpHandler(ContainerFactory.createContainer(
+				HttpHandler.class, config));
 
 		final String scheme = uri.getScheme();
 		if (!scheme.equalsIgnoreCase("http")) {
@@ -185,8 +196,9 @@ public final class LpeWebUtils {
 		if (maxNumWorker != null && maxNumWorker > 0) {
 			listener.getTransport().getWorkerThreadPoolConfig().setMaxPoolSize(maxNumWorker);
 		}
-		GrizzlyExecutorService ges = GrizzlyExecutorService.createInstance(listener.getTransport()
-				.getWorkerThreadPoolConfig());
+		ThreadPoolConfig workerConfig = listener.getTransport().getWorkerThreadPoolConfig();
+		RequestMetrics.getInstance().registerWorkerPool(host + ":" + port, workerConfig);
+		GrizzlyExecutorService ges = GrizzlyExecutorService.createInstance(workerConfig);
 		listener.getTransport().setWorkerThreadPool(ges);
 		listener.getKeepAlive().setIdleTimeoutInSeconds(TIMEOUT_SECONDS);
 		listener.getTransport().setConnectionTimeout(TIMEOUT_SECONDS * KILO);
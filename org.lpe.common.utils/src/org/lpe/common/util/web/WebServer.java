@@ -136,8 +136,9 @@ public final class WebServer {
 		server = LpeWebUtils.startHttpServer(host, port, basePath, servicePackages.toArray(new String[0]),
 				minNumWorker, maxNumWorker);
 		LOGGER.info("Web-Server started on port {}", port);
-		// wait for shutdown thread
-		LpeSystemUtils.submitTask(new Runnable() {
+		// wait for shutdown thread; it must not be a daemon, as the Grizzly
+		// workers are daemons and the server would end with the main thread
+		LpeSystemUtils.submitTask("webserver", new Runnable() {
 
 			@Override
 			public void run() {
@@ -159,7 +160,7 @@ public final class WebServer {
 				LOGGER.info("Web-Server terminated!");
 				System.exit(0);
 			}
-		});
+		}, false);
 	}
 
 	/**
@@ -0,0 +1,160 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.web.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Request counters, in-flight gauge and latency histogram of a single REST
+ * endpoint. All operations are lock-free.
+ * 
+ */
+public class EndpointMetrics implements EndpointMetricsMBean {
+	private static final double MICROS_PER_MILLI = 1000.0;
+	private static final double MEDIAN = 50.0;
+	private static final double P99 = 99.0;
+	private static final int NUM_STATUS_CLASSES = 6;
+	private static final int STATUS_CLASS_DIVISOR = 100;
+	private static final int SERVER_ERROR_STATUS = 500;
+
+	private final String httpMethod;
+	private final String path;
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong errors = new AtomicLong();
+	private final AtomicLong inFlight = new AtomicLong();
+	private final AtomicLongArray statusClasses = new AtomicLongArray(NUM_STATUS_CLASSES);
+	private final LatencyHistogram latency = new LatencyHistogram();
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param httpMethod
+	 *            HTTP method of the endpoint
+	 * @param path
+	 *            path template of the endpoint
+	 */
+	public EndpointMetrics(String httpMethod, String path) {
+		this.httpMethod = httpMethod;
+		this.path = path;
+	}
+
+	/**
+	 * Marks the start of a request.
+	 */
+	public void enter() {
+		inFlight.incrementAndGet();
+	}
+
+	/**
+	 * Marks the end of a request previously announced by {@link #enter()}.
+	 * 
+	 * @param durationNanos
+	 *            duration of the request in nanoseconds
+	 * @param status
+	 *            HTTP status code of the response
+	 * @param failed
+	 *            true, if processing the request threw an exception
+	 */
+	public void exit(long durationNanos, int status, boolean failed) {
+		inFlight.decrementAndGet();
+		requests.incrementAndGet();
+		latency.record(durationNanos);
+		int statusClass = status / STATUS_CLASS_DIVISOR;
+		if (statusClass > 0 && statusClass < NUM_STATUS_CLASSES) {
+			statusClasses.incrementAndGet(statusClass);
+		}
+		if (failed || status >= SERVER_ERROR_STATUS) {
+			errors.incrementAndGet();
+		}
+	}
+
+	@Override
+	public String getHttpMethod() {
+		return httpMethod;
+	}
+
+	@Override
+	public String getPath() {
+		return path;
+	}
+
+	@Override
+	public long getRequestCount() {
+		return requests.get();
+	}
+
+	@Override
+	public long getErrorCount() {
+		return errors.get();
+	}
+
+	@Override
+	public long getInFlight() {
+		return inFlight.get();
+	}
+
+	/**
+	 * 
+	 * @param statusClass
+	 *            first digit of the HTTP status code (1 to 5)
+	 * @return number of responses with a status code of the given class
+	 */
+	public long getStatusClassCount(int statusClass) {
+		if (statusClass <= 0 || statusClass >= NUM_STATUS_CLASSES) {
+			throw new IllegalArgumentException("Invalid HTTP status class: " + statusClass);
+		}
+		return statusClasses.get(statusClass);
+	}
+
+	/**
+	 * 
+	 * @return the latency histogram of this endpoint
+	 */
+	public LatencyHistogram getLatency() {
+		return latency;
+	}
+
+	@Override
+	public double getMeanLatencyMillis() {
+		return latency.getMeanMicros() / MICROS_PER_MILLI;
+	}
+
+	@Override
+	public double getMedianLatencyMillis() {
+		return latency.getValueAtPercentile(MEDIAN) / MICROS_PER_MILLI;
+	}
+
+	@Override
+	public double getP99LatencyMillis() {
+		return latency.getValueAtPercentile(P99) / MICROS_PER_MILLI;
+	}
+
+	@Override
+	public double getMaxLatencyMillis() {
+		return latency.getMaxMicros() / MICROS_PER_MILLI;
+	}
+
+	@Override
+	public void reset() {
+		requests.set(0);
+		errors.set(0);
+		for (int i = 0; i < NUM_STATUS_CLASSES; i++) {
+			statusClasses.set(i, 0);
+		}
+		latency.reset();
+	}
+}
@@ -0,0 +1,83 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.web.metrics;
+
+/**
+ * JMX view of the metrics of a single REST endpoint.
+ * 
+ */
+public interface EndpointMetricsMBean {
+
+	/**
+	 * 
+	 * @return HTTP method of the endpoint
+	 */
+	String getHttpMethod();
+
+	/**
+	 * 
+	 * @return path template of the endpoint
+	 */
+	String getPath();
+
+	/**
+	 * 
+	 * @return number of completed requests
+	 */
+	long getRequestCount();
+
+	/**
+	 * 
+	 * @return number of requests answered with a server error or failed with
+	 *         an exception
+	 */
+	long getErrorCount();
+
+	/**
+	 * 
+	 * @return number of requests currently being processed
+	 */
+	long getInFlight();
+
+	/**
+	 * 
+	 * @return mean latency in milliseconds
+	 */
+	double getMeanLatencyMillis();
+
+	/**
+	 * 
+	 * @return median latency in milliseconds
+	 */
+	double getMedianLatencyMillis();
+
+	/**
+	 * 
+	 * @return 99th percentile of the latency in milliseconds
+	 */
+	double getP99LatencyMillis();
+
+	/**
+	 * 
+	 * @return maximal latency in milliseconds
+	 */
+	double getMaxLatencyMillis();
+
+	/**
+	 * Resets all counters except the in-flight gauge.
+	 */
+	void reset();
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.web.metrics;
+
+import org.glassfish.grizzly.http.server.HttpHandler;
+import org.glassfish.grizzly.http.server.Request;
+import org.glassfish.grizzly.http.server.Response;
+
+/**
+ * Wraps the Jersey container and measures the latency of every request,
+ * including unmatched and failed requests. The endpoint of a request is
+ * determined by the {@link MetricsResourceFilterFactory}.
+ * 
+ */
+public class InstrumentedHttpHandler extends HttpHandler {
+	private final HttpHandler delegate;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param delegate
+	 *            handler to instrument
+	 */
+	public InstrumentedHttpHandler(HttpHandler delegate) {
+		super(delegate.getName());
+		this.delegate = delegate;
+	}
+
+	@Override
+	public void service(Request request, Response response) throws Exception {
+		RequestMetrics metrics = RequestMetrics.getInstance();
+		metrics.beginRequest();
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			delegate.service(request, response);
+			failed = false;
+		} finally {
+			metrics.endRequest(System.nanoTime() - start, response.getStatus(), failed);
+		}
+	}
+
+	@Override
+	public void start() {
+		delegate.start();
+	}
+
+	@Override
+	public void destroy() {
+		delegate.destroy();
+	}
+}
@@ -0,0 +1,237 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.web.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with log-linear buckets (HDR style). Values are
+ * recorded in microseconds. Each power of two is split into
+ * {@link #SUB_BUCKETS} linear sub-buckets, which bounds the relative error of
+ * a reported value to 1 / {@link #SUB_BUCKETS}. Values above the covered
+ * range (about 134 seconds) are collected in the last bucket. Histograms can
+ * be merged, e.g. to combine the histograms of several time buckets.
+ * 
+ */
+public class LatencyHistogram {
+	/** number of linear sub-buckets per power of two. */
+	public static final int SUB_BUCKETS = 8;
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int MAX_EXPONENT = 27;
+	private static final int NUM_BUCKETS = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong sumMicros = new AtomicLong();
+	private final AtomicLong maxMicros = new AtomicLong();
+
+	/**
+	 * Records a duration.
+	 *
+	 * @param durationNanos
+	 *            duration in nanoseconds
+	 */
+	public void record(long durationNanos) {
+		long micros = Math.max(0L, TimeUnit.NANOSECONDS.toMicros(durationNanos));
+		buckets.incrementAndGet(bucketIndex(micros));
+		count.incrementAndGet();
+		sumMicros.addAndGet(micros);
+		long currentMax = maxMicros.get();
+		while (micros > currentMax && !maxMicros.compareAndSet(currentMax, micros)) {
+			currentMax = maxMicros.get();
+		}
+	}
+
+	/**
+	 * Adds all values of the given histogram to this histogram. Values
+	 * recorded concurrently into the other histogram may or may not be added.
+	 *
+	 * @param other
+	 *            histogram to merge
+	 */
+	public void merge(LatencyHistogram other) {
+		for (int i = 0; i < NUM_BUCKETS; i++) {
+			long bucketCount = other.buckets.get(i);
+			if (bucketCount != 0) {
+				buckets.addAndGet(i, bucketCount);
+			}
+		}
+		count.addAndGet(other.count.get());
+		sumMicros.addAndGet(other.sumMicros.get());
+		long otherMax = other.maxMicros.get();
+		long currentMax = maxMicros.get();
+		while (otherMax > currentMax && !maxMicros.compareAndSet(currentMax, otherMax)) {
+			currentMax = maxMicros.get();
+		}
+	}
+
+	/**
+	 *
+	 * @return a copy of this histogram
+	 */
+	public LatencyHistogram copy() {
+		LatencyHistogram copy = new LatencyHistogram();
+		copy.merge(this);
+		return copy;
+	}
+
+	/**
+	 *
+	 * @return number of recorded values
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 *
+	 * @return sum of all recorded values in microseconds
+	 */
+	public long getSumMicros() {
+		return sumMicros.get();
+	}
+
+	/**
+	 *
+	 * @return largest recorded value in microseconds
+	 */
+	public long getMaxMicros() {
+		return maxMicros.get();
+	}
+
+	/**
+	 *
+	 * @return mean of all recorded values in microseconds, 0 if empty
+	 */
+	public double getMeanMicros() {
+		long n = count.get();
+		return n == 0 ? 0.0 : (double) sumMicros.get() / (double) n;
+	}
+
+	/**
+	 * Returns an upper estimate of the value at the given percentile.
+	 *
+	 * @param percentile
+	 *            percentile in the range (0, 100]
+	 * @return value in microseconds, 0 if the histogram is empty
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long[] snapshot = snapshot();
+		long total = 0;
+		for (long c : snapshot) {
+			total += c;
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(total * Math.min(percentile, 100.0) / 100.0);
+		rank = Math.max(1, rank);
+		long cumulative = 0;
+		for (int i = 0; i < snapshot.length; i++) {
+			cumulative += snapshot[i];
+			if (cumulative >= rank) {
+				return Math.min(upperBoundMicros(i) - 1, maxMicros.get());
+			}
+		}
+		return maxMicros.get();
+	}
+
+	/**
+	 * Returns the cumulative bucket counts at every power of two, as required
+	 * by the Prometheus histogram format. Entry <code>[i][0]</code> is the
+	 * upper bound in microseconds and <code>[i][1]</code> the number of values
+	 * below it. The last bucket (overflow) is not
+	 * included; its cumulative count equals {@link #getCount()}.
+	 *
+	 * @param minBoundMicros
+	 *            smallest bound to report
+	 * @return cumulative bucket counts
+	 */
+	public long[][] getCumulativeBuckets(long minBoundMicros) {
+		long[] snapshot = snapshot();
+		long[][] result = new long[MAX_EXPONENT + 1][];
+		int size = 0;
+		long cumulative = 0;
+		for (int i = 0; i < snapshot.length - 1; i++) {
+			cumulative += snapshot[i];
+			long bound = upperBoundMicros(i);
+			if (Long.bitCount(bound) == 1 && bound >= SUB_BUCKETS && bound >= minBoundMicros) {
+				result[size++] = new long[] { bound, cumulative };
+			}
+		}
+		long[][] trimmed = new long[size][];
+		System.arraycopy(result, 0, trimmed, 0, size);
+		return trimmed;
+	}
+
+	/**
+	 * Resets all counters.
+	 */
+	public void reset() {
+		for (int i = 0; i < NUM_BUCKETS; i++) {
+			buckets.set(i, 0);
+		}
+		count.set(0);
+		sumMicros.set(0);
+		maxMicros.set(0);
+	}
+
+	private long[] snapshot() {
+		long[] snapshot = new long[NUM_BUCKETS];
+		for (int i = 0; i < NUM_BUCKETS; i++) {
+			snapshot[i] = buckets.get(i);
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Computes the bucket index for the given value.
+	 *
+	 * @param micros
+	 *            value in microseconds
+	 * @return bucket index
+	 */
+	static int bucketIndex(long micros) {
+		if (micros < SUB_BUCKETS) {
+			return (int) micros;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(micros);
+		if (exponent > MAX_EXPONENT) {
+			return NUM_BUCKETS - 1;
+		}
+		int shift = exponent - SUB_BUCKET_BITS;
+		int subBucket = (int) (micros >>> shift) - SUB_BUCKETS;
+		return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * Returns the exclusive upper bound of the given bucket.
+	 *
+	 * @param index
+	 *            bucket index
+	 * @return exclusive upper bound in microseconds
+	 */
+	static long upperBoundMicros(int index) {
+		if (index < SUB_BUCKETS) {
+			return index + 1;
+		}
+		int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+		int subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+		return ((long) (SUB_BUCKETS + subBucket + 1)) << shift;
+	}
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.web.metrics;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.sun.jersey.api.model.AbstractMethod;
+import com.sun.jersey.api.model.AbstractResourceMethod;
+import com.sun.jersey.api.model.AbstractSubResourceMethod;
+import com.sun.jersey.api.model.PathValue;
+import com.sun.jersey.spi.container.ContainerRequest;
+import com.sun.jersey.spi.container.ContainerRequestFilter;
+import com.sun.jersey.spi.container.ContainerResponseFilter;
+import com.sun.jersey.spi.container.ResourceFilter;
+import com.sun.jersey.spi.container.ResourceFilterFactory;
+
+/**
+ * Jersey resource filter factory which assigns each request to the path
+ * template of the matched resource method, e.g.
+ * <code>GET /loadgenerator/currentTime</code>. Register it via
+ * {@link com.sun.jersey.api.core.ResourceConfig#PROPERTY_RESOURCE_FILTER_FACTORIES}
+ * .
+ * 
+ */
+public class MetricsResourceFilterFactory implements ResourceFilterFactory {
+
+	@Override
+	public List<ResourceFilter> create(AbstractMethod method) {
+		if (!(method instanceof AbstractResourceMethod)) {
+			return null;
+		}
+		String httpMethod = ((AbstractResourceMethod) method).getHttpMethod();
+		String path = join(method.getResource().getPath(), null);
+		if (method instanceof AbstractSubResourceMethod) {
+			path = join(method.getResource().getPath(), ((AbstractSubResourceMethod) method).getPath());
+		}
+		final EndpointMetrics endpoint = RequestMetrics.getInstance().getEndpoint(httpMethod, path);
+
+		ResourceFilter filter = new ResourceFilter() {
+			private final ContainerRequestFilter requestFilter = new ContainerRequestFilter() {
+				@Override
+				public ContainerRequest filter(ContainerRequest request) {
+					RequestMetrics.getInstance().enterEndpoint(endpoint);
+					return request;
+				}
+			};
+
+			@Override
+			public ContainerRequestFilter getRequestFilter() {
+				return requestFilter;
+			}
+
+			@Override
+			public ContainerResponseFilter getResponseFilter() {
+				return null;
+			}
+		};
+		return Collections.singletonList(filter);
+	}
+
+	private String join(PathValue resourcePath, PathValue methodPath) {
+		StringBuilder builder = new StringBuilder();
+		append(builder, resourcePath);
+		append(builder, methodPath);
+		return builder.length() == 0 ? "/" : builder.toString();
+	}
+
+	private void append(StringBuilder builder, PathValue path) {
+		if (path == null) {
+			return;
+		}
+		String value = path.getValue();
+		if (value.startsWith("/")) {
+			value = value.substring(1);
+		}
+		if (value.endsWith("/")) {
+			value = value.substring(0, value.length() - 1);
+		}
+		if (!value.isEmpty()) {
+			builder.append('/').append(value);
+		}
+	}
+}
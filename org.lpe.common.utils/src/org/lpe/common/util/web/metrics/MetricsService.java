@@ -0,0 +1,39 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.web.metrics;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+
+/**
+ * Exposes the request metrics of all services in the Prometheus text format.
+ * 
+ */
+@Path("metrics")
+public class MetricsService {
+	private static final String PROMETHEUS_TEXT = "text/plain; version=0.0.4";
+
+	/**
+	 * 
+	 * @return request and worker pool metrics in the Prometheus text format
+	 */
+	@GET
+	@Produces(PROMETHEUS_TEXT)
+	public String getMetrics() {
+		return RequestMetrics.getInstance().toPrometheusText();
+	}
+}
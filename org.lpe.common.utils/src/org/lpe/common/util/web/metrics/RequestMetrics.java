@@ -0,0 +1,300 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.web.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.glassfish.grizzly.threadpool.ThreadPoolConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registry of the request metrics of all REST endpoints and worker pools
+ * hosted in this JVM. Endpoints are registered by the
+ * {@link MetricsResourceFilterFactory} when Jersey builds its resource model;
+ * requests are measured by the {@link InstrumentedHttpHandler}. All metrics
+ * are exposed as MBeans in the domain {@value #JMX_DOMAIN} and in the
+ * Prometheus text format by the {@link MetricsService}.
+ * 
+ */
+public final class RequestMetrics {
+	/** JMX domain of the metrics MBeans. */
+	public static final String JMX_DOMAIN = "org.lpe.common.util.web";
+	/** pseudo endpoint collecting requests which did not match any resource. */
+	public static final String UNMATCHED_PATH = "<unmatched>";
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(RequestMetrics.class);
+	private static final String METRIC_PREFIX = "lpe_http_";
+	private static final long MIN_BUCKET_BOUND_MICROS = 128L;
+	private static final double MICROS_PER_SECOND = 1000000.0;
+	private static final int MAX_STATUS_CLASS = 5;
+	private static RequestMetrics instance;
+
+	/**
+	 * 
+	 * @return singleton instance
+	 */
+	public static synchronized RequestMetrics getInstance() {
+		if (instance == null) {
+			instance = new RequestMetrics();
+		}
+		return instance;
+	}
+
+	private final ConcurrentMap<String, EndpointMetrics> endpoints = new ConcurrentHashMap<String, EndpointMetrics>();
+	private final ConcurrentMap<String, WorkerPoolMetrics> workerPools = new ConcurrentHashMap<String, WorkerPoolMetrics>();
+	private final ThreadLocal<EndpointMetrics> currentEndpoint = new ThreadLocal<EndpointMetrics>();
+	private final EndpointMetrics unmatched;
+
+	/**
+	 * private constructor due to singleton class.
+	 */
+	private RequestMetrics() {
+		unmatched = getEndpoint("*", UNMATCHED_PATH);
+	}
+
+	/**
+	 * Returns the metrics of the given endpoint. Creates and registers them if
+	 * they do not exist, yet.
+	 * 
+	 * @param httpMethod
+	 *            HTTP method of the endpoint
+	 * @param path
+	 *            path template of the endpoint
+	 * @return metrics of the endpoint
+	 */
+	public EndpointMetrics getEndpoint(String httpMethod, String path) {
+		String key = httpMethod + " " + path;
+		EndpointMetrics metrics = endpoints.get(key);
+		if (metrics == null) {
+			EndpointMetrics newMetrics = new EndpointMetrics(httpMethod, path);
+			metrics = endpoints.putIfAbsent(key, newMetrics);
+			if (metrics == null) {
+				metrics = newMetrics;
+				registerMBean("Endpoint", key, metrics);
+			}
+		}
+		return metrics;
+	}
+
+	/**
+	 * 
+	 * @return metrics of all registered endpoints
+	 */
+	public Collection<EndpointMetrics> getEndpoints() {
+		return Collections.unmodifiableCollection(endpoints.values());
+	}
+
+	/**
+	 * Creates a probe for the worker pool with the given configuration and
+	 * attaches it to the configuration. A previously registered pool with the
+	 * same name is replaced.
+	 * 
+	 * @param name
+	 *            name of the pool
+	 * @param config
+	 *            configuration of the pool, the pool must not be created, yet
+	 * @return the probe
+	 */
+	public WorkerPoolMetrics registerWorkerPool(String name, ThreadPoolConfig config) {
+		WorkerPoolMetrics metrics = new WorkerPoolMetrics(name, config);
+		config.getInitialMonitoringConfig().addProbes(metrics);
+		workerPools.put(name, metrics);
+		registerMBean("WorkerPool", name, metrics);
+		return metrics;
+	}
+
+	/**
+	 * 
+	 * @return metrics of all registered worker pools
+	 */
+	public Collection<WorkerPoolMetrics> getWorkerPools() {
+		return Collections.unmodifiableCollection(workerPools.values());
+	}
+
+	/**
+	 * Assigns the request processed by the current thread to the given
+	 * endpoint.
+	 * 
+	 * @param endpoint
+	 *            endpoint matched by the current request
+	 */
+	void enterEndpoint(EndpointMetrics endpoint) {
+		EndpointMetrics previous = currentEndpoint.get();
+		if (previous == null) {
+			endpoint.enter();
+			currentEndpoint.set(endpoint);
+		}
+	}
+
+	/**
+	 * Announces the start of request processing on the current thread.
+	 */
+	void beginRequest() {
+		currentEndpoint.remove();
+	}
+
+	/**
+	 * Completes the request processed by the current thread.
+	 * 
+	 * @param durationNanos
+	 *            duration in nanoseconds
+	 * @param status
+	 *            HTTP status code of the response
+	 * @param failed
+	 *            true, if request processing threw an exception
+	 */
+	void endRequest(long durationNanos, int status, boolean failed) {
+		EndpointMetrics endpoint = currentEndpoint.get();
+		currentEndpoint.remove();
+		if (endpoint == null) {
+			endpoint = unmatched;
+			endpoint.enter();
+		}
+		endpoint.exit(durationNanos, status, failed);
+	}
+
+	/**
+	 * Renders all metrics in the Prometheus text exposition format (version
+	 * 0.0.4).
+	 * 
+	 * @return metrics as text
+	 */
+	public String toPrometheusText() {
+		List<EndpointMetrics> sortedEndpoints = new ArrayList<EndpointMetrics>(endpoints.values());
+		Collections.sort(sortedEndpoints, new Comparator<EndpointMetrics>() {
+			@Override
+			public int compare(EndpointMetrics o1, EndpointMetrics o2) {
+				int result = o1.getPath().compareTo(o2.getPath());
+				return result != 0 ? result : o1.getHttpMethod().compareTo(o2.getHttpMethod());
+			}
+		});
+
+		StringBuilder builder = new StringBuilder();
+		header(builder, "requests_total", "counter", "Number of completed HTTP requests.");
+		for (EndpointMetrics endpoint : sortedEndpoints) {
+			sample(builder, "requests_total", labels(endpoint), endpoint.getRequestCount());
+		}
+		header(builder, "responses_total", "counter", "Number of HTTP responses by status class.");
+		for (EndpointMetrics endpoint : sortedEndpoints) {
+			for (int statusClass = 1; statusClass <= MAX_STATUS_CLASS; statusClass++) {
+				long count = endpoint.getStatusClassCount(statusClass);
+				if (count > 0) {
+					sample(builder, "responses_total", labels(endpoint) + ",status=\"" + statusClass + "xx\"", count);
+				}
+			}
+		}
+		header(builder, "request_errors_total", "counter", "Number of HTTP requests failed with a server error.");
+		for (EndpointMetrics endpoint : sortedEndpoints) {
+			sample(builder, "request_errors_total", labels(endpoint), endpoint.getErrorCount());
+		}
+		header(builder, "requests_in_flight", "gauge", "Number of HTTP requests currently processed.");
+		for (EndpointMetrics endpoint : sortedEndpoints) {
+			sample(builder, "requests_in_flight", labels(endpoint), endpoint.getInFlight());
+		}
+		header(builder, "request_duration_seconds", "histogram", "Latency of HTTP requests.");
+		for (EndpointMetrics endpoint : sortedEndpoints) {
+			LatencyHistogram latency = endpoint.getLatency();
+			long count = latency.getCount();
+			String labels = labels(endpoint);
+			for (long[] bucket : latency.getCumulativeBuckets(MIN_BUCKET_BOUND_MICROS)) {
+				sample(builder, "request_duration_seconds_bucket",
+						labels + ",le=\"" + formatDouble(bucket[0] / MICROS_PER_SECOND) + "\"", bucket[1]);
+			}
+			sample(builder, "request_duration_seconds_bucket", labels + ",le=\"+Inf\"", count);
+			sample(builder, "request_duration_seconds_sum", labels,
+					formatDouble(latency.getSumMicros() / MICROS_PER_SECOND));
+			sample(builder, "request_duration_seconds_count", labels, count);
+		}
+
+		List<WorkerPoolMetrics> pools = new ArrayList<WorkerPoolMetrics>(workerPools.values());
+		header(builder, "worker_pool_max_threads", "gauge", "Configured maximal number of worker threads.");
+		for (WorkerPoolMetrics pool : pools) {
+			sample(builder, "worker_pool_max_threads", poolLabel(pool), pool.getMaxPoolSize());
+		}
+		header(builder, "worker_pool_threads", "gauge", "Number of allocated worker threads.");
+		for (WorkerPoolMetrics pool : pools) {
+			sample(builder, "worker_pool_threads", poolLabel(pool), pool.getPoolSize());
+		}
+		header(builder, "worker_pool_busy_threads", "gauge", "Number of worker threads executing a task.");
+		for (WorkerPoolMetrics pool : pools) {
+			sample(builder, "worker_pool_busy_threads", poolLabel(pool), pool.getBusyThreads());
+		}
+		header(builder, "worker_pool_queued_tasks", "gauge", "Number of tasks waiting for a worker thread.");
+		for (WorkerPoolMetrics pool : pools) {
+			sample(builder, "worker_pool_queued_tasks", poolLabel(pool), pool.getQueuedTasks());
+		}
+		header(builder, "worker_pool_saturation", "gauge", "Busy worker threads relative to the maximal pool size.");
+		for (WorkerPoolMetrics pool : pools) {
+			sample(builder, "worker_pool_saturation", poolLabel(pool), formatDouble(pool.getSaturation()));
+		}
+		header(builder, "worker_pool_rejected_tasks_total", "counter", "Number of tasks rejected by a full queue.");
+		for (WorkerPoolMetrics pool : pools) {
+			sample(builder, "worker_pool_rejected_tasks_total", poolLabel(pool), pool.getRejectedTasks());
+		}
+		return builder.toString();
+	}
+
+	private void header(StringBuilder builder, String name, String type, String help) {
+		builder.append("# HELP ").append(METRIC_PREFIX).append(name).append(' ').append(help).append('\n');
+		builder.append("# TYPE ").append(METRIC_PREFIX).append(name).append(' ').append(type).append('\n');
+	}
+
+	private void sample(StringBuilder builder, String name, String labels, Object value) {
+		builder.append(METRIC_PREFIX).append(name).append('{').append(labels).append("} ").append(value).append('\n');
+	}
+
+	private String labels(EndpointMetrics endpoint) {
+		return "method=\"" + escape(endpoint.getHttpMethod()) + "\",path=\"" + escape(endpoint.getPath()) + "\"";
+	}
+
+	private String poolLabel(WorkerPoolMetrics pool) {
+		return "pool=\"" + escape(pool.getName()) + "\"";
+	}
+
+	private String escape(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+
+	private String formatDouble(double value) {
+		return String.format(Locale.ENGLISH, "%.6f", value);
+	}
+
+	private void registerMBean(String type, String name, Object mbean) {
+		try {
+			MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+			if (mbs.isRegistered(objectName)) {
+				mbs.unregisterMBean(objectName);
+			}
+			mbs.registerMBean(mbean, objectName);
+		} catch (JMException e) {
+			LOGGER.warn("Failed registering MBean for {}: {}", name, e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.web.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.glassfish.grizzly.threadpool.AbstractThreadPool;
+import org.glassfish.grizzly.threadpool.ThreadPoolConfig;
+import org.glassfish.grizzly.threadpool.ThreadPoolProbe;
+
+/**
+ * Probe tracking the saturation of a Grizzly worker thread pool. Register it
+ * with {@link ThreadPoolConfig#getInitialMonitoringConfig()} before the pool
+ * is created.
+ * 
+ */
+public class WorkerPoolMetrics extends ThreadPoolProbe.Adapter implements WorkerPoolMetricsMBean {
+	private final String name;
+	private final int maxPoolSize;
+	private final AtomicLong poolSize = new AtomicLong();
+	private final AtomicLong busyThreads = new AtomicLong();
+	private final AtomicLong queuedTasks = new AtomicLong();
+	private final AtomicLong maxPoolSizeReached = new AtomicLong();
+	private final AtomicLong rejectedTasks = new AtomicLong();
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param name
+	 *            name of the pool
+	 * @param config
+	 *            configuration of the observed pool
+	 */
+	public WorkerPoolMetrics(String name, ThreadPoolConfig config) {
+		this.name = name;
+		this.maxPoolSize = config.getMaxPoolSize();
+	}
+
+	@Override
+	public void onThreadAllocateEvent(AbstractThreadPool threadPool, Thread thread) {
+		poolSize.incrementAndGet();
+	}
+
+	@Override
+	public void onThreadReleaseEvent(AbstractThreadPool threadPool, Thread thread) {
+		poolSize.decrementAndGet();
+	}
+
+	@Override
+	public void onMaxNumberOfThreadsEvent(AbstractThreadPool threadPool, int maxNumberOfThreads) {
+		maxPoolSizeReached.incrementAndGet();
+	}
+
+	@Override
+	public void onTaskQueueEvent(AbstractThreadPool threadPool, Runnable task) {
+		queuedTasks.incrementAndGet();
+	}
+
+	@Override
+	public void onTaskDequeueEvent(AbstractThreadPool threadPool, Runnable task) {
+		queuedTasks.decrementAndGet();
+		busyThreads.incrementAndGet();
+	}
+
+	@Override
+	public void onTaskCompleteEvent(AbstractThreadPool threadPool, Runnable task) {
+		busyThreads.decrementAndGet();
+	}
+
+	@Override
+	public void onTaskQueueOverflowEvent(AbstractThreadPool threadPool) {
+		rejectedTasks.incrementAndGet();
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public int getMaxPoolSize() {
+		return maxPoolSize;
+	}
+
+	@Override
+	public long getPoolSize() {
+		return poolSize.get();
+	}
+
+	@Override
+	public long getBusyThreads() {
+		return Math.max(0L, busyThreads.get());
+	}
+
+	@Override
+	public long getQueuedTasks() {
+		return Math.max(0L, queuedTasks.get());
+	}
+
+	@Override
+	public double getSaturation() {
+		if (maxPoolSize <= 0) {
+			return 0.0;
+		}
+		return (double) getBusyThreads() / (double) maxPoolSize;
+	}
+
+	@Override
+	public long getMaxPoolSizeReachedCount() {
+		return maxPoolSizeReached.get();
+	}
+
+	@Override
+	public long getRejectedTasks() {
+		return rejectedTasks.get();
+	}
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.web.metrics;
+
+/**
+ * JMX view of the saturation of a Grizzly worker thread pool.
+ * 
+ */
+public interface WorkerPoolMetricsMBean {
+
+	/**
+	 * 
+	 * @return name of the pool
+	 */
+	String getName();
+
+	/**
+	 * 
+	 * @return configured maximal number of worker threads
+	 */
+	int getMaxPoolSize();
+
+	/**
+	 * 
+	 * @return number of currently allocated worker threads
+	 */
+	long getPoolSize();
+
+	/**
+	 * 
+	 * @return number of worker threads currently executing a task
+	 */
+	long getBusyThreads();
+
+	/**
+	 * 
+	 * @return number of tasks waiting for a worker thread
+	 */
+	long getQueuedTasks();
+
+	/**
+	 * 
+	 * @return fraction of busy threads relative to the maximal pool size
+	 */
+	double getSaturation();
+
+	/**
+	 * 
+	 * @return number of times the pool reached its maximal size
+	 */
+	long getMaxPoolSizeReachedCount();
+
+	/**
+	 * 
+	 * @return number of tasks rejected due to a full queue
+	 */
+	long getRejectedTasks();
+}
@@ -0,0 +1,42 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.workload;
+
+/**
+ * Receives the arrivals fired by an {@link ArrivalScheduler}. The callbacks
+ * are invoked on the scheduler thread and must return quickly, i.e. hand the
+ * arrival over to another executor.
+ * 
+ */
+public interface ArrivalListener {
+
+	/**
+	 * Called when a request is due.
+	 * 
+	 * @param intendedTimeNanos
+	 *            time in nanoseconds since the epoch at which the request was
+	 *            scheduled; latencies should be measured from this time
+	 *            rather than from the actual start to include any delay of
+	 *            the load generator itself
+	 */
+	void arrival(long intendedTimeNanos);
+
+	/**
+	 * Called after the last arrival of the schedule or when the scheduler has
+	 * been stopped.
+	 */
+	void arrivalsCompleted();
+}
@@ -0,0 +1,45 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.workload;
+
+/**
+ * Shape of the request rate of an open workload.
+ * 
+ */
+public enum ArrivalPattern {
+	/**
+	 * equidistant arrivals at the start rate.
+	 */
+	constant,
+
+	/**
+	 * equidistant arrivals with the rate raised in equal steps from the start
+	 * rate to the target rate.
+	 */
+	step,
+
+	/**
+	 * equidistant arrivals with the rate changing linearly from the start rate
+	 * to the target rate.
+	 */
+	ramp,
+
+	/**
+	 * arrivals of a Poisson process with the start rate, i.e. exponentially
+	 * distributed inter-arrival times.
+	 */
+	poisson
+}
@@ -0,0 +1,286 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.workload;
+
+/**
+ * Request rate over time of an open workload. In contrast to a closed
+ * workload, where a fixed number of users issues the next request only after
+ * the previous response, the arrivals of an open workload do not depend on the
+ * response times, so that a slow system under test builds up a queue instead
+ * of being offered less load.
+ * <p>
+ * The schedule lasts {@link #getDurationSeconds()} seconds. Rates are given in
+ * requests per second; the target rate is only used by
+ * {@link ArrivalPattern#step} and {@link ArrivalPattern#ramp}.
+ * 
+ */
+public class ArrivalSchedule {
+	private ArrivalPattern pattern;
+	private double startRate; // [1/sec]
+	private double targetRate; // [1/sec]
+	private int steps;
+	private int durationSeconds; // [sec]
+
+	/**
+	 * Creates a constant schedule without arrivals.
+	 */
+	public ArrivalSchedule() {
+		this(ArrivalPattern.constant, 0, 0, 1, 0);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param pattern
+	 *            shape of the request rate
+	 * @param startRate
+	 *            requests per second at the beginning
+	 * @param targetRate
+	 *            requests per second at the end of a step or ramp schedule
+	 * @param steps
+	 *            number of steps of a step schedule
+	 * @param durationSeconds
+	 *            duration of the schedule
+	 */
+	public ArrivalSchedule(ArrivalPattern pattern, double startRate, double targetRate, int steps,
+			int durationSeconds) {
+		this.pattern = pattern;
+		this.startRate = startRate;
+		this.targetRate = targetRate;
+		this.steps = steps;
+		this.durationSeconds = durationSeconds;
+	}
+
+	/**
+	 * @return the pattern
+	 */
+	public ArrivalPattern getPattern() {
+		return pattern;
+	}
+
+	/**
+	 * @param pattern
+	 *            the pattern to set
+	 */
+	public void setPattern(ArrivalPattern pattern) {
+		this.pattern = pattern;
+	}
+
+	/**
+	 * @return the requests per second at the beginning
+	 */
+	public double getStartRate() {
+		return startRate;
+	}
+
+	/**
+	 * @param startRate
+	 *            the requests per second at the beginning
+	 */
+	public void setStartRate(double startRate) {
+		this.startRate = startRate;
+	}
+
+	/**
+	 * @return the requests per second at the end of a step or ramp schedule
+	 */
+	public double getTargetRate() {
+		return targetRate;
+	}
+
+	/**
+	 * @param targetRate
+	 *            the requests per second at the end of a step or ramp
+	 *            schedule
+	 */
+	public void setTargetRate(double targetRate) {
+		this.targetRate = targetRate;
+	}
+
+	/**
+	 * @return the number of steps of a step schedule
+	 */
+	public int getSteps() {
+		return steps;
+	}
+
+	/**
+	 * @param steps
+	 *            the number of steps of a step schedule
+	 */
+	public void setSteps(int steps) {
+		this.steps = steps;
+	}
+
+	/**
+	 * @return the duration in seconds
+	 */
+	public int getDurationSeconds() {
+		return durationSeconds;
+	}
+
+	/**
+	 * @param durationSeconds
+	 *            the duration in seconds
+	 */
+	public void setDurationSeconds(int durationSeconds) {
+		this.durationSeconds = durationSeconds;
+	}
+
+	/**
+	 * 
+	 * @return a copy of this schedule
+	 */
+	public ArrivalSchedule copy() {
+		return new ArrivalSchedule(pattern, startRate, targetRate, steps, durationSeconds);
+	}
+
+	/**
+	 * Creates a schedule with the rates multiplied by the given factor, e.g.
+	 * to distribute the load over several load generators.
+	 * 
+	 * @param factor
+	 *            factor to apply to the rates
+	 * @return the scaled schedule
+	 */
+	public ArrivalSchedule scale(double factor) {
+		return new ArrivalSchedule(pattern, startRate * factor, targetRate * factor, steps, durationSeconds);
+	}
+
+	/**
+	 * Returns the request rate at the given time.
+	 * 
+	 * @param seconds
+	 *            seconds since the start of the schedule
+	 * @return requests per second, zero outside of the schedule
+	 */
+	public double rateAt(double seconds) {
+		if (seconds < 0 || seconds >= durationSeconds) {
+			return 0;
+		}
+		switch (pattern) {
+		case constant:
+		case poisson:
+			return startRate;
+		case step:
+			return stepRate((int) (seconds / stepLength()));
+		case ramp:
+			return startRate + (targetRate - startRate) * seconds / durationSeconds;
+		default:
+			throw new IllegalArgumentException("Unknown arrival pattern!");
+		}
+	}
+
+	/**
+	 * 
+	 * @return the number of arrivals over the whole schedule
+	 */
+	public double expectedArrivals() {
+		return cumulativeArrivals(durationSeconds);
+	}
+
+	/**
+	 * Returns the number of arrivals expected up to the given time, i.e. the
+	 * integral of the rate.
+	 * 
+	 * @param seconds
+	 *            seconds since the start of the schedule
+	 * @return expected number of arrivals
+	 */
+	public double cumulativeArrivals(double seconds) {
+		double t = Math.max(0, Math.min(seconds, durationSeconds));
+		switch (pattern) {
+		case constant:
+		case poisson:
+			return startRate * t;
+		case step:
+			double length = stepLength();
+			int fullSteps = Math.min((int) (t / length), numSteps() - 1);
+			double arrivals = 0;
+			for (int i = 0; i < fullSteps; i++) {
+				arrivals += stepRate(i) * length;
+			}
+			return arrivals + stepRate(fullSteps) * (t - fullSteps * length);
+		case ramp:
+			return startRate * t + (targetRate - startRate) * t * t / (2.0 * durationSeconds);
+		default:
+			throw new IllegalArgumentException("Unknown arrival pattern!");
+		}
+	}
+
+	/**
+	 * Returns the time at which the given number of arrivals is reached, i.e.
+	 * the inverse of {@link #cumulativeArrivals(double)}.
+	 * 
+	 * @param arrivals
+	 *            expected number of arrivals
+	 * @return seconds since the start of the schedule, or a negative value if
+	 *         the schedule ends before
+	 */
+	public double timeOfArrivals(double arrivals) {
+		if (arrivals < 0 || arrivals > expectedArrivals()) {
+			return -1;
+		}
+		switch (pattern) {
+		case constant:
+		case poisson:
+			return startRate > 0 ? arrivals / startRate : 0;
+		case step:
+			double length = stepLength();
+			double remaining = arrivals;
+			for (int i = 0; i < numSteps(); i++) {
+				double stepArrivals = stepRate(i) * length;
+				if (remaining <= stepArrivals && stepRate(i) > 0) {
+					return i * length + remaining / stepRate(i);
+				}
+				remaining -= stepArrivals;
+			}
+			return durationSeconds;
+		case ramp:
+			double slope = (targetRate - startRate) / durationSeconds;
+			if (Math.abs(slope) < Double.MIN_NORMAL) {
+				return startRate > 0 ? arrivals / startRate : 0;
+			}
+			// solve startRate * t + slope / 2 * t^2 = arrivals
+			double discriminant = Math.max(0, startRate * startRate + 2 * slope * arrivals);
+			return (Math.sqrt(discriminant) - startRate) / slope;
+		default:
+			throw new IllegalArgumentException("Unknown arrival pattern!");
+		}
+	}
+
+	private int numSteps() {
+		return Math.max(1, steps);
+	}
+
+	private double stepLength() {
+		return (double) durationSeconds / numSteps();
+	}
+
+	private double stepRate(int step) {
+		int last = numSteps() - 1;
+		if (last == 0) {
+			return targetRate;
+		}
+		return startRate + (targetRate - startRate) * Math.min(step, last) / last;
+	}
+
+	@Override
+	public String toString() {
+		return pattern + "(" + startRate + (pattern == ArrivalPattern.step || pattern == ArrivalPattern.ramp
+				? " -> " + targetRate : "") + " 1/s for " + durationSeconds + " s)";
+	}
+}
@@ -0,0 +1,185 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.workload;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.lpe.common.util.clock.HighResolutionClock;
+import org.lpe.common.util.concurrency.ExecutorRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fires the arrivals of an {@link ArrivalSchedule} at their intended times.
+ * The arrival times are derived from {@link System#nanoTime()} relative to the
+ * start instead of sleeping between arrivals, so that timing errors do not
+ * accumulate. The thread parks until shortly before an arrival and yields for
+ * the remainder to avoid the coarse granularity of timed waits. Arrivals
+ * which are late, e.g. after a garbage collection pause, are fired
+ * immediately with their original intended time.
+ * 
+ */
+public final class ArrivalScheduler {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ArrivalScheduler.class);
+	private static final String EXECUTOR_NAME = "arrivals";
+	private static final long SPIN_THRESHOLD_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+	private static final double NANOS_PER_SECOND = 1e9;
+
+	private final ArrivalSchedule schedule;
+	private final Random random;
+	private final CountDownLatch completed = new CountDownLatch(1);
+	private final AtomicLong arrivals = new AtomicLong();
+	private volatile long maxLagNanos;
+	private volatile boolean running;
+	private boolean started;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param schedule
+	 *            schedule to execute
+	 * @param seed
+	 *            seed of the inter-arrival times of a Poisson schedule
+	 */
+	public ArrivalScheduler(ArrivalSchedule schedule, long seed) {
+		this.schedule = schedule.copy();
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * Starts firing arrivals on a separate thread.
+	 * 
+	 * @param startTimeMillis
+	 *            time in milliseconds since the epoch of the
+	 *            {@link HighResolutionClock} at which the schedule starts;
+	 *            passed times start the schedule immediately
+	 * @param listener
+	 *            receiver of the arrivals
+	 */
+	public synchronized void start(long startTimeMillis, final ArrivalListener listener) {
+		if (started) {
+			throw new IllegalStateException("The scheduler has already been started!");
+		}
+		started = true;
+		running = true;
+		long delayNanos = Math.max(0, TimeUnit.MILLISECONDS.toNanos(startTimeMillis)
+				- HighResolutionClock.currentTimeNanos());
+		final long startNanoTime = System.nanoTime() + delayNanos;
+		final long startEpochNanos = HighResolutionClock.currentTimeNanos() + delayNanos;
+		LOGGER.debug("Starting arrivals of {}", schedule);
+		ExecutorRegistry.getInstance().getExecutor(EXECUTOR_NAME).execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					fire(startNanoTime, startEpochNanos, listener);
+				} finally {
+					try {
+						listener.arrivalsCompleted();
+					} finally {
+						completed.countDown();
+					}
+				}
+			}
+		});
+	}
+
+	private void fire(long startNanoTime, long startEpochNanos, ArrivalListener listener) {
+		if (schedule.expectedArrivals() <= 0) {
+			return;
+		}
+		boolean poisson = schedule.getPattern() == ArrivalPattern.poisson;
+		// equidistant schedules start with an arrival, the arrivals of a
+		// Poisson process are exponentially distributed from the start
+		double cumulative = poisson ? nextExponential() : 0;
+		while (running) {
+			double seconds = schedule.timeOfArrivals(cumulative);
+			if (seconds < 0 || seconds >= schedule.getDurationSeconds()) {
+				return;
+			}
+			cumulative += poisson ? nextExponential() : 1;
+			long offsetNanos = (long) (seconds * NANOS_PER_SECOND);
+			long target = startNanoTime + offsetNanos;
+			long remaining = target - System.nanoTime();
+			while (remaining > 0 && running) {
+				if (remaining > SPIN_THRESHOLD_NANOS) {
+					LockSupport.parkNanos(remaining - SPIN_THRESHOLD_NANOS);
+				} else {
+					Thread.yield();
+				}
+				remaining = target - System.nanoTime();
+			}
+			if (!running) {
+				return;
+			}
+			maxLagNanos = Math.max(maxLagNanos, -remaining);
+			arrivals.incrementAndGet();
+			listener.arrival(startEpochNanos + offsetNanos);
+		}
+	}
+
+	private double nextExponential() {
+		return -Math.log(1 - random.nextDouble());
+	}
+
+	/**
+	 * Stops firing arrivals.
+	 */
+	public void stop() {
+		running = false;
+	}
+
+	/**
+	 * Waits until the last arrival has been fired.
+	 * 
+	 * @param timeout
+	 *            maximum time to wait
+	 * @param unit
+	 *            unit of the timeout
+	 * @return true if the schedule has completed, false if the timeout elapsed
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	public boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
+		return completed.await(timeout, unit);
+	}
+
+	/**
+	 * @return true if the last arrival has been fired or the scheduler has
+	 *         been stopped
+	 */
+	public boolean isDone() {
+		return completed.getCount() == 0;
+	}
+
+	/**
+	 * @return number of arrivals fired so far
+	 */
+	public long getArrivals() {
+		return arrivals.get();
+	}
+
+	/**
+	 * @return the largest delay of an arrival behind its intended time in
+	 *         nanoseconds
+	 */
+	public long getMaxLagNanos() {
+		return maxLagNanos;
+	}
+}
@@ -0,0 +1,174 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.lpe.common.util.clock.HighResolutionClock;
+import org.lpe.common.util.workload.ArrivalListener;
+import org.lpe.common.util.workload.ArrivalPattern;
+import org.lpe.common.util.workload.ArrivalSchedule;
+import org.lpe.common.util.workload.ArrivalScheduler;
+
+/**
+ * Tests the {@link ArrivalSchedule} and the {@link ArrivalScheduler}.
+ * 
+ */
+public class ArrivalScheduleTest {
+	private static final double EPSILON = 1e-6;
+	private static final long NANOS_PER_MILLI = 1000000L;
+
+	/**
+	 * Tests the rates and the arrival counts of all patterns.
+	 */
+	@Test
+	public void testRates() {
+		ArrivalSchedule constant = new ArrivalSchedule(ArrivalPattern.constant, 10, 99, 1, 60);
+		assertEquals(10, constant.rateAt(30), EPSILON);
+		assertEquals(0, constant.rateAt(60), EPSILON);
+		assertEquals(600, constant.expectedArrivals(), EPSILON);
+
+		ArrivalSchedule step = new ArrivalSchedule(ArrivalPattern.step, 10, 40, 4, 40);
+		assertEquals(10, step.rateAt(5), EPSILON);
+		assertEquals(20, step.rateAt(15), EPSILON);
+		assertEquals(40, step.rateAt(39), EPSILON);
+		assertEquals(1000, step.expectedArrivals(), EPSILON);
+		assertEquals(100 + 200 + 150, step.cumulativeArrivals(25), EPSILON);
+
+		ArrivalSchedule ramp = new ArrivalSchedule(ArrivalPattern.ramp, 0, 100, 1, 10);
+		assertEquals(50, ramp.rateAt(5), EPSILON);
+		assertEquals(500, ramp.expectedArrivals(), EPSILON);
+		assertEquals(125, ramp.cumulativeArrivals(5), EPSILON);
+
+		assertEquals(200, constant.scale(0.5).cumulativeArrivals(40), EPSILON);
+	}
+
+	/**
+	 * Tests that the arrival time is the inverse of the cumulative arrivals.
+	 */
+	@Test
+	public void testTimeOfArrivals() {
+		List<ArrivalSchedule> schedules = new ArrayList<>();
+		schedules.add(new ArrivalSchedule(ArrivalPattern.constant, 7, 0, 1, 30));
+		schedules.add(new ArrivalSchedule(ArrivalPattern.step, 5, 50, 3, 30));
+		schedules.add(new ArrivalSchedule(ArrivalPattern.ramp, 5, 50, 1, 30));
+		schedules.add(new ArrivalSchedule(ArrivalPattern.ramp, 50, 5, 1, 30));
+		for (ArrivalSchedule schedule : schedules) {
+			for (double seconds = 0; seconds < 30; seconds += 0.7) {
+				double arrivals = schedule.cumulativeArrivals(seconds);
+				assertEquals(schedule.toString(), seconds, schedule.timeOfArrivals(arrivals), 1e-3);
+			}
+			assertTrue(schedule.timeOfArrivals(schedule.expectedArrivals() + 1) < 0);
+		}
+	}
+
+	/**
+	 * Tests that equidistant arrivals are fired at their intended times.
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted
+	 */
+	@Test
+	public void testConstantArrivals() throws InterruptedException {
+		RecordingListener listener = new RecordingListener();
+		ArrivalScheduler scheduler = new ArrivalScheduler(new ArrivalSchedule(ArrivalPattern.constant, 200, 0, 1, 1),
+				1);
+		long start = System.nanoTime();
+		scheduler.start(0, listener);
+		assertTrue(scheduler.awaitCompletion(10, TimeUnit.SECONDS));
+		long duration = System.nanoTime() - start;
+
+		assertEquals(200, scheduler.getArrivals());
+		List<Long> times = listener.getTimes();
+		assertEquals(200, times.size());
+		for (int i = 1; i < times.size(); i++) {
+			assertEquals(5 * NANOS_PER_MILLI, times.get(i) - times.get(i - 1), NANOS_PER_MILLI / 100);
+		}
+		assertTrue(duration >= 995 * NANOS_PER_MILLI);
+		assertTrue(listener.isCompleted());
+	}
+
+	/**
+	 * Tests the number of arrivals of a Poisson schedule and a delayed start.
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted
+	 */
+	@Test
+	public void testPoissonArrivals() throws InterruptedException {
+		RecordingListener listener = new RecordingListener();
+		ArrivalScheduler scheduler = new ArrivalScheduler(new ArrivalSchedule(ArrivalPattern.poisson, 1000, 0, 1, 1),
+				42);
+		long start = HighResolutionClock.currentTimeMillis() + 200;
+		scheduler.start(start, listener);
+		assertTrue(scheduler.awaitCompletion(10, TimeUnit.SECONDS));
+
+		// 4 standard deviations of the Poisson distribution
+		assertEquals(1000, scheduler.getArrivals(), 4 * Math.sqrt(1000));
+		List<Long> times = listener.getTimes();
+		assertTrue(times.get(0) >= (start - 1) * NANOS_PER_MILLI);
+		assertTrue(times.get(times.size() - 1) < (start + 1000) * NANOS_PER_MILLI);
+	}
+
+	/**
+	 * Tests that a stopped scheduler completes without further arrivals.
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted
+	 */
+	@Test
+	public void testStop() throws InterruptedException {
+		RecordingListener listener = new RecordingListener();
+		ArrivalScheduler scheduler = new ArrivalScheduler(new ArrivalSchedule(ArrivalPattern.constant, 10, 0, 1, 60),
+				1);
+		scheduler.start(0, listener);
+		Thread.sleep(250);
+		scheduler.stop();
+		assertTrue(scheduler.awaitCompletion(1, TimeUnit.SECONDS));
+		assertTrue(scheduler.getArrivals() >= 2 && scheduler.getArrivals() <= 4);
+		assertTrue(listener.isCompleted());
+	}
+
+	private static class RecordingListener implements ArrivalListener {
+		private final List<Long> times = Collections.synchronizedList(new ArrayList<Long>());
+		private volatile boolean completed;
+
+		@Override
+		public void arrival(long intendedTimeNanos) {
+			times.add(intendedTimeNanos);
+		}
+
+		@Override
+		public void arrivalsCompleted() {
+			completed = true;
+		}
+
+		public List<Long> getTimes() {
+			return times;
+		}
+
+		public boolean isCompleted() {
+			return completed;
+		}
+	}
+}
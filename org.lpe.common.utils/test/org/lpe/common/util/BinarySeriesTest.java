@@ -0,0 +1,151 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the {@link BinarySeries}.
+ * 
+ */
+public class BinarySeriesTest {
+	private static final int NUM_ROWS = 10000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Tests that both formats restore the columns exactly.
+	 * 
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	@Test
+	public void testRoundTrip() throws IOException {
+		Random random = new Random(42);
+		long[] timestamps = new long[NUM_ROWS];
+		double[] values = new double[NUM_ROWS];
+		long[] counters = new long[NUM_ROWS];
+		for (int i = 0; i < NUM_ROWS; i++) {
+			timestamps[i] = 1400000000000L + i * 1000L + (i % 100 == 0 ? random.nextInt(10) : 0);
+			values[i] = i % 10 == 0 ? values[Math.max(0, i - 1)] : Math.round(random.nextGaussian() * 1000) / 10.0;
+			counters[i] = random.nextLong();
+		}
+		values[1] = Double.NaN;
+		values[2] = Double.NEGATIVE_INFINITY;
+		values[3] = -0.0;
+		counters[4] = Long.MIN_VALUE;
+		counters[5] = Long.MAX_VALUE;
+
+		BinarySeries series = new BinarySeries();
+		series.addColumn("time", timestamps);
+		series.addColumn("value", values);
+		series.addColumn("counter", counters);
+
+		for (BinarySeries.Compression compression : BinarySeries.Compression.values()) {
+			File file = folder.newFile();
+			series.write(file, compression);
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			series.write(out, compression);
+			assertEquals(file.length(), out.size());
+			for (BinarySeries read : Arrays.asList(BinarySeries.read(file),
+					BinarySeries.read(new ByteArrayInputStream(out.toByteArray())))) {
+				assertSeries(read, timestamps, values, counters);
+			}
+		}
+	}
+
+	private static void assertSeries(BinarySeries read, long[] timestamps, double[] values, long[] counters) {
+		assertEquals(Arrays.asList("time", "value", "counter"), read.getColumnNames());
+		assertEquals(NUM_ROWS, read.getNumRows());
+		assertTrue(read.isLongColumn("time"));
+		assertArrayEquals(timestamps, read.getLongColumn("time"));
+		assertArrayEquals(counters, read.getLongColumn("counter"));
+		double[] readValues = read.getDoubleColumn("value");
+		for (int i = 0; i < NUM_ROWS; i++) {
+			assertEquals(Double.doubleToRawLongBits(values[i]), Double.doubleToRawLongBits(readValues[i]));
+		}
+	}
+
+	/**
+	 * Tests that the compressed format is small for equidistant timestamps and
+	 * repeated values.
+	 * 
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	@Test
+	public void testCompression() throws IOException {
+		long[] timestamps = new long[NUM_ROWS];
+		double[] values = new double[NUM_ROWS];
+		for (int i = 0; i < NUM_ROWS; i++) {
+			timestamps[i] = 1400000000000L + i * 500L;
+			values[i] = i / 100;
+		}
+		BinarySeries series = new BinarySeries();
+		series.addColumn("time", timestamps);
+		series.addColumn("value", values);
+		File raw = folder.newFile();
+		File compressed = folder.newFile();
+		series.write(raw, BinarySeries.Compression.NONE);
+		series.write(compressed, BinarySeries.Compression.COMPRESSED);
+		assertTrue(raw.length() > 16L * NUM_ROWS);
+		assertTrue(compressed.length() < 2L * NUM_ROWS);
+	}
+
+	/**
+	 * Tests the conversion of pair lists.
+	 */
+	@Test
+	public void testPairList() {
+		NumericPairList<Long, Double> list = new NumericPairList<>();
+		for (int i = 0; i < 100; i++) {
+			list.add((long) i * 10, i / 3.0);
+		}
+		String file = new File(folder.getRoot(), "pairs.bin").getAbsolutePath();
+		LpeNumericUtils.exportAsBinary(list, file);
+		NumericPairList<Double, Double> read = LpeNumericUtils.importPairListFromBinary(file);
+		assertEquals(list.size(), read.size());
+		for (int i = 0; i < list.size(); i++) {
+			assertEquals(list.get(i).getKey().doubleValue(), read.get(i).getKey(), 0.0);
+			assertEquals(list.get(i).getValue(), read.get(i).getValue(), 0.0);
+		}
+		assertTrue(BinarySeries.fromPairList(list).isLongColumn(BinarySeries.KEY_COLUMN));
+	}
+
+	/**
+	 * Tests that columns of different length are rejected.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnequalColumns() {
+		BinarySeries series = new BinarySeries();
+		series.addColumn("a", new long[2]);
+		series.addColumn("b", new double[3]);
+	}
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.lpe.common.util.csvrandomizer.CSVRandomizer;
+
+/**
+ * Tests the {@link CSVRandomizer}.
+ * 
+ */
+public class CSVRandomizerTest {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final int SEED = 4711;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Tests that a single shard samples the lines in the same order as the
+	 * former in-memory implementation.
+	 * 
+	 * @throws IOException
+	 *             if reading fails
+	 */
+	@Test
+	public void testSequentialOutput() throws IOException {
+		List<String> lines = createLines(1000);
+		File src = write(lines, "\r\n", true);
+		File dest = folder.newFile();
+		CSVRandomizer.randomizeCSV(src, dest, 2.5, SEED);
+
+		Random rnd = new Random(SEED);
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 2500; i++) {
+			if (i != 0) {
+				expected.append('\n');
+			}
+			expected.append(lines.get(rnd.nextInt(lines.size())));
+		}
+		assertArrayEquals(expected.toString().getBytes(UTF8), Files.readAllBytes(dest.toPath()));
+	}
+
+	/**
+	 * Tests that parallel shards are deterministic and only contain source
+	 * lines.
+	 * 
+	 * @throws IOException
+	 *             if reading fails
+	 */
+	@Test
+	public void testShards() throws IOException {
+		List<String> lines = createLines(777);
+		File src = write(lines, "\n", false);
+		File first = folder.newFile();
+		File second = folder.newFile();
+		CSVRandomizer.randomizeCSV(src, first, 3.0, SEED, 4);
+		CSVRandomizer.randomizeCSV(src, second, 3.0, SEED, 4);
+		assertArrayEquals(Files.readAllBytes(first.toPath()), Files.readAllBytes(second.toPath()));
+
+		List<String> output = Files.readAllLines(first.toPath(), UTF8);
+		assertEquals(3 * 777, output.size());
+		Set<String> sourceLines = new HashSet<>(lines);
+		for (String line : output) {
+			assertTrue(line, sourceLines.contains(line));
+		}
+	}
+
+	/**
+	 * Tests an empty source file.
+	 * 
+	 * @throws IOException
+	 *             if reading fails
+	 */
+	@Test
+	public void testEmptySource() throws IOException {
+		File dest = folder.newFile();
+		Files.write(dest.toPath(), "old".getBytes(UTF8));
+		CSVRandomizer.randomizeCSV(folder.newFile(), dest, 2.0, SEED, 3);
+		assertEquals(0, dest.length());
+	}
+
+	private static List<String> createLines(int count) {
+		List<String> lines = new ArrayList<>();
+		Random random = new Random(1);
+		for (int i = 0; i < count; i++) {
+			lines.add(i + ";user" + random.nextInt(100000) + ";" + (i % 10 == 0 ? "" : "\u00e4" + random.nextDouble()));
+		}
+		return lines;
+	}
+
+	private File write(List<String> lines, String separator, boolean trailingSeparator) throws IOException {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < lines.size(); i++) {
+			builder.append(lines.get(i));
+			if (trailingSeparator || i < lines.size() - 1) {
+				builder.append(separator);
+			}
+		}
+		File file = folder.newFile();
+		Files.write(file.toPath(), builder.toString().getBytes(UTF8));
+		return file;
+	}
+}
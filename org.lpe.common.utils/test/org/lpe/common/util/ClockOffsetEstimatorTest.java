@@ -0,0 +1,143 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.lpe.common.util.clock.ClockOffset;
+import org.lpe.common.util.clock.ClockOffsetEstimator;
+import org.lpe.common.util.clock.ClockSample;
+import org.lpe.common.util.clock.ClockSampleSource;
+import org.lpe.common.util.clock.HighResolutionClock;
+
+/**
+ * Tests the {@link ClockOffsetEstimator}.
+ * 
+ */
+public class ClockOffsetEstimatorTest {
+	private static final long OFFSET_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+	private static final long DELAY_MILLIS = 20;
+	private static final long CHECK_MILLIS = 1500;
+
+	/**
+	 * Simulates a remote clock with a fixed offset. All but the first request
+	 * suffer from an asymmetric network delay.
+	 */
+	private static class DelayedSource implements ClockSampleSource {
+		private int requests = 0;
+
+		@Override
+		public ClockSample requestClockSample() {
+			if (requests++ > 0) {
+				sleep(DELAY_MILLIS);
+			}
+			ClockSample sample = ClockSample.create(HighResolutionClock.currentTimeNanos() + OFFSET_NANOS);
+			sample.setTransmitTimeNanos(sample.getReceiveTimeNanos());
+			return sample;
+		}
+
+		private void sleep(long millis) {
+			try {
+				Thread.sleep(millis);
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	/**
+	 * Simulates a remote clock with a fixed offset, whose anchor can be
+	 * changed.
+	 */
+	private static class AnchoredSource implements ClockSampleSource {
+		private volatile long anchorEpochNanos = 1;
+
+		@Override
+		public ClockSample requestClockSample() {
+			ClockSample sample = ClockSample.create(HighResolutionClock.currentTimeNanos() + OFFSET_NANOS);
+			sample.setAnchorEpochNanos(anchorEpochNanos);
+			return sample;
+		}
+	}
+
+	/**
+	 * Tests that the sample with the minimal round trip time determines the
+	 * offset.
+	 */
+	@Test
+	public void testMinimalRoundTripFilter() {
+		ClockOffsetEstimator estimator = new ClockOffsetEstimator(new DelayedSource(), 5);
+		ClockOffset offset = estimator.synchronize();
+		assertNotNull(offset);
+		// only the undelayed sample has a round trip below the delay, and the
+		// error of its offset is bounded by half of its round trip
+		assertTrue(offset.getRoundTripNanos() < TimeUnit.MILLISECONDS.toNanos(DELAY_MILLIS));
+		assertEquals(OFFSET_NANOS, offset.getOffsetNanos(), offset.getRoundTripNanos() / 2 + 1);
+		assertEquals(0.0, offset.getDriftNanosPerSecond(), 0.0);
+
+		long before = System.currentTimeMillis();
+		long localMillis = offset.toLocalTimeMillis(before + TimeUnit.NANOSECONDS.toMillis(OFFSET_NANOS));
+		long after = System.currentTimeMillis();
+		long toleranceMillis = TimeUnit.NANOSECONDS.toMillis(offset.getRoundTripNanos()) / 2 + 1;
+		assertTrue(localMillis >= before - toleranceMillis && localMillis <= after + toleranceMillis);
+	}
+
+	/**
+	 * Tests that the history is discarded when the remote clock has been
+	 * re-anchored.
+	 */
+	@Test
+	public void testRemoteReanchoring() {
+		AnchoredSource source = new AnchoredSource();
+		ClockOffsetEstimator estimator = new ClockOffsetEstimator(source, 1);
+		estimator.synchronize();
+		assertEquals(2, estimator.synchronize().getNumSamples());
+		assertFalse(estimator.isStale());
+
+		source.anchorEpochNanos++;
+		ClockOffset offset = estimator.synchronize();
+		assertEquals(1, offset.getNumSamples());
+		assertEquals(OFFSET_NANOS, offset.getOffsetNanos(), offset.getRoundTripNanos() / 2 + 1);
+		assertFalse(estimator.isStale());
+	}
+
+	/**
+	 * Tests that the high resolution clock follows the wall clock across
+	 * several anchor checks.
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted
+	 */
+	@Test
+	public void testWallClockDeviation() throws InterruptedException {
+		long toleranceMillis = TimeUnit.NANOSECONDS.toMillis(HighResolutionClock.MAX_DEVIATION_NANOS) + 1;
+		long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CHECK_MILLIS);
+		while (System.nanoTime() < end) {
+			long before = System.currentTimeMillis();
+			long millis = HighResolutionClock.currentTimeMillis();
+			long after = System.currentTimeMillis();
+			assertTrue(millis >= before - toleranceMillis && millis <= after + toleranceMillis);
+			assertTrue(HighResolutionClock.getAnchorAgeNanos() >= 0);
+			Thread.sleep(1);
+		}
+	}
+}
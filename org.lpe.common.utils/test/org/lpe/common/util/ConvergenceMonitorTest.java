@@ -0,0 +1,126 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
+import org.junit.Test;
+import org.lpe.common.util.stats.ConvergenceMonitor;
+import org.lpe.common.util.stats.OnlineStatistics;
+
+/**
+ * Tests the {@link ConvergenceMonitor} and {@link OnlineStatistics}.
+ * 
+ */
+public class ConvergenceMonitorTest {
+	private static final double DELTA = 1e-9;
+
+	/**
+	 * Tests that merged accumulators equal a single accumulator.
+	 */
+	@Test
+	public void testMerge() {
+		Random random = new Random(1);
+		SummaryStatistics expected = new SummaryStatistics();
+		OnlineStatistics[] parts = new OnlineStatistics[4];
+		for (int i = 0; i < parts.length; i++) {
+			parts[i] = new OnlineStatistics();
+		}
+		for (int i = 0; i < 10000; i++) {
+			double value = 1000 + random.nextGaussian() * 50;
+			expected.addValue(value);
+			parts[i % 3].add(value);
+		}
+		OnlineStatistics merged = new OnlineStatistics();
+		for (OnlineStatistics part : parts) {
+			merged.merge(part);
+		}
+		assertEquals(expected.getN(), merged.getN());
+		assertEquals(expected.getMean(), merged.getMean(), DELTA);
+		assertEquals(expected.getVariance(), merged.getVariance(), 1e-6);
+		assertEquals(expected.getMin(), merged.getMin(), 0.0);
+		assertEquals(expected.getMax(), merged.getMax(), 0.0);
+		assertEquals(LpeNumericUtils.getConfidenceIntervalWidth(expected, 0.05),
+				merged.getConfidenceIntervalWidth(0.05), 1e-6);
+	}
+
+	/**
+	 * Tests that a decaying warm-up is discarded and the monitor converges on
+	 * concurrently added samples.
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted
+	 */
+	@Test
+	public void testWarmupAndConvergence() throws InterruptedException {
+		final ConvergenceMonitor monitor = new ConvergenceMonitor(0.05, 0.02);
+		Random random = new Random(2);
+		// warm-up: response times decay from 500 to 100
+		for (int i = 0; i < 2000 && !monitor.isWarmedUp(); i++) {
+			monitor.add(100 + 400 * Math.exp(-i / 200.0) + random.nextGaussian() * 5);
+		}
+		assertTrue(monitor.isWarmedUp());
+		assertTrue(monitor.getWarmupSamples() > 500);
+		assertFalse(monitor.isConverged());
+
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			final long seed = t;
+			Thread thread = new Thread() {
+				@Override
+				public void run() {
+					Random threadRandom = new Random(seed);
+					for (int i = 0; i < 5000; i++) {
+						monitor.add(100 + threadRandom.nextGaussian() * 20);
+					}
+				}
+			};
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertTrue(monitor.awaitConvergence(1, TimeUnit.SECONDS));
+		assertEquals(20000, monitor.getStatistics().getN());
+		assertEquals(100, monitor.getStatistics().getMean(), 1.0);
+		assertTrue(monitor.getConfidenceIntervalWidth() <= 2.0);
+	}
+
+	/**
+	 * Tests that an absolute target is not reached by noisy samples.
+	 */
+	@Test
+	public void testNotConverged() {
+		ConvergenceMonitor monitor = new ConvergenceMonitor(0.05, 0.01);
+		monitor.setWarmupWindow(0);
+		monitor.setAbsoluteTargetWidth(0.1);
+		Random random = new Random(3);
+		for (int i = 0; i < 5000; i++) {
+			monitor.add(random.nextDouble() * 1000);
+		}
+		assertEquals(0, monitor.getWarmupSamples());
+		assertFalse(monitor.isConverged());
+	}
+}
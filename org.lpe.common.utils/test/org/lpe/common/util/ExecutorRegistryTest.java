@@ -0,0 +1,254 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Test;
+import org.lpe.common.util.concurrency.ExecutorRegistry;
+import org.lpe.common.util.concurrency.ExecutorStats;
+
+/**
+ * Tests the {@link ExecutorRegistry}.
+ * 
+ */
+public class ExecutorRegistryTest {
+	private static final String BOUNDED = "test-bounded";
+	private static final String WAITING = "test-waiting";
+	private static final String SCHEDULED = "test-scheduled";
+	private static final String FOREGROUND = "test-foreground";
+
+	private final ExecutorRegistry registry = ExecutorRegistry.getInstance();
+
+	/**
+	 * Removes the test executors.
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted
+	 */
+	@After
+	public void cleanUp() throws InterruptedException {
+		registry.shutdown(BOUNDED, 1, TimeUnit.SECONDS);
+		registry.shutdown(WAITING, 1, TimeUnit.SECONDS);
+		registry.shutdown(SCHEDULED, 1, TimeUnit.SECONDS);
+		registry.shutdown(FOREGROUND, 1, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Tests that executors use daemon threads unless requested otherwise.
+	 * 
+	 * @throws Exception
+	 *             if a task fails
+	 */
+	@Test
+	public void testDaemonThreads() throws Exception {
+		Callable<Boolean> isDaemon = new Callable<Boolean>() {
+			@Override
+			public Boolean call() {
+				return Thread.currentThread().isDaemon();
+			}
+		};
+		assertTrue(registry.getExecutor(WAITING).submit(isDaemon).get());
+		assertFalse(registry.getExecutor(FOREGROUND, false).submit(isDaemon).get());
+		assertSame(registry.getExecutor(FOREGROUND), registry.getExecutor(FOREGROUND, true));
+	}
+
+	/**
+	 * Tests that bounded executors queue up to their capacity, reject further
+	 * tasks and count them.
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted
+	 */
+	@Test
+	public void testBoundedExecutor() throws InterruptedException {
+		ExecutorService executor = registry.getExecutor(BOUNDED, 1, 2);
+		assertSame(executor, registry.getExecutor(BOUNDED, 4, 4));
+
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicReference<String> threadName = new AtomicReference<>();
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				threadName.set(Thread.currentThread().getName());
+				started.countDown();
+				awaitQuietly(release);
+			}
+		});
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		executor.execute(new NoOp());
+		executor.execute(new NoOp());
+		try {
+			executor.execute(new NoOp());
+			fail("Expected rejection.");
+		} catch (RejectedExecutionException e) {
+			// expected
+		}
+
+		ExecutorStats stats = registry.getStats(BOUNDED);
+		assertEquals(BOUNDED, stats.getName());
+		assertEquals(1, stats.getActiveThreads());
+		assertEquals(1, stats.getMaxPoolSize());
+		assertEquals(2, stats.getQueuedTasks());
+		assertEquals(0, stats.getRemainingQueueCapacity());
+		assertEquals(1, stats.getRejectedTasks());
+		assertTrue(threadName.get().startsWith(BOUNDED + "-"));
+
+		release.countDown();
+		assertTrue(registry.shutdown(BOUNDED, 5, TimeUnit.SECONDS));
+		assertTrue(executor.isTerminated());
+		assertNull(registry.getStats(BOUNDED));
+	}
+
+	/**
+	 * Tests that executors for waiting tasks create daemon threads on demand.
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted
+	 */
+	@Test
+	public void testWaitingExecutor() throws InterruptedException {
+		ExecutorService executor = registry.getExecutor(WAITING);
+		final int numTasks = 8;
+		final CountDownLatch started = new CountDownLatch(numTasks);
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicReference<Boolean> daemon = new AtomicReference<>();
+		for (int i = 0; i < numTasks; i++) {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					daemon.set(Thread.currentThread().isDaemon());
+					started.countDown();
+					awaitQuietly(release);
+				}
+			});
+		}
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		assertTrue(daemon.get());
+		assertEquals(numTasks, registry.getStats(WAITING).getActiveThreads());
+		release.countDown();
+		assertTrue(registry.shutdown(WAITING, 5, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * Tests periodic tasks and that executor kinds cannot be mixed up.
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted
+	 */
+	@Test
+	public void testScheduledExecutor() throws InterruptedException {
+		final CountDownLatch runs = new CountDownLatch(3);
+		ScheduledFuture<?> task = registry.getScheduledExecutor(SCHEDULED, 1).scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				runs.countDown();
+			}
+		}, 0, 10, TimeUnit.MILLISECONDS);
+		assertTrue(runs.await(5, TimeUnit.SECONDS));
+		task.cancel(false);
+		assertEquals(0, registry.getStats(SCHEDULED).getQueuedTasks());
+		try {
+			registry.getExecutor(SCHEDULED);
+			fail("Expected a type mismatch.");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Tests batches on a saturated executor: results keep the task order, the
+	 * parallelism is limited and rejected tasks run in the calling thread.
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted
+	 */
+	@Test
+	public void testInvokeAll() throws InterruptedException {
+		ExecutorService executor = registry.getExecutor(BOUNDED, 1, 0);
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		List<Callable<Integer>> tasks = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			final int value = i;
+			tasks.add(new Callable<Integer>() {
+				@Override
+				public Integer call() throws InterruptedException {
+					int current = running.incrementAndGet();
+					while (current > maxRunning.get()) {
+						maxRunning.compareAndSet(maxRunning.get(), current);
+					}
+					Thread.sleep(1);
+					running.decrementAndGet();
+					if (value == 42) {
+						throw new IllegalStateException();
+					}
+					return value;
+				}
+			});
+		}
+		List<Future<Integer>> futures = ExecutorRegistry.invokeAll(executor, tasks, 3);
+		assertEquals(tasks.size(), futures.size());
+		for (int i = 0; i < futures.size(); i++) {
+			try {
+				assertEquals(i, futures.get(i).get().intValue());
+				assertTrue(i != 42);
+			} catch (ExecutionException e) {
+				assertEquals(42, i);
+				assertTrue(e.getCause() instanceof IllegalStateException);
+			}
+		}
+		assertTrue(maxRunning.get() <= 3);
+		assertTrue(registry.getStats(BOUNDED).getRejectedTasks() > 0);
+	}
+
+	private static void awaitQuietly(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Task doing nothing.
+	 */
+	private static final class NoOp implements Runnable {
+		@Override
+		public void run() {
+		}
+	}
+}
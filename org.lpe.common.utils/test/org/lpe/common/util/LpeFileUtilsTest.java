@@ -0,0 +1,534 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the file, line and zip functionality of {@link LpeFileUtils}.
+ * 
+ */
+public class LpeFileUtilsTest {
+
+	private static final int NUM_FILES = 40;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File source;
+
+	/**
+	 * Creates a folder tree with text, random and already compressed files.
+	 * 
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	@Before
+	public void createTree() throws IOException {
+		source = folder.newFolder("source");
+		Random random = new Random(42);
+		for (int i = 0; i < NUM_FILES; i++) {
+			File dir = new File(source, "dir" + (i % 4) + "/sub" + (i % 3));
+			dir.mkdirs();
+			byte[] content;
+			if (i % 2 == 0) {
+				StringBuilder builder = new StringBuilder();
+				for (int j = 0; j < 1000 * i; j++) {
+					builder.append("line ").append(j).append('\n');
+				}
+				content = builder.toString().getBytes("UTF-8");
+			} else {
+				content = new byte[random.nextInt(100000)];
+				random.nextBytes(content);
+			}
+			write(new File(dir, "file" + i + (i % 5 == 0 ? ".gz" : ".txt")), content);
+		}
+		new File(source, "empty").mkdirs();
+		write(new File(source, "META-INF/MANIFEST.MF"), "Manifest-Version: 1.0\n".getBytes("UTF-8"));
+	}
+
+	/**
+	 * Tests that zipping and unzipping restores the tree.
+	 * 
+	 * @throws IOException
+	 *             if reading fails
+	 */
+	@Test
+	public void testZipRoundTrip() throws IOException {
+		File zipFile = new File(folder.getRoot(), "tree.zip");
+		LpeFileUtils.zip(source, zipFile);
+
+		File target = folder.newFolder("target");
+		LpeFileUtils.unzip(zipFile, target);
+
+		for (String path : relativeFiles(source)) {
+			File extracted = new File(target, path);
+			if (path.equals("META-INF/MANIFEST.MF")) {
+				assertFalse(extracted.exists());
+				continue;
+			}
+			assertTrue(path, extracted.isFile());
+			assertArrayEquals(path, Files.readAllBytes(new File(source, path).toPath()),
+					Files.readAllBytes(extracted.toPath()));
+		}
+		assertTrue(new File(target, "empty").isDirectory());
+	}
+
+	/**
+	 * Tests that already compressed files are stored and the archive is
+	 * readable by {@link ZipFile}.
+	 * 
+	 * @throws IOException
+	 *             if reading fails
+	 */
+	@Test
+	public void testStoredEntries() throws IOException {
+		File zipFile = new File(folder.getRoot(), "tree.zip");
+		LpeFileUtils.zip(source, zipFile, null, Deflater.BEST_SPEED);
+		try (ZipFile zip = new ZipFile(zipFile)) {
+			ZipEntry gz = zip.getEntry("dir0/sub0/file0.gz");
+			assertEquals(ZipEntry.STORED, gz.getMethod());
+			ZipEntry txt = zip.getEntry("dir2/sub2/file2.txt");
+			assertEquals(ZipEntry.DEFLATED, txt.getMethod());
+			assertTrue(txt.getCompressedSize() < txt.getSize());
+			assertTrue(zip.getEntry("empty/").isDirectory());
+			assertNull(zip.getEntry("META-INF/MANIFEST.MF"));
+		}
+	}
+
+	/**
+	 * Tests that streaming produces the same entries as zipping to a file and
+	 * respects the file filter.
+	 * 
+	 * @throws IOException
+	 *             if reading fails
+	 */
+	@Test
+	public void testZipToStream() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		LpeFileUtils.zipTo(source, out, new FileFilter() {
+			@Override
+			public boolean accept(File file) {
+				return !file.getName().endsWith(".gz");
+			}
+		});
+
+		List<String> names = new ArrayList<>();
+		try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+			ZipEntry entry;
+			byte[] buffer = new byte[4096];
+			while ((entry = in.getNextEntry()) != null) {
+				names.add(entry.getName());
+				ByteArrayOutputStream content = new ByteArrayOutputStream();
+				int n;
+				while ((n = in.read(buffer)) != -1) {
+					content.write(buffer, 0, n);
+				}
+				if (!entry.isDirectory()) {
+					assertArrayEquals(entry.getName(),
+							Files.readAllBytes(new File(source, entry.getName()).toPath()), content.toByteArray());
+				}
+			}
+		}
+		int expectedFiles = 0;
+		for (String path : relativeFiles(source)) {
+			if (!path.endsWith(".gz") && !path.startsWith("META-INF")) {
+				expectedFiles++;
+				assertTrue(path, names.contains(path));
+			}
+		}
+		int numFiles = 0;
+		for (String name : names) {
+			assertFalse(name, name.endsWith(".gz"));
+			if (!name.endsWith("/")) {
+				numFiles++;
+			}
+		}
+		assertEquals(expectedFiles, numFiles);
+	}
+
+	/**
+	 * Tests that entries above the in-memory limit are streamed correctly,
+	 * both deflated with a data descriptor and stored.
+	 * 
+	 * @throws IOException
+	 *             if reading fails
+	 */
+	@Test
+	public void testLargeEntries() throws IOException {
+		File large = folder.newFolder("large");
+		int size = (int) ParallelZip.IN_MEMORY_LIMIT + 1024 * 1024 + 17;
+		StringBuilder builder = new StringBuilder(size);
+		for (int i = 0; builder.length() < size; i++) {
+			builder.append("large line ").append(i).append('\n');
+		}
+		byte[] text = builder.substring(0, size).getBytes(UTF8);
+		byte[] random = new byte[size];
+		new Random(7).nextBytes(random);
+		write(new File(large, "a.txt"), text);
+		write(new File(large, "b.zip"), random);
+		write(new File(large, "c.txt"), "small".getBytes(UTF8));
+
+		File zipFile = new File(folder.getRoot(), "large.zip");
+		LpeFileUtils.zip(large, zipFile);
+		try (ZipFile zip = new ZipFile(zipFile)) {
+			ZipEntry deflated = zip.getEntry("a.txt");
+			assertEquals(ZipEntry.DEFLATED, deflated.getMethod());
+			assertEquals(size, deflated.getSize());
+			assertEquals(crc(text), deflated.getCrc());
+			assertTrue(deflated.getCompressedSize() < size);
+			ZipEntry stored = zip.getEntry("b.zip");
+			assertEquals(ZipEntry.STORED, stored.getMethod());
+			assertEquals(size, stored.getCompressedSize());
+			assertEquals(crc(random), stored.getCrc());
+			assertEquals(5, zip.getEntry("c.txt").getSize());
+		}
+		// the stream reader validates the data descriptors and checksums
+		List<String> names = new ArrayList<>();
+		try (ZipInputStream in = new ZipInputStream(Files.newInputStream(zipFile.toPath()))) {
+			ZipEntry entry;
+			byte[] buffer = new byte[BUFFER_SIZE];
+			while ((entry = in.getNextEntry()) != null) {
+				names.add(entry.getName());
+				while (in.read(buffer) != -1) {
+					// read to the end of the entry
+				}
+			}
+		}
+		assertEquals(Arrays.asList("a.txt", "b.zip", "c.txt"), names);
+
+		File target = folder.newFolder("largeTarget");
+		LpeFileUtils.unzip(zipFile, target);
+		assertArrayEquals(text, Files.readAllBytes(new File(target, "a.txt").toPath()));
+		assertArrayEquals(random, Files.readAllBytes(new File(target, "b.zip").toPath()));
+	}
+
+	/**
+	 * Tests that trees with more entries than ZIP32 supports are packed with
+	 * the sequential fallback.
+	 * 
+	 * @throws IOException
+	 *             if reading fails
+	 */
+	@Test
+	public void testZip32Fallback() throws IOException {
+		File many = folder.newFolder("many");
+		int dirs = 64;
+		int filesPerDir = 1024;
+		for (int i = 0; i < dirs; i++) {
+			File dir = new File(many, "dir" + i);
+			dir.mkdirs();
+			for (int j = 0; j < filesPerDir; j++) {
+				Files.createFile(new File(dir, "f" + j).toPath());
+			}
+		}
+		write(new File(many, "dir0/f0"), "content".getBytes(UTF8));
+
+		File zipFile = new File(folder.getRoot(), "many.zip");
+		LpeFileUtils.zip(many, zipFile);
+		try (ZipFile zip = new ZipFile(zipFile)) {
+			assertEquals(dirs + dirs * filesPerDir, zip.size());
+			assertEquals(7, zip.getEntry("dir0/f0").getSize());
+			assertTrue(zip.getEntry("dir63/").isDirectory());
+		}
+
+		File target = folder.newFolder("manyTarget");
+		LpeFileUtils.unzip(zipFile, target);
+		assertArrayEquals("content".getBytes(UTF8), Files.readAllBytes(new File(target, "dir0/f0").toPath()));
+		assertTrue(new File(target, "dir63/f1023").isFile());
+	}
+
+	private static long crc(byte[] content) {
+		CRC32 crc = new CRC32();
+		crc.update(content);
+		return crc.getValue();
+	}
+
+	/**
+	 * Tests that the lazy walk visits the same files as getAllFiles.
+	 */
+	@Test
+	public void testWalkFiles() {
+		List<String> walked = new ArrayList<>();
+		for (Path path : LpeFileUtils.walkFiles(source.getAbsolutePath())) {
+			walked.add(path.toAbsolutePath().toString());
+		}
+		List<String> all = LpeFileUtils.getAllFiles(source.getAbsolutePath());
+		assertEquals(NUM_FILES + 1, all.size());
+		Collections.sort(walked);
+		Collections.sort(all);
+		assertEquals(all, walked);
+		assertTrue(LpeFileUtils.getAllFiles(new File(source, "missing").getAbsolutePath()).isEmpty());
+		assertFalse(LpeFileUtils.walkFiles(new File(source, "missing").getAbsolutePath()).iterator().hasNext());
+	}
+
+	/**
+	 * Tests sequential and parallel directory copies.
+	 * 
+	 * @throws IOException
+	 *             if copying fails
+	 */
+	@Test
+	public void testCopyDirectory() throws IOException {
+		for (int ioConcurrency : new int[] { 1, 4 }) {
+			File target = new File(folder.getRoot(), "copy" + ioConcurrency + "/nested");
+			LpeFileUtils.copyDirectory(source.getAbsolutePath(), target.getAbsolutePath(), ioConcurrency);
+			List<String> files = relativeFiles(source);
+			assertEquals(files.size(), relativeFiles(target).size());
+			for (String path : files) {
+				assertArrayEquals(path, Files.readAllBytes(new File(source, path).toPath()),
+						Files.readAllBytes(new File(target, path).toPath()));
+			}
+			assertTrue(new File(target, "empty").isDirectory());
+		}
+	}
+
+	/**
+	 * Tests that listing, walking and copying follow a symbolic link to a
+	 * directory and skip a link back to an ancestor.
+	 * 
+	 * @throws IOException
+	 *             if copying fails
+	 */
+	@Test
+	public void testSymbolicLinks() throws IOException {
+		File tree = folder.newFolder("linked");
+		File outside = folder.newFolder("outside");
+		write(new File(tree, "plain.txt"), new byte[] { 1 });
+		write(new File(outside, "sub/linked.txt"), new byte[] { 2, 3 });
+		try {
+			Files.createSymbolicLink(new File(tree, "link").toPath(), outside.toPath());
+			Files.createSymbolicLink(new File(outside, "sub/loop").toPath(), outside.toPath());
+		} catch (UnsupportedOperationException | IOException e) {
+			Assume.assumeNoException(e);
+		}
+
+		List<String> expected = new ArrayList<>(Arrays.asList("plain.txt", "link/sub/linked.txt"));
+		Collections.sort(expected);
+		List<String> listed = relativeFiles(tree);
+		Collections.sort(listed);
+		assertEquals(expected, listed);
+
+		int walked = 0;
+		for (Path path : LpeFileUtils.walkFiles(tree.getAbsolutePath())) {
+			assertTrue(path.toString(), Files.isRegularFile(path));
+			walked++;
+		}
+		assertEquals(expected.size(), walked);
+
+		for (int ioConcurrency : new int[] { 1, 4 }) {
+			File target = new File(folder.getRoot(), "linkCopy" + ioConcurrency);
+			LpeFileUtils.copyDirectory(tree.getAbsolutePath(), target.getAbsolutePath(), ioConcurrency);
+			File copied = new File(target, "link/sub/linked.txt");
+			assertFalse(Files.isSymbolicLink(new File(target, "link").toPath()));
+			assertArrayEquals(new byte[] { 2, 3 }, Files.readAllBytes(copied.toPath()));
+			List<String> copiedFiles = relativeFiles(target);
+			Collections.sort(copiedFiles);
+			assertEquals(expected, copiedFiles);
+		}
+	}
+
+	/**
+	 * Tests moving files, replacing an existing target.
+	 * 
+	 * @throws IOException
+	 *             if moving fails
+	 */
+	@Test
+	public void testMoveFile() throws IOException {
+		File file = new File(source, "dir1/sub1/file1.txt");
+		byte[] content = Files.readAllBytes(file.toPath());
+		File target = folder.newFile("moved.txt");
+		LpeFileUtils.moveFile(file.getAbsolutePath(), target.getAbsolutePath());
+		assertFalse(file.exists());
+		assertArrayEquals(content, Files.readAllBytes(target.toPath()));
+
+		File dir = folder.newFolder("moveTarget");
+		LpeFileUtils.moveFileTo(target.getAbsolutePath(), dir.getAbsolutePath());
+		assertFalse(target.exists());
+		assertArrayEquals(content, Files.readAllBytes(new File(dir, "moved.txt").toPath()));
+	}
+
+	/**
+	 * Tests the lazy line reader with line breaks crossing the mapped windows
+	 * and a line longer than the window.
+	 * 
+	 * @throws IOException
+	 *             if reading fails
+	 */
+	@Test
+	public void testMappedLines() throws IOException {
+		List<String> expected = createLines();
+		File file = writeLines(expected, "\r\n");
+		try (MappedLineReader reader = new MappedLineReader(file, UTF8, 0, Long.MAX_VALUE, 64)) {
+			List<String> lines = new ArrayList<>();
+			for (String line : reader) {
+				lines.add(line);
+			}
+			assertEquals(expected, lines);
+		}
+		try (MappedLineReader reader = LpeFileUtils.lines(file.getAbsolutePath(), UTF8)) {
+			int count = 0;
+			for (String line : reader) {
+				assertEquals(expected.get(count++), line);
+			}
+			assertEquals(expected.size(), count);
+		}
+	}
+
+	/**
+	 * Tests that the chunks of a file cover every line exactly once.
+	 * 
+	 * @throws IOException
+	 *             if reading fails
+	 */
+	@Test
+	public void testLineChunks() throws IOException {
+		List<String> expected = createLines();
+		File file = writeLines(expected, "\n");
+		long[] bounds = MappedLineReader.chunkBounds(file, 7, 16);
+		assertEquals(8, bounds.length);
+		List<String> lines = new ArrayList<>();
+		for (int i = 0; i < bounds.length - 1; i++) {
+			try (MappedLineReader reader = new MappedLineReader(file, UTF8, bounds[i], bounds[i + 1], 128)) {
+				for (String line : reader) {
+					lines.add(line);
+				}
+			}
+		}
+		assertEquals(expected, lines);
+
+		List<Integer> counts = LpeFileUtils.processLines(file.getAbsolutePath(), UTF8, 4,
+				new LineChunkProcessor<Integer>() {
+					@Override
+					public Integer process(Iterable<String> chunk) {
+						int count = 0;
+						for (@SuppressWarnings("unused")
+						String line : chunk) {
+							count++;
+						}
+						return count;
+					}
+				});
+		int total = 0;
+		for (int count : counts) {
+			total += count;
+		}
+		assertEquals(expected.size(), total);
+	}
+
+	/**
+	 * Tests writing and reading lines with the default charset and with an
+	 * explicit charset. Only ASCII lines are used with the default charset,
+	 * which may not be able to encode the other lines.
+	 * 
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	@Test
+	public void testWriteLines() throws IOException {
+		List<String> expected = createLines();
+		List<String> ascii = expected.subList(0, expected.size() - 1);
+		String fileName = new File(folder.getRoot(), "written.txt").getAbsolutePath();
+		LpeFileUtils.writeLines(fileName, ascii);
+		assertEquals(ascii, LpeFileUtils.readLines(fileName));
+
+		try (BufferedWriter writer = LpeFileUtils.newLineWriter(fileName, UTF8)) {
+			for (String line : expected) {
+				writer.write(line);
+				writer.newLine();
+			}
+		}
+		assertEquals(expected, Files.readAllLines(new File(fileName).toPath(), UTF8));
+	}
+
+	private static List<String> createLines() {
+		List<String> lines = new ArrayList<>();
+		Random random = new Random(7);
+		for (int i = 0; i < 500; i++) {
+			StringBuilder builder = new StringBuilder();
+			int length = i == 250 ? 1000 : random.nextInt(40);
+			for (int j = 0; j < length; j++) {
+				builder.append((char) ('a' + random.nextInt(26)));
+			}
+			lines.add(builder.toString());
+		}
+		lines.add("\u00e4\u00f6\u00fc");
+		return lines;
+	}
+
+	private File writeLines(List<String> lines, String separator) throws IOException {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < lines.size(); i++) {
+			builder.append(lines.get(i));
+			if (i < lines.size() - 1) {
+				builder.append(separator);
+			}
+		}
+		File file = folder.newFile();
+		write(file, builder.toString().getBytes(UTF8));
+		return file;
+	}
+
+	private static List<String> relativeFiles(File root) {
+		List<String> result = new ArrayList<>();
+		int start = root.getAbsolutePath().length() + 1;
+		for (String path : LpeFileUtils.getAllFiles(root.getAbsolutePath())) {
+			result.add(path.substring(start).replace('\\', '/'));
+		}
+		return result;
+	}
+
+	private static void write(File file, byte[] content) throws IOException {
+		file.getParentFile().mkdirs();
+		try (FileOutputStream out = new FileOutputStream(file)) {
+			out.write(content);
+		}
+	}
+}
@@ -0,0 +1,167 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.lpe.common.util.system.LpeSystemUtils;
+
+/**
+ * Tests the {@link LpeSystemUtils}.
+ * 
+ */
+public class LpeSystemUtilsTest {
+	private static final String CACHE_DIR_PROPERTY = "lpe.extraction.cache.dir";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Redirects the extraction cache into the temporary folder.
+	 * 
+	 * @throws IOException
+	 *             if the folder cannot be created
+	 */
+	@Before
+	public void setCacheDir() throws IOException {
+		System.setProperty(CACHE_DIR_PROPERTY, folder.newFolder("cache").getAbsolutePath());
+	}
+
+	/**
+	 * Resets the extraction cache location.
+	 */
+	@After
+	public void resetCacheDir() {
+		System.clearProperty(CACHE_DIR_PROPERTY);
+	}
+
+	/**
+	 * Tests that extracted files are cached until the JAR content changes.
+	 * 
+	 * @throws Exception
+	 *             on failure
+	 */
+	@Test
+	public void testCachedExtraction() throws Exception {
+		File jar = new File(folder.getRoot(), "libs.jar");
+		writeJar(jar, "one");
+
+		File first = extract(jar);
+		assertArrayEquals("one".getBytes(StandardCharsets.UTF_8), Files.readAllBytes(new File(first, "a.so").toPath()));
+		assertFalse(new File(first, "b.so").exists());
+		assertFalse(new File(first, "c.txt").exists());
+
+		long modified = new File(first, "a.so").lastModified();
+		File second = extract(jar);
+		assertEquals(first, second);
+		assertEquals(modified, new File(second, "a.so").lastModified());
+
+		writeJar(jar, "two");
+		File third = extract(jar);
+		assertFalse(first.equals(third));
+		assertArrayEquals("two".getBytes(StandardCharsets.UTF_8), Files.readAllBytes(new File(third, "a.so").toPath()));
+		assertTrue(new File(first, "a.so").exists());
+	}
+
+	/**
+	 * Tests that a modified cache entry is extracted again and that the cache
+	 * root is only accessible by its owner.
+	 * 
+	 * @throws Exception
+	 *             on failure
+	 */
+	@Test
+	public void testModifiedEntry() throws Exception {
+		File jar = new File(folder.getRoot(), "libs.jar");
+		writeJar(jar, "one");
+		File first = extract(jar);
+		File file = new File(first, "a.so");
+		Files.write(file.toPath(), "two".getBytes(StandardCharsets.UTF_8));
+
+		File second = extract(jar);
+		assertEquals(first, second);
+		assertArrayEquals("one".getBytes(StandardCharsets.UTF_8), Files.readAllBytes(file.toPath()));
+
+		Path root = new File(System.getProperty(CACHE_DIR_PROPERTY)).toPath();
+		if (root.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+			assertEquals(PosixFilePermissions.fromString("rwx------"), Files.getPosixFilePermissions(root));
+		}
+	}
+
+	/**
+	 * Tests the extraction into a fresh directory.
+	 * 
+	 * @throws Exception
+	 *             on failure
+	 */
+	@Test
+	public void testUncachedExtraction() throws Exception {
+		File jar = new File(folder.getRoot(), "libs.jar");
+		writeJar(jar, "one");
+		try (URLClassLoader loader = new URLClassLoader(new URL[] { jar.toURI().toURL() }, null)) {
+			String dir = LpeSystemUtils.extractFilesFromClasspath("native", "lpeTest", "test files", loader, true);
+			try {
+				assertTrue(new File(dir, "a.so").isFile());
+				assertFalse(new File(dir, "b.so").exists());
+			} finally {
+				LpeFileUtils.removeDir(dir);
+			}
+		}
+	}
+
+	private static File extract(File jar) throws IOException, URISyntaxException {
+		try (URLClassLoader loader = new URLClassLoader(new URL[] { jar.toURI().toURL() }, null)) {
+			return new File(LpeSystemUtils.extractFilesFromClasspath("native", "lpeTest", "test files", loader));
+		}
+	}
+
+	private static void writeJar(File jar, String content) throws IOException {
+		try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+			out.putNextEntry(new JarEntry("native/"));
+			out.closeEntry();
+			put(out, "native/a.so", content);
+			put(out, "native/sub/b.so", content);
+			put(out, "other/c.txt", content);
+		}
+	}
+
+	private static void put(JarOutputStream out, String name, String content) throws IOException {
+		out.putNextEntry(new JarEntry(name));
+		out.write(content.getBytes(StandardCharsets.UTF_8));
+		out.closeEntry();
+	}
+}
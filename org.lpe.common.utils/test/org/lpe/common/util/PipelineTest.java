@@ -0,0 +1,214 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.lpe.common.util.concurrency.ExecutorRegistry;
+import org.lpe.common.util.concurrency.ExecutorStats;
+import org.lpe.common.util.concurrency.Pipeline;
+import org.lpe.common.util.concurrency.PipelineBuilder;
+import org.lpe.common.util.concurrency.PipelineSink;
+import org.lpe.common.util.concurrency.StageProcessor;
+import org.lpe.common.util.concurrency.StageStats;
+
+/**
+ * Tests the {@link Pipeline}.
+ * 
+ */
+public class PipelineTest {
+	private static final int NUM_ITEMS = 10000;
+
+	/**
+	 * Tests that ordered stages keep the input order despite parallel workers
+	 * and that filtering stages drop items. The workers run on a registry
+	 * executor, which is released after the run.
+	 * 
+	 * @throws Exception
+	 *             if the pipeline fails
+	 */
+	@Test
+	public void testOrderedStages() throws Exception {
+		final List<String> output = new ArrayList<>();
+		Pipeline<Integer, String> pipeline = PipelineBuilder.<Integer> create("test-ordered", 64)
+				.addStage("square", new StageProcessor<Integer, Long>() {
+					@Override
+					public List<Long> process(List<Integer> batch) throws Exception {
+						List<Long> result = new ArrayList<>(batch.size());
+						for (int i : batch) {
+							if (i % 7 == 0) {
+								Thread.sleep(0, 1000);
+							}
+							result.add((long) i * i);
+						}
+						return result;
+					}
+				}, 4, 16, true).addStage("even", new StageProcessor<Long, String>() {
+					@Override
+					public List<String> process(List<Long> batch) {
+						List<String> result = new ArrayList<>();
+						for (long value : batch) {
+							if (value % 2 == 0) {
+								result.add(String.valueOf(value));
+							}
+						}
+						return result;
+					}
+				}, 3, 5, true).build(new PipelineSink<String>() {
+					@Override
+					public void accept(String item) {
+						assertTrue(Thread.currentThread().getName().startsWith("test-ordered-"));
+						output.add(item);
+					}
+				});
+		pipeline.run(range(NUM_ITEMS).iterator());
+		for (ExecutorStats executor : ExecutorRegistry.getInstance().getStats()) {
+			assertFalse(executor.getName(), executor.getName().startsWith("test-ordered-"));
+		}
+
+		assertEquals(NUM_ITEMS / 2, output.size());
+		for (int i = 0; i < output.size(); i++) {
+			long value = 2L * i;
+			assertEquals(String.valueOf(value * value), output.get(i));
+		}
+		List<StageStats> stats = pipeline.getStats();
+		assertEquals(3, stats.size());
+		assertEquals(NUM_ITEMS, stats.get(0).getProcessedItems());
+		assertEquals(NUM_ITEMS / 2, stats.get(1).getProducedItems());
+		assertEquals(NUM_ITEMS / 2, stats.get(2).getProcessedItems());
+		assertTrue(stats.get(0).getProcessedBatches() >= NUM_ITEMS / 16);
+		assertTrue(stats.get(0).getThroughput() > 0);
+	}
+
+	/**
+	 * Tests that a blocked sink stops the producer once all queues are full.
+	 * 
+	 * @throws Exception
+	 *             if the pipeline fails
+	 */
+	@Test
+	public void testBackpressure() throws Exception {
+		final int capacity = 4;
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicInteger consumed = new AtomicInteger();
+		Pipeline<Integer, Integer> pipeline = PipelineBuilder.<Integer> create("test-backpressure", capacity)
+				.addStage("identity", new StageProcessor<Integer, Integer>() {
+					@Override
+					public List<Integer> process(List<Integer> batch) {
+						return batch;
+					}
+				}, 2, 1, false).build(new PipelineSink<Integer>() {
+					@Override
+					public void accept(Integer item) throws InterruptedException {
+						release.await();
+						consumed.incrementAndGet();
+					}
+				});
+		pipeline.start();
+
+		int submitted = 0;
+		final Thread producer = Thread.currentThread();
+		Thread watchdog = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(1000);
+					producer.interrupt();
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		});
+		watchdog.start();
+		try {
+			for (int i = 0; i < NUM_ITEMS; i++) {
+				pipeline.submit(i);
+				submitted++;
+			}
+			fail("Expected the producer to block.");
+		} catch (InterruptedException e) {
+			// expected: the producer has been blocked
+		}
+		watchdog.join();
+		// two full queues, one item per worker and a batch held by the sink
+		assertTrue(submitted >= 2 * capacity);
+		assertTrue(submitted <= 3 * capacity + 2);
+		for (StageStats stats : pipeline.getStats()) {
+			assertTrue(stats.getQueuedItems() <= stats.getQueueCapacity());
+		}
+
+		release.countDown();
+		pipeline.close();
+		pipeline.awaitCompletion();
+		assertEquals(submitted, consumed.get());
+	}
+
+	/**
+	 * Tests that a failing stage aborts the pipeline and reports its cause.
+	 * 
+	 * @throws Exception
+	 *             if waiting is interrupted
+	 */
+	@Test
+	public void testFailure() throws Exception {
+		Pipeline<Integer, Integer> pipeline = PipelineBuilder.<Integer> create("test-failure", 8)
+				.addStage("fail", new StageProcessor<Integer, Integer>() {
+					@Override
+					public List<Integer> process(List<Integer> batch) {
+						if (batch.contains(100)) {
+							throw new IllegalArgumentException("bad item");
+						}
+						return batch;
+					}
+				}, 2, 4, true).build(new PipelineSink<Integer>() {
+					@Override
+					public void accept(Integer item) {
+					}
+				});
+		try {
+			pipeline.run(range(NUM_ITEMS).iterator());
+			fail("Expected a failure.");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IllegalArgumentException);
+		}
+		try {
+			pipeline.awaitCompletion(5, TimeUnit.SECONDS);
+			fail("Expected a failure.");
+		} catch (ExecutionException e) {
+			assertTrue(pipeline.isDone());
+		}
+	}
+
+	private static List<Integer> range(int size) {
+		List<Integer> range = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			range.add(i);
+		}
+		return Collections.unmodifiableList(range);
+	}
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.lpe.common.util.queueing.ErlangFormulas;
+import org.lpe.common.util.queueing.ErlangTable;
+import org.lpe.common.util.queueing.MeanValueAnalysis;
+
+/**
+ * Tests the queueing models.
+ * 
+ */
+public class QueueingModelsTest {
+	private static final double DELTA = 1e-9;
+
+	/**
+	 * Tests Erlang C against the closed formula for small server counts.
+	 */
+	@Test
+	public void testErlangC() {
+		for (int c = 1; c <= 10; c++) {
+			for (double u = 0.05; u < 1.0; u += 0.1) {
+				assertEquals(closedErlangC(c, u), ErlangFormulas.erlangC(c, u), DELTA);
+			}
+		}
+		assertEquals(0.5, ErlangFormulas.erlangC(1, 0.5), DELTA);
+		assertEquals(1.0, ErlangFormulas.erlangC(4, 1.0), DELTA);
+	}
+
+	/**
+	 * Tests that Erlang C stays finite and monotone for large server counts.
+	 */
+	@Test
+	public void testErlangCManyServers() {
+		double previous = 0.0;
+		for (double u = 0.5; u < 1.0; u += 0.01) {
+			double value = ErlangFormulas.erlangC(128, u);
+			assertTrue(value >= previous && value <= 1.0);
+			previous = value;
+		}
+		assertTrue(LpeNumericUtils.calculateErlangsCFormula(64, 0.95) > 0.0);
+	}
+
+	/**
+	 * Tests the inverse solver.
+	 */
+	@Test
+	public void testInverse() {
+		ErlangTable table = ErlangTable.forServers(8);
+		assertSame(table, ErlangTable.forServers(8));
+		for (double u = 0.3; u < 0.99; u += 0.07) {
+			double factor = table.responseTimeFactor(u);
+			assertEquals(u, table.utilizationForResponseTimeFactor(factor), 1e-6);
+		}
+		assertEquals(0.0, table.utilizationForResponseTimeFactor(1.0), DELTA);
+
+		table = ErlangTable.forServers(128);
+		for (double u = 0.5; u < 0.999; u += 0.03) {
+			double factor = table.waitingTimeFactor(u);
+			assertEquals(u, table.utilizationForWaitingTimeFactor(factor), 1e-6);
+		}
+
+		double ref = ErlangFormulas.responseTimeFactor(4, 0.01);
+		double u = LpeNumericUtils.getUtilizationForResponseTimeFactorQT(1000.0, 4);
+		assertEquals(1000.0, ErlangFormulas.responseTimeFactor(4, u) / ref, 1e-2);
+	}
+
+	/**
+	 * Tests the utilization for a response time factor with many servers,
+	 * where the waiting time at the reference utilization underflows.
+	 */
+	@Test
+	public void testUtilizationManyServers() {
+		assertEquals(0.986, LpeNumericUtils.getUtilizationForResponseTimeFactorQT(2.0, 64), 1e-3);
+		double previous = 0.0;
+		for (int cores : new int[] { 64, 128, 256 }) {
+			double u = LpeNumericUtils.getUtilizationForResponseTimeFactorQT(2.0, cores);
+			assertTrue(u > previous && u < 1.0);
+			double ref = ErlangFormulas.responseTimeFactor(cores, 0.01);
+			assertEquals(2.0, ErlangFormulas.responseTimeFactor(cores, u) / ref, 1e-3);
+			previous = u;
+		}
+	}
+
+	/**
+	 * Tests the mean value analysis.
+	 */
+	@Test
+	public void testMeanValueAnalysis() {
+		// single station without think time: R(n) = n D
+		MeanValueAnalysis.Result result = new MeanValueAnalysis(new double[] { 0.1 }, 0.0).solve(5);
+		assertEquals(0.1, result.getResponseTime(1), DELTA);
+		assertEquals(0.5, result.getResponseTime(), DELTA);
+		assertEquals(10.0, result.getThroughput(), DELTA);
+		assertEquals(1.0, result.getUtilization(0), DELTA);
+		assertEquals(5.0, result.getQueueLength(0), DELTA);
+
+		// two stations with think time, asymptotically bound by the bottleneck
+		result = new MeanValueAnalysis(new double[] { 0.2, 0.1 }, 1.0).solve(200);
+		assertEquals(1.0 / 1.3, result.getThroughput(1), DELTA);
+		assertEquals(5.0, result.getThroughput(), 1e-6);
+		assertEquals(200.0 / 5.0 - 1.0, result.getResponseTime(), 1e-3);
+
+		// multi-server station saturates at c / D
+		result = new MeanValueAnalysis(new double[] { 0.4 }, new int[] { 4 }, 0.0).solve(100);
+		assertEquals(10.0, result.getThroughput(), 1e-6);
+		assertEquals(100.0, result.getQueueLength(0), 1e-6);
+	}
+
+	private static double closedErlangC(int c, double u) {
+		double a = c * u;
+		double term = 1.0;
+		double sum = 0.0;
+		for (int i = 0; i < c; i++) {
+			sum += term;
+			term *= a / (i + 1);
+		}
+		double last = term / (1.0 - u);
+		return last / (sum + last);
+	}
+}
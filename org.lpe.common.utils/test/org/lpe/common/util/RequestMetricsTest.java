@@ -0,0 +1,132 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.MediaType;
+
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.lpe.common.util.web.LpeWebUtils;
+import org.lpe.common.util.web.metrics.EndpointMetrics;
+import org.lpe.common.util.web.metrics.LatencyHistogram;
+import org.lpe.common.util.web.metrics.RequestMetrics;
+
+/**
+ * Tests the {@link RequestMetrics} of services started with
+ * {@link LpeWebUtils}.
+ * 
+ */
+public class RequestMetricsTest {
+	private static final int PORT = 8125;
+	private static HttpServer server;
+
+	/**
+	 * Starts a server hosting the dummy service.
+	 */
+	@BeforeClass
+	public static void startServer() {
+		server = LpeWebUtils.startHttpServer("localhost", PORT, "", new String[] { "org.lpe.common.util.dummy" });
+	}
+
+	/**
+	 * Tests merging and copying of {@link LatencyHistogram}s.
+	 */
+	@Test
+	public void testHistogramMerge() {
+		LatencyHistogram low = new LatencyHistogram();
+		LatencyHistogram high = new LatencyHistogram();
+		for (int i = 1; i <= 1000; i++) {
+			(i <= 500 ? low : high).record(TimeUnit.MICROSECONDS.toNanos(i));
+		}
+		LatencyHistogram merged = low.copy();
+		merged.merge(high);
+		assertEquals(500, low.getCount());
+		assertEquals(1000, merged.getCount());
+		assertEquals(1000, merged.getMaxMicros());
+		assertEquals(500.5, merged.getMeanMicros(), 0.001);
+		long median = merged.getValueAtPercentile(50.0);
+		assertTrue(median >= 500 && median <= 500 * (1.0 + 1.0 / LatencyHistogram.SUB_BUCKETS));
+		assertEquals(low.getValueAtPercentile(100.0), low.copy().getValueAtPercentile(100.0));
+	}
+
+	/**
+	 * Tests the percentiles of the {@link LatencyHistogram}.
+	 */
+	@Test
+	public void testHistogramPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+		}
+		assertEquals(1000, histogram.getCount());
+		assertEquals(1000, histogram.getMaxMicros());
+		assertEquals(500.5, histogram.getMeanMicros(), 0.001);
+
+		long median = histogram.getValueAtPercentile(50.0);
+		assertTrue(median >= 500 && median <= 500 * (1.0 + 1.0 / LatencyHistogram.SUB_BUCKETS));
+		long p99 = histogram.getValueAtPercentile(99.0);
+		assertTrue(p99 >= 990 && p99 <= 1000);
+		assertEquals(1000, histogram.getValueAtPercentile(100.0));
+
+		long[][] buckets = histogram.getCumulativeBuckets(0);
+		long previous = 0;
+		for (long[] bucket : buckets) {
+			assertTrue(bucket[1] >= previous);
+			assertTrue(bucket[1] <= bucket[0]);
+			previous = bucket[1];
+		}
+	}
+
+	/**
+	 * Tests that requests are counted per endpoint and exposed in the
+	 * Prometheus format.
+	 */
+	@Test
+	public void testEndpointMetrics() {
+		EndpointMetrics endpoint = RequestMetrics.getInstance().getEndpoint("GET", "/dummy/service");
+		long before = endpoint.getRequestCount();
+		for (int i = 0; i < 5; i++) {
+			LpeWebUtils.getWebClient().resource("http://localhost:" + PORT + "/dummy/service")
+					.accept(MediaType.APPLICATION_JSON).get(String.class);
+		}
+		assertEquals(before + 5, endpoint.getRequestCount());
+		assertEquals(0, endpoint.getInFlight());
+		assertEquals(0, endpoint.getErrorCount());
+		assertTrue(endpoint.getMeanLatencyMillis() > 0.0);
+
+		String text = LpeWebUtils.getWebClient().resource("http://localhost:" + PORT + "/metrics").get(String.class);
+		assertTrue(text.contains("lpe_http_requests_total{method=\"GET\",path=\"/dummy/service\"}"));
+		assertTrue(text.contains("lpe_http_request_duration_seconds_bucket{method=\"GET\",path=\"/dummy/service\",le=\"+Inf\"}"));
+		assertTrue(text.contains("lpe_http_worker_pool_max_threads{pool=\"localhost:" + PORT + "\"}"));
+	}
+
+	/**
+	 * Stops the server.
+	 */
+	@AfterClass
+	public static void stopServer() {
+		if (server != null) {
+			server.shutdownNow();
+		}
+	}
+}
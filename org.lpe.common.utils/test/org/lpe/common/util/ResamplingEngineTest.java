@@ -0,0 +1,106 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.lpe.common.util.stats.ResamplingEngine;
+import org.lpe.common.util.stats.ResamplingResult;
+import org.lpe.common.util.stats.SampleStatistic;
+
+/**
+ * Tests the {@link ResamplingEngine}.
+ * 
+ */
+public class ResamplingEngineTest {
+	private static final int SAMPLE_SIZE = 400;
+	private static final int ITERATIONS = 4000;
+
+	/**
+	 * Tests that the results only depend on the seed, not on the parallelism.
+	 */
+	@Test
+	public void testDeterminism() {
+		double[] sample1 = exponential(SAMPLE_SIZE, 100, 1);
+		double[] sample2 = exponential(SAMPLE_SIZE, 110, 2);
+		ResamplingResult sequential = new ResamplingEngine(ITERATIONS, 42, 1).bootstrapDifference(sample1,
+				sample2, SampleStatistic.MEDIAN, 0.95);
+		ResamplingResult parallel = new ResamplingEngine(ITERATIONS, 42, 4).bootstrapDifference(sample1, sample2,
+				SampleStatistic.MEDIAN, 0.95);
+		assertEquals(sequential.getLower(), parallel.getLower(), 0.0);
+		assertEquals(sequential.getUpper(), parallel.getUpper(), 0.0);
+		assertEquals(sequential.getPValue(), parallel.getPValue(), 0.0);
+	}
+
+	/**
+	 * Tests the bootstrap interval of the mean of a skewed sample.
+	 */
+	@Test
+	public void testBootstrapInterval() {
+		double[] sample = exponential(SAMPLE_SIZE, 100, 3);
+		double[] copy = sample.clone();
+		ResamplingResult result = new ResamplingEngine(ITERATIONS, 7).bootstrap(sample, SampleStatistic.MEAN, 0.95);
+		assertTrue(result.getLower() < result.getObserved() && result.getObserved() < result.getUpper());
+		// standard error of the mean is about 100 / sqrt(400) = 5
+		double width = result.getUpper() - result.getLower();
+		assertTrue(String.valueOf(width), width > 10 && width < 30);
+		assertTrue(Double.isNaN(result.getPValue()));
+		for (int i = 0; i < sample.length; i++) {
+			assertEquals(copy[i], sample[i], 0.0);
+		}
+	}
+
+	/**
+	 * Tests that a clear shift is detected and equal distributions are not.
+	 */
+	@Test
+	public void testSignificance() {
+		ResamplingEngine engine = new ResamplingEngine(ITERATIONS, 11);
+		double[] base = exponential(SAMPLE_SIZE, 100, 4);
+		double[] same = exponential(SAMPLE_SIZE, 100, 5);
+		double[] slower = exponential(SAMPLE_SIZE, 150, 6);
+
+		assertTrue(engine.permutationTest(base, slower, SampleStatistic.MEAN, 0.95).isSignificant(0.01));
+		assertTrue(engine.bootstrapDifference(base, slower, SampleStatistic.percentile(90), 0.95).isSignificant(
+				0.05));
+		ResamplingResult equal = engine.permutationTest(base, same, SampleStatistic.MEDIAN, 0.95);
+		assertFalse(equal.toString(), equal.isSignificant(0.01));
+
+		List<Double> list1 = new ArrayList<>();
+		List<Double> list2 = new ArrayList<>();
+		for (int i = 0; i < SAMPLE_SIZE; i++) {
+			list1.add(base[i]);
+			list2.add(slower[i]);
+		}
+		assertTrue(LpeNumericUtils.permutationTest(list1, list2) < 0.01);
+	}
+
+	private static double[] exponential(int size, double mean, long seed) {
+		Random random = new Random(seed);
+		double[] values = new double[size];
+		for (int i = 0; i < size; i++) {
+			values[i] = -mean * Math.log(1 - random.nextDouble());
+		}
+		return values;
+	}
+}
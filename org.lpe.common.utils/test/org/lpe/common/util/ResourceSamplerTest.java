@@ -0,0 +1,109 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.lpe.common.util.monitoring.ResourceMetric;
+import org.lpe.common.util.monitoring.ResourceSampler;
+import org.lpe.common.util.monitoring.ResourceSamples;
+
+/**
+ * Tests the {@link ResourceSampler}.
+ * 
+ */
+public class ResourceSamplerTest {
+	private static final int NUM_SAMPLES = 5;
+
+	/**
+	 * Skips the tests on hosts without <code>/proc</code>.
+	 */
+	@Before
+	public void checkProcFs() {
+		Assume.assumeTrue(new File("/proc/stat").exists());
+	}
+
+	/**
+	 * Tests sampling and window queries.
+	 * 
+	 * @throws IOException
+	 *             on failure
+	 * @throws InterruptedException
+	 *             on interruption
+	 */
+	@Test
+	public void testSampling() throws IOException, InterruptedException {
+		try (ResourceSampler sampler = ResourceSampler.create(10, NUM_SAMPLES)) {
+			assertTrue(sampler.getNumCores() > 0);
+			for (int i = 0; i <= NUM_SAMPLES + 2; i++) {
+				sampler.sample();
+				Thread.sleep(5);
+			}
+			assertEquals(NUM_SAMPLES, sampler.getNumSamples());
+
+			ResourceSamples samples = sampler.getSamples();
+			assertEquals(NUM_SAMPLES, samples.size());
+			for (int i = 0; i < samples.size(); i++) {
+				double cpu = samples.getValue(ResourceMetric.CPU_UTILIZATION, i);
+				assertTrue(cpu >= 0.0 && cpu <= 1.0);
+				assertTrue(samples.getValue(ResourceMetric.MEMORY_TOTAL, i) > 0.0);
+				assertTrue(samples.getCoreUtilization(0, i) <= 1.0);
+				if (i > 0) {
+					assertTrue(samples.getTimestamp(i) > samples.getTimestamp(i - 1));
+				}
+			}
+
+			ResourceSamples window = sampler.getSamples(samples.getTimestamp(1), samples.getTimestamp(3));
+			assertEquals(3, window.size());
+			assertEquals(samples.getTimestamp(1), window.getTimestamp(0));
+			assertEquals(0, sampler.getSamples(0, samples.getTimestamp(0) - 1).size());
+
+			ResourceSamples restored = ResourceSamples.fromBinarySeries(samples.toBinarySeries());
+			assertEquals(samples.getNumCores(), restored.getNumCores());
+			assertEquals(samples.getTimestamp(4), restored.getTimestamp(4));
+			assertEquals(samples.getCoreUtilization(0, 2), restored.getCoreUtilization(0, 2), 0.0);
+		}
+	}
+
+	/**
+	 * Tests the sampler thread.
+	 * 
+	 * @throws IOException
+	 *             on failure
+	 * @throws InterruptedException
+	 *             on interruption
+	 */
+	@Test
+	public void testStartStop() throws IOException, InterruptedException {
+		try (ResourceSampler sampler = ResourceSampler.create(5, 1000)) {
+			sampler.start();
+			assertTrue(sampler.isRunning());
+			Thread.sleep(200);
+			sampler.stop();
+			int numSamples = sampler.getNumSamples();
+			assertTrue(numSamples > 1);
+			Thread.sleep(50);
+			assertEquals(numSamples, sampler.getNumSamples());
+		}
+	}
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.lpe.common.util.stats.SteadyStateDetector;
+
+/**
+ * Tests the {@link SteadyStateDetector}.
+ * 
+ */
+public class SteadyStateDetectorTest {
+	private static final int LENGTH = 5000;
+
+	/**
+	 * Tests that an exponentially decaying warm-up and a linear cool-down are
+	 * removed.
+	 */
+	@Test
+	public void testWarmupAndCooldown() {
+		Random random = new Random(3);
+		double[] values = new double[LENGTH];
+		for (int i = 0; i < LENGTH; i++) {
+			values[i] = 100 + 400 * Math.exp(-i / 100.0) + random.nextGaussian() * 10;
+			if (i >= LENGTH - 500) {
+				values[i] += (i - (LENGTH - 500)) * 2;
+			}
+		}
+		SteadyStateDetector.Window window = SteadyStateDetector.detectWindow(values, 5);
+		assertTrue(window.isReliable());
+		// the transient is below the noise after about 370 values
+		assertTrue(window.getFrom() >= 250 && window.getFrom() <= 700);
+		assertTrue(window.getTo() >= LENGTH - 600 && window.getTo() <= LENGTH - 450);
+	}
+
+	/**
+	 * Tests that a stationary series is hardly truncated and that streaming
+	 * gives the same result as the array variant.
+	 */
+	@Test
+	public void testStationaryAndStreaming() {
+		Random random = new Random(5);
+		double[] values = new double[LENGTH];
+		SteadyStateDetector detector = new SteadyStateDetector();
+		for (int i = 0; i < LENGTH; i++) {
+			values[i] = 50 + random.nextGaussian();
+			detector.add(values[i]);
+		}
+		SteadyStateDetector.Window window = detector.getWindow();
+		assertTrue(window.getLength() > LENGTH * 0.8);
+		assertEquals(window.getFrom(), SteadyStateDetector.detectWindow(values, 5).getFrom());
+		assertEquals(window.getFrom(), detector.getWarmupTruncation());
+		assertEquals(LENGTH, detector.getCount());
+	}
+
+	/**
+	 * Tests that a series that keeps rising is reported as unreliable.
+	 */
+	@Test
+	public void testTrend() {
+		double[] values = new double[LENGTH];
+		for (int i = 0; i < LENGTH; i++) {
+			values[i] = i;
+		}
+		assertFalse(SteadyStateDetector.detectWindow(values, 5).isReliable());
+	}
+}